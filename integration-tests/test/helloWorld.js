@@ -11,8 +11,7 @@ describe("Hello World", () => {
   it("Runs Hello World project", (done) => {
     const expectedMessages = [
       ...INITIAL_STATUS_MESSAGES,
-      { type: "SYSTEM_OUT", value: "Hello World" },
-      { type: "SYSTEM_OUT", value: "\n" },
+      { type: "SYSTEM_OUT", value: "Hello World\n" },
       EXIT_STATUS_MESSAGE
     ];
     const assertOnMessagesReceived = receivedMessages => assertMessagesEqual(receivedMessages, expectedMessages);
@@ -12,6 +12,9 @@ import {
 
 const INTEGRATION_TESTS_ORIGIN = "integration-tests";
 const INTEGRATION_TESTS_SESSION_ID_PREFIX = "integrationTests-";
+// Messages too large for API Gateway are split into chunks that start with a header like
+// "CHUNK:<message id>:<chunk index>:<chunk count>\n" (see ClientMessageChunker.java).
+const CHUNK_HEADER_PREFIX = "CHUNK:";
 
 /**
  * Helper class for facilitating a connection to a Javabuilder instance
@@ -46,7 +49,14 @@ class JavabuilderConnectionHelper {
       onOpen();
     };
 
-    const onMessageWrapper = event => onMessage(event, socket);
+    const chunkReassembler = new ChunkReassembler();
+    const onMessageWrapper = event => {
+      const data = chunkReassembler.addMessage(event.data);
+      // Wait until every chunk of a chunked message has arrived.
+      if (data !== null) {
+        onMessage({...event, data}, socket);
+      }
+    };
 
     socket.onopen = logOnOpen;
     socket.onmessage = onMessageWrapper;
@@ -86,6 +96,47 @@ class JavabuilderConnectionHelper {
   }
 }
 
+/**
+ * Joins chunked messages back together. Messages that were not chunked are returned unchanged.
+ */
+class ChunkReassembler {
+  constructor() {
+    this.pendingChunks = new Map();
+  }
+
+  /**
+   * @param {string|Buffer} data message data received from the WebSocket
+   * @returns the complete message, or null if this was a chunk of a message that is not yet complete
+   */
+  addMessage(data) {
+    const isText = typeof data === "string";
+    const buffer = isText ? Buffer.from(data, "utf8") : Buffer.from(data);
+    if (buffer.toString("ascii", 0, CHUNK_HEADER_PREFIX.length) !== CHUNK_HEADER_PREFIX) {
+      return data;
+    }
+
+    const headerEnd = buffer.indexOf("\n");
+    const [messageId, index, count] = buffer
+      .toString("ascii", CHUNK_HEADER_PREFIX.length, headerEnd)
+      .split(":")
+      .map(Number);
+    if (!this.pendingChunks.has(messageId)) {
+      this.pendingChunks.set(messageId, new Array(count));
+    }
+    const chunks = this.pendingChunks.get(messageId);
+    chunks[index] = buffer.subarray(headerEnd + 1);
+
+    for (let i = 0; i < count; i++) {
+      if (chunks[i] === undefined) {
+        return null;
+      }
+    }
+    this.pendingChunks.delete(messageId);
+    const message = Buffer.concat(chunks);
+    return isText ? message.toString("utf8") : message;
+  }
+}
+
 export function uploadSources(sourcesJson, token) {
   return fetch(
     `${JAVABUILDER_HTTP_URL}?Authorization=${token}`,
@@ -35,30 +35,33 @@ public class CORSFilter extends HttpFilter {
       return;
     }
 
-    // if not one of three allowed files, reject
+    // if not one of the allowed files, reject
     final String[] urlParts = request.getRequestURI().split("/");
     final String fileName = urlParts[urlParts.length - 1];
     if (!this.getAllowedExternal(fileName)) {
       response.sendError(
           403,
           String.format(
-              "Only %s, %s, %s, and %s files/endpoints can be accessed.",
+              "Only %s, %s, %s, %s, and %s files/endpoints can be accessed.",
               SEED_SOURCES_ENDPOINT,
               THEATER_IMAGE_NAME,
               THEATER_AUDIO_NAME,
+              THEATER_SCENE_NAME,
               PROMPTER_FILE_NAME_PREFIX));
       return;
     }
 
-    // if from unknown origin, can still get theater image and audio
+    // if from unknown origin, can still get theater image, audio and scene log
     if (requestOrigin != null && !ALLOWED_ORIGINS.contains(requestOrigin)) {
       chain.doFilter(request, response);
       return;
     }
 
     if (fileName.equals(SEED_SOURCES_ENDPOINT)
+        || fileName.equals(THEATER_SCENE_NAME)
         || fileName.indexOf(PROMPTER_FILE_NAME_PREFIX) == 0) {
-      // Add CORS headers only if the request is for a known file
+      // Add CORS headers only if the request is for a known file. The scene log is read by script
+      // rather than loaded as media, so it needs them too.
       response.addHeader("Access-Control-Allow-Origin", requestOrigin);
       response.addHeader("Access-Control-Allow-Headers", "*");
       response.addHeader("Access-Control-Allow-Methods", "GET, OPTIONS, PUT");
@@ -76,6 +79,7 @@ public class CORSFilter extends HttpFilter {
     return fileName.equals(SEED_SOURCES_ENDPOINT)
         || fileName.equals(THEATER_IMAGE_NAME)
         || fileName.equals(THEATER_AUDIO_NAME)
+        || fileName.equals(THEATER_SCENE_NAME)
         || fileName.indexOf(PROMPTER_FILE_NAME_PREFIX) == 0;
   }
 }
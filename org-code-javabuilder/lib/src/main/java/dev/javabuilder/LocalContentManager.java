@@ -5,13 +5,13 @@ import static dev.javabuilder.LocalWebserverConstants.DIRECTORY;
 import dev.javabuilder.util.LocalStorageUtils;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import org.code.javabuilder.*;
 import org.code.protocol.ContentManager;
 import org.code.protocol.InternalExceptionKey;
 import org.code.protocol.JavabuilderException;
-import org.json.JSONException;
 
 public class LocalContentManager implements ContentManager {
   private static final String SERVER_URL_FORMAT = "http://localhost:8080/%s/%s";
@@ -67,9 +67,9 @@ public class LocalContentManager implements ContentManager {
 
   private ProjectData loadProjectData() throws InternalServerException {
     final Path sourcesPath = LocalStorageUtils.getLocalFilePath(ProjectData.PROJECT_DATA_FILE_NAME);
-    try {
-      return new ProjectData(Files.readString(sourcesPath));
-    } catch (IOException | JSONException e) {
+    try (final InputStream inputStream = Files.newInputStream(sourcesPath)) {
+      return new ProjectData(inputStream);
+    } catch (IOException e) {
       // Error reading JSON file from local storage
       throw new InternalServerException(InternalExceptionKey.INTERNAL_EXCEPTION, e);
     }
@@ -21,4 +21,13 @@ public class LocalMetricClient extends JavabuilderSharedObject implements Metric
 
   @Override
   public void publishCleanupTime(long cleanupTime) {}
+
+  @Override
+  public void publishOutputThrottleCount(long throttleCount) {}
+
+  @Override
+  public void publishOutputRetryCount(long retryCount) {}
+
+  @Override
+  public void publishInputBlockedTime(long inputBlockedTime) {}
 }
@@ -1,28 +1,52 @@
 package dev.javabuilder;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import javax.websocket.RemoteEndpoint;
 import javax.websocket.Session;
 import org.code.protocol.ClientMessage;
+import org.code.protocol.ClientMessageChunker;
+import org.code.protocol.ClientMessageWriter;
 import org.code.protocol.InternalExceptionKey;
 import org.code.protocol.InternalServerRuntimeException;
 import org.code.protocol.OutputAdapter;
+import org.code.protocol.WireFormat;
 
 /**
- * Intended for local testing with dashboard only. Passes output to the provided WebSocket session
+ * Intended for local testing with dashboard only. Passes output to the provided WebSocket session.
+ * Large messages are split into chunks the same way as when deployed (see {@link
+ * ClientMessageChunker}), so that clients can be tested against chunked messages locally.
  */
 public class WebSocketOutputAdapter implements OutputAdapter {
   private final RemoteEndpoint.Basic endpoint;
+  private final WireFormat wireFormat;
+  private final ClientMessageWriter messageWriter;
+  private final ClientMessageChunker messageChunker;
 
   public WebSocketOutputAdapter(Session session) {
+    this(session, WireFormat.JSON);
+  }
+
+  public WebSocketOutputAdapter(Session session, WireFormat wireFormat) {
     this.endpoint = session.getBasicRemote();
+    this.wireFormat = wireFormat;
+    this.messageWriter = new ClientMessageWriter(wireFormat);
+    this.messageChunker = new ClientMessageChunker();
   }
 
   @Override
-  public void sendMessage(ClientMessage message) {
+  public synchronized void sendMessage(ClientMessage message) {
     if (message.shouldAlwaysSend()) {
       try {
-        endpoint.sendText(message.getFormattedMessage());
+        final ByteBuffer data = this.messageWriter.write(message).toByteBuffer();
+        for (ByteBuffer chunk : this.messageChunker.split(data)) {
+          if (this.wireFormat == WireFormat.BINARY) {
+            endpoint.sendBinary(chunk);
+          } else {
+            endpoint.sendText(StandardCharsets.UTF_8.decode(chunk).toString());
+          }
+        }
       } catch (IOException e) {
         e.printStackTrace();
       } catch (IllegalStateException e) {
@@ -83,13 +83,21 @@ public class WebSocketServer {
     JavabuilderContext.getInstance().register(MetricClient.class, metricClient);
 
     Properties.setConnectionId(connectionId);
+    Properties.setWireFormat(WireFormat.fromOption(options.optString(WireFormat.OPTION_KEY, null)));
+    Properties.setTheaterOutputFormat(
+        TheaterOutputFormat.fromOption(options.optString(TheaterOutputFormat.OPTION_KEY, null)));
+    Properties.setTheaterStreaming(
+        Boolean.parseBoolean(options.optString(Properties.THEATER_STREAMING_OPTION_KEY, null)));
 
-    websocketOutputAdapter = new WebSocketOutputAdapter(session);
+    websocketOutputAdapter = new WebSocketOutputAdapter(session, Properties.getWireFormat());
     inputAdapter = new WebSocketInputAdapter();
-    outputAdapter = websocketOutputAdapter;
+    final ConsoleOutputGovernor consoleOutputGovernor =
+        new ConsoleOutputGovernor(new CoalescingOutputAdapter(websocketOutputAdapter));
+    JavabuilderContext.getInstance().register(ConsoleOutputGovernor.class, consoleOutputGovernor);
+    outputAdapter = consoleOutputGovernor;
 
     if (executionType == ExecutionType.TEST) {
-      outputAdapter = new UserTestOutputAdapter(websocketOutputAdapter);
+      outputAdapter = new UserTestOutputAdapter(outputAdapter);
     }
 
     final ExceptionHandler exceptionHandler =
@@ -161,6 +169,12 @@ public class WebSocketServer {
     inputAdapter.appendMessage(message);
   }
 
+  /**
+   * Binary frames are not accepted, to match API Gateway. Clients using the binary wire format send
+   * their Base64 encoded input as text messages.
+   *
+   * @param b The message from the client.
+   */
   @OnMessage
   public void byteMessage(ByteBuffer b) {
     outputAdapter.sendMessage(new SystemOutMessage("Got a byte array message. Doing nothing."));
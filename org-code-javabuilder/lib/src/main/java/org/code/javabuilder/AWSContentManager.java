@@ -14,13 +14,11 @@ import java.io.ByteArrayInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.net.URL;
-import java.nio.charset.StandardCharsets;
 import java.util.Date;
 import org.code.protocol.ContentManager;
 import org.code.protocol.InternalExceptionKey;
 import org.code.protocol.JavabuilderException;
 import org.code.protocol.Properties;
-import org.json.JSONException;
 
 public class AWSContentManager implements ContentManager {
   // Temporary limit on writes to S3 per session until we can more fully limit usage.
@@ -42,8 +40,13 @@ public class AWSContentManager implements ContentManager {
   private int writes;
   private int uploads;
 
+  /**
+   * @param projectDataFetcher used to get the project data, which every session waits on before it
+   *     can start.
+   */
   public AWSContentManager(
       AmazonS3 s3Client,
+      HedgedObjectFetcher projectDataFetcher,
       String bucketName,
       String javabuilderSessionId,
       String contentBucketUrl,
@@ -54,7 +57,7 @@ public class AWSContentManager implements ContentManager {
     this.javabuilderSessionId = javabuilderSessionId;
     this.contentBucketUrl = contentBucketUrl;
     this.context = context;
-    this.projectData = this.loadProjectData();
+    this.projectData = this.loadProjectData(projectDataFetcher);
     this.assetFileStubber = new AssetFileStubber();
     this.writes = 0;
     this.uploads = 0;
@@ -174,20 +177,21 @@ public class AWSContentManager implements ContentManager {
     return url.contains(DASHBOARD_DOMAIN_SUFFIX);
   }
 
-  private ProjectData loadProjectData() throws InternalServerException {
+  private ProjectData loadProjectData(HedgedObjectFetcher projectDataFetcher)
+      throws InternalServerException {
     final String key = this.generateKey(ProjectData.PROJECT_DATA_FILE_NAME);
     final S3Object sourcesS3Object;
 
     try {
-      sourcesS3Object = this.s3Client.getObject(this.bucketName, key);
+      sourcesS3Object = projectDataFetcher.getObject(this.bucketName, key);
     } catch (SdkClientException e) {
       throw new InternalServerException(InternalExceptionKey.INTERNAL_EXCEPTION, e);
     }
 
+    // Parse the project data as it is downloaded, rather than reading it into memory first.
     try (final S3ObjectInputStream inputStream = sourcesS3Object.getObjectContent()) {
-      final String jsonString = new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
-      return new ProjectData(jsonString);
-    } catch (JSONException | IOException e) {
+      return new ProjectData(inputStream);
+    } catch (IOException e) {
       // Error reading JSON file from S3
       throw new InternalServerException(InternalExceptionKey.INTERNAL_EXCEPTION, e);
     }
@@ -2,56 +2,217 @@ package org.code.javabuilder;
 
 import static org.code.javabuilder.InternalFacingExceptionTypes.CONNECTION_TERMINATED;
 
+import com.amazonaws.AbortedException;
 import com.amazonaws.services.sqs.AmazonSQS;
+import com.amazonaws.services.sqs.model.BatchResultErrorEntry;
+import com.amazonaws.services.sqs.model.DeleteMessageBatchRequestEntry;
+import com.amazonaws.services.sqs.model.DeleteMessageBatchResult;
 import com.amazonaws.services.sqs.model.Message;
 import com.amazonaws.services.sqs.model.QueueDoesNotExistException;
 import com.amazonaws.services.sqs.model.ReceiveMessageRequest;
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 import org.code.protocol.InputAdapter;
+import org.code.protocol.InternalExceptionKey;
+import org.code.protocol.InternalServerRuntimeException;
+import org.code.protocol.LoggerUtils;
 
-/** Accesses Amazon SQS to get user input for the currently running program. */
+/**
+ * Accesses Amazon SQS to get user input for the currently running program.
+ *
+ * <p>A background thread starts long polling the queue as soon as the adapter is created, and keeps
+ * everything it receives in a local buffer. Input the user typed ahead (or while the program was
+ * compiling) is therefore returned without waiting on SQS. Received messages are deleted from the
+ * queue in a single batch by the polling thread, so the caller never waits on the delete either.
+ * Polling pauses while the buffer holds many unread messages, so a program that never reads input
+ * does not pull the whole queue into memory.
+ *
+ * <p>If polling fails (for example, because the queue was deleted when the user disconnected), the
+ * polling thread stops and the failure is thrown to the next caller of {@link #getNextMessage()}
+ * once the buffered input has been read. {@link #close()} stops the polling thread. The adapter
+ * must be closed by whoever created it, even if the program never ran, since the container and its
+ * threads are reused for later invocations.
+ */
 public class AWSInputAdapter implements InputAdapter {
+  // The longest SQS allows a receive request to wait for messages
+  private static final int MAX_WAIT_TIME_SECONDS = 20;
+  // The most messages SQS returns for a single receive request
+  private static final int MAX_MESSAGES_PER_RECEIVE = 10;
+  private static final int DEFAULT_MAX_PREFETCHED_MESSAGES = 100;
+  // How often waiting threads check whether polling has failed or the adapter was closed
+  private static final long CHECK_INTERVAL_MS = 100;
+
   private final AmazonSQS sqsClient;
   private final String queueUrl;
   private final String queueName;
-  private final Queue<String> messages;
+  private final BlockingQueue<String> messages;
+  private final ConnectionMonitor connectionMonitor;
+  private final int maxPrefetchedMessages;
+  private final Thread pollerThread;
+  private volatile RuntimeException failure;
+  private volatile boolean isClosed;
 
   public AWSInputAdapter(AmazonSQS sqsClient, String queueUrl, String queueName) {
+    this(sqsClient, queueUrl, queueName, null);
+  }
+
+  /**
+   * @param connectionMonitor if provided, is notified when the input queue no longer exists, which
+   *     means the client has disconnected.
+   */
+  public AWSInputAdapter(
+      AmazonSQS sqsClient,
+      String queueUrl,
+      String queueName,
+      ConnectionMonitor connectionMonitor) {
+    this(sqsClient, queueUrl, queueName, connectionMonitor, DEFAULT_MAX_PREFETCHED_MESSAGES);
+  }
+
+  AWSInputAdapter(
+      AmazonSQS sqsClient,
+      String queueUrl,
+      String queueName,
+      ConnectionMonitor connectionMonitor,
+      int maxPrefetchedMessages) {
     this.sqsClient = sqsClient;
     this.queueUrl = queueUrl;
-    this.messages = new LinkedList<>();
+    this.messages = new LinkedBlockingQueue<>();
     this.queueName = queueName;
+    this.connectionMonitor = connectionMonitor;
+    this.maxPrefetchedMessages = maxPrefetchedMessages;
+    this.failure = null;
+    this.isClosed = false;
+    this.pollerThread = new Thread(this::runPoller, "input-poller");
+    this.pollerThread.setDaemon(true);
+    this.pollerThread.start();
   }
 
   /**
-   * Attempts to access the first element in the fifo queue. If none exist, queries available input
-   * from Amazon SQS and stores each input in the `messages` fifo queue. Messages are deleted after
-   * they are retrieved. This is a blocking call.
+   * Returns the oldest input that has not been read yet, waiting for more input if there is none.
+   * This is a blocking call.
    *
    * @return the first message in the fifo queue.
    */
+  @Override
   public String getNextMessage() {
-    ReceiveMessageRequest request = new ReceiveMessageRequest();
-    request.setQueueUrl(queueUrl);
-    // Sets the request timeout to its maximum value of 20 seconds
-    request.setWaitTimeSeconds(20);
-    // Sets the the number of messages to retrieve to its maximum value of 10
-    request.setMaxNumberOfMessages(10);
-    while (messages.peek() == null) {
-      try {
-        List<Message> messages = sqsClient.receiveMessage(request).getMessages();
-        for (Message message : messages) {
+    String message = null;
+    while (message == null) {
+      message = this.pollMessage(CHECK_INTERVAL_MS);
+    }
+    return message;
+  }
+
+  /**
+   * Same as {@link #getNextMessage()}, but gives up if no input arrives within the given time.
+   *
+   * @return the first message in the fifo queue, or null if none arrived in time.
+   */
+  @Override
+  public String getNextMessage(long timeoutMillis) {
+    final long deadline = System.currentTimeMillis() + timeoutMillis;
+    String message = null;
+    long remainingMillis = timeoutMillis;
+    while (message == null && remainingMillis > 0) {
+      message = this.pollMessage(Math.min(remainingMillis, CHECK_INTERVAL_MS));
+      remainingMillis = deadline - System.currentTimeMillis();
+    }
+    return message;
+  }
+
+  /** Stops polling SQS. Input that has already been received is still available. */
+  @Override
+  public void close() {
+    this.isClosed = true;
+    this.pollerThread.interrupt();
+  }
+
+  /**
+   * @return the next buffered message, or null if none arrives within the given time.
+   * @throws RuntimeException if polling has failed and all buffered input has been read.
+   */
+  private String pollMessage(long timeoutMillis) {
+    final String message;
+    try {
+      message = this.messages.poll(timeoutMillis, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      // The connection monitor interrupts the program if the user disconnects while it is
+      // waiting for input.
+      if (this.connectionMonitor != null && this.connectionMonitor.isDisconnected()) {
+        throw new InternalFacingRuntimeException(CONNECTION_TERMINATED, e);
+      }
+      throw new InternalServerRuntimeException(InternalExceptionKey.CONNECTION_TERMINATED, e);
+    }
+    if (message == null && this.failure != null && this.messages.isEmpty()) {
+      throw this.failure;
+    }
+    return message;
+  }
+
+  private void runPoller() {
+    final ReceiveMessageRequest request = new ReceiveMessageRequest();
+    request.setQueueUrl(this.queueUrl);
+    request.setWaitTimeSeconds(MAX_WAIT_TIME_SECONDS);
+    request.setMaxNumberOfMessages(MAX_MESSAGES_PER_RECEIVE);
+    try {
+      while (!this.isClosed) {
+        this.waitForBufferSpace();
+        final List<Message> received = this.sqsClient.receiveMessage(request).getMessages();
+        for (Message message : received) {
           this.messages.add(message.getBody());
-          sqsClient.deleteMessage(queueUrl, message.getReceiptHandle());
         }
-      } catch (QueueDoesNotExistException e) {
-        // if we tried to send a message and got queue does not exist, we have lost our connection
-        throw new InternalFacingRuntimeException(CONNECTION_TERMINATED, e);
+        this.deleteMessages(received);
+      }
+    } catch (QueueDoesNotExistException e) {
+      // if we tried to get a message and got queue does not exist, we have lost our connection
+      if (this.connectionMonitor != null) {
+        this.connectionMonitor.reportDisconnected();
       }
+      this.failure = new InternalFacingRuntimeException(CONNECTION_TERMINATED, e);
+    } catch (AbortedException | InterruptedException e) {
+      // The adapter was closed while waiting.
+      if (!this.isClosed) {
+        this.failure =
+            new InternalServerRuntimeException(InternalExceptionKey.CONNECTION_TERMINATED, e);
+      }
+    } catch (RuntimeException e) {
+      this.failure = e;
     }
+  }
 
-    return messages.remove();
+  /** Waits while there is plenty of unread input, so the buffer does not grow without bound. */
+  private void waitForBufferSpace() throws InterruptedException {
+    while (this.messages.size() >= this.maxPrefetchedMessages && !this.isClosed) {
+      Thread.sleep(CHECK_INTERVAL_MS);
+    }
+  }
+
+  /**
+   * Deletes received messages from the queue so they are not received again. A failed delete only
+   * risks a duplicate message, so it is logged rather than ending the session.
+   */
+  private void deleteMessages(List<Message> received) {
+    if (received.isEmpty()) {
+      return;
+    }
+    final List<DeleteMessageBatchRequestEntry> entries = new ArrayList<>(received.size());
+    for (int i = 0; i < received.size(); i++) {
+      final String receiptHandle = received.get(i).getReceiptHandle();
+      entries.add(new DeleteMessageBatchRequestEntry(String.valueOf(i), receiptHandle));
+    }
+    try {
+      final DeleteMessageBatchResult result =
+          this.sqsClient.deleteMessageBatch(this.queueUrl, entries);
+      for (BatchResultErrorEntry failed : result.getFailed()) {
+        LoggerUtils.logWarning("SQS Delete Failed", failed.getMessage());
+      }
+    } catch (QueueDoesNotExistException | AbortedException e) {
+      throw e;
+    } catch (RuntimeException e) {
+      LoggerUtils.logTrackingExceptionAsWarning(e);
+    }
   }
 }
@@ -12,7 +12,7 @@ public class AWSMetricClient extends JavabuilderSharedObject implements MetricCl
   private final AmazonCloudWatch cloudWatchClient;
   private final Dimension functionNameDimension;
 
-  private static final String NAMESPACE = "Javabuilder";
+  static final String NAMESPACE = "Javabuilder";
 
   public AWSMetricClient(String functionName) {
     this.cloudWatchClient = AmazonCloudWatchClientBuilder.defaultClient();
@@ -45,6 +45,21 @@ public class AWSMetricClient extends JavabuilderSharedObject implements MetricCl
     this.publishMillisecondMetric("CleanupTime", (double) cleanupTime);
   }
 
+  @Override
+  public void publishOutputThrottleCount(long throttleCount) {
+    this.publishCountMetric("OutputThrottleCount", (double) throttleCount);
+  }
+
+  @Override
+  public void publishOutputRetryCount(long retryCount) {
+    this.publishCountMetric("OutputRetryCount", (double) retryCount);
+  }
+
+  @Override
+  public void publishInputBlockedTime(long inputBlockedTime) {
+    this.publishMillisecondMetric("InputBlockedTime", (double) inputBlockedTime);
+  }
+
   private void publishMillisecondMetric(String metricName, double milliseconds) {
     MetricDatum metricDatum =
         new MetricDatum()
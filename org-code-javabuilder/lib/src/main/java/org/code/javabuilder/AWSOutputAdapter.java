@@ -2,58 +2,183 @@ package org.code.javabuilder;
 
 import static org.code.javabuilder.InternalFacingExceptionTypes.CONNECTION_TERMINATED;
 
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.retry.PredefinedRetryPolicies;
+import com.amazonaws.retry.RetryPolicy;
+import com.amazonaws.retry.RetryUtils;
 import com.amazonaws.services.apigatewaymanagementapi.AmazonApiGatewayManagementApi;
 import com.amazonaws.services.apigatewaymanagementapi.model.GoneException;
+import com.amazonaws.services.apigatewaymanagementapi.model.LimitExceededException;
 import com.amazonaws.services.apigatewaymanagementapi.model.PostToConnectionRequest;
 import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
 import org.code.protocol.*;
 
-/** Sends messages to Amazon API Gateway from the user's program. */
+/**
+ * Sends messages to Amazon API Gateway from the user's program. If API Gateway throttles a message,
+ * it is retried with jittered exponential backoff. The number of throttled and retried calls is
+ * published to the {@link MetricClient} when the adapter is closed.
+ *
+ * <p>The API Gateway client must be configured with {@link #API_RETRY_POLICY}, so that the SDK does
+ * not retry throttled messages as well. Otherwise each of this adapter's attempts would be retried
+ * by the SDK, and a single throttled message could take dozens of calls.
+ */
 public class AWSOutputAdapter implements OutputAdapter {
+  private static final int MAX_THROTTLE_RETRIES = 6;
+  private static final long BASE_BACKOFF_MS = 50;
+  private static final long MAX_BACKOFF_MS = 2000;
+
+  /**
+   * The retry policy for the API Gateway client that messages are sent with. It is the SDK's
+   * default policy, except that throttled messages are left to this adapter, so each message takes
+   * at most MAX_THROTTLE_RETRIES + 1 calls while throttled. Other errors the SDK retries, and
+   * throttling of other API Gateway calls, are still retried by the SDK.
+   */
+  public static final RetryPolicy API_RETRY_POLICY =
+      new RetryPolicy(
+          (request, exception, retriesAttempted) ->
+              !(request instanceof PostToConnectionRequest && isThrottled(exception))
+                  && PredefinedRetryPolicies.DEFAULT_RETRY_CONDITION.shouldRetry(
+                      request, exception, retriesAttempted),
+          PredefinedRetryPolicies.DEFAULT_BACKOFF_STRATEGY,
+          PredefinedRetryPolicies.DEFAULT_MAX_ERROR_RETRY,
+          true);
+
+  interface Sleeper {
+    void sleep(long millis) throws InterruptedException;
+  }
+
   private final String connectionId;
   private final AmazonApiGatewayManagementApi api;
+  // Reused for every message. Guarded by its own lock, since the buffer it writes into is only
+  // valid until the next message is written.
+  private final ClientMessageWriter messageWriter;
+  // Splits messages that are too large for API Gateway. Guarded by the message writer's lock.
+  private final ClientMessageChunker messageChunker;
+  private final Sleeper sleeper;
+  private final Random random;
+  private final AtomicLong throttleCount;
+  private final AtomicLong retryCount;
 
   public AWSOutputAdapter(String connectionId, AmazonApiGatewayManagementApi api) {
+    this(connectionId, api, WireFormat.JSON);
+  }
+
+  public AWSOutputAdapter(
+      String connectionId, AmazonApiGatewayManagementApi api, WireFormat wireFormat) {
+    this(connectionId, api, wireFormat, Thread::sleep, new Random());
+  }
+
+  AWSOutputAdapter(
+      String connectionId,
+      AmazonApiGatewayManagementApi api,
+      WireFormat wireFormat,
+      Sleeper sleeper,
+      Random random) {
     this.connectionId = connectionId;
     this.api = api;
+    this.messageWriter = new ClientMessageWriter(wireFormat);
+    this.messageChunker = new ClientMessageChunker();
+    this.sleeper = sleeper;
+    this.random = random;
+    this.throttleCount = new AtomicLong();
+    this.retryCount = new AtomicLong();
   }
 
   /**
-   * POSTs a message to the API Gateway @connections url for the current user
+   * POSTs a message to the API Gateway @connections url for the current user. Messages larger than
+   * API Gateway allows are sent as a series of chunks (see {@link ClientMessageChunker}).
    *
    * @param message The message to send to API Gateway from the user's program.
    */
   @Override
   public void sendMessage(ClientMessage message) {
     if (message.shouldAlwaysSend()) {
-      PostToConnectionRequest post = new PostToConnectionRequest();
-      post.setConnectionId(connectionId);
-      post.setData(ByteBuffer.wrap((message.getFormattedMessage()).getBytes()));
-      this.sendMessageHelper(post);
+      synchronized (this.messageWriter) {
+        final ByteBuffer data = this.messageWriter.write(message).toByteBuffer();
+        for (ByteBuffer chunk : this.messageChunker.split(data)) {
+          this.sendMessageHelper(chunk);
+        }
+      }
     }
   }
 
   public void sendDebuggingMessage(ClientMessage message) {
     if (message.shouldAlwaysSend()) {
       String time = String.valueOf(java.time.Clock.systemUTC().instant());
+      this.sendMessageHelper(ByteBuffer.wrap((message + " " + time).getBytes()));
+    }
+  }
+
+  /** Publishes the number of throttled and retried calls for this session, if there were any. */
+  @Override
+  public void close() {
+    final long throttles = this.throttleCount.getAndSet(0);
+    final long retries = this.retryCount.getAndSet(0);
+    if (throttles == 0) {
+      return;
+    }
+    final MetricClient metricClient =
+        (MetricClient) JavabuilderContext.getInstance().get(MetricClient.class);
+    if (metricClient != null) {
+      metricClient.publishOutputThrottleCount(throttles);
+      metricClient.publishOutputRetryCount(retries);
+    }
+  }
+
+  private void sendMessageHelper(ByteBuffer data) {
+    for (int attempt = 0; ; attempt++) {
       PostToConnectionRequest post = new PostToConnectionRequest();
       post.setConnectionId(connectionId);
-      post.setData(ByteBuffer.wrap((message + " " + time).getBytes()));
-      this.sendMessageHelper(post);
+      // Each attempt gets its own view of the data, in case a failed attempt consumed it.
+      post.setData(data.duplicate());
+      try {
+        this.api.postToConnection(post);
+        return;
+      } catch (GoneException e) {
+        throw new InternalFacingRuntimeException(CONNECTION_TERMINATED, e);
+      } catch (LimitExceededException e) {
+        this.waitToRetry(e, attempt);
+      } catch (AmazonServiceException e) {
+        if (!RetryUtils.isThrottlingException(e)) {
+          throw e;
+        }
+        this.waitToRetry(e, attempt);
+      } catch (IllegalStateException e) {
+        // Thrown when the API Gateway client has been unexpectedly shut down.
+        // We are still actively investigating why this happens in the first place,
+        // but this will make the container fail for all subsequent sessions, so it
+        // should be recycled.
+        throw new FatalError(FatalErrorKey.CONNECTION_POOL_SHUT_DOWN, e);
+      }
     }
   }
 
-  private void sendMessageHelper(PostToConnectionRequest post) {
+  /**
+   * Waits before retrying a throttled call. The wait is a random time up to an exponentially
+   * increasing limit ("full jitter"), so that sessions throttled at the same time do not all retry
+   * at the same time. Rethrows the exception if there are no retries left.
+   */
+  private void waitToRetry(AmazonServiceException e, int attempt) {
+    this.throttleCount.incrementAndGet();
+    if (attempt >= MAX_THROTTLE_RETRIES) {
+      throw e;
+    }
+    final long maxBackoffMs = Math.min(MAX_BACKOFF_MS, BASE_BACKOFF_MS << attempt);
     try {
-      this.api.postToConnection(post);
-    } catch (GoneException e) {
-      throw new InternalFacingRuntimeException(CONNECTION_TERMINATED, e);
-    } catch (IllegalStateException e) {
-      // Thrown when the API Gateway client has been unexpectedly shut down.
-      // We are still actively investigating why this happens in the first place,
-      // but this will make the container fail for all subsequent sessions, so it
-      // should be recycled.
-      throw new FatalError(FatalErrorKey.CONNECTION_POOL_SHUT_DOWN, e);
+      this.sleeper.sleep((long) (this.random.nextDouble() * maxBackoffMs));
+    } catch (InterruptedException interruptedException) {
+      Thread.currentThread().interrupt();
+      throw e;
     }
+    this.retryCount.incrementAndGet();
+  }
+
+  private static boolean isThrottled(AmazonClientException e) {
+    return e instanceof LimitExceededException
+        || (e instanceof AmazonServiceException
+            && RetryUtils.isThrottlingException((AmazonServiceException) e));
   }
 }
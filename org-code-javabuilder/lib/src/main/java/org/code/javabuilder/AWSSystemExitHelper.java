@@ -23,8 +23,11 @@ public class AWSSystemExitHelper implements SystemExitHelper {
   public void exit(int status) {
     PerformanceTracker performanceTracker =
         (PerformanceTracker) JavabuilderContext.getInstance().get(PerformanceTracker.class);
-    performanceTracker.trackInstanceEnd();
-    performanceTracker.logPerformance();
+    // The tracker is gone if the session was already shut down, for example after a timeout.
+    if (performanceTracker != null) {
+      performanceTracker.trackInstanceEnd();
+      performanceTracker.logPerformance();
+    }
     this.cleanUpResources();
     System.exit(status);
   }
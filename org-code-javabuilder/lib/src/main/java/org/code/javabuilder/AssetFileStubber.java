@@ -1,5 +1,6 @@
 package org.code.javabuilder;
 
+import org.code.protocol.CachedResources;
 import org.code.protocol.LoggerUtils;
 
 /**
@@ -19,6 +20,9 @@ public class AssetFileStubber {
   public AssetFileStubber() {
     stubImageUrl = getClass().getClassLoader().getResource(STUB_IMAGE_FILE_NAME).toString();
     stubAudioUrl = getClass().getClassLoader().getResource(STUB_AUDIO_FILE_NAME).toString();
+    // The stub files are used by every session that cannot access its assets, so keep them cached.
+    CachedResources.getInstance().getAssetCache().pin(stubImageUrl);
+    CachedResources.getInstance().getAssetCache().pin(stubAudioUrl);
   }
 
   // Visible for testing
@@ -0,0 +1,105 @@
+package org.code.javabuilder;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import org.code.protocol.AssetCache;
+import org.code.protocol.ContentManager;
+
+/**
+ * Starts downloading the assets a project is likely to use before its code runs. Assets are
+ * otherwise loaded the first time the program uses them (for example, in {@code new
+ * Image("beach.jpg")}), which stalls the program while the file downloads.
+ *
+ * <p>The source code is scanned for string literals that name one of the project's assets, and each
+ * of those assets is prefetched into the asset cache while the code compiles. This is a guess: an
+ * asset named only in a computed string is not found, and one that is named but never used is
+ * downloaded anyway.
+ */
+class AssetPrefetcher {
+  // Limits the downloads started for a project that names a great many assets.
+  private static final int MAX_PREFETCHED_ASSETS = 32;
+
+  private final ContentManager contentManager;
+  private final AssetCache assetCache;
+
+  AssetPrefetcher(ContentManager contentManager, AssetCache assetCache) {
+    this.contentManager = contentManager;
+    this.assetCache = assetCache;
+  }
+
+  /** Starts prefetching the assets named in the given files. This does not wait for them. */
+  void prefetchAssets(List<JavaProjectFile> javaFiles) {
+    final Set<String> literals = new LinkedHashSet<>();
+    for (JavaProjectFile file : javaFiles) {
+      findStringLiterals(file.getFileContents(), literals);
+    }
+
+    final Set<String> assetUrls = new LinkedHashSet<>();
+    for (String literal : literals) {
+      if (assetUrls.size() >= MAX_PREFETCHED_ASSETS) {
+        break;
+      }
+      if (!literal.isBlank()) {
+        final String url = this.contentManager.getAssetUrl(literal);
+        if (url != null) {
+          assetUrls.add(url);
+        }
+      }
+    }
+
+    for (String url : assetUrls) {
+      try {
+        this.assetCache.prefetch(new URL(url));
+      } catch (MalformedURLException e) {
+        // The program will get an error for this asset if it uses it.
+      }
+    }
+  }
+
+  /**
+   * Adds the value of each string literal in the given source code to the given set. Comments and
+   * character literals are skipped. The values are not unescaped, since asset names rarely contain
+   * escape sequences.
+   */
+  static void findStringLiterals(String source, Set<String> literals) {
+    if (source == null) {
+      return;
+    }
+    int i = 0;
+    while (i < source.length()) {
+      final char current = source.charAt(i);
+      if (current == '/' && source.startsWith("//", i)) {
+        final int end = source.indexOf('\n', i);
+        i = end < 0 ? source.length() : end + 1;
+      } else if (current == '/' && source.startsWith("/*", i)) {
+        final int end = source.indexOf("*/", i + 2);
+        i = end < 0 ? source.length() : end + 2;
+      } else if (current == '"' || current == '\'') {
+        final int end = findClosingQuote(source, i + 1, current);
+        if (current == '"') {
+          literals.add(source.substring(i + 1, end));
+        }
+        i = end + 1;
+      } else {
+        i++;
+      }
+    }
+  }
+
+  /** @return the index of the closing quote, or of the end of the line if there is none. */
+  private static int findClosingQuote(String source, int start, char quote) {
+    int i = start;
+    while (i < source.length()) {
+      final char current = source.charAt(i);
+      if (current == quote || current == '\n') {
+        return i;
+      }
+      // Skip over the escaped character, which may be a quote.
+      i += current == '\\' ? 2 : 1;
+    }
+    return source.length();
+  }
+}
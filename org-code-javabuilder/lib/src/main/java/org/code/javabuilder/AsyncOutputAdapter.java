@@ -0,0 +1,247 @@
+package org.code.javabuilder;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.code.protocol.ClientMessage;
+import org.code.protocol.LoggerUtils;
+import org.code.protocol.OutputAdapter;
+
+/**
+ * An OutputAdapter that hands messages to a dedicated sender thread rather than sending them on the
+ * caller's thread. This means the user's program does not wait on a network round trip for every
+ * message it sends. Messages are sent by the delegate OutputAdapter one at a time, in the order
+ * they were received.
+ *
+ * <p>If the delegate falls behind (for example, because API Gateway is throttling it), console
+ * output that piles up in the queue is merged into a single {@link SystemOutMessage} before it is
+ * sent, so that the backlog clears in fewer calls. Other types of messages are always sent as-is.
+ *
+ * <p>The queue of unsent messages is bounded. If it fills up, callers block until there is room,
+ * so a program cannot get arbitrarily far ahead of what has been delivered. If the delegate throws
+ * (for example, because the connection is gone), no further messages are sent and the exception is
+ * rethrown to the next caller of {@link #sendMessage}.
+ *
+ * <p>{@link #close()} must be called at the end of the session to deliver any remaining messages
+ * and stop the sender thread. Messages sent after the adapter is closed are sent synchronously,
+ * including any that were queued while it was closing.
+ */
+public class AsyncOutputAdapter implements OutputAdapter {
+  private static final int DEFAULT_QUEUE_CAPACITY = 256;
+  private static final long DEFAULT_DRAIN_TIMEOUT_MS = 5000;
+  private static final long ENQUEUE_POLL_INTERVAL_MS = 100;
+  private static final int MAX_MERGED_CHARACTERS = 32 * 1024;
+
+  private final OutputAdapter delegate;
+  private final BlockingQueue<ClientMessage> queue;
+  private final long drainTimeoutMs;
+  private final Thread senderThread;
+  private final Object drainLock;
+  // Held while sending queued messages on a caller's thread after close, so they are sent one at a
+  // time.
+  private final Object closedSendLock;
+  // Number of messages that have been accepted but not yet sent or dropped. Guarded by drainLock.
+  private int pendingCount;
+  private volatile Throwable failure;
+  private volatile boolean isClosed;
+
+  public AsyncOutputAdapter(OutputAdapter delegate) {
+    this(delegate, DEFAULT_QUEUE_CAPACITY, DEFAULT_DRAIN_TIMEOUT_MS);
+  }
+
+  AsyncOutputAdapter(OutputAdapter delegate, int queueCapacity, long drainTimeoutMs) {
+    this.delegate = delegate;
+    this.queue = new LinkedBlockingQueue<>(queueCapacity);
+    this.drainTimeoutMs = drainTimeoutMs;
+    this.drainLock = new Object();
+    this.closedSendLock = new Object();
+    this.pendingCount = 0;
+    this.isClosed = false;
+    this.senderThread = new Thread(this::runSender, "output-sender");
+    this.senderThread.setDaemon(true);
+    this.senderThread.start();
+  }
+
+  @Override
+  public void sendMessage(ClientMessage message) {
+    this.throwIfFailed();
+    if (this.isClosed) {
+      this.delegate.sendMessage(message);
+      return;
+    }
+
+    synchronized (this.drainLock) {
+      this.pendingCount++;
+    }
+    boolean isEnqueued = false;
+    boolean wasInterrupted = false;
+    try {
+      while (!isEnqueued) {
+        try {
+          isEnqueued = this.queue.offer(message, ENQUEUE_POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+          // Keep trying so that the message is not lost, and restore the interrupt afterwards.
+          wasInterrupted = true;
+        }
+        if (!isEnqueued) {
+          this.throwIfFailed();
+        }
+      }
+    } finally {
+      if (!isEnqueued) {
+        this.onMessageCompleted();
+      }
+      if (wasInterrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    if (this.isClosed) {
+      // The adapter was closed while this message was being queued, so the sender thread may
+      // already be gone.
+      this.sendQueuedMessages();
+    }
+  }
+
+  /**
+   * Waits until all accepted messages have been sent, or until the drain timeout has passed.
+   * Rethrows any exception the delegate threw while sending.
+   */
+  @Override
+  public void flush() {
+    this.waitForDrain();
+    this.throwIfFailed();
+    this.delegate.flush();
+  }
+
+  /**
+   * Sends any remaining messages, waiting up to the drain timeout, and stops the sender thread. Any
+   * messages that could not be sent in time are dropped.
+   */
+  @Override
+  public void close() {
+    if (this.isClosed) {
+      return;
+    }
+    final boolean isDrained = this.waitForDrain();
+    this.isClosed = true;
+    this.senderThread.interrupt();
+    if (!isDrained) {
+      LoggerUtils.logWarning(
+          "OutputDrainTimeout",
+          String.format("Dropped %d unsent messages at shutdown.", this.queue.size()));
+      this.queue.clear();
+      this.delegate.close();
+      return;
+    }
+
+    // Send anything that was queued after the drain on this thread.
+    try {
+      this.sendQueuedMessages();
+    } finally {
+      this.delegate.close();
+    }
+  }
+
+  private void runSender() {
+    while (!Thread.currentThread().isInterrupted()) {
+      ClientMessage message;
+      try {
+        message = this.queue.take();
+      } catch (InterruptedException e) {
+        return;
+      }
+
+      int messageCount = 1;
+      if (message instanceof SystemOutMessage
+          && this.queue.peek() instanceof SystemOutMessage
+          && this.failure == null) {
+        final StringBuilder mergedValue = new StringBuilder(message.getValue());
+        while (this.queue.peek() instanceof SystemOutMessage
+            && mergedValue.length() < MAX_MERGED_CHARACTERS) {
+          final ClientMessage next = this.queue.poll();
+          // The queue may have been cleared by close() since it was checked.
+          if (next == null) {
+            break;
+          }
+          mergedValue.append(next.getValue());
+          messageCount++;
+        }
+        message = new SystemOutMessage(mergedValue.toString());
+      }
+
+      // Once sending has failed, drop everything else so that callers are never left waiting.
+      if (this.failure == null) {
+        try {
+          this.delegate.sendMessage(message);
+        } catch (RuntimeException | Error e) {
+          this.failure = e;
+        }
+      }
+      for (int i = 0; i < messageCount; i++) {
+        this.onMessageCompleted();
+      }
+    }
+  }
+
+  /** Sends any queued messages on the caller's thread. Only used once the adapter is closed. */
+  private void sendQueuedMessages() {
+    // Wait for the sender thread to stop, so the delegate is not called from two threads at once.
+    // The thread is normally idle by now, but it may be stuck sending if the drain timed out.
+    try {
+      this.senderThread.join(this.drainTimeoutMs);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    synchronized (this.closedSendLock) {
+      ClientMessage message;
+      while ((message = this.queue.poll()) != null) {
+        try {
+          this.throwIfFailed();
+          this.delegate.sendMessage(message);
+        } finally {
+          this.onMessageCompleted();
+        }
+      }
+    }
+  }
+
+  private void onMessageCompleted() {
+    synchronized (this.drainLock) {
+      this.pendingCount--;
+      if (this.pendingCount <= 0) {
+        this.drainLock.notifyAll();
+      }
+    }
+  }
+
+  /** @return true if all accepted messages were sent or dropped before the timeout. */
+  private boolean waitForDrain() {
+    final long deadline = System.currentTimeMillis() + this.drainTimeoutMs;
+    synchronized (this.drainLock) {
+      while (this.pendingCount > 0) {
+        final long remaining = deadline - System.currentTimeMillis();
+        if (remaining <= 0) {
+          return false;
+        }
+        try {
+          this.drainLock.wait(remaining);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  private void throwIfFailed() {
+    final Throwable e = this.failure;
+    if (e == null) {
+      return;
+    }
+    if (e instanceof RuntimeException) {
+      throw (RuntimeException) e;
+    }
+    throw (Error) e;
+  }
+}
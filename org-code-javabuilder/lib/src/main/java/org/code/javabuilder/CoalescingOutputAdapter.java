@@ -0,0 +1,153 @@
+package org.code.javabuilder;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import org.code.protocol.ClientMessage;
+import org.code.protocol.OutputAdapter;
+
+/**
+ * An OutputAdapter that merges consecutive console output into a single {@link SystemOutMessage}
+ * before passing it on to the delegate OutputAdapter. Without this, every println from the user's
+ * program is sent as its own message, which on AWS is a synchronous API Gateway call.
+ *
+ * <p>Console output is held until the buffered output reaches the byte limit, until the flush
+ * window has passed since the output was first buffered, or until a message of any other type is
+ * sent. Buffered output is always sent ahead of the other message, so the order of messages seen by
+ * the client is unchanged. {@link #flush()} should be called before waiting on user input so that
+ * any prompt is visible to the user.
+ */
+public class CoalescingOutputAdapter implements OutputAdapter {
+  private static final int DEFAULT_MAX_BUFFERED_BYTES = 32 * 1024;
+  private static final long DEFAULT_FLUSH_WINDOW_MS = 50;
+  // Shared for the lifetime of the container so we do not create a thread for every session.
+  private static final ScheduledExecutorService FLUSH_SCHEDULER =
+      Executors.newSingleThreadScheduledExecutor(
+          runnable -> {
+            final Thread thread = new Thread(runnable, "console-output-flush");
+            thread.setDaemon(true);
+            return thread;
+          });
+
+  private final OutputAdapter delegate;
+  private final int maxBufferedBytes;
+  private final long flushWindowMs;
+  private final ScheduledExecutorService scheduler;
+  private final StringBuilder buffer;
+  private int bufferedBytes;
+  private ScheduledFuture<?> scheduledFlush;
+  private boolean isClosed;
+  // An exception thrown while flushing on the scheduler thread. It is rethrown on the next call
+  // from the user's thread so that, for example, a lost connection still ends the program.
+  private Throwable deferredException;
+
+  public CoalescingOutputAdapter(OutputAdapter delegate) {
+    this(delegate, DEFAULT_MAX_BUFFERED_BYTES, DEFAULT_FLUSH_WINDOW_MS, FLUSH_SCHEDULER);
+  }
+
+  CoalescingOutputAdapter(
+      OutputAdapter delegate,
+      int maxBufferedBytes,
+      long flushWindowMs,
+      ScheduledExecutorService scheduler) {
+    this.delegate = delegate;
+    this.maxBufferedBytes = maxBufferedBytes;
+    this.flushWindowMs = flushWindowMs;
+    this.scheduler = scheduler;
+    this.buffer = new StringBuilder();
+    this.bufferedBytes = 0;
+    this.isClosed = false;
+  }
+
+  @Override
+  public synchronized void sendMessage(ClientMessage message) {
+    this.throwDeferredException();
+    if (message instanceof SystemOutMessage && !this.isClosed) {
+      this.buffer.append(message.getValue());
+      this.bufferedBytes += utf8Length(message.getValue());
+      if (this.bufferedBytes >= this.maxBufferedBytes) {
+        this.flushBuffer();
+      } else if (this.scheduledFlush == null) {
+        this.scheduledFlush =
+            this.scheduler.schedule(
+                this::flushFromScheduler, this.flushWindowMs, TimeUnit.MILLISECONDS);
+      }
+      return;
+    }
+
+    // Send any buffered console output first to preserve message order.
+    this.flushBuffer();
+    this.delegate.sendMessage(message);
+  }
+
+  @Override
+  public synchronized void flush() {
+    this.throwDeferredException();
+    this.flushBuffer();
+    this.delegate.flush();
+  }
+
+  /** Sends any buffered output. Console output sent after this is no longer coalesced. */
+  @Override
+  public synchronized void close() {
+    this.isClosed = true;
+    this.throwDeferredException();
+    this.flushBuffer();
+    this.delegate.close();
+  }
+
+  private synchronized void flushFromScheduler() {
+    try {
+      this.flushBuffer();
+    } catch (RuntimeException | Error e) {
+      this.deferredException = e;
+    }
+  }
+
+  private void flushBuffer() {
+    if (this.scheduledFlush != null) {
+      this.scheduledFlush.cancel(false);
+      this.scheduledFlush = null;
+    }
+    if (this.buffer.length() == 0) {
+      return;
+    }
+
+    final String value = this.buffer.toString();
+    this.buffer.setLength(0);
+    this.bufferedBytes = 0;
+    this.delegate.sendMessage(new SystemOutMessage(value));
+  }
+
+  private void throwDeferredException() {
+    if (this.deferredException == null) {
+      return;
+    }
+    final Throwable e = this.deferredException;
+    this.deferredException = null;
+    if (e instanceof RuntimeException) {
+      throw (RuntimeException) e;
+    }
+    throw (Error) e;
+  }
+
+  private static int utf8Length(String value) {
+    int length = 0;
+    for (int i = 0; i < value.length(); i++) {
+      final char c = value.charAt(i);
+      if (c < 0x80) {
+        length += 1;
+      } else if (c < 0x800) {
+        length += 2;
+      } else if (Character.isHighSurrogate(c)) {
+        // A surrogate pair is a single four byte character
+        length += 4;
+        i++;
+      } else {
+        length += 3;
+      }
+    }
+    return length;
+  }
+}
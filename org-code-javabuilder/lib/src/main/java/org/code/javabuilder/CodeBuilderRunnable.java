@@ -43,13 +43,23 @@ public class CodeBuilderRunnable {
         codeBuilder.buildUserCode(this.compileList);
         break;
       case RUN:
+        this.prefetchAssets(userProjectFiles.getJavaFiles());
         codeBuilder.buildAllUserCode();
         codeBuilder.runUserCode();
         break;
       case TEST:
+        this.prefetchAssets(userProjectFiles.getJavaFiles());
         codeBuilder.buildUserAndValidationFiles();
         codeBuilder.runTests();
         break;
     }
   }
+
+  /** Starts downloading the assets the code uses, so that they are ready by the time it runs. */
+  private void prefetchAssets(List<JavaProjectFile> javaFiles) {
+    new AssetPrefetcher(
+            JavabuilderContext.getInstance().getGlobalProtocol().getContentManager(),
+            CachedResources.getInstance().getAssetCache())
+        .prefetchAssets(javaFiles);
+  }
 }
@@ -28,6 +28,7 @@ public class CodeExecutionManager {
   private final CodeBuilderRunnableFactory codeBuilderRunnableFactory;
 
   private File tempFolder;
+  private InputHandler inputHandler;
   private InputRedirectionStream overrideInputStream;
   private OutputPrintStream overrideOutputStream;
   private InputStream systemInputStream;
@@ -120,9 +121,14 @@ public class CodeExecutionManager {
    */
   private void onPreExecute() throws InternalServerException {
     // Create the Global Protocol instance
+    this.inputHandler =
+        new InputHandler(
+            this.inputAdapter,
+            this.outputAdapter,
+            Properties.getWireFormat(),
+            Properties.getInputIdleTimeoutMillis());
     GlobalProtocol protocolInstance =
-        new GlobalProtocol(
-            this.outputAdapter, new InputHandler(this.inputAdapter), this.contentManager);
+        new GlobalProtocol(this.outputAdapter, this.inputHandler, this.contentManager);
     JavabuilderContext.getInstance().register(GlobalProtocol.class, protocolInstance);
 
     // Create temp folder
@@ -142,15 +148,48 @@ public class CodeExecutionManager {
     this.isInitialized = true;
   }
 
+  /** Records how long the program spent waiting for input, for the performance report. */
+  private void trackInputBlockedTime() {
+    final GlobalProtocol globalProtocol =
+        (GlobalProtocol) JavabuilderContext.getInstance().get(GlobalProtocol.class);
+    final PerformanceTracker performanceTracker =
+        (PerformanceTracker) JavabuilderContext.getInstance().get(PerformanceTracker.class);
+    if (globalProtocol != null && performanceTracker != null) {
+      performanceTracker.trackInputBlockedTime(
+          globalProtocol.getInputHandler().getBlockedTimeMillis());
+    }
+  }
+
   /**
-   * Post-execution steps: 1) Notify listeners, 2) clean up global resources, 3) clear temporary
-   * folder, 4) close custom in/out streams, 5) Replace System.in/out with original in/out
+   * Post-execution steps: 1) Flush remaining output and report any suppressed output, 2) Notify
+   * listeners, 3) Deliver queued output, 4) Stop receiving input, 5) clean up global resources, 6)
+   * clear temporary folder, 7) close custom in/out streams, 8) Replace System.in/out with original
+   * in/out
    */
   private void onPostExecute() {
+    // Send any console output the program left without a trailing newline, and let the user know
+    // if any output was suppressed, before notifying the user that the program has exited.
+    try {
+      this.overrideOutputStream.flush();
+      final ConsoleOutputGovernor consoleOutputGovernor =
+          (ConsoleOutputGovernor) JavabuilderContext.getInstance().get(ConsoleOutputGovernor.class);
+      if (consoleOutputGovernor != null) {
+        consoleOutputGovernor.finish(this.contentManager);
+      }
+    } catch (RuntimeException e) {
+      LoggerUtils.logTrackingExceptionAsWarning(e);
+    }
+    this.trackInputBlockedTime();
     // Notify user and listeners
     LambdaUtils.safelySendMessage(
         this.outputAdapter, new StatusMessage(StatusMessageKey.EXITED), false);
     JavabuilderContext.getInstance().onExecutionEnded();
+    // Deliver any output that is still queued. This waits for a limited time only, so a slow or
+    // lost connection cannot hold up shutdown.
+    LambdaUtils.safelyCloseOutputAdapter(this.outputAdapter);
+    // Stop receiving input, since nothing is left to read it.
+    this.inputHandler.close();
+    this.inputAdapter.close();
     try {
       // Close custom input/output streams
       this.overrideInputStream.close();
@@ -0,0 +1,125 @@
+package org.code.javabuilder;
+
+import com.amazonaws.services.apigatewaymanagementapi.AmazonApiGatewayManagementApi;
+import com.amazonaws.services.apigatewaymanagementapi.model.GetConnectionRequest;
+import com.amazonaws.services.apigatewaymanagementapi.model.GoneException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.code.protocol.LoggerUtils;
+
+/**
+ * Watches the client's WebSocket connection while a session is running. Without this, we only find
+ * out that the user has left the next time we try to send them output, so a program that is
+ * computing or waiting for input keeps the container busy until the lambda times out.
+ *
+ * <p>The monitor checks the connection through API Gateway on a background thread every few
+ * seconds. Other components that notice the connection is gone (for example, the input queue being
+ * deleted) can report it with {@link #reportDisconnected()} so we don't have to wait for the next
+ * check. Either way, the disconnect handler is called once, on the monitor thread.
+ */
+public class ConnectionMonitor {
+  private static final long DEFAULT_CHECK_INTERVAL_MS = 3000;
+
+  private final String connectionId;
+  private final AmazonApiGatewayManagementApi api;
+  private final Runnable disconnectHandler;
+  private final long checkIntervalMs;
+  private final CountDownLatch disconnectReported;
+  private final AtomicBoolean isDisconnected;
+  private Thread monitorThread;
+
+  public ConnectionMonitor(
+      String connectionId, AmazonApiGatewayManagementApi api, Runnable disconnectHandler) {
+    this(connectionId, api, disconnectHandler, DEFAULT_CHECK_INTERVAL_MS);
+  }
+
+  ConnectionMonitor(
+      String connectionId,
+      AmazonApiGatewayManagementApi api,
+      Runnable disconnectHandler,
+      long checkIntervalMs) {
+    this.connectionId = connectionId;
+    this.api = api;
+    this.disconnectHandler = disconnectHandler;
+    this.checkIntervalMs = checkIntervalMs;
+    this.disconnectReported = new CountDownLatch(1);
+    this.isDisconnected = new AtomicBoolean(false);
+  }
+
+  /** Starts checking the connection in the background. */
+  public void start() {
+    this.monitorThread = new Thread(this::monitorConnection, "connection-monitor");
+    this.monitorThread.setDaemon(true);
+    this.monitorThread.start();
+  }
+
+  /**
+   * Stops checking the connection, and waits for the monitor thread to finish. If the disconnect
+   * handler is running, it is interrupted. Once this returns, the monitor will not interrupt any
+   * other thread, so the caller can safely clear its interrupt flag. Subsequent disconnect reports
+   * are ignored.
+   */
+  public void stop() {
+    this.isDisconnected.set(true);
+    if (this.monitorThread == null) {
+      return;
+    }
+    this.monitorThread.interrupt();
+    try {
+      this.monitorThread.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Reports that the connection is known to be gone. The disconnect handler is called on the
+   * monitor thread rather than the caller's, since the caller may be the thread being torn down.
+   */
+  public void reportDisconnected() {
+    this.disconnectReported.countDown();
+  }
+
+  /** @return true if the client has disconnected or the monitor has been stopped. */
+  public boolean isDisconnected() {
+    return this.isDisconnected.get();
+  }
+
+  /**
+   * Checks the connection once.
+   *
+   * @return false if API Gateway reports the connection is gone. Any other error is treated as
+   *     still connected, so a transient API problem does not end a session the user is still in.
+   */
+  boolean isConnectionAlive() {
+    try {
+      this.api.getConnection(new GetConnectionRequest().withConnectionId(this.connectionId));
+      return true;
+    } catch (GoneException e) {
+      return false;
+    } catch (Exception e) {
+      LoggerUtils.logTrackingExceptionAsWarning(e);
+      return true;
+    }
+  }
+
+  private void monitorConnection() {
+    try {
+      boolean isConnected = true;
+      while (isConnected) {
+        final boolean wasReported =
+            this.disconnectReported.await(this.checkIntervalMs, TimeUnit.MILLISECONDS);
+        isConnected = !wasReported && this.isConnectionAlive();
+      }
+    } catch (InterruptedException e) {
+      // The session ended normally.
+      return;
+    }
+
+    if (this.isDisconnected.compareAndSet(false, true)) {
+      LoggerUtils.logInfo("Client connection lost. Ending session.");
+      this.disconnectHandler.run();
+    }
+  }
+}
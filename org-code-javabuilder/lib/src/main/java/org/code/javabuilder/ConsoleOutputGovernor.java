@@ -0,0 +1,190 @@
+package org.code.javabuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.util.Locale;
+import org.code.protocol.ClientMessage;
+import org.code.protocol.ClientMessageType;
+import org.code.protocol.ContentManager;
+import org.code.protocol.JavabuilderException;
+import org.code.protocol.JavabuilderSharedObject;
+import org.code.protocol.LoggerUtils;
+import org.code.protocol.OutputAdapter;
+
+/**
+ * Limits how much console output a single session can send, so that a runaway print loop cannot
+ * flood API Gateway and the client. Console output is allowed through until it exceeds either a
+ * per-second byte budget or an overall byte budget. Output past the per-second budget is dropped
+ * until the next second, and output past the overall budget is dropped for the rest of the session.
+ * Each time output resumes, and when the session finishes, the user is told how many lines were
+ * suppressed. Messages that are not console output are passed through unchanged.
+ *
+ * <p>Once output is first suppressed, everything printed from then on is also kept (up to a
+ * limit), and written to the session's output storage when the session finishes. The user is then
+ * sent a URL to it. Output is only kept once suppression begins, since everything before that was
+ * shown, and most sessions are never throttled.
+ *
+ * <p>The governor belongs in the session's OutputAdapter chain below {@link
+ * org.code.validation.support.UserTestOutputAdapter}, so that validation still sees every print,
+ * and above {@link CoalescingOutputAdapter}. Budgets are counted in bytes only, since the number of
+ * writes says little about what reaches the client once they are coalesced. It is registered in
+ * the JavabuilderContext so that {@link CodeExecutionManager} can finish it before the program
+ * exits.
+ */
+public class ConsoleOutputGovernor extends JavabuilderSharedObject implements OutputAdapter {
+  static final String FULL_OUTPUT_FILE_NAME = "console-output.txt";
+  private static final String FULL_OUTPUT_CONTENT_TYPE = "text/plain";
+  private static final long WINDOW_MS = 1000;
+  private static final int DEFAULT_MAX_BYTES_PER_SECOND = 64 * 1024;
+  private static final long DEFAULT_MAX_TOTAL_BYTES = 1024 * 1024;
+  private static final int MAX_FULL_OUTPUT_BYTES = 10 * 1024 * 1024;
+
+  private final OutputAdapter delegate;
+  private final Clock clock;
+  private final int maxBytesPerSecond;
+  private final long maxTotalBytes;
+  // Null until output is first suppressed
+  private ByteArrayOutputStream fullOutput;
+
+  private long windowStart;
+  private int windowBytes;
+  private long totalBytes;
+  private boolean isTotalBudgetExceeded;
+  private long suppressedLines;
+  private boolean hasSuppressedPartialLine;
+  private boolean hasSuppressedOutput;
+  private boolean isFullOutputTruncated;
+
+  public ConsoleOutputGovernor(OutputAdapter delegate) {
+    this(delegate, Clock.systemUTC(), DEFAULT_MAX_BYTES_PER_SECOND, DEFAULT_MAX_TOTAL_BYTES);
+  }
+
+  ConsoleOutputGovernor(
+      OutputAdapter delegate, Clock clock, int maxBytesPerSecond, long maxTotalBytes) {
+    this.delegate = delegate;
+    this.clock = clock;
+    this.maxBytesPerSecond = maxBytesPerSecond;
+    this.maxTotalBytes = maxTotalBytes;
+    this.windowStart = clock.millis();
+  }
+
+  @Override
+  public synchronized void sendMessage(ClientMessage message) {
+    if (message.getType() != ClientMessageType.SYSTEM_OUT) {
+      this.delegate.sendMessage(message);
+      return;
+    }
+
+    final String value = message.getValue();
+    final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    final long now = this.clock.millis();
+    if (now - this.windowStart >= WINDOW_MS) {
+      this.windowStart = now;
+      this.windowBytes = 0;
+    }
+
+    this.windowBytes += bytes.length;
+    this.totalBytes += bytes.length;
+    if (this.totalBytes > this.maxTotalBytes) {
+      this.isTotalBudgetExceeded = true;
+    }
+
+    final boolean isSuppressed =
+        this.isTotalBudgetExceeded || this.windowBytes > this.maxBytesPerSecond;
+    if (isSuppressed && this.fullOutput == null && !this.isFullOutputTruncated) {
+      this.fullOutput = new ByteArrayOutputStream();
+    }
+    this.recordFullOutput(bytes);
+    if (isSuppressed) {
+      this.suppress(value);
+      return;
+    }
+
+    // Output is allowed again. Let the user know what they missed before continuing.
+    this.sendSuppressedSummary(null);
+    this.delegate.sendMessage(message);
+  }
+
+  @Override
+  public void flush() {
+    this.delegate.flush();
+  }
+
+  /**
+   * Tells the user how much output was suppressed, including a link to the full output if it could
+   * be saved. This should be called once the program has finished, before the user is told it has
+   * exited.
+   *
+   * @param contentManager used to save the full output, or null if it should not be saved
+   */
+  public synchronized void finish(ContentManager contentManager) {
+    if (!this.hasSuppressedOutput) {
+      return;
+    }
+
+    String fullOutputUrl = null;
+    if (contentManager != null && this.fullOutput != null) {
+      try {
+        fullOutputUrl =
+            contentManager.writeToOutputFile(
+                FULL_OUTPUT_FILE_NAME, this.fullOutput.toByteArray(), FULL_OUTPUT_CONTENT_TYPE);
+      } catch (JavabuilderException e) {
+        // For example, if the session has already used all of its writes. The summary is still
+        // sent without a link.
+        LoggerUtils.logTrackingExceptionAsWarning(e);
+      }
+    }
+    this.sendSuppressedSummary(fullOutputUrl);
+  }
+
+  @Override
+  public void close() {
+    this.delegate.close();
+  }
+
+  private void suppress(String value) {
+    for (int i = 0; i < value.length(); i++) {
+      if (value.charAt(i) == '\n') {
+        this.suppressedLines++;
+        this.hasSuppressedPartialLine = false;
+      } else {
+        this.hasSuppressedPartialLine = true;
+      }
+    }
+    this.hasSuppressedOutput = true;
+  }
+
+  private void sendSuppressedSummary(String fullOutputUrl) {
+    if (!this.hasSuppressedOutput) {
+      return;
+    }
+
+    final long lines = this.suppressedLines + (this.hasSuppressedPartialLine ? 1 : 0);
+    String summary =
+        String.format(
+            Locale.US, "... %,d more %s suppressed", lines, lines == 1 ? "line" : "lines");
+    if (this.isFullOutputTruncated) {
+      summary += ". Full output was too large to save";
+    } else if (fullOutputUrl != null) {
+      summary += ". Rest of output: " + fullOutputUrl;
+    }
+    this.delegate.sendMessage(new SystemOutMessage(summary + "\n"));
+
+    this.suppressedLines = 0;
+    this.hasSuppressedPartialLine = false;
+    this.hasSuppressedOutput = false;
+  }
+
+  private void recordFullOutput(byte[] bytes) {
+    if (this.fullOutput == null) {
+      return;
+    }
+    if (this.fullOutput.size() + bytes.length > MAX_FULL_OUTPUT_BYTES) {
+      this.isFullOutputTruncated = true;
+      this.fullOutput = null;
+      return;
+    }
+    this.fullOutput.write(bytes, 0, bytes.length);
+  }
+}
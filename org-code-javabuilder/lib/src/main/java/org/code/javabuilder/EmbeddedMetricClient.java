@@ -0,0 +1,121 @@
+package org.code.javabuilder;
+
+import com.amazonaws.services.lambda.runtime.LambdaLogger;
+import java.time.Clock;
+import org.code.protocol.JavabuilderSharedObject;
+import org.code.protocol.LoggerConstants;
+import org.code.protocol.MetricClient;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Metric Client which publishes metrics in CloudWatch Embedded Metric Format (EMF). Rather than
+ * calling CloudWatch directly, each metric is written as a structured line to the Lambda log
+ * stream, and CloudWatch extracts the metric from the log asynchronously. This keeps metric
+ * publishing off the network entirely. See
+ * https://docs.aws.amazon.com/AmazonCloudWatch/latest/monitoring/CloudWatch_Embedded_Metric_Format_Specification.html
+ */
+public class EmbeddedMetricClient extends JavabuilderSharedObject implements MetricClient {
+  static final String FUNCTION_NAME = "functionName";
+  static final String AWS_METADATA = "_aws";
+  static final String TIMESTAMP = "Timestamp";
+  static final String CLOUDWATCH_METRICS = "CloudWatchMetrics";
+  static final String NAMESPACE = "Namespace";
+  static final String DIMENSIONS = "Dimensions";
+  static final String METRICS = "Metrics";
+  static final String NAME = "Name";
+  static final String UNIT = "Unit";
+  static final String MILLISECONDS = "Milliseconds";
+  static final String COUNT = "Count";
+
+  private final LambdaLogger logger;
+  private final String functionName;
+  private final String levelId;
+  private final String containerId;
+  private final Clock clock;
+
+  public EmbeddedMetricClient(
+      LambdaLogger logger, String functionName, String levelId, String containerId) {
+    this(logger, functionName, levelId, containerId, Clock.systemUTC());
+  }
+
+  EmbeddedMetricClient(
+      LambdaLogger logger, String functionName, String levelId, String containerId, Clock clock) {
+    this.logger = logger;
+    this.functionName = functionName;
+    this.levelId = levelId;
+    this.containerId = containerId;
+    this.clock = clock;
+  }
+
+  @Override
+  public void publishSevereError() {
+    this.publishMetric("SevereError", COUNT, 1.0);
+  }
+
+  @Override
+  public void publishColdBootTime(long coldBootTime) {
+    this.publishMetric("ColdBootTime", MILLISECONDS, (double) coldBootTime);
+  }
+
+  @Override
+  public void publishInitializationTime(long initializationTime) {
+    this.publishMetric("InitializationTime", MILLISECONDS, (double) initializationTime);
+  }
+
+  @Override
+  public void publishTransitionTime(long transitionTime) {
+    this.publishMetric("TransitionTime", MILLISECONDS, (double) transitionTime);
+  }
+
+  @Override
+  public void publishCleanupTime(long cleanupTime) {
+    this.publishMetric("CleanupTime", MILLISECONDS, (double) cleanupTime);
+  }
+
+  @Override
+  public void publishOutputThrottleCount(long throttleCount) {
+    this.publishMetric("OutputThrottleCount", COUNT, (double) throttleCount);
+  }
+
+  @Override
+  public void publishOutputRetryCount(long retryCount) {
+    this.publishMetric("OutputRetryCount", COUNT, (double) retryCount);
+  }
+
+  @Override
+  public void publishInputBlockedTime(long inputBlockedTime) {
+    this.publishMetric("InputBlockedTime", MILLISECONDS, (double) inputBlockedTime);
+  }
+
+  private void publishMetric(String metricName, String unit, double value) {
+    // Metrics are split out by function name, and by function name and level. The container ID is
+    // included as a property rather than a dimension, since every container would otherwise create
+    // its own set of metrics. It is still searchable in CloudWatch Logs Insights.
+    JSONArray dimensions = new JSONArray();
+    dimensions.put(new JSONArray().put(FUNCTION_NAME));
+    dimensions.put(new JSONArray().put(FUNCTION_NAME).put(LoggerConstants.LEVEL_ID));
+
+    JSONObject metricDefinition = new JSONObject();
+    metricDefinition.put(NAME, metricName);
+    metricDefinition.put(UNIT, unit);
+
+    JSONObject metricDirective = new JSONObject();
+    metricDirective.put(NAMESPACE, AWSMetricClient.NAMESPACE);
+    metricDirective.put(DIMENSIONS, dimensions);
+    metricDirective.put(METRICS, new JSONArray().put(metricDefinition));
+
+    JSONObject metadata = new JSONObject();
+    metadata.put(TIMESTAMP, this.clock.instant().toEpochMilli());
+    metadata.put(CLOUDWATCH_METRICS, new JSONArray().put(metricDirective));
+
+    JSONObject logData = new JSONObject();
+    logData.put(AWS_METADATA, metadata);
+    logData.put(FUNCTION_NAME, this.functionName);
+    logData.put(LoggerConstants.LEVEL_ID, this.levelId);
+    logData.put(LoggerConstants.CONTAINER_ID, this.containerId);
+    logData.put(metricName, value);
+
+    this.logger.log(logData.toString());
+  }
+}
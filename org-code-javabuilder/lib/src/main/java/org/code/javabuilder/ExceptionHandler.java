@@ -41,6 +41,15 @@ public class ExceptionHandler {
       return;
     }
 
+    // The program waited too long for input and was stopped. This is expected for abandoned
+    // sessions, so let the user know why the program ended rather than reporting an error.
+    if (e instanceof InputIdleTimeoutError) {
+      LoggerUtils.logInfo("Input idle timeout reached. Ending session.");
+      LambdaUtils.safelySendMessage(
+          this.outputAdapter, new StatusMessage(StatusMessageKey.INPUT_IDLE_TIMEOUT), false);
+      return;
+    }
+
     // Internal server exceptions are caused by us (essentially an HTTP 5xx error). Log and notify
     // the user.
     if (e instanceof InternalServerException || e instanceof InternalServerRuntimeException) {
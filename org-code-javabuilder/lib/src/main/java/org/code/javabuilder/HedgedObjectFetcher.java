@@ -0,0 +1,185 @@
+package org.code.javabuilder;
+
+import com.amazonaws.AbortedException;
+import com.amazonaws.SdkClientException;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.S3Object;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.code.protocol.LoggerUtils;
+
+/**
+ * Gets objects from S3 with a hedged request. If the first request has not returned (that is, S3
+ * has not started responding) within the hedge delay, a second identical request is sent, and
+ * whichever returns first is used. The other response is aborted once it arrives. This cuts the
+ * tail latency caused by the occasional slow request, at the cost of a duplicate request for only
+ * the slowest few percent of fetches.
+ *
+ * <p>The hedge delay adapts to the latencies seen by this fetcher: it is a high percentile of the
+ * most recent request times, so that only requests that are unusually slow are hedged. Until enough
+ * requests have been made, a default delay is used. A fetcher is meant to be shared by all sessions
+ * in a container so that its timing history carries over between them.
+ */
+public class HedgedObjectFetcher {
+  private static final long DEFAULT_HEDGE_DELAY_MS = 200;
+  private static final long MIN_HEDGE_DELAY_MS = 20;
+  private static final long MAX_HEDGE_DELAY_MS = 2000;
+  // The share of requests expected to return before the hedge delay.
+  private static final double HEDGE_PERCENTILE = 0.95;
+  private static final int LATENCY_WINDOW_SIZE = 64;
+  private static final int MIN_LATENCY_SAMPLES = 10;
+
+  private final AmazonS3 s3Client;
+  private final ExecutorService executor;
+  private final long defaultHedgeDelayMs;
+  // The most recent request latencies, as a ring buffer. Guarded by this.
+  private final long[] latencyWindow;
+  private int latencyCount;
+  private int nextLatencyIndex;
+
+  public HedgedObjectFetcher(AmazonS3 s3Client) {
+    this(s3Client, DEFAULT_HEDGE_DELAY_MS);
+  }
+
+  HedgedObjectFetcher(AmazonS3 s3Client, long defaultHedgeDelayMs) {
+    this.s3Client = s3Client;
+    this.defaultHedgeDelayMs = defaultHedgeDelayMs;
+    this.executor =
+        Executors.newCachedThreadPool(
+            runnable -> {
+              final Thread thread = new Thread(runnable, "s3-fetch");
+              thread.setDaemon(true);
+              return thread;
+            });
+    this.latencyWindow = new long[LATENCY_WINDOW_SIZE];
+    this.latencyCount = 0;
+    this.nextLatencyIndex = 0;
+  }
+
+  /**
+   * Gets an object, sending a hedged request if the first one is slow. This is a blocking call.
+   *
+   * @throws SdkClientException if every request that was sent failed. If the calling thread is
+   *     interrupted while waiting, this is an {@link AbortedException}.
+   */
+  public S3Object getObject(String bucketName, String key) {
+    final HedgedRequest request = new HedgedRequest(bucketName, key);
+    request.send();
+    try {
+      try {
+        return request.result.get(this.getHedgeDelayMillis(), TimeUnit.MILLISECONDS);
+      } catch (TimeoutException e) {
+        if (request.send()) {
+          LoggerUtils.logInfo("Sent hedged request for S3 object " + key);
+        }
+        return request.result.get();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      // Whatever arrives later is closed by the request that receives it.
+      request.result.cancel(false);
+      throw new AbortedException(e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new SdkClientException(e.getCause());
+    }
+  }
+
+  /**
+   * @return how long to wait for the first request before sending a second: a high percentile of
+   *     recent request latencies, or the default if there have not been enough requests yet.
+   */
+  synchronized long getHedgeDelayMillis() {
+    if (this.latencyCount < MIN_LATENCY_SAMPLES) {
+      return this.defaultHedgeDelayMs;
+    }
+    final long[] sorted = Arrays.copyOf(this.latencyWindow, this.latencyCount);
+    Arrays.sort(sorted);
+    final int index = (int) Math.ceil(HEDGE_PERCENTILE * sorted.length) - 1;
+    return Math.max(MIN_HEDGE_DELAY_MS, Math.min(MAX_HEDGE_DELAY_MS, sorted[index]));
+  }
+
+  private synchronized void recordLatency(long latencyMs) {
+    this.latencyWindow[this.nextLatencyIndex] = latencyMs;
+    this.nextLatencyIndex = (this.nextLatencyIndex + 1) % this.latencyWindow.length;
+    this.latencyCount = Math.min(this.latencyCount + 1, this.latencyWindow.length);
+  }
+
+  /** One or two identical requests for the same object, of which the first to return is used. */
+  private class HedgedRequest {
+    private final String bucketName;
+    private final String key;
+    private final CompletableFuture<S3Object> result;
+    // How many requests have been sent and not yet returned. Guarded by this.
+    private int pending;
+
+    private HedgedRequest(String bucketName, String key) {
+      this.bucketName = bucketName;
+      this.key = key;
+      this.result = new CompletableFuture<>();
+      this.pending = 0;
+    }
+
+    /** @return false if there was no need to send another request, because one has returned. */
+    private boolean send() {
+      synchronized (this) {
+        if (this.result.isDone()) {
+          return false;
+        }
+        this.pending++;
+      }
+      HedgedObjectFetcher.this.executor.execute(this::fetch);
+      return true;
+    }
+
+    private void fetch() {
+      final long start = System.nanoTime();
+      final S3Object object;
+      try {
+        object = HedgedObjectFetcher.this.s3Client.getObject(this.bucketName, this.key);
+      } catch (RuntimeException e) {
+        synchronized (this) {
+          this.pending--;
+          // Only fail if no other request can still succeed.
+          if (this.pending == 0) {
+            this.result.completeExceptionally(e);
+          }
+        }
+        return;
+      }
+
+      HedgedObjectFetcher.this.recordLatency(
+          TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+      final boolean isUsed;
+      synchronized (this) {
+        // Complete before giving up this request's place, so that another request failing at the
+        // same time cannot see none pending and fail the result first.
+        isUsed = this.result.complete(object);
+        this.pending--;
+      }
+      if (!isUsed) {
+        abort(object);
+      }
+    }
+  }
+
+  /** Closes a response that is not going to be read, without downloading the rest of it. */
+  private static void abort(S3Object object) {
+    try {
+      if (object.getObjectContent() != null) {
+        object.getObjectContent().abort();
+      }
+      object.close();
+    } catch (IOException | RuntimeException e) {
+      LoggerUtils.logTrackingExceptionAsWarning(e);
+    }
+  }
+}
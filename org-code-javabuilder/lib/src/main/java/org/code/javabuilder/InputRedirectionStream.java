@@ -2,9 +2,11 @@ package org.code.javabuilder;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
 import java.nio.charset.StandardCharsets;
-import java.util.LinkedList;
-import java.util.Queue;
 import org.code.protocol.InputHandler;
 import org.code.protocol.InputMessageType;
 
@@ -13,44 +15,55 @@ import org.code.protocol.InputMessageType;
  * to use the InputAdapter rather than the server's console. See
  * https://docs.oracle.com/javase/8/docs/api/java/io/InputStream.html for full implementation
  * details & contract.
+ *
+ * <p>Each message is encoded directly into a byte buffer that is reused for the whole session, and
+ * reads copy out of it in bulk. New input is only requested once the buffer has been fully read, so
+ * the unread bytes are always a single contiguous range of the buffer.
  */
 public class InputRedirectionStream extends InputStream {
-  private final Queue<Byte> queue;
+  private static final int INITIAL_BUFFER_SIZE = 1024;
+  // UTF-8 needs at most three bytes per UTF-16 char (a surrogate pair is four bytes for two chars).
+  private static final int MAX_BYTES_PER_CHAR = 3;
+
   private final InputHandler inputAdapter;
+  private final CharsetEncoder encoder;
+  private final byte[] lineSeparator;
+  private byte[] buffer;
+  // The unread bytes are buffer[position] through buffer[limit - 1].
+  private int position;
+  private int limit;
 
   public InputRedirectionStream(InputHandler inputHandler) {
     this.inputAdapter = inputHandler;
-    this.queue = new LinkedList<>();
+    // Replace unpaired surrogates rather than failing, the same as String.getBytes.
+    this.encoder =
+        StandardCharsets.UTF_8
+            .newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    // The Java Lab console is an <input> element that uses the enter key to trigger onSubmit.
+    // Rather than adding an arbitrary line separator from the client, we instead add the
+    // separator here so we can use a line separator that Scanner will recognize.
+    this.lineSeparator = System.lineSeparator().getBytes(StandardCharsets.UTF_8);
+    this.buffer = new byte[INITIAL_BUFFER_SIZE];
+    this.position = 0;
+    this.limit = 0;
   }
 
   /**
-   * See: https://docs.oracle.com/javase/8/docs/api/java/io/InputStream.html#read-- Checks the queue
-   * for existing bytes. If the queue is empty, polls the inputAdapter for new data. This is a
-   * blocking call.
+   * See: https://docs.oracle.com/javase/8/docs/api/java/io/InputStream.html#read-- Checks the
+   * buffer for existing bytes. If the buffer is empty, polls the inputAdapter for new data. This is
+   * a blocking call.
    *
-   * @return the first byte in the queue
+   * @return the next byte of input, or -1 if there will be no more input
    */
   @Override
   public int read() {
-    if (queue.peek() == null) {
-      // The Java Lab console is an <input> element that uses the enter key to trigger onSubmit.
-      // Rather than adding an arbitrary line separator from the client, we instead add the
-      // separator here so we can use a line separator that Scanner will recognize.
-      final String stringMessage = inputAdapter.getNextMessageForType(InputMessageType.SYSTEM_IN);
-      // a null message means we've lost connection to the input adapter and won't receive any more
-      // messages.
-      // Therefore we can safely return -1 (end of input).
-      if (stringMessage == null) {
-        return -1;
-      }
-      final String messageWithNewline = stringMessage + System.lineSeparator();
-      byte[] message = messageWithNewline.getBytes(StandardCharsets.UTF_8);
-      for (byte b : message) {
-        queue.add(b);
-      }
+    if (this.position == this.limit && !this.fillBuffer()) {
+      return -1;
     }
 
-    return (int) queue.remove();
+    return this.buffer[this.position++] & 0xFF;
   }
 
   /** See: https://docs.oracle.com/javase/8/docs/api/java/io/InputStream.html#read-byte:A- */
@@ -61,6 +74,7 @@ public class InputRedirectionStream extends InputStream {
 
   /**
    * See: https://docs.oracle.com/javase/8/docs/api/java/io/InputStream.html#read-byte:A-int-int-
+   * Copies as many buffered bytes as fit. If the buffer is empty, waits for the next message first.
    */
   @Override
   public int read(byte[] b, int off, int len) {
@@ -70,17 +84,17 @@ public class InputRedirectionStream extends InputStream {
     if (off < 0 || len < 0 || len > b.length - off) {
       throw new IndexOutOfBoundsException();
     }
-
-    int k = 0;
-    while (k < len) {
-      b[off + k] = (byte) this.read();
-      k++;
-      if (queue.peek() == null) {
-        break;
-      }
+    if (len == 0) {
+      return 0;
+    }
+    if (this.position == this.limit && !this.fillBuffer()) {
+      return -1;
     }
 
-    return k;
+    final int count = Math.min(len, this.limit - this.position);
+    System.arraycopy(this.buffer, this.position, b, off, count);
+    this.position += count;
+    return count;
   }
 
   /**
@@ -97,7 +111,7 @@ public class InputRedirectionStream extends InputStream {
   /** See: https://docs.oracle.com/javase/8/docs/api/java/io/InputStream.html#available-- */
   @Override
   public int available() {
-    return queue.size();
+    return this.limit - this.position;
   }
 
   /**
@@ -109,4 +123,32 @@ public class InputRedirectionStream extends InputStream {
   public boolean markSupported() {
     return false;
   }
+
+  /**
+   * Waits for the next message and encodes it into the buffer. This is a blocking call.
+   *
+   * @return false if there will be no more input
+   */
+  private boolean fillBuffer() {
+    final String message = inputAdapter.getNextMessageForType(InputMessageType.SYSTEM_IN);
+    // a null message means we've lost connection to the input adapter and won't receive any more
+    // messages.
+    if (message == null) {
+      return false;
+    }
+
+    final int maxBytes = message.length() * MAX_BYTES_PER_CHAR + this.lineSeparator.length;
+    if (maxBytes > this.buffer.length) {
+      this.buffer = new byte[Math.max(maxBytes, this.buffer.length * 2)];
+    }
+
+    final ByteBuffer out = ByteBuffer.wrap(this.buffer);
+    this.encoder.reset();
+    this.encoder.encode(CharBuffer.wrap(message), out, true);
+    this.encoder.flush(out);
+    out.put(this.lineSeparator);
+    this.position = 0;
+    this.limit = out.position();
+    return true;
+  }
 }
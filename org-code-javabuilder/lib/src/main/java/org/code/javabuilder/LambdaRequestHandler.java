@@ -3,6 +3,7 @@ package org.code.javabuilder;
 import static org.code.javabuilder.InternalFacingExceptionTypes.INVALID_INPUT;
 import static org.code.protocol.LoggerNames.MAIN_LOGGER;
 
+import com.amazonaws.ClientConfiguration;
 import com.amazonaws.client.builder.AwsClientBuilder;
 import com.amazonaws.services.apigatewaymanagementapi.AmazonApiGatewayManagementApi;
 import com.amazonaws.services.apigatewaymanagementapi.AmazonApiGatewayManagementApiClientBuilder;
@@ -25,12 +26,14 @@ import java.time.Instant;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Handler;
 import java.util.logging.Logger;
 import org.code.javabuilder.UnhealthyContainerChecker.ShutdownTrigger;
 import org.code.javabuilder.util.LambdaUtils;
 import org.code.protocol.*;
 import org.code.validation.support.UserTestOutputAdapter;
+import org.json.JSONException;
 import org.json.JSONObject;
 
 /**
@@ -45,17 +48,28 @@ public class LambdaRequestHandler implements RequestHandler<Map<String, String>,
   private static final int CHECK_THREAD_INTERVAL_MS = 500;
   private static final int TIMEOUT_WARNING_MS = 20000;
   private static final int TIMEOUT_CLEANUP_BUFFER_MS = 5000;
+  // How long user code has to stop after being interrupted because the client disconnected.
+  private static final int DISCONNECT_GRACE_PERIOD_MS = 2000;
   private static final String LAMBDA_ID = UUID.randomUUID().toString();
   private static final String CONTENT_BUCKET_NAME = System.getenv("CONTENT_BUCKET_NAME");
   private static final String CONTENT_BUCKET_URL = System.getenv("CONTENT_BUCKET_URL");
   private static final String API_ENDPOINT = System.getenv("API_ENDPOINT");
   private static final String UNHEALTHY_CONTAINERS_TABLE_NAME =
       System.getenv("UNHEALTHY_CONTAINERS_TABLE_NAME");
+  // Set to "EMBEDDED" to publish metrics in CloudWatch Embedded Metric Format through the log
+  // stream instead of calling CloudWatch directly.
+  private static final String METRIC_CLIENT_TYPE = System.getenv("METRIC_CLIENT_TYPE");
+  private static final String EMBEDDED_METRIC_CLIENT_TYPE = "EMBEDDED";
+  // If set, sessions that wait this many seconds for user input without receiving any are ended.
+  private static final String INPUT_IDLE_TIMEOUT_SECONDS =
+      System.getenv("INPUT_IDLE_TIMEOUT_SECONDS");
 
   // Creating these clients here rather than in the request handler method allows us to use
   // provisioned concurrency to decrease cold boot time by 3-10 seconds, depending on the lambda
   private static final AmazonSQS SQS_CLIENT = AmazonSQSClientBuilder.defaultClient();
   private static final AmazonS3 S3_CLIENT = AmazonS3ClientBuilder.standard().build();
+  // Shared by all sessions in this container, so that it can learn typical S3 latency.
+  private static final HedgedObjectFetcher S3_FETCHER = new HedgedObjectFetcher(S3_CLIENT);
   private static final AmazonDynamoDB DYNAMO_DB_CLIENT =
       AmazonDynamoDBClientBuilder.defaultClient();
 
@@ -75,11 +89,7 @@ public class LambdaRequestHandler implements RequestHandler<Map<String, String>,
     // Documentation: https://docs.aws.amazon.com/lambda/latest/dg/java-handler.html
     CachedResources.create();
     COLD_BOOT_END = Clock.systemUTC().instant();
-    this.apiClient =
-        AmazonApiGatewayManagementApiClientBuilder.standard()
-            .withEndpointConfiguration(
-                new AwsClientBuilder.EndpointConfiguration(API_ENDPOINT, "us-east-1"))
-            .build();
+    this.apiClient = createApiClient();
     this.unhealthyContainerChecker =
         new UnhealthyContainerChecker(DYNAMO_DB_CLIENT, UNHEALTHY_CONTAINERS_TABLE_NAME);
   }
@@ -152,32 +162,77 @@ public class LambdaRequestHandler implements RequestHandler<Map<String, String>,
         new ExceptionHandler(outputAdapter, new AWSSystemExitHelper(connectionId, this.apiClient));
     final TempDirectoryManager tempDirectoryManager = new AWSTempDirectoryManager();
 
+    AWSInputAdapter inputAdapter = null;
     CodeExecutionManager codeExecutionManager = null;
     Thread timeoutNotifierThread = null;
+    // User code runs on this thread, so this is the thread to stop if the client goes away.
+    final Thread executionThread = Thread.currentThread();
+    // Set once it exists, so that a disconnect can shut it down.
+    final AtomicReference<CodeExecutionManager> executionManagerReference =
+        new AtomicReference<>();
+    final ConnectionMonitor connectionMonitor =
+        new ConnectionMonitor(
+            connectionId,
+            this.apiClient,
+            () ->
+                this.onClientDisconnected(
+                    executionThread, executionManagerReference, outputAdapter, connectionId));
 
     try {
       this.clearTempDirectory(tempDirectoryManager);
 
+      inputAdapter =
+          new AWSInputAdapter(
+              SQS_CLIENT,
+              lambdaInput.get("queueUrl"),
+              lambdaInput.get("queueName"),
+              connectionMonitor);
       codeExecutionManager =
           this.createExecutionManager(
-              lambdaInput, context, connectionId, outputAdapter, tempDirectoryManager);
+              lambdaInput,
+              context,
+              connectionId,
+              inputAdapter,
+              outputAdapter,
+              tempDirectoryManager);
+      executionManagerReference.set(codeExecutionManager);
 
       // Create and start thread that that will notify us if we're nearing the timeout limit
       timeoutNotifierThread =
           this.createTimeoutThread(
               context, outputAdapter, codeExecutionManager, connectionId, this.apiClient);
       timeoutNotifierThread.start();
+      connectionMonitor.start();
 
       // Initialize and start code execution
       codeExecutionManager.execute();
+    } catch (RuntimeException e) {
+      if (connectionMonitor.isDisconnected()) {
+        // The program was stopped because the client left, so there is no one to report this to
+        // and it is not a server problem.
+        LoggerUtils.logTrackingExceptionAsWarning(e);
+      } else {
+        exceptionHandler.handle(e);
+      }
     } catch (Throwable e) {
       // Catch and handle all exceptions
       exceptionHandler.handle(e);
     } finally {
+      // This waits for the monitor to finish, so it cannot interrupt this thread after the flag is
+      // cleared below.
+      connectionMonitor.stop();
       if (timeoutNotifierThread != null) {
         timeoutNotifierThread.interrupt();
       }
-      this.shutDown(codeExecutionManager, connectionId, this.apiClient);
+      // Clear any interrupt left by the connection monitor. This thread is reused for the next
+      // invocation.
+      Thread.interrupted();
+      // The execution manager stops input as part of its shutdown, but it may not have been
+      // created or initialized. Make sure the input poller does not outlive this invocation.
+      if (inputAdapter != null) {
+        inputAdapter.close();
+      }
+      this.shutDown(codeExecutionManager, outputAdapter, connectionId, this.apiClient);
     }
 
     return "done";
@@ -195,9 +250,18 @@ public class LambdaRequestHandler implements RequestHandler<Map<String, String>,
         Boolean.parseBoolean(lambdaInput.get("canAccessDashboardAssets"));
 
     Properties.setConnectionId(connectionId);
-
-    AWSMetricClient metricClient = new AWSMetricClient(context.getFunctionName());
-    JavabuilderContext.getInstance().register(MetricClient.class, metricClient);
+    Properties.setWireFormat(
+        WireFormat.fromOption(this.getSessionOption(lambdaInput, WireFormat.OPTION_KEY)));
+    Properties.setTheaterOutputFormat(
+        TheaterOutputFormat.fromOption(
+            this.getSessionOption(lambdaInput, TheaterOutputFormat.OPTION_KEY)));
+    Properties.setTheaterStreaming(
+        Boolean.parseBoolean(
+            this.getSessionOption(lambdaInput, Properties.THEATER_STREAMING_OPTION_KEY)));
+    Properties.setInputIdleTimeoutMillis(this.getInputIdleTimeoutMillis());
+
+    JavabuilderContext.getInstance()
+        .register(MetricClient.class, this.createMetricClient(lambdaInput, context));
 
     // Dashboard assets are only accessible if the dashboard domain is not localhost
     Properties.setCanAccessDashboardAssets(canAccessDashboardAssets);
@@ -211,6 +275,49 @@ public class LambdaRequestHandler implements RequestHandler<Map<String, String>,
     this.isSessionInitialized = true;
   }
 
+  /**
+   * Create the {@link MetricClient} for the session. By default, metrics are published to
+   * CloudWatch directly. If METRIC_CLIENT_TYPE is EMBEDDED, metrics are instead written to the
+   * Lambda log stream in Embedded Metric Format, which requires no network calls.
+   */
+  private JavabuilderSharedObject createMetricClient(
+      Map<String, String> lambdaInput, Context context) {
+    if (EMBEDDED_METRIC_CLIENT_TYPE.equals(METRIC_CLIENT_TYPE)) {
+      final String levelId =
+          lambdaInput.get("levelId") == null ? "noneProvided" : lambdaInput.get("levelId");
+      return new EmbeddedMetricClient(
+          context.getLogger(), context.getFunctionName(), levelId, LambdaRequestHandler.LAMBDA_ID);
+    }
+    return new AWSMetricClient(context.getFunctionName());
+  }
+
+  /** @return the value of the given session option, or null if it was not set. */
+  private String getSessionOption(Map<String, String> lambdaInput, String key) {
+    final String options = lambdaInput.get("options");
+    if (options == null) {
+      return null;
+    }
+    try {
+      return new JSONObject(options).optString(key, null);
+    } catch (JSONException e) {
+      // Invalid options are reported when the execution manager is created.
+      return null;
+    }
+  }
+
+  /** @return the configured input idle timeout, or 0 if there is none. */
+  private long getInputIdleTimeoutMillis() {
+    if (INPUT_IDLE_TIMEOUT_SECONDS == null) {
+      return 0;
+    }
+    try {
+      return Math.max(0, Long.parseLong(INPUT_IDLE_TIMEOUT_SECONDS) * 1000);
+    } catch (NumberFormatException e) {
+      LoggerUtils.logWarning("Invalid Input Idle Timeout", INPUT_IDLE_TIMEOUT_SECONDS);
+      return 0;
+    }
+  }
+
   private void trackStartupPerformance() {
     final Instant instanceStart = Clock.systemUTC().instant();
     PerformanceTracker performanceTracker = new PerformanceTracker();
@@ -234,14 +341,23 @@ public class LambdaRequestHandler implements RequestHandler<Map<String, String>,
     if (connectionId == null) {
       throw new InternalFacingException(INVALID_INPUT, new Exception("Missing connection ID"));
     }
-    final AWSOutputAdapter awsOutputAdapter = new AWSOutputAdapter(connectionId, this.apiClient);
+    // Console output is rate limited so that a runaway print loop cannot flood the connection,
+    // coalesced so that each println does not require its own API Gateway call, and sent on a
+    // separate thread so the user's program does not wait on each call.
+    final ConsoleOutputGovernor consoleOutputGovernor =
+        new ConsoleOutputGovernor(
+            new CoalescingOutputAdapter(
+                new AsyncOutputAdapter(
+                    new AWSOutputAdapter(
+                        connectionId, this.apiClient, Properties.getWireFormat()))));
+    JavabuilderContext.getInstance().register(ConsoleOutputGovernor.class, consoleOutputGovernor);
 
     try {
       final ExecutionType executionType = ExecutionType.valueOf(lambdaInput.get("executionType"));
       if (executionType == ExecutionType.TEST) {
-        return new UserTestOutputAdapter(awsOutputAdapter);
+        return new UserTestOutputAdapter(consoleOutputGovernor);
       }
-      return awsOutputAdapter;
+      return consoleOutputGovernor;
     } catch (IllegalArgumentException e) {
       throw new InternalFacingException(INVALID_INPUT, e);
     }
@@ -267,20 +383,23 @@ public class LambdaRequestHandler implements RequestHandler<Map<String, String>,
       Map<String, String> lambdaInput,
       Context context,
       String connectionId,
+      InputAdapter inputAdapter,
       OutputAdapter outputAdapter,
       TempDirectoryManager tempDirectoryManager)
       throws InternalServerException {
-    final String queueUrl = lambdaInput.get("queueUrl");
-    final String queueName = lambdaInput.get("queueName");
     final ExecutionType executionType = ExecutionType.valueOf(lambdaInput.get("executionType"));
     final JSONObject options = new JSONObject(lambdaInput.get("options"));
     final String javabuilderSessionId = lambdaInput.get("javabuilderSessionId");
     final List<String> compileList = JSONUtils.listFromJSONObjectMember(options, "compileList");
 
-    final AWSInputAdapter inputAdapter = new AWSInputAdapter(SQS_CLIENT, queueUrl, queueName);
     final AWSContentManager contentManager =
         new AWSContentManager(
-            S3_CLIENT, CONTENT_BUCKET_NAME, javabuilderSessionId, CONTENT_BUCKET_URL, context);
+            S3_CLIENT,
+            S3_FETCHER,
+            CONTENT_BUCKET_NAME,
+            javabuilderSessionId,
+            CONTENT_BUCKET_URL,
+            context);
 
     return new CodeExecutionManager(
         contentManager.getProjectFileLoader(),
@@ -297,8 +416,9 @@ public class LambdaRequestHandler implements RequestHandler<Map<String, String>,
    * Cleans up resources used by the current invocation, and prepares the container for the next
    * invocation.
    */
-  private void shutDown(
+  private synchronized void shutDown(
       CodeExecutionManager executionManager,
+      OutputAdapter outputAdapter,
       String connectionId,
       AmazonApiGatewayManagementApi api) {
     // No need to shut down if the session is not initialized. This means that we've already shut
@@ -318,6 +438,9 @@ public class LambdaRequestHandler implements RequestHandler<Map<String, String>,
         LoggerUtils.logTrackingExceptionAsWarning(internal);
       }
     }
+    // The execution manager closes the output adapter as part of its shutdown, but it may not have
+    // been initialized. Make sure any queued output is delivered before the connection is deleted.
+    LambdaUtils.safelyCloseOutputAdapter(outputAdapter);
 
     PerformanceTracker performanceTracker =
         (PerformanceTracker) JavabuilderContext.getInstance().get(PerformanceTracker.class);
@@ -364,7 +487,7 @@ public class LambdaRequestHandler implements RequestHandler<Map<String, String>,
                 LambdaUtils.safelySendMessage(
                     outputAdapter, new StatusMessage(StatusMessageKey.TIMEOUT), true);
                 // Shut down the environment
-                this.shutDown(codeExecutionManager, connectionId, api);
+                this.shutDown(codeExecutionManager, outputAdapter, connectionId, api);
                 break;
               }
             } catch (InterruptedException e) {
@@ -374,6 +497,31 @@ public class LambdaRequestHandler implements RequestHandler<Map<String, String>,
         });
   }
 
+  /**
+   * Called on the {@link ConnectionMonitor} thread when the client disconnects. Interrupts user
+   * code so that a program waiting for input or sleeping stops right away and the session shuts
+   * down normally. If the program does not stop (for example, a loop that never waits or prints),
+   * there is no one left to see its result, so shut the session down from here, the same way a
+   * timeout does. The container is kept, so the next invocation does not pay for a cold start.
+   */
+  private void onClientDisconnected(
+      Thread executionThread,
+      AtomicReference<CodeExecutionManager> executionManagerReference,
+      OutputAdapter outputAdapter,
+      String connectionId) {
+    executionThread.interrupt();
+    try {
+      Thread.sleep(DISCONNECT_GRACE_PERIOD_MS);
+    } catch (InterruptedException e) {
+      // The monitor is stopped when the session ends, so the program stopped in time.
+      return;
+    }
+    LoggerUtils.logWarning("Client Disconnected", "User code did not stop after interrupt");
+    // If the session ends while this runs, the monitor is stopped and interrupts this thread, which
+    // may cut short delivering queued output. No one is left to receive it, so that is fine.
+    this.shutDown(executionManagerReference.get(), outputAdapter, connectionId, this.apiClient);
+  }
+
   /**
    * Note: This can sometimes be called twice when a user's project times out. Make sure anything
    * added here can be run more than once without negative effect.
@@ -409,14 +557,27 @@ public class LambdaRequestHandler implements RequestHandler<Map<String, String>,
       // This can occur if the api client has been shut down, which we have seen happen on occasion.
       // Recreate the api client in this case. Log a warning so we can track when this happens.
       LoggerUtils.logWarning("API Gateway Client Gone", e.getMessage());
-      this.apiClient =
-          AmazonApiGatewayManagementApiClientBuilder.standard()
-              .withEndpointConfiguration(
-                  new AwsClientBuilder.EndpointConfiguration(API_ENDPOINT, "us-east-1"))
-              .build();
+      this.apiClient = createApiClient();
     }
   }
 
+  /**
+   * Creates the API Gateway client. Output is sent by a single sender thread per session (see
+   * {@link AsyncOutputAdapter}), so we keep its connection alive between messages rather than
+   * paying for a new connection after every idle period. Throttled output is retried by the {@link
+   * AWSOutputAdapter} rather than the SDK.
+   */
+  private static AmazonApiGatewayManagementApi createApiClient() {
+    return AmazonApiGatewayManagementApiClientBuilder.standard()
+        .withClientConfiguration(
+            new ClientConfiguration()
+                .withTcpKeepAlive(true)
+                .withRetryPolicy(AWSOutputAdapter.API_RETRY_POLICY))
+        .withEndpointConfiguration(
+            new AwsClientBuilder.EndpointConfiguration(API_ENDPOINT, "us-east-1"))
+        .build();
+  }
+
   /**
    * Checks if this container has been marked unhealthy and if so, forces a shutdown via
    * System.exit().
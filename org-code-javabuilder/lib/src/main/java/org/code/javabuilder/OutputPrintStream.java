@@ -1,14 +1,16 @@
 package org.code.javabuilder;
 
 import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
 import org.code.protocol.OutputAdapter;
 
 /**
  * Wrapper class for PrintStream to ensure autoFlush is set to true for PrintStreams that replace
- * System.out. autoFlush is the default for the System.in PrintStream.
+ * System.out. autoFlush is the default for the System.in PrintStream. Output is always encoded as
+ * UTF-8, which is how {@link OutputRedirectionStream} decodes it.
  */
 public class OutputPrintStream extends PrintStream {
   public OutputPrintStream(OutputAdapter adapter) {
-    super(new OutputRedirectionStream(adapter), true);
+    super(new OutputRedirectionStream(adapter), true, StandardCharsets.UTF_8);
   }
 }
@@ -1,22 +1,27 @@
 package org.code.javabuilder;
 
 import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import org.code.protocol.OutputAdapter;
 
 /**
  * An OutputStream that passes output to an OutputAdapter. It is intended to redirect output from
  * the user program that is intended for the console. See
  * https://docs.oracle.com/javase/8/docs/api/java/io/OutputStream.html for full implementation
- * details and contract.
+ * details and contract. Bytes written to this stream are decoded as UTF-8.
  */
 public class OutputRedirectionStream extends OutputStream {
+  private static final int INITIAL_BUFFER_SIZE = 256;
   private final OutputAdapter outputAdapter;
-  private final StringBuilder buffer;
+  private byte[] buffer;
+  private int count;
 
   public OutputRedirectionStream(OutputAdapter outputAdapter) {
     super();
     this.outputAdapter = outputAdapter;
-    this.buffer = new StringBuilder();
+    this.buffer = new byte[INITIAL_BUFFER_SIZE];
+    this.count = 0;
   }
 
   /**
@@ -27,7 +32,9 @@ public class OutputRedirectionStream extends OutputStream {
    */
   @Override
   public void write(int b) {
-    buffer.append((char) b);
+    this.ensureCapacity(this.count + 1);
+    this.buffer[this.count] = (byte) b;
+    this.count++;
   }
 
   /** See: https://docs.oracle.com/javase/8/docs/api/java/io/OutputStream.html#write-byte:A- */
@@ -47,22 +54,61 @@ public class OutputRedirectionStream extends OutputStream {
     if (off < 0 || len < 0 || off + len > b.length) {
       throw new IndexOutOfBoundsException();
     }
-    for (int i = off; i < off + len; i++) {
-      buffer.append((char) b[i]);
-    }
+    this.ensureCapacity(this.count + len);
+    System.arraycopy(b, off, this.buffer, this.count, len);
+    this.count += len;
   }
 
   /**
-   * See: https://docs.oracle.com/javase/8/docs/api/java/io/OutputStream.html#flush-- Writes the
-   * buffer to the OutputAdapter and clears the buffer.
+   * See: https://docs.oracle.com/javase/8/docs/api/java/io/OutputStream.html#flush-- Decodes the
+   * buffer as UTF-8, writes it to the OutputAdapter and clears the buffer. If the buffer ends part
+   * way through a multi-byte character, those bytes are kept until the rest of the character is
+   * written.
    */
   @Override
   public void flush() {
-    if (buffer.length() == 0) {
+    final int length = this.getCompleteCharactersLength();
+    if (length == 0) {
       return;
     }
 
-    outputAdapter.sendMessage(new SystemOutMessage(buffer.toString()));
-    buffer.delete(0, buffer.length());
+    final String value = new String(this.buffer, 0, length, StandardCharsets.UTF_8);
+    System.arraycopy(this.buffer, length, this.buffer, 0, this.count - length);
+    this.count -= length;
+    outputAdapter.sendMessage(new SystemOutMessage(value));
+  }
+
+  /** @return the number of buffered bytes that make up complete UTF-8 characters. */
+  private int getCompleteCharactersLength() {
+    // Find the first byte of the last character by skipping back over up to three continuation
+    // bytes (10xxxxxx).
+    int lastCharStart = this.count - 1;
+    while (lastCharStart >= 0
+        && this.count - lastCharStart <= 3
+        && (this.buffer[lastCharStart] & 0xC0) == 0x80) {
+      lastCharStart--;
+    }
+    if (lastCharStart < 0) {
+      return this.count;
+    }
+
+    final int leadByte = this.buffer[lastCharStart] & 0xFF;
+    final int expectedLength;
+    if (leadByte >= 0xF0) {
+      expectedLength = 4;
+    } else if (leadByte >= 0xE0) {
+      expectedLength = 3;
+    } else if (leadByte >= 0xC0) {
+      expectedLength = 2;
+    } else {
+      expectedLength = 1;
+    }
+    return this.count - lastCharStart < expectedLength ? lastCharStart : this.count;
+  }
+
+  private void ensureCapacity(int capacity) {
+    if (capacity > this.buffer.length) {
+      this.buffer = Arrays.copyOf(this.buffer, Math.max(capacity, this.buffer.length * 2));
+    }
   }
 }
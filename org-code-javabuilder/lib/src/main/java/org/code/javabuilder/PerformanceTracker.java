@@ -2,6 +2,7 @@ package org.code.javabuilder;
 
 import java.time.Clock;
 import java.time.Instant;
+import java.util.Map;
 import org.code.protocol.*;
 import org.json.JSONObject;
 
@@ -28,6 +29,8 @@ public class PerformanceTracker extends JavabuilderSharedObject {
   private static final String USER_CODE_END = "userCodeEnd";
   private static final String INSTANCE_END = "instanceEnd";
   private static final String CLEANUP_TIME = "cleanupTime";
+  private static final String INPUT_BLOCKED_TIME = "inputBlockedTime";
+  private static final String INPUT_BLOCKED_TIME_BY_TYPE = "inputBlockedTimeByType";
   private static final String TYPE = "performanceReport";
   private final JSONObject logs;
 
@@ -68,6 +71,21 @@ public class PerformanceTracker extends JavabuilderSharedObject {
     logs.put(USER_CODE_END, Clock.systemUTC().instant().toEpochMilli());
   }
 
+  /**
+   * Records how long the program spent waiting for user input, in total and for each type of
+   * input, in milliseconds.
+   */
+  public void trackInputBlockedTime(Map<InputMessageType, Long> blockedTimeMillis) {
+    final JSONObject blockedTimeByType = new JSONObject();
+    long totalBlockedTime = 0;
+    for (Map.Entry<InputMessageType, Long> entry : blockedTimeMillis.entrySet()) {
+      blockedTimeByType.put(entry.getKey().name(), entry.getValue());
+      totalBlockedTime += entry.getValue();
+    }
+    logs.put(INPUT_BLOCKED_TIME, totalBlockedTime);
+    logs.put(INPUT_BLOCKED_TIME_BY_TYPE, blockedTimeByType);
+  }
+
   public void trackInstanceEnd() {
     logs.put(INSTANCE_END, Clock.systemUTC().instant().toEpochMilli());
   }
@@ -100,6 +118,10 @@ public class PerformanceTracker extends JavabuilderSharedObject {
       metricClient.publishCleanupTime(cleanupTime);
     }
 
+    if (!logs.isNull(INPUT_BLOCKED_TIME)) {
+      metricClient.publishInputBlockedTime(logs.getLong(INPUT_BLOCKED_TIME));
+    }
+
     LoggerUtils.logInfo(logs.toString());
   }
 }
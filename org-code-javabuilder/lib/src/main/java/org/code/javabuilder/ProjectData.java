@@ -1,9 +1,16 @@
 package org.code.javabuilder;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.json.JsonReadFeature;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
 import java.util.Map;
 import org.code.protocol.InternalExceptionKey;
 import org.json.JSONException;
-import org.json.JSONObject;
 
 /**
  * Represents the JSON project data for a Javabuilder session. Expected structure:
@@ -18,6 +25,11 @@ import org.json.JSONObject;
  *   "validation": <all validation code for a project, in json format>
  * }
  * </pre>
+ *
+ * <p>The project data is read in a single pass with a streaming parser, keeping only the fields
+ * above. No tree of the whole document is built, so the peak memory needed to load a project with
+ * long sources is about the size of the sources themselves. The main source and validation files
+ * are JSON documents of their own, and are parsed when they are loaded.
  */
 public class ProjectData implements ProjectFileLoader {
   public static final String PROJECT_DATA_FILE_NAME = "sources.json";
@@ -29,67 +41,139 @@ public class ProjectData implements ProjectFileLoader {
   private static final String MAIN_JSON_KEY = "main.json";
   private static final String MAZE_FILE_KEY = "grid.txt";
 
-  private final JSONObject jsonData;
+  // Project data has historically been parsed leniently, so single-quoted JSON is accepted too.
+  private static final JsonFactory JSON_FACTORY =
+      JsonFactory.builder().enable(JsonReadFeature.ALLOW_SINGLE_QUOTES).build();
+
+  private final String mainJson;
+  private final String mazeFile;
+  private final String validationJson;
   private final UserProjectFileParser projectFileParser;
+  // Replaced rather than modified when an asset is added, so readers never see a partial update.
+  private volatile Map<String, String> assetUrls;
+
+  /** The fields read from the project data. */
+  private static class Contents {
+    private String mainJson;
+    private String mazeFile;
+    private String validationJson;
+    private Map<String, String> assetUrls = Map.of();
+  }
+
+  /** @throws IOException if the project data cannot be read or is not valid JSON. */
+  public ProjectData(InputStream json) throws IOException {
+    this(readContents(JSON_FACTORY.createParser(json)), new UserProjectFileParser());
+  }
 
   public ProjectData(String json) throws JSONException {
     this(json, new UserProjectFileParser());
   }
 
   ProjectData(String json, UserProjectFileParser projectFileParser) throws JSONException {
-    this.jsonData = new JSONObject(json);
+    this(readContents(json), projectFileParser);
+  }
+
+  private ProjectData(Contents contents, UserProjectFileParser projectFileParser) {
+    this.mainJson = contents.mainJson;
+    this.mazeFile = contents.mazeFile;
+    this.validationJson = contents.validationJson;
+    this.assetUrls = contents.assetUrls;
     this.projectFileParser = projectFileParser;
   }
 
   @Override
   public UserProjectFiles loadFiles() throws InternalServerException, UserInitiatedException {
-    if (!this.jsonData.has(SOURCES_KEY)
-        || !this.jsonData.getJSONObject(SOURCES_KEY).has(MAIN_JSON_KEY)) {
+    if (this.mainJson == null) {
       throw new InternalServerException(
           InternalExceptionKey.INTERNAL_EXCEPTION, new Exception("Code sources missing"));
     }
-    final JSONObject sources = this.jsonData.getJSONObject(SOURCES_KEY);
-    final UserProjectFiles projectFiles =
-        this.projectFileParser.parseFileJson(sources.getString(MAIN_JSON_KEY));
+    final UserProjectFiles projectFiles = this.projectFileParser.parseFileJson(this.mainJson);
 
-    if (sources.has(MAZE_FILE_KEY)) {
-      projectFiles.addTextFile(
-          new TextProjectFile(MAZE_FILE_KEY, sources.getString(MAZE_FILE_KEY)));
+    if (this.mazeFile != null) {
+      projectFiles.addTextFile(new TextProjectFile(MAZE_FILE_KEY, this.mazeFile));
     }
     return projectFiles;
   }
 
   @Override
   public UserProjectFiles getValidation() throws UserInitiatedException, InternalServerException {
-    if (!this.jsonData.has(VALIDATION_KEY)) {
+    if (this.validationJson == null) {
       // return empty file list if there is no validation, as no validation is expected behavior
       return new UserProjectFiles();
     }
-    return this.projectFileParser.parseFileJson(this.jsonData.getString(VALIDATION_KEY));
+    return this.projectFileParser.parseFileJson(this.validationJson);
   }
 
   public String getAssetUrl(String filename) {
-    if (!this.jsonData.has(ASSET_URLS_KEY)
-        || !this.jsonData.getJSONObject(ASSET_URLS_KEY).has(filename)) {
-      return null;
-    }
-
-    return this.jsonData.getJSONObject(ASSET_URLS_KEY).getString(filename);
+    return this.assetUrls.get(filename);
   }
 
   public boolean doesAssetUrlExist(String filename) {
-    if (!this.jsonData.has(ASSET_URLS_KEY)) {
-      return false;
+    return this.assetUrls.containsKey(filename);
+  }
+
+  public synchronized void addNewAssetUrl(String filename, String url) {
+    final Map<String, String> updatedAssetUrls = new HashMap<>(this.assetUrls);
+    updatedAssetUrls.put(filename, url);
+    this.assetUrls = Map.copyOf(updatedAssetUrls);
+  }
+
+  private static Contents readContents(String json) throws JSONException {
+    try {
+      return readContents(JSON_FACTORY.createParser(json));
+    } catch (IOException e) {
+      throw new JSONException("Invalid project data", e);
     }
+  }
 
-    return this.jsonData.getJSONObject(ASSET_URLS_KEY).has(filename);
+  private static Contents readContents(JsonParser parser) throws IOException {
+    final Contents contents = new Contents();
+    try (parser) {
+      if (parser.nextToken() != JsonToken.START_OBJECT) {
+        throw new JsonParseException(parser, "Project data must be a JSON object");
+      }
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        final String key = parser.getCurrentName();
+        final JsonToken value = parser.nextToken();
+        if (key.equals(SOURCES_KEY) && value == JsonToken.START_OBJECT) {
+          readSources(parser, contents);
+        } else if (key.equals(ASSET_URLS_KEY) && value == JsonToken.START_OBJECT) {
+          contents.assetUrls = readStringMap(parser);
+        } else if (key.equals(VALIDATION_KEY) && value == JsonToken.VALUE_STRING) {
+          contents.validationJson = parser.getText();
+        } else {
+          parser.skipChildren();
+        }
+      }
+    }
+    return contents;
   }
 
-  public void addNewAssetUrl(String filename, String url) {
-    if (!this.jsonData.has(ASSET_URLS_KEY)) {
-      this.jsonData.put(ASSET_URLS_KEY, Map.of());
+  private static void readSources(JsonParser parser, Contents contents) throws IOException {
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      final String key = parser.getCurrentName();
+      final JsonToken value = parser.nextToken();
+      if (key.equals(MAIN_JSON_KEY) && value == JsonToken.VALUE_STRING) {
+        contents.mainJson = parser.getText();
+      } else if (key.equals(MAZE_FILE_KEY) && value == JsonToken.VALUE_STRING) {
+        contents.mazeFile = parser.getText();
+      } else {
+        parser.skipChildren();
+      }
     }
+  }
 
-    this.jsonData.getJSONObject(ASSET_URLS_KEY).put(filename, url);
+  /** Reads an object of string values. Values of other types are ignored. */
+  private static Map<String, String> readStringMap(JsonParser parser) throws IOException {
+    final Map<String, String> map = new HashMap<>();
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      final String key = parser.getCurrentName();
+      if (parser.nextToken() == JsonToken.VALUE_STRING) {
+        map.put(key, parser.getText());
+      } else {
+        parser.skipChildren();
+      }
+    }
+    return Map.copyOf(map);
   }
 }
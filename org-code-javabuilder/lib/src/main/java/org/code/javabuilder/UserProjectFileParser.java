@@ -1,40 +1,58 @@
 package org.code.javabuilder;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import java.io.IOException;
-import java.util.Map;
 import org.code.javabuilder.util.FileUtils;
 import org.code.protocol.InternalExceptionKey;
 
+/**
+ * Parses the file data for a project. Expected structure (other fields are ignored):
+ *
+ * <pre>
+ * {
+ *   "source": {
+ *     "<file name>": { "text": <file contents>, "visible": <boolean> },
+ *     ...
+ *   }
+ * }
+ * </pre>
+ *
+ * Files are read with a streaming parser and added to the project as they are found, so no
+ * intermediate representation of the JSON is built.
+ */
 public class UserProjectFileParser {
-  private final ObjectMapper objectMapper;
+  private static final String SOURCE_KEY = "source";
+  private static final String TEXT_KEY = "text";
+
+  private final JsonFactory jsonFactory;
 
   public UserProjectFileParser() {
-    this.objectMapper = new ObjectMapper();
+    this.jsonFactory = new JsonFactory();
   }
 
   /**
    * Parses json string containing file data and returns a list of project files.
    *
-   * @param json JSON String in UserSourceData format
+   * @param json JSON String in the format described above
    * @return UserProjectFiles: all files in the project
    * @throws InternalServerException
    * @throws UserInitiatedException
    */
   public UserProjectFiles parseFileJson(String json)
       throws InternalServerException, UserInitiatedException {
-    try {
-      UserProjectFiles userProjectFiles = new UserProjectFiles();
-      UserSourceData sourceData = this.objectMapper.readValue(json, UserSourceData.class);
-      Map<String, UserFileData> sources = sourceData.getSource();
-      for (String fileName : sources.keySet()) {
-        UserFileData fileData = sources.get(fileName);
-
-        if (FileUtils.isJavaFile(fileName)) {
-          userProjectFiles.addJavaFile(new JavaProjectFile(fileName, fileData.getText()));
+    final UserProjectFiles userProjectFiles = new UserProjectFiles();
+    try (final JsonParser parser = this.jsonFactory.createParser(json)) {
+      expectToken(parser, parser.nextToken(), JsonToken.START_OBJECT);
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        final String key = parser.getCurrentName();
+        final JsonToken value = parser.nextToken();
+        if (key.equals(SOURCE_KEY) && value == JsonToken.START_OBJECT) {
+          this.parseSource(parser, userProjectFiles);
         } else {
-          // we treat any non-Java file as a plain text file
-          userProjectFiles.addTextFile(new TextProjectFile(fileName, fileData.getText()));
+          parser.skipChildren();
         }
       }
       return userProjectFiles;
@@ -42,4 +60,37 @@ public class UserProjectFileParser {
       throw new InternalServerException(InternalExceptionKey.INTERNAL_EXCEPTION, io);
     }
   }
+
+  /** Reads each file in the "source" object. The parser is positioned at the start of it. */
+  private void parseSource(JsonParser parser, UserProjectFiles userProjectFiles)
+      throws IOException, UserInitiatedException {
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      final String fileName = parser.getCurrentName();
+      expectToken(parser, parser.nextToken(), JsonToken.START_OBJECT);
+      String text = null;
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        final String key = parser.getCurrentName();
+        parser.nextToken();
+        if (key.equals(TEXT_KEY)) {
+          text = parser.getValueAsString();
+        } else {
+          parser.skipChildren();
+        }
+      }
+
+      if (FileUtils.isJavaFile(fileName)) {
+        userProjectFiles.addJavaFile(new JavaProjectFile(fileName, text));
+      } else {
+        // we treat any non-Java file as a plain text file
+        userProjectFiles.addTextFile(new TextProjectFile(fileName, text));
+      }
+    }
+  }
+
+  private static void expectToken(JsonParser parser, JsonToken actual, JsonToken expected)
+      throws JsonParseException {
+    if (actual != expected) {
+      throw new JsonParseException(parser, "Expected " + expected + " but found " + actual);
+    }
+  }
 }
@@ -35,4 +35,21 @@ public final class LambdaUtils {
       LoggerUtils.logTrackingExceptionAsWarning(e);
     }
   }
+
+  /**
+   * Closes the OutputAdapter, delivering any output it is still holding, and handles any exceptions
+   * if they are thrown. A lost connection is expected here if the user has left, so
+   * CONNECTION_TERMINATED exceptions are not logged.
+   */
+  public static void safelyCloseOutputAdapter(OutputAdapter outputAdapter) {
+    try {
+      outputAdapter.close();
+    } catch (InternalFacingRuntimeException e) {
+      if (!e.getMessage().equals(CONNECTION_TERMINATED)) {
+        LoggerUtils.logTrackingExceptionAsWarning(e);
+      }
+    } catch (Exception e) {
+      LoggerUtils.logTrackingExceptionAsWarning(e);
+    }
+  }
 }
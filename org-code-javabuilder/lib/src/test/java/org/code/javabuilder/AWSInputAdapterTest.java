@@ -6,12 +6,14 @@ import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
 
 import com.amazonaws.services.sqs.AmazonSQS;
+import com.amazonaws.services.sqs.model.DeleteMessageBatchResult;
 import com.amazonaws.services.sqs.model.Message;
 import com.amazonaws.services.sqs.model.QueueDoesNotExistException;
 import com.amazonaws.services.sqs.model.ReceiveMessageRequest;
 import com.amazonaws.services.sqs.model.ReceiveMessageResult;
 import java.util.ArrayList;
 import java.util.List;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
@@ -22,25 +24,42 @@ public class AWSInputAdapterTest {
   @BeforeEach
   public void setUp() {
     sqsMock = mock(AmazonSQS.class);
-    inputAdapter = new AWSInputAdapter(sqsMock, "url", "name");
+    when(sqsMock.deleteMessageBatch(anyString(), anyList()))
+        .thenReturn(new DeleteMessageBatchResult());
+  }
+
+  @AfterEach
+  public void tearDown() {
+    if (inputAdapter != null) {
+      inputAdapter.close();
+    }
   }
 
   /**
-   * Adds messages to the SQS Queue Mock to be retrieved by the input Adapter
+   * Adds messages to the SQS Queue Mock to be retrieved by the input Adapter. Once they have been
+   * received, the mock behaves like an empty queue.
    *
    * @param messages an array of messages in the queue
    */
   private void messageSetUp(String[] messages) {
     List<Message> messageList = new ArrayList<>();
-    for (String s : messages) {
+    for (int i = 0; i < messages.length; i++) {
       Message message = mock(Message.class);
-      when(message.getBody()).thenReturn(s);
+      when(message.getBody()).thenReturn(messages[i]);
+      when(message.getReceiptHandle()).thenReturn("receipt" + i);
       messageList.add(message);
     }
 
     ReceiveMessageResult result = mock(ReceiveMessageResult.class);
     when(result.getMessages()).thenReturn(messageList);
-    when(sqsMock.receiveMessage(any(ReceiveMessageRequest.class))).thenReturn(result);
+    when(sqsMock.receiveMessage(any(ReceiveMessageRequest.class)))
+        .thenReturn(result)
+        .thenAnswer(
+            invocation -> {
+              // Simulate a long poll of an empty queue, without holding up the test.
+              Thread.sleep(50);
+              return new ReceiveMessageResult();
+            });
   }
 
   private void mockLostConnection() {
@@ -48,51 +67,125 @@ public class AWSInputAdapterTest {
         .thenThrow(QueueDoesNotExistException.class);
   }
 
+  private void createInputAdapter() {
+    inputAdapter = new AWSInputAdapter(sqsMock, "url", "name");
+  }
+
   @Test
   void getsNextMessage() {
     messageSetUp(new String[] {"hello"});
+    createInputAdapter();
     assertEquals(inputAdapter.getNextMessage(), "hello");
   }
 
   @Test
   void addsAllReceivedMessagesToQueue() {
     messageSetUp(new String[] {"", "world"});
+    createInputAdapter();
     inputAdapter.getNextMessage();
     assertEquals(inputAdapter.getNextMessage(), "world");
   }
 
   /**
-   * When getNextMessage is called on an empty inputAdapter, it fetches and caches all available
-   * messages from the SQS Queue (up to the AWS maximum of 10). To ensure these messages are not
-   * retrieved again, we need to delete them from the SQS Queue. This test checks that we are
-   * cleaning up the queue after retrieving messages
+   * Input is received from the SQS Queue in the background as soon as the adapter is created, so
+   * that it is ready by the time the program asks for it.
    */
   @Test
-  void deletesAllReadMessages() {
-    messageSetUp(new String[] {"", ""});
-    inputAdapter.getNextMessage();
-    verify(sqsMock, times(2)).deleteMessage("url", null);
+  void startsPollingBeforeInputIsRequested() {
+    messageSetUp(new String[] {"hello"});
+    createInputAdapter();
+    verify(sqsMock, timeout(1000).atLeastOnce()).receiveMessage(any(ReceiveMessageRequest.class));
+  }
+
+  /**
+   * The polling thread is not tied to the program, so it must stop once the adapter is closed.
+   * Otherwise it would keep polling across later invocations of a reused container.
+   */
+  @Test
+  void stopsPollingWhenClosed() {
+    messageSetUp(new String[] {"hello"});
+    createInputAdapter();
+    verify(sqsMock, timeout(1000).atLeast(2)).receiveMessage(any(ReceiveMessageRequest.class));
+
+    inputAdapter.close();
+    // Allow a receive that was already in progress to finish.
+    verify(sqsMock, after(100).atLeast(2)).receiveMessage(any(ReceiveMessageRequest.class));
+    clearInvocations(sqsMock);
+    verify(sqsMock, after(200).never()).receiveMessage(any(ReceiveMessageRequest.class));
   }
 
   /**
-   * Retrieving messages from the SQS Queue is an expensive operation. When we have no more messages
-   * available in the inputAdapter, we retrieve multiple messages from the Queue at once. They are
-   * cached and subsequent calls to getNextMessage do not retrieve additional messages until the
-   * local queue is empty.
+   * To ensure received messages are not retrieved again, we need to delete them from the SQS Queue.
+   * Messages received together are deleted with a single batch request.
    */
   @Test
-  void cachesMessages() {
+  void deletesAllReadMessagesInOneBatch() {
     messageSetUp(new String[] {"", ""});
+    createInputAdapter();
+    verify(sqsMock, timeout(1000).times(1))
+        .deleteMessageBatch(eq("url"), argThat(entries -> entries.size() == 2));
+    verify(sqsMock, never()).deleteMessage(anyString(), anyString());
+  }
+
+  /**
+   * A program that never reads input should not pull the whole queue into memory. Polling stops
+   * while the local buffer is full, and resumes once there is room.
+   */
+  @Test
+  void pausesPollingWhileBufferIsFull() {
+    final ReceiveMessageResult result = mock(ReceiveMessageResult.class);
+    final Message message = mock(Message.class);
+    when(message.getBody()).thenReturn("input");
+    when(result.getMessages()).thenReturn(List.of(message, message));
+    when(sqsMock.receiveMessage(any(ReceiveMessageRequest.class))).thenReturn(result);
+    inputAdapter = new AWSInputAdapter(sqsMock, "url", "name", null, 2);
+
+    verify(sqsMock, after(300).times(1)).receiveMessage(any(ReceiveMessageRequest.class));
+
     inputAdapter.getNextMessage();
-    inputAdapter.getNextMessage();
-    verify(sqsMock, times(1)).receiveMessage(any(ReceiveMessageRequest.class));
+    verify(sqsMock, timeout(1000).times(2)).receiveMessage(any(ReceiveMessageRequest.class));
   }
 
   @Test
   void throwsOnLostConnection() {
     this.mockLostConnection();
+    createInputAdapter();
     Exception actual =
         assertThrows(InternalFacingRuntimeException.class, () -> inputAdapter.getNextMessage());
     assertEquals(CONNECTION_TERMINATED, actual.getMessage());
   }
+
+  @Test
+  void returnsNullIfNoMessageBeforeTimeout() {
+    messageSetUp(new String[] {});
+    createInputAdapter();
+    assertNull(inputAdapter.getNextMessage(1));
+  }
+
+  @Test
+  void reportsLostConnectionToMonitor() {
+    final ConnectionMonitor connectionMonitor = mock(ConnectionMonitor.class);
+    this.mockLostConnection();
+    inputAdapter = new AWSInputAdapter(sqsMock, "url", "name", connectionMonitor);
+
+    assertThrows(InternalFacingRuntimeException.class, () -> inputAdapter.getNextMessage());
+    verify(connectionMonitor).reportDisconnected();
+  }
+
+  @Test
+  void throwsOnLostConnectionIfInterruptedAfterDisconnect() {
+    final ConnectionMonitor connectionMonitor = mock(ConnectionMonitor.class);
+    when(connectionMonitor.isDisconnected()).thenReturn(true);
+    messageSetUp(new String[] {});
+    inputAdapter = new AWSInputAdapter(sqsMock, "url", "name", connectionMonitor);
+
+    Thread.currentThread().interrupt();
+    try {
+      Exception actual =
+          assertThrows(InternalFacingRuntimeException.class, () -> inputAdapter.getNextMessage());
+      assertEquals(CONNECTION_TERMINATED, actual.getMessage());
+    } finally {
+      Thread.interrupted();
+    }
+  }
 }
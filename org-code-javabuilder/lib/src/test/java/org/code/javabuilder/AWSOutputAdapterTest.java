@@ -0,0 +1,122 @@
+package org.code.javabuilder;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+import com.amazonaws.retry.RetryPolicy;
+import com.amazonaws.services.apigatewaymanagementapi.AmazonApiGatewayManagementApi;
+import com.amazonaws.services.apigatewaymanagementapi.model.GetConnectionRequest;
+import com.amazonaws.services.apigatewaymanagementapi.model.GoneException;
+import com.amazonaws.services.apigatewaymanagementapi.model.LimitExceededException;
+import com.amazonaws.services.apigatewaymanagementapi.model.PostToConnectionRequest;
+import com.amazonaws.services.apigatewaymanagementapi.model.PostToConnectionResult;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.code.protocol.JavabuilderContext;
+import org.code.protocol.MetricClient;
+import org.code.protocol.WireFormat;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class AWSOutputAdapterTest {
+  private AmazonApiGatewayManagementApi api;
+  private AWSMetricClient metricClient;
+  private List<Long> sleeps;
+  private AWSOutputAdapter unitUnderTest;
+
+  @BeforeEach
+  public void setUp() {
+    api = mock(AmazonApiGatewayManagementApi.class);
+    metricClient = mock(AWSMetricClient.class);
+    JavabuilderContext.getInstance().register(MetricClient.class, metricClient);
+    sleeps = new ArrayList<>();
+    unitUnderTest =
+        new AWSOutputAdapter(
+            "connectionId", api, WireFormat.JSON, millis -> sleeps.add(millis), new Random(0));
+  }
+
+  @AfterEach
+  public void tearDown() {
+    JavabuilderContext.getInstance().destroyAndReset();
+  }
+
+  @Test
+  public void testRetriesThrottledMessagesWithBackoff() {
+    when(api.postToConnection(any(PostToConnectionRequest.class)))
+        .thenThrow(new LimitExceededException("throttled"))
+        .thenThrow(new LimitExceededException("throttled"))
+        .thenReturn(new PostToConnectionResult());
+
+    unitUnderTest.sendMessage(new SystemOutMessage("hello"));
+
+    verify(api, times(3)).postToConnection(any(PostToConnectionRequest.class));
+    assertEquals(2, sleeps.size());
+    assertTrue(sleeps.get(0) <= 50);
+    assertTrue(sleeps.get(1) <= 100);
+  }
+
+  @Test
+  public void testSdkLeavesThrottledMessagesToTheAdapter() {
+    final RetryPolicy.RetryCondition condition =
+        AWSOutputAdapter.API_RETRY_POLICY.getRetryCondition();
+    final LimitExceededException throttled = new LimitExceededException("throttled");
+    throttled.setStatusCode(429);
+
+    assertFalse(condition.shouldRetry(new PostToConnectionRequest(), throttled, 0));
+    // Other calls keep the SDK's retries.
+    assertTrue(condition.shouldRetry(new GetConnectionRequest(), throttled, 0));
+  }
+
+  @Test
+  public void testRethrowsThrottlingAfterMaxRetries() {
+    when(api.postToConnection(any(PostToConnectionRequest.class)))
+        .thenThrow(new LimitExceededException("throttled"));
+
+    assertThrows(
+        LimitExceededException.class,
+        () -> unitUnderTest.sendMessage(new SystemOutMessage("hello")));
+
+    verify(api, times(7)).postToConnection(any(PostToConnectionRequest.class));
+    for (long sleep : sleeps) {
+      assertTrue(sleep <= 2000);
+    }
+  }
+
+  @Test
+  public void testDoesNotRetryWhenConnectionIsGone() {
+    when(api.postToConnection(any(PostToConnectionRequest.class)))
+        .thenThrow(new GoneException("gone"));
+
+    assertThrows(
+        InternalFacingRuntimeException.class,
+        () -> unitUnderTest.sendMessage(new SystemOutMessage("hello")));
+
+    verify(api, times(1)).postToConnection(any(PostToConnectionRequest.class));
+    assertTrue(sleeps.isEmpty());
+  }
+
+  @Test
+  public void testPublishesThrottleAndRetryCountsOnClose() {
+    when(api.postToConnection(any(PostToConnectionRequest.class)))
+        .thenThrow(new LimitExceededException("throttled"))
+        .thenReturn(new PostToConnectionResult());
+
+    unitUnderTest.sendMessage(new SystemOutMessage("hello"));
+    unitUnderTest.close();
+
+    verify(metricClient).publishOutputThrottleCount(1L);
+    verify(metricClient).publishOutputRetryCount(1L);
+  }
+
+  @Test
+  public void testDoesNotPublishMetricsIfNeverThrottled() {
+    unitUnderTest.sendMessage(new SystemOutMessage("hello"));
+    unitUnderTest.close();
+
+    verify(metricClient, never()).publishOutputThrottleCount(anyLong());
+    verify(metricClient, never()).publishOutputRetryCount(anyLong());
+  }
+}
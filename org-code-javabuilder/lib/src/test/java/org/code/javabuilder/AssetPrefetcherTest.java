@@ -0,0 +1,84 @@
+package org.code.javabuilder;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.*;
+
+import java.net.URL;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import org.code.protocol.AssetCache;
+import org.code.protocol.ContentManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class AssetPrefetcherTest {
+  private static final String BEACH_URL = "https://example.com/beach.jpg";
+  private static final String SOUND_URL = "https://example.com/sound.wav";
+
+  private ContentManager contentManager;
+  private AssetCache assetCache;
+  private AssetPrefetcher unitUnderTest;
+
+  @BeforeEach
+  public void setUp() {
+    contentManager = mock(ContentManager.class);
+    assetCache = mock(AssetCache.class);
+    when(contentManager.getAssetUrl("beach.jpg")).thenReturn(BEACH_URL);
+    when(contentManager.getAssetUrl("sound.wav")).thenReturn(SOUND_URL);
+    unitUnderTest = new AssetPrefetcher(contentManager, assetCache);
+  }
+
+  @Test
+  public void testPrefetchesAssetsNamedInSource() throws Exception {
+    final JavaProjectFile first =
+        new JavaProjectFile(
+            "Main.java",
+            "public class Main { Image image = new Image(\"beach.jpg\"); String s = \"other\"; }");
+    final JavaProjectFile second =
+        new JavaProjectFile(
+            "Scene.java",
+            "class Scene { void play() { playSound(\"sound.wav\", \"beach.jpg\"); } }");
+
+    unitUnderTest.prefetchAssets(List.of(first, second));
+
+    verify(assetCache).prefetch(new URL(BEACH_URL));
+    verify(assetCache).prefetch(new URL(SOUND_URL));
+    verifyNoMoreInteractions(assetCache);
+  }
+
+  @Test
+  public void testIgnoresLiteralsThatAreNotAssets() throws Exception {
+    final JavaProjectFile file =
+        new JavaProjectFile("Main.java", "class Main { String s = \"hello\"; char c = 'x'; }");
+
+    unitUnderTest.prefetchAssets(List.of(file));
+
+    verifyNoInteractions(assetCache);
+  }
+
+  @Test
+  public void testFindStringLiteralsSkipsCommentsAndCharacters() {
+    final String source =
+        "// \"line comment\"\n"
+            + "/* \"block\n comment\" */\n"
+            + "char quote = '\"';\n"
+            + "String a = \"first\";\n"
+            + "String b = \"escaped \\\" quote\";\n"
+            + "String c = \"\";";
+    final Set<String> literals = new LinkedHashSet<>();
+
+    AssetPrefetcher.findStringLiterals(source, literals);
+
+    assertEquals(List.of("first", "escaped \\\" quote", ""), List.copyOf(literals));
+  }
+
+  @Test
+  public void testFindStringLiteralsHandlesUnterminatedStrings() {
+    final Set<String> literals = new LinkedHashSet<>();
+
+    AssetPrefetcher.findStringLiterals("String a = \"unterminated\nString b = \"ok\";", literals);
+
+    assertEquals(List.of("unterminated", "ok"), List.copyOf(literals));
+  }
+}
@@ -0,0 +1,160 @@
+package org.code.javabuilder;
+
+import static org.code.javabuilder.InternalFacingExceptionTypes.CONNECTION_TERMINATED;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.code.protocol.ClientMessage;
+import org.code.protocol.OutputAdapter;
+import org.code.protocol.StatusMessage;
+import org.code.protocol.StatusMessageKey;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+public class AsyncOutputAdapterTest {
+  private static final int QUEUE_CAPACITY = 2;
+  private static final long DRAIN_TIMEOUT_MS = 1000;
+
+  private OutputAdapter delegate;
+  private AsyncOutputAdapter unitUnderTest;
+
+  @BeforeEach
+  public void setUp() {
+    delegate = mock(OutputAdapter.class);
+    unitUnderTest = new AsyncOutputAdapter(delegate, QUEUE_CAPACITY, DRAIN_TIMEOUT_MS);
+  }
+
+  @AfterEach
+  public void tearDown() {
+    unitUnderTest.close();
+  }
+
+  @Test
+  public void testSendsMessagesInOrder() {
+    for (int i = 0; i < 10; i++) {
+      unitUnderTest.sendMessage(new SystemOutMessage(String.valueOf(i)));
+    }
+    unitUnderTest.flush();
+
+    // Some of the messages may have been merged, but their contents must be in order.
+    final ArgumentCaptor<ClientMessage> captor = ArgumentCaptor.forClass(ClientMessage.class);
+    verify(delegate, atLeastOnce()).sendMessage(captor.capture());
+    final StringBuilder values = new StringBuilder();
+    for (ClientMessage message : captor.getAllValues()) {
+      values.append(message.getValue());
+    }
+    assertEquals("0123456789", values.toString());
+  }
+
+  @Test
+  public void testMergesConsoleOutputThatBacksUpWhileDelegateIsBlocked()
+      throws InterruptedException {
+    final CountDownLatch sendStarted = new CountDownLatch(1);
+    final CountDownLatch releaseSend = new CountDownLatch(1);
+    doAnswer(
+            invocation -> {
+              sendStarted.countDown();
+              releaseSend.await();
+              return null;
+            })
+        .when(delegate)
+        .sendMessage(any(ClientMessage.class));
+    unitUnderTest.close();
+    unitUnderTest = new AsyncOutputAdapter(delegate, 10, DRAIN_TIMEOUT_MS);
+
+    unitUnderTest.sendMessage(new SystemOutMessage("a"));
+    assertTrue(sendStarted.await(1, TimeUnit.SECONDS));
+    unitUnderTest.sendMessage(new SystemOutMessage("b"));
+    unitUnderTest.sendMessage(new SystemOutMessage("c"));
+    unitUnderTest.sendMessage(new StatusMessage(StatusMessageKey.EXITED));
+    releaseSend.countDown();
+    unitUnderTest.flush();
+
+    final ArgumentCaptor<ClientMessage> captor = ArgumentCaptor.forClass(ClientMessage.class);
+    verify(delegate, times(3)).sendMessage(captor.capture());
+    final List<ClientMessage> messages = captor.getAllValues();
+    assertEquals("a", messages.get(0).getValue());
+    assertEquals("bc", messages.get(1).getValue());
+    assertEquals(StatusMessageKey.EXITED.name(), messages.get(2).getValue());
+  }
+
+  @Test
+  public void testDoesNotWaitForDelegateToSend() throws InterruptedException {
+    final CountDownLatch sendStarted = new CountDownLatch(1);
+    final CountDownLatch releaseSend = new CountDownLatch(1);
+    doAnswer(
+            invocation -> {
+              sendStarted.countDown();
+              releaseSend.await();
+              return null;
+            })
+        .when(delegate)
+        .sendMessage(any(ClientMessage.class));
+
+    unitUnderTest.sendMessage(new SystemOutMessage("a"));
+    assertTrue(sendStarted.await(1, TimeUnit.SECONDS));
+    // The sender thread is blocked, but there is still room in the queue.
+    unitUnderTest.sendMessage(new SystemOutMessage("b"));
+    releaseSend.countDown();
+    unitUnderTest.flush();
+
+    verify(delegate, times(2)).sendMessage(any(ClientMessage.class));
+  }
+
+  @Test
+  public void testRethrowsDelegateExceptionOnNextSend() {
+    final InternalFacingRuntimeException exception =
+        new InternalFacingRuntimeException(CONNECTION_TERMINATED, new Exception());
+    doThrow(exception).when(delegate).sendMessage(any(ClientMessage.class));
+
+    unitUnderTest.sendMessage(new SystemOutMessage("a"));
+    final Exception actual = assertThrows(RuntimeException.class, () -> unitUnderTest.flush());
+    assertSame(exception, actual);
+    assertThrows(
+        InternalFacingRuntimeException.class,
+        () -> unitUnderTest.sendMessage(new SystemOutMessage("b")));
+    verify(delegate, times(1)).sendMessage(any(ClientMessage.class));
+  }
+
+  @Test
+  public void testSendsSynchronouslyAfterClose() {
+    unitUnderTest.sendMessage(new SystemOutMessage("a"));
+    unitUnderTest.close();
+    verify(delegate, times(1)).sendMessage(any(ClientMessage.class));
+    verify(delegate).close();
+
+    unitUnderTest.sendMessage(new SystemOutMessage("b"));
+    verify(delegate, times(2)).sendMessage(any(ClientMessage.class));
+  }
+
+  @Test
+  public void testCloseDropsMessagesAfterDeadline() throws InterruptedException {
+    final CountDownLatch releaseSend = new CountDownLatch(1);
+    doAnswer(
+            invocation -> {
+              try {
+                releaseSend.await();
+              } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+              }
+              return null;
+            })
+        .when(delegate)
+        .sendMessage(any(ClientMessage.class));
+    unitUnderTest.close();
+    unitUnderTest = new AsyncOutputAdapter(delegate, QUEUE_CAPACITY, 50);
+
+    unitUnderTest.sendMessage(new SystemOutMessage("a"));
+    unitUnderTest.sendMessage(new SystemOutMessage("b"));
+    final long start = System.currentTimeMillis();
+    unitUnderTest.close();
+    assertTrue(System.currentTimeMillis() - start < DRAIN_TIMEOUT_MS);
+    releaseSend.countDown();
+  }
+}
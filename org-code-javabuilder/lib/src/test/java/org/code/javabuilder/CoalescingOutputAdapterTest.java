@@ -0,0 +1,120 @@
+package org.code.javabuilder;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import org.code.protocol.ClientMessage;
+import org.code.protocol.OutputAdapter;
+import org.code.protocol.StatusMessage;
+import org.code.protocol.StatusMessageKey;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+public class CoalescingOutputAdapterTest {
+  private static final int MAX_BUFFERED_BYTES = 10;
+  private static final long FLUSH_WINDOW_MS = 50;
+
+  private OutputAdapter delegate;
+  private ScheduledExecutorService scheduler;
+  private ScheduledFuture<?> scheduledFuture;
+  private ArgumentCaptor<Runnable> flushCaptor;
+  private ArgumentCaptor<ClientMessage> messageCaptor;
+  private CoalescingOutputAdapter unitUnderTest;
+
+  @BeforeEach
+  public void setUp() {
+    delegate = mock(OutputAdapter.class);
+    scheduler = mock(ScheduledExecutorService.class);
+    scheduledFuture = mock(ScheduledFuture.class);
+    flushCaptor = ArgumentCaptor.forClass(Runnable.class);
+    messageCaptor = ArgumentCaptor.forClass(ClientMessage.class);
+    doReturn(scheduledFuture)
+        .when(scheduler)
+        .schedule(flushCaptor.capture(), anyLong(), any(TimeUnit.class));
+    unitUnderTest =
+        new CoalescingOutputAdapter(delegate, MAX_BUFFERED_BYTES, FLUSH_WINDOW_MS, scheduler);
+  }
+
+  @Test
+  public void testMergesConsecutiveConsoleOutput() {
+    unitUnderTest.sendMessage(new SystemOutMessage("a"));
+    unitUnderTest.sendMessage(new SystemOutMessage("b\n"));
+    unitUnderTest.sendMessage(new SystemOutMessage("c"));
+    verify(delegate, never()).sendMessage(any(ClientMessage.class));
+
+    unitUnderTest.flush();
+    verify(delegate).sendMessage(messageCaptor.capture());
+    assertEquals("ab\nc", messageCaptor.getValue().getValue());
+  }
+
+  @Test
+  public void testSchedulesOneFlushPerWindow() {
+    unitUnderTest.sendMessage(new SystemOutMessage("a"));
+    unitUnderTest.sendMessage(new SystemOutMessage("b"));
+    verify(scheduler, times(1))
+        .schedule(any(Runnable.class), eq(FLUSH_WINDOW_MS), eq(TimeUnit.MILLISECONDS));
+
+    flushCaptor.getValue().run();
+    verify(delegate).sendMessage(messageCaptor.capture());
+    assertEquals("ab", messageCaptor.getValue().getValue());
+
+    unitUnderTest.sendMessage(new SystemOutMessage("c"));
+    verify(scheduler, times(2))
+        .schedule(any(Runnable.class), eq(FLUSH_WINDOW_MS), eq(TimeUnit.MILLISECONDS));
+  }
+
+  @Test
+  public void testFlushesWhenByteLimitIsReached() {
+    unitUnderTest.sendMessage(new SystemOutMessage("12345"));
+    verify(delegate, never()).sendMessage(any(ClientMessage.class));
+    // Each of these characters is three bytes in UTF-8
+    unitUnderTest.sendMessage(new SystemOutMessage("\u20ac\u20ac"));
+
+    verify(delegate).sendMessage(messageCaptor.capture());
+    assertEquals("12345\u20ac\u20ac", messageCaptor.getValue().getValue());
+    verify(scheduledFuture).cancel(false);
+  }
+
+  @Test
+  public void testSendsBufferedOutputBeforeOtherMessages() {
+    unitUnderTest.sendMessage(new SystemOutMessage("hello"));
+    unitUnderTest.sendMessage(new StatusMessage(StatusMessageKey.EXITED));
+
+    verify(delegate, times(2)).sendMessage(messageCaptor.capture());
+    final List<ClientMessage> messages = messageCaptor.getAllValues();
+    assertEquals("hello", messages.get(0).getValue());
+    assertEquals(StatusMessageKey.EXITED.name(), messages.get(1).getValue());
+  }
+
+  @Test
+  public void testFlushFlushesDelegate() {
+    unitUnderTest.flush();
+    verify(delegate, never()).sendMessage(any(ClientMessage.class));
+    verify(delegate).flush();
+  }
+
+  @Test
+  public void testRethrowsExceptionFromScheduledFlush() {
+    final InternalFacingRuntimeException exception =
+        new InternalFacingRuntimeException(
+            InternalFacingExceptionTypes.CONNECTION_TERMINATED, new Exception());
+    doThrow(exception).when(delegate).sendMessage(any(ClientMessage.class));
+
+    unitUnderTest.sendMessage(new SystemOutMessage("a"));
+    flushCaptor.getValue().run();
+
+    final Exception actual =
+        assertThrows(
+            InternalFacingRuntimeException.class,
+            () -> unitUnderTest.sendMessage(new SystemOutMessage("b")));
+    assertSame(exception, actual);
+  }
+}
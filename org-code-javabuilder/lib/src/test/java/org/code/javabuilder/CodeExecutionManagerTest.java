@@ -14,6 +14,7 @@ import org.code.protocol.*;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 
 class CodeExecutionManagerTest {
   private ProjectFileLoader fileLoader;
@@ -105,6 +106,32 @@ class CodeExecutionManagerTest {
     assertSame(sysIn, System.in);
   }
 
+  @Test
+  public void testClosesOutputAdapterAfterExitedMessage()
+      throws JavabuilderException, InternalFacingException {
+    unitUnderTest.execute();
+    unitUnderTest.shutDown();
+
+    final InOrder inOrder = inOrder(outputAdapter);
+    inOrder.verify(outputAdapter).sendMessage(any(StatusMessage.class));
+    inOrder.verify(outputAdapter).close();
+  }
+
+  @Test
+  public void testFinishesConsoleOutputGovernorBeforeExitedMessage()
+      throws JavabuilderException, InternalFacingException {
+    final ConsoleOutputGovernor consoleOutputGovernor = mock(ConsoleOutputGovernor.class);
+    JavabuilderContext.getInstance().register(ConsoleOutputGovernor.class, consoleOutputGovernor);
+
+    unitUnderTest.execute();
+    unitUnderTest.shutDown();
+
+    final InOrder inOrder = inOrder(consoleOutputGovernor, outputAdapter);
+    inOrder.verify(consoleOutputGovernor).finish(contentManager);
+    inOrder.verify(outputAdapter).sendMessage(any(StatusMessage.class));
+    JavabuilderContext.getInstance().destroyAndReset();
+  }
+
   private void verifyExitedMessageSentOnce() {
     ArgumentCaptor<StatusMessage> message = ArgumentCaptor.forClass(StatusMessage.class);
     verify(outputAdapter, times(1)).sendMessage(message.capture());
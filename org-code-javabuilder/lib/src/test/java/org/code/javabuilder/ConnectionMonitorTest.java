@@ -0,0 +1,102 @@
+package org.code.javabuilder;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+import com.amazonaws.services.apigatewaymanagementapi.AmazonApiGatewayManagementApi;
+import com.amazonaws.services.apigatewaymanagementapi.model.GetConnectionRequest;
+import com.amazonaws.services.apigatewaymanagementapi.model.GetConnectionResult;
+import com.amazonaws.services.apigatewaymanagementapi.model.GoneException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class ConnectionMonitorTest {
+  private AmazonApiGatewayManagementApi api;
+  private CountDownLatch disconnectHandled;
+  private ConnectionMonitor unitUnderTest;
+
+  @BeforeEach
+  public void setUp() {
+    api = mock(AmazonApiGatewayManagementApi.class);
+    disconnectHandled = new CountDownLatch(1);
+    unitUnderTest = new ConnectionMonitor("connectionId", api, disconnectHandled::countDown, 10);
+  }
+
+  @AfterEach
+  public void tearDown() {
+    unitUnderTest.stop();
+  }
+
+  @Test
+  public void testCallsHandlerWhenConnectionIsGone() throws InterruptedException {
+    when(api.getConnection(any(GetConnectionRequest.class)))
+        .thenReturn(new GetConnectionResult())
+        .thenThrow(new GoneException("gone"));
+
+    unitUnderTest.start();
+
+    assertTrue(disconnectHandled.await(5, TimeUnit.SECONDS));
+    assertTrue(unitUnderTest.isDisconnected());
+    verify(api, atLeast(2)).getConnection(any(GetConnectionRequest.class));
+  }
+
+  @Test
+  public void testCallsHandlerWhenDisconnectIsReported() throws InterruptedException {
+    unitUnderTest = new ConnectionMonitor("connectionId", api, disconnectHandled::countDown, 60000);
+
+    unitUnderTest.start();
+    unitUnderTest.reportDisconnected();
+
+    assertTrue(disconnectHandled.await(5, TimeUnit.SECONDS));
+    verify(api, never()).getConnection(any(GetConnectionRequest.class));
+  }
+
+  @Test
+  public void testTreatsOtherErrorsAsConnected() {
+    when(api.getConnection(any(GetConnectionRequest.class)))
+        .thenThrow(new IllegalStateException("client shut down"));
+
+    assertTrue(unitUnderTest.isConnectionAlive());
+  }
+
+  @Test
+  public void testDoesNotCallHandlerAfterStop() throws InterruptedException {
+    unitUnderTest.start();
+    unitUnderTest.stop();
+    unitUnderTest.reportDisconnected();
+
+    assertFalse(disconnectHandled.await(200, TimeUnit.MILLISECONDS));
+  }
+
+  @Test
+  public void testStopWaitsForTheHandlerToFinish() throws InterruptedException {
+    final CountDownLatch handlerStarted = new CountDownLatch(1);
+    final AtomicBoolean handlerFinished = new AtomicBoolean(false);
+    unitUnderTest =
+        new ConnectionMonitor(
+            "connectionId",
+            api,
+            () -> {
+              handlerStarted.countDown();
+              try {
+                Thread.sleep(60000);
+              } catch (InterruptedException e) {
+                // Stopped
+              }
+              handlerFinished.set(true);
+            },
+            60000);
+
+    unitUnderTest.start();
+    unitUnderTest.reportDisconnected();
+    assertTrue(handlerStarted.await(5, TimeUnit.SECONDS));
+    unitUnderTest.stop();
+
+    assertTrue(handlerFinished.get());
+  }
+}
@@ -0,0 +1,191 @@
+package org.code.javabuilder;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.time.Clock;
+import java.util.List;
+import org.code.protocol.ClientMessage;
+import org.code.protocol.ContentManager;
+import org.code.protocol.JavabuilderContext;
+import org.code.protocol.JavabuilderException;
+import org.code.protocol.OutputAdapter;
+import org.code.protocol.StatusMessage;
+import org.code.protocol.StatusMessageKey;
+import org.code.validation.support.UserTestOutputAdapter;
+import org.code.validation.support.ValidationProtocol;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+public class ConsoleOutputGovernorTest {
+  private OutputAdapter delegate;
+  private ContentManager contentManager;
+  private Clock clock;
+  private ArgumentCaptor<ClientMessage> messageCaptor;
+
+  @BeforeEach
+  public void setUp() {
+    delegate = mock(OutputAdapter.class);
+    contentManager = mock(ContentManager.class);
+    clock = mock(Clock.class);
+    when(clock.millis()).thenReturn(0L);
+    messageCaptor = ArgumentCaptor.forClass(ClientMessage.class);
+  }
+
+  @Test
+  public void testSendsOutputWithinBudget() {
+    final ConsoleOutputGovernor unitUnderTest = this.createGovernor(100, 1000);
+
+    unitUnderTest.sendMessage(new SystemOutMessage("hello\n"));
+    unitUnderTest.finish(null);
+
+    verify(delegate).sendMessage(messageCaptor.capture());
+    assertEquals("hello\n", messageCaptor.getValue().getValue());
+  }
+
+  @Test
+  public void testSuppressesOutputPastPerSecondBudgetUntilNextSecond() {
+    final ConsoleOutputGovernor unitUnderTest = this.createGovernor(10, 1000);
+
+    for (int i = 0; i < 5; i++) {
+      unitUnderTest.sendMessage(new SystemOutMessage("line\n"));
+    }
+    verify(delegate, times(2)).sendMessage(any(ClientMessage.class));
+
+    when(clock.millis()).thenReturn(1000L);
+    unitUnderTest.sendMessage(new SystemOutMessage("next\n"));
+
+    verify(delegate, times(4)).sendMessage(messageCaptor.capture());
+    final List<ClientMessage> messages = messageCaptor.getAllValues();
+    assertEquals("... 3 more lines suppressed\n", messages.get(2).getValue());
+    assertEquals("next\n", messages.get(3).getValue());
+  }
+
+  @Test
+  public void testSuppressesOutputPastTotalBudgetAndSummarizesOnFinish() {
+    final ConsoleOutputGovernor unitUnderTest = this.createGovernor(1000, 15);
+
+    for (int i = 0; i < 5; i++) {
+      when(clock.millis()).thenReturn(i * 1000L);
+      unitUnderTest.sendMessage(new SystemOutMessage("line\n"));
+    }
+    verify(delegate, times(3)).sendMessage(any(ClientMessage.class));
+
+    unitUnderTest.finish(null);
+    verify(delegate, times(4)).sendMessage(messageCaptor.capture());
+    assertEquals("... 2 more lines suppressed\n", messageCaptor.getValue().getValue());
+  }
+
+  @Test
+  public void testCountsSuppressedLinesAcrossMessages() {
+    final ConsoleOutputGovernor unitUnderTest = this.createGovernor(1000, 0);
+
+    unitUnderTest.sendMessage(new SystemOutMessage("a\nb\n"));
+    unitUnderTest.sendMessage(new SystemOutMessage("c"));
+    unitUnderTest.finish(null);
+
+    verify(delegate).sendMessage(messageCaptor.capture());
+    assertEquals("... 3 more lines suppressed\n", messageCaptor.getValue().getValue());
+  }
+
+  @Test
+  public void testWritesFullOutputAndSendsUrlOnFinish() throws JavabuilderException {
+    when(contentManager.writeToOutputFile(anyString(), any(byte[].class), anyString()))
+        .thenReturn("https://example.com/console-output.txt");
+    final ConsoleOutputGovernor unitUnderTest = this.createGovernor(6, 1000);
+
+    unitUnderTest.sendMessage(new SystemOutMessage("first\n"));
+    unitUnderTest.sendMessage(new SystemOutMessage("second\n"));
+    when(clock.millis()).thenReturn(1000L);
+    unitUnderTest.sendMessage(new SystemOutMessage("third\n"));
+    unitUnderTest.sendMessage(new SystemOutMessage("fourth\n"));
+    unitUnderTest.finish(contentManager);
+
+    // Output is kept from the first suppressed line on, including output that was shown after it.
+    final ArgumentCaptor<byte[]> bytesCaptor = ArgumentCaptor.forClass(byte[].class);
+    verify(contentManager)
+        .writeToOutputFile(
+            eq(ConsoleOutputGovernor.FULL_OUTPUT_FILE_NAME), bytesCaptor.capture(), anyString());
+    assertEquals("second\nthird\nfourth\n", new String(bytesCaptor.getValue()));
+    verify(delegate, times(4)).sendMessage(messageCaptor.capture());
+    assertEquals(
+        "... 1 more line suppressed. Rest of output: https://example.com/console-output.txt\n",
+        messageCaptor.getValue().getValue());
+  }
+
+  @Test
+  public void testSendsSummaryIfFullOutputCannotBeWritten() throws JavabuilderException {
+    when(contentManager.writeToOutputFile(anyString(), any(byte[].class), anyString()))
+        .thenThrow(new UserInitiatedException(UserInitiatedExceptionKey.TOO_MANY_WRITES));
+    final ConsoleOutputGovernor unitUnderTest = this.createGovernor(1000, 0);
+
+    unitUnderTest.sendMessage(new SystemOutMessage("line\n"));
+    unitUnderTest.finish(contentManager);
+
+    verify(delegate).sendMessage(messageCaptor.capture());
+    assertEquals("... 1 more line suppressed\n", messageCaptor.getValue().getValue());
+  }
+
+  @Test
+  public void testDoesNotWriteFullOutputIfNothingWasSuppressed() throws JavabuilderException {
+    final ConsoleOutputGovernor unitUnderTest = this.createGovernor(1000, 1000);
+
+    unitUnderTest.sendMessage(new SystemOutMessage("line\n"));
+    unitUnderTest.finish(contentManager);
+
+    verify(contentManager, never()).writeToOutputFile(anyString(), any(byte[].class), anyString());
+    verify(delegate, never()).close();
+  }
+
+  @Test
+  public void testPassesOtherMessagesThrough() {
+    final ConsoleOutputGovernor unitUnderTest = this.createGovernor(0, 0);
+    final StatusMessage message = new StatusMessage(StatusMessageKey.EXITED);
+
+    unitUnderTest.sendMessage(message);
+
+    verify(delegate).sendMessage(message);
+  }
+
+  @Test
+  public void testLimitsBytesRatherThanWrites() {
+    final ConsoleOutputGovernor unitUnderTest = this.createGovernor(1000, 1000);
+
+    for (int i = 0; i < 500; i++) {
+      unitUnderTest.sendMessage(new SystemOutMessage("\n"));
+    }
+
+    verify(delegate, times(500)).sendMessage(any(ClientMessage.class));
+  }
+
+  @Test
+  public void testValidationSeesOutputPastBudget() {
+    final ValidationProtocol validationProtocol = mock(ValidationProtocol.class);
+    JavabuilderContext.getInstance().register(ValidationProtocol.class, validationProtocol);
+    final UserTestOutputAdapter userTestOutputAdapter =
+        new UserTestOutputAdapter(this.createGovernor(0, 0));
+    userTestOutputAdapter.setIsValidation(true);
+
+    try {
+      for (int i = 0; i < 3; i++) {
+        userTestOutputAdapter.sendMessage(new SystemOutMessage("line\n"));
+      }
+      userTestOutputAdapter.setIsValidation(false);
+      userTestOutputAdapter.sendMessage(new SystemOutMessage("suppressed\n"));
+    } finally {
+      JavabuilderContext.getInstance().destroyAndReset();
+    }
+
+    verify(validationProtocol, times(3)).trackEvent(messageCaptor.capture());
+    for (ClientMessage message : messageCaptor.getAllValues()) {
+      assertEquals("line\n", message.getValue());
+    }
+    verify(delegate, never()).sendMessage(any(ClientMessage.class));
+  }
+
+  private ConsoleOutputGovernor createGovernor(int maxBytesPerSecond, long maxTotalBytes) {
+    return new ConsoleOutputGovernor(delegate, clock, maxBytesPerSecond, maxTotalBytes);
+  }
+}
@@ -0,0 +1,91 @@
+package org.code.javabuilder;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import com.amazonaws.services.lambda.runtime.LambdaLogger;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+public class EmbeddedMetricClientTest {
+  private static final long TIMESTAMP = 1650000000000L;
+
+  private LambdaLogger logger;
+  private ArgumentCaptor<String> logCaptor;
+  private EmbeddedMetricClient unitUnderTest;
+
+  @BeforeEach
+  public void setUp() {
+    logger = mock(LambdaLogger.class);
+    logCaptor = ArgumentCaptor.forClass(String.class);
+    final Clock clock = Clock.fixed(Instant.ofEpochMilli(TIMESTAMP), ZoneOffset.UTC);
+    unitUnderTest =
+        new EmbeddedMetricClient(logger, "functionName", "levelId", "containerId", clock);
+  }
+
+  @Test
+  public void testPublishesMillisecondMetricWithSessionMetadata() {
+    unitUnderTest.publishColdBootTime(1234L);
+
+    final JSONObject logData = this.getLoggedLine();
+    assertEquals(1234.0, logData.getDouble("ColdBootTime"));
+    assertEquals("functionName", logData.getString("functionName"));
+    assertEquals("levelId", logData.getString("levelId"));
+    assertEquals("containerId", logData.getString("containerId"));
+
+    final JSONObject metadata = logData.getJSONObject("_aws");
+    assertEquals(TIMESTAMP, metadata.getLong("Timestamp"));
+    final JSONObject directive = metadata.getJSONArray("CloudWatchMetrics").getJSONObject(0);
+    assertEquals("Javabuilder", directive.getString("Namespace"));
+    final JSONObject metric = directive.getJSONArray("Metrics").getJSONObject(0);
+    assertEquals("ColdBootTime", metric.getString("Name"));
+    assertEquals("Milliseconds", metric.getString("Unit"));
+  }
+
+  @Test
+  public void testPublishesCountMetric() {
+    unitUnderTest.publishSevereError();
+
+    final JSONObject logData = this.getLoggedLine();
+    assertEquals(1.0, logData.getDouble("SevereError"));
+    final JSONObject metric =
+        logData
+            .getJSONObject("_aws")
+            .getJSONArray("CloudWatchMetrics")
+            .getJSONObject(0)
+            .getJSONArray("Metrics")
+            .getJSONObject(0);
+    assertEquals("Count", metric.getString("Unit"));
+  }
+
+  @Test
+  public void testDimensionsReferenceLoggedProperties() {
+    unitUnderTest.publishInitializationTime(10L);
+
+    final JSONObject logData = this.getLoggedLine();
+    final JSONArray dimensionSets =
+        logData
+            .getJSONObject("_aws")
+            .getJSONArray("CloudWatchMetrics")
+            .getJSONObject(0)
+            .getJSONArray("Dimensions");
+    for (int i = 0; i < dimensionSets.length(); i++) {
+      final JSONArray dimensionSet = dimensionSets.getJSONArray(i);
+      for (int j = 0; j < dimensionSet.length(); j++) {
+        assertTrue(logData.has(dimensionSet.getString(j)));
+      }
+    }
+    assertFalse(dimensionSets.toString().contains("containerId"));
+  }
+
+  private JSONObject getLoggedLine() {
+    verify(logger).log(logCaptor.capture());
+    return new JSONObject(logCaptor.getValue());
+  }
+}
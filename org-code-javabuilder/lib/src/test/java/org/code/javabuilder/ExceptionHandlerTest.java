@@ -48,6 +48,18 @@ class ExceptionHandlerTest {
     verify(systemExitHelper).exit(error.getErrorCode());
   }
 
+  @Test
+  public void testInputIdleTimeoutError() {
+    unitUnderTest.handle(new InputIdleTimeoutError());
+
+    // Should notify user with a status message without logging an error
+    verify(outputAdapter).sendMessage(messageCaptor.capture());
+    assertEquals(ClientMessageType.STATUS, messageCaptor.getValue().getType());
+    assertEquals(StatusMessageKey.INPUT_IDLE_TIMEOUT.name(), messageCaptor.getValue().getValue());
+    loggerUtilsMockedStatic.verify(() -> LoggerUtils.logSevereError(any(), any(), any()), never());
+    verify(systemExitHelper, never()).exit(anyInt());
+  }
+
   @Test
   public void testInternalServerException() {
     final InternalServerException internal =
@@ -0,0 +1,126 @@
+package org.code.javabuilder;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import com.amazonaws.SdkClientException;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.S3Object;
+import java.io.IOException;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.stubbing.Answer;
+
+class HedgedObjectFetcherTest {
+  private static final String BUCKET = "bucket";
+  private static final String KEY = "key";
+  private static final long HEDGE_DELAY_MS = 100;
+
+  private AmazonS3 s3ClientMock;
+  private HedgedObjectFetcher unitUnderTest;
+
+  @BeforeEach
+  public void setUp() {
+    s3ClientMock = mock(AmazonS3.class);
+    unitUnderTest = new HedgedObjectFetcher(s3ClientMock, HEDGE_DELAY_MS);
+  }
+
+  /** Stands in for S3, returning the given object after the given latency. */
+  private Answer<S3Object> respondAfter(long latencyMs, S3Object object) {
+    return invocation -> {
+      Thread.sleep(latencyMs);
+      return object;
+    };
+  }
+
+  @Test
+  public void testDoesNotHedgeFastRequests() {
+    final S3Object object = new S3Object();
+    when(s3ClientMock.getObject(BUCKET, KEY)).thenAnswer(respondAfter(0, object));
+
+    assertSame(object, unitUnderTest.getObject(BUCKET, KEY));
+    verify(s3ClientMock, after(HEDGE_DELAY_MS * 2).times(1)).getObject(BUCKET, KEY);
+  }
+
+  @Test
+  public void testUsesHedgedResponseIfFirstRequestIsSlow() throws IOException {
+    final S3Object slowObject = spy(new S3Object());
+    final S3Object fastObject = new S3Object();
+    when(s3ClientMock.getObject(BUCKET, KEY))
+        .thenAnswer(respondAfter(1000, slowObject))
+        .thenAnswer(respondAfter(0, fastObject));
+
+    final long start = System.currentTimeMillis();
+    assertSame(fastObject, unitUnderTest.getObject(BUCKET, KEY));
+    assertTrue(System.currentTimeMillis() - start < 1000);
+
+    // The slow response is closed once it arrives.
+    verify(slowObject, timeout(2000)).close();
+  }
+
+  @Test
+  public void testFailsOnlyIfAllRequestsFail() {
+    final S3Object object = new S3Object();
+    when(s3ClientMock.getObject(BUCKET, KEY))
+        .thenAnswer(
+            invocation -> {
+              Thread.sleep(HEDGE_DELAY_MS * 2);
+              throw new SdkClientException("first request failed");
+            })
+        .thenAnswer(respondAfter(HEDGE_DELAY_MS * 3, object));
+
+    assertSame(object, unitUnderTest.getObject(BUCKET, KEY));
+  }
+
+  @Test
+  public void testSucceedsIfAFailureRacesASuccess() throws IOException {
+    final HedgedObjectFetcher fetcher = new HedgedObjectFetcher(s3ClientMock, 1);
+    for (int i = 0; i < 100; i++) {
+      final S3Object object = spy(new S3Object());
+      // The first request only returns once the hedged request has been sent, and then both
+      // return at the same time, one with the object and one with an error.
+      final CyclicBarrier barrier = new CyclicBarrier(2);
+      // Stubbed with doAnswer, since when() would call the answers left over from the last pass.
+      doAnswer(
+              invocation -> {
+                barrier.await(5, TimeUnit.SECONDS);
+                return object;
+              })
+          .doAnswer(
+              invocation -> {
+                barrier.await(5, TimeUnit.SECONDS);
+                throw new SdkClientException("hedged request failed");
+              })
+          .when(s3ClientMock)
+          .getObject(BUCKET, KEY);
+
+      assertSame(object, fetcher.getObject(BUCKET, KEY));
+      verify(object, never()).close();
+    }
+  }
+
+  @Test
+  public void testThrowsIfRequestFails() {
+    final SdkClientException expected = new SdkClientException("failed");
+    when(s3ClientMock.getObject(BUCKET, KEY)).thenThrow(expected);
+
+    final Exception actual =
+        assertThrows(SdkClientException.class, () -> unitUnderTest.getObject(BUCKET, KEY));
+    assertSame(expected, actual);
+  }
+
+  @Test
+  public void testAdaptsHedgeDelayToRecentLatency() {
+    when(s3ClientMock.getObject(BUCKET, KEY)).thenAnswer(respondAfter(0, new S3Object()));
+    assertEquals(HEDGE_DELAY_MS, unitUnderTest.getHedgeDelayMillis());
+
+    for (int i = 0; i < 20; i++) {
+      unitUnderTest.getObject(BUCKET, KEY);
+    }
+
+    // Fast responses bring the delay down to the minimum.
+    assertTrue(unitUnderTest.getHedgeDelayMillis() < HEDGE_DELAY_MS);
+  }
+}
@@ -5,6 +5,7 @@ import static org.mockito.Mockito.*;
 
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import org.code.protocol.InputHandler;
 import org.code.protocol.InputMessageType;
 import org.junit.jupiter.api.BeforeEach;
@@ -78,6 +79,59 @@ public class InputRedirectionStreamTest {
     assertArrayEquals(expected, actual);
   }
 
+  @Test
+  public void arrayReadReturnsOnlyBufferedBytes() {
+    when(inputHandler.getNextMessageForType(InputMessageType.SYSTEM_IN))
+        .thenReturn("hi")
+        .thenReturn("there");
+    byte[] b = new byte[100];
+
+    int count = stream.read(b);
+
+    assertEquals(("hi" + System.lineSeparator()).length(), count);
+    assertEquals(0, stream.available());
+    verify(inputHandler, times(1)).getNextMessageForType(InputMessageType.SYSTEM_IN);
+  }
+
+  @Test
+  public void readsLargeInputInBulk() {
+    String input = "a".repeat(10000);
+    when(inputHandler.getNextMessageForType(InputMessageType.SYSTEM_IN)).thenReturn(input);
+    byte[] b = new byte[20000];
+
+    int count = stream.read(b);
+
+    byte[] expected = (input + System.lineSeparator()).getBytes(StandardCharsets.UTF_8);
+    assertEquals(expected.length, count);
+    assertArrayEquals(expected, Arrays.copyOf(b, count));
+  }
+
+  @Test
+  public void encodesInputAsUtf8() {
+    String input = "\u00e9\u4e2d\ud83d\ude00\ud83d";
+    when(inputHandler.getNextMessageForType(InputMessageType.SYSTEM_IN)).thenReturn(input);
+    byte[] b = new byte[20];
+
+    int count = stream.read(b);
+
+    byte[] expected = (input + System.lineSeparator()).getBytes(StandardCharsets.UTF_8);
+    assertArrayEquals(expected, Arrays.copyOf(b, count));
+  }
+
+  @Test
+  public void readReturnsUnsignedBytes() {
+    when(inputHandler.getNextMessageForType(InputMessageType.SYSTEM_IN)).thenReturn("\u00e9");
+    assertEquals(0xC3, stream.read());
+    assertEquals(0xA9, stream.read());
+  }
+
+  @Test
+  public void readsReturnEndOfStreamWhenInputEnds() {
+    when(inputHandler.getNextMessageForType(InputMessageType.SYSTEM_IN)).thenReturn(null);
+    assertEquals(-1, stream.read());
+    assertEquals(-1, stream.read(new byte[5]));
+  }
+
   @Test
   public void arrayThrowsIfArrayIsNull() {
     assertThrows(
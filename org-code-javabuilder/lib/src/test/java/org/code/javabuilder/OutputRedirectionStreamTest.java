@@ -55,4 +55,27 @@ public class OutputRedirectionStreamTest {
     verify(outputAdapter, times(1)).sendMessage(message.capture());
     assertEquals(message.getValue().getValue(), "ello");
   }
+
+  @Test
+  public void flushDecodesMultiByteCharacters() {
+    final String value = "caf\u00e9 \u20ac \ud83d\ude00";
+    stream.write(value.getBytes(StandardCharsets.UTF_8));
+    stream.flush();
+    ArgumentCaptor<SystemOutMessage> message = ArgumentCaptor.forClass(SystemOutMessage.class);
+    verify(outputAdapter, times(1)).sendMessage(message.capture());
+    assertEquals(value, message.getValue().getValue());
+  }
+
+  @Test
+  public void flushHoldsIncompleteCharacterUntilComplete() {
+    final byte[] arr = "a\u20ac".getBytes(StandardCharsets.UTF_8);
+    stream.write(arr, 0, 2);
+    stream.flush();
+    stream.write(arr, 2, arr.length - 2);
+    stream.flush();
+    ArgumentCaptor<SystemOutMessage> message = ArgumentCaptor.forClass(SystemOutMessage.class);
+    verify(outputAdapter, times(2)).sendMessage(message.capture());
+    assertEquals("a", message.getAllValues().get(0).getValue());
+    assertEquals("\u20ac", message.getAllValues().get(1).getValue());
+  }
 }
@@ -3,7 +3,11 @@ package org.code.javabuilder;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import org.code.protocol.InternalExceptionKey;
+import org.json.JSONException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
@@ -85,4 +89,38 @@ class ProjectDataTest {
     assertTrue(unitUnderTest.doesAssetUrlExist(newAssetFile));
     assertEquals(newAssetUrl, unitUnderTest.getAssetUrl(newAssetFile));
   }
+
+  @Test
+  public void testReadsProjectDataFromStream() throws IOException {
+    final String json =
+        "{\"sources\":{\"main.json\":\"{}\"},\"assetUrls\":{\""
+            + ASSET_FILE_1
+            + "\":\""
+            + ASSET_URL_1
+            + "\"}}";
+    unitUnderTest =
+        new ProjectData(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+
+    assertEquals(ASSET_URL_1, unitUnderTest.getAssetUrl(ASSET_FILE_1));
+  }
+
+  @Test
+  public void testIgnoresUnknownFields() throws UserInitiatedException, InternalServerException {
+    unitUnderTest =
+        new ProjectData(
+            "{ 'other': [1, { 'sources': {} }], 'sources': { 'main.json': 'main', 'other': {} },"
+                + " 'validation': 'validation' }",
+            projectFileParser);
+
+    unitUnderTest.loadFiles();
+    unitUnderTest.getValidation();
+
+    verify(projectFileParser).parseFileJson("main");
+    verify(projectFileParser).parseFileJson("validation");
+  }
+
+  @Test
+  public void testThrowsIfProjectDataIsInvalid() {
+    assertThrows(JSONException.class, () -> new ProjectData("{ 'sources': {", projectFileParser));
+  }
 }
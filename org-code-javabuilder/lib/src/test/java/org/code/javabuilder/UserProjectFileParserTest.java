@@ -2,6 +2,7 @@ package org.code.javabuilder;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.util.List;
 import org.junit.jupiter.api.BeforeEach;
@@ -53,4 +54,15 @@ public class UserProjectFileParserTest {
     assertEquals(textFiles.size(), 1);
     assertEquals(textFiles.get(0).getFileName(), "test.txt");
   }
+
+  @Test
+  public void ignoresUnknownFields() throws InternalServerException, UserInitiatedException {
+    String validJson =
+        "{\"animations\":{\"source\":{}},\"source\":{\"HelloWorld.java\":"
+            + "{\"visible\":true,\"tags\":[\"a\",{\"text\":\"no\"}],\"text\":\"my code\"}}}";
+
+    UserProjectFiles projectFiles = this.userProjectFileParser.parseFileJson(validJson);
+    assertEquals(projectFiles.getJavaFiles().size(), 1);
+    assertTrue(projectFiles.getJavaFiles().get(0).getFileContents().endsWith("my code"));
+  }
 }
@@ -2,12 +2,16 @@ package org.code.media;
 
 import java.awt.*;
 import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.io.ByteArrayInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.net.URL;
 import javax.imageio.ImageIO;
 import org.code.media.support.MediaRuntimeException;
 import org.code.media.support.MediaRuntimeExceptionKeys;
+import org.code.protocol.AssetCache;
+import org.code.protocol.CachedResources;
 import org.code.protocol.JavabuilderContext;
 
 public class Image {
@@ -18,6 +22,20 @@ public class Image {
   private BufferedImage bufferedImage;
   private static final int MAX_WIDTH = 400;
   private static final int MAX_HEIGHT = 400;
+  // Decodes and scales image assets, so that the cache holds them ready to use.
+  private static final AssetCache.Decoder<BufferedImage> IMAGE_DECODER =
+      new AssetCache.Decoder<>() {
+        @Override
+        public BufferedImage decode(byte[] bytes) throws IOException {
+          return Image.decodeImage(bytes);
+        }
+
+        @Override
+        public long getSizeInBytes(BufferedImage image) {
+          // Close enough for the 4-byte pixel formats images are decoded into.
+          return (long) image.getWidth() * image.getHeight() * 4;
+        }
+      };
 
   /**
    * Creates a new image object, using the pixel information from the file uploaded to the asset
@@ -178,27 +196,24 @@ public class Image {
    */
   public static BufferedImage getImageAssetFromFile(String filename) throws FileNotFoundException {
     try {
-      return Image.getImageFromUrl(
+      final URL url =
           new URL(
               JavabuilderContext.getInstance()
                   .getGlobalProtocol()
                   .getContentManager()
-                  .getAssetUrl(filename)));
+                  .getAssetUrl(filename));
+      // Cached images are shared, so each caller gets its own copy.
+      return Image.copyImage(CachedResources.getInstance().getAssetCache().get(url, IMAGE_DECODER));
     } catch (IOException e) {
       throw new FileNotFoundException(filename);
     }
   }
 
-  private static BufferedImage getImageFromUrl(URL url) throws FileNotFoundException {
-    BufferedImage originalImage;
-    try {
-      originalImage = ImageIO.read(url);
-      if (originalImage == null) {
-        // this can happen if the URL is not associated with an image
-        throw new MediaRuntimeException(MediaRuntimeExceptionKeys.IMAGE_LOAD_ERROR);
-      }
-    } catch (IOException e) {
-      throw new FileNotFoundException(url.toString());
+  private static BufferedImage decodeImage(byte[] bytes) throws IOException {
+    final BufferedImage originalImage = ImageIO.read(new ByteArrayInputStream(bytes));
+    if (originalImage == null) {
+      // this can happen if the URL is not associated with an image
+      throw new MediaRuntimeException(MediaRuntimeExceptionKeys.IMAGE_LOAD_ERROR);
     }
 
     // Resize the image to its max size while maintaining the aspect ratio.
@@ -224,6 +239,12 @@ public class Image {
     return image;
   }
 
+  private static BufferedImage copyImage(BufferedImage image) {
+    final ColorModel colorModel = image.getColorModel();
+    return new BufferedImage(
+        colorModel, image.copyData(null), colorModel.isAlphaPremultiplied(), null);
+  }
+
   /** Create a 2d array of pixels from this.bufferedImage */
   private void createPixelArray() {
     this.pixels = new Pixel[this.width][this.height];
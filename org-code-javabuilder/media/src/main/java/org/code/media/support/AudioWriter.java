@@ -48,7 +48,9 @@ public class AudioWriter {
 
   public void writeAudioFromAssetFile(String filename, double lengthSeconds)
       throws SoundException, FileNotFoundException {
-    this.writeAudioSamples(AudioUtils.readSamplesFromAssetFile(filename), lengthSeconds);
+    // Only decode the part of the file that is played.
+    this.writeAudioSamples(
+        AudioUtils.readSamplesFromAssetFile(filename, AudioUtils.getSampleCount(lengthSeconds)));
   }
 
   public void writeAudioFromLocalFile(String filepath)
@@ -58,7 +60,9 @@ public class AudioWriter {
 
   public void writeAudioFromLocalFile(String filepath, double lengthSeconds)
       throws SoundException, FileNotFoundException {
-    this.writeAudioSamples(AudioUtils.readSamplesFromLocalFile(filepath), lengthSeconds);
+    // Only decode the part of the file that is played.
+    this.writeAudioSamples(
+        AudioUtils.readSamplesFromLocalFile(filepath, AudioUtils.getSampleCount(lengthSeconds)));
   }
 
   public void addDelay(double delaySeconds) {
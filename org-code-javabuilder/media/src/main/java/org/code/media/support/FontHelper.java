@@ -1,19 +1,35 @@
 package org.code.media.support;
 
-import java.awt.*;
+import java.util.HashMap;
 import java.util.Map;
 import org.code.media.FontStyle;
 import org.code.protocol.CachedResources;
 
 public class FontHelper {
-  private final Map<String, java.awt.Font> fontMap;
+  private final CachedResources cachedResources;
+  // Fonts at the sizes they have been drawn at, keyed by font file name and size.
+  private final Map<String, java.awt.Font> sizedFonts;
 
   public FontHelper() {
-    this.fontMap = CachedResources.getInstance().getFontMap();
+    this.cachedResources = CachedResources.getInstance();
+    this.sizedFonts = new HashMap<>();
   }
 
+  /** @return the font with size 1. Each font face is loaded the first time it is used. */
   public java.awt.Font getFont(org.code.media.Font font, FontStyle fontStyle) {
-    return this.fontMap.get(getFontFilename(font, fontStyle));
+    return this.cachedResources.getFont(getFontFilename(font, fontStyle));
+  }
+
+  /** @return the font at the given size, reusing the same instance for repeated sizes. */
+  public java.awt.Font getFont(org.code.media.Font font, FontStyle fontStyle, int size) {
+    final String filename = getFontFilename(font, fontStyle);
+    final String key = filename + "@" + size;
+    java.awt.Font sizedFont = this.sizedFonts.get(key);
+    if (sizedFont == null) {
+      sizedFont = this.cachedResources.getFont(filename).deriveFont((float) size);
+      this.sizedFonts.put(key, sizedFont);
+    }
+    return sizedFont;
   }
 
   private String getFontFilename(org.code.media.Font font, FontStyle fontStyle) {
@@ -2,10 +2,12 @@ package org.code.media.util;
 
 import java.io.*;
 import java.net.URL;
+import java.nio.ShortBuffer;
 import java.util.Arrays;
 import javax.sound.sampled.*;
 import org.code.media.SoundException;
 import org.code.media.support.SoundExceptionKeys;
+import org.code.protocol.CachedResources;
 import org.code.protocol.InternalExceptionKey;
 import org.code.protocol.InternalServerRuntimeException;
 import org.code.protocol.JavabuilderContext;
@@ -25,6 +27,8 @@ public final class AudioUtils {
   private static final int DEFAULT_OUTPUT_CHANNELS = MONO_CHANNELS;
   private static final boolean IS_SIGNED = true;
   private static final boolean IS_NOT_BIG_ENDIAN = false;
+  // How many frames to read from an audio stream at a time
+  private static final int READ_BUFFER_FRAMES = 4096;
 
   private static final AudioFormat DEFAULT_AUDIO_FORMAT =
       new AudioFormat(
@@ -52,34 +56,48 @@ public final class AudioUtils {
     if (bytes == null) {
       throw new SoundException(SoundExceptionKeys.MISSING_AUDIO_DATA);
     }
-    final int numBytes = bytes.length;
-    final double[] samples;
-    if (numChannels == MONO_CHANNELS) {
-      // Converts two bytes to single 16-bit value divided by max 16-bit value to obtain normalized
-      // value of sample.
-      samples = new double[numBytes / 2];
-      for (int i = 0; i < numBytes / 2; i++) {
-        samples[i] =
-            ((short) (((bytes[2 * i + 1] & 0xFF) << 8) | (bytes[2 * i] & 0xFF))) / MAX_16_BIT_VALUE;
-      }
-    } else if (numChannels == STEREO_CHANNELS) {
-      // Converts two bytes for each channel (left and right) into 16-bit values divided by max
-      // 16-bit value,
-      // and then averages two channel values for final normalized decimal value of sample.
-      samples = new double[numBytes / 4];
-      for (int i = 0; i < numBytes / 4; i++) {
-        final double left =
-            ((short) (((bytes[4 * i + 1] & 0xFF) << 8) | (bytes[4 * i + 0] & 0xFF)))
-                / MAX_16_BIT_VALUE;
-        final double right =
-            ((short) (((bytes[4 * i + 3] & 0xFF) << 8) | (bytes[4 * i + 2] & 0xFF)))
-                / MAX_16_BIT_VALUE;
-        samples[i] = (left + right) / 2.0;
-      }
-    } else {
+    if (numChannels != MONO_CHANNELS && numChannels != STEREO_CHANNELS) {
       throw new SoundException(SoundExceptionKeys.INVALID_AUDIO_FILE_FORMAT);
     }
+    final int frameSize = 2 * numChannels;
+    final double[] samples = new double[bytes.length / frameSize];
+    for (int i = 0; i < samples.length; i++) {
+      samples[i] = AudioUtils.convertFrameToSample(bytes, i * frameSize, numChannels);
+    }
+    return samples;
+  }
+
+  /**
+   * Converts one frame of 16-bit little-endian audio, starting at the given offset, to a sample.
+   * Each channel's 16-bit value is divided by the max 16-bit value to obtain its normalized value,
+   * and for stereo sound the left and right channel values are averaged.
+   */
+  private static double convertFrameToSample(byte[] bytes, int offset, int numChannels) {
+    final double left =
+        ((short) (((bytes[offset + 1] & 0xFF) << 8) | (bytes[offset] & 0xFF))) / MAX_16_BIT_VALUE;
+    if (numChannels == MONO_CHANNELS) {
+      return left;
+    }
+    final double right =
+        ((short) (((bytes[offset + 3] & 0xFF) << 8) | (bytes[offset + 2] & 0xFF)))
+            / MAX_16_BIT_VALUE;
+    return (left + right) / 2.0;
+  }
 
+  /**
+   * Converts 16-bit mono audio samples to raw audio samples as doubles, normalized in the same way
+   * as {@link #convertByteArrayToDoubleArray(byte[], int)}. Only the remaining samples in the
+   * buffer are converted, and its position is not changed.
+   *
+   * @param pcm 16-bit mono samples in the default sample rate
+   * @return converted array of samples as doubles
+   */
+  public static double[] convertShortBufferToDoubleArray(ShortBuffer pcm) {
+    final double[] samples = new double[pcm.remaining()];
+    final int start = pcm.position();
+    for (int i = 0; i < samples.length; i++) {
+      samples[i] = pcm.get(start + i) / MAX_16_BIT_VALUE;
+    }
     return samples;
   }
 
@@ -132,7 +150,7 @@ public final class AudioUtils {
    * @return truncated samples
    */
   public static double[] truncateSamples(double[] samples, double lengthSeconds) {
-    final int newLength = (int) (lengthSeconds * (double) DEFAULT_SAMPLE_RATE);
+    final int newLength = AudioUtils.getSampleCount(lengthSeconds);
     if (newLength > samples.length) {
       return samples;
     }
@@ -178,6 +196,20 @@ public final class AudioUtils {
    * @throws FileNotFoundException
    */
   public static double[] readSamplesFromAssetFile(String filename) throws FileNotFoundException {
+    return AudioUtils.readSamplesFromAssetFile(filename, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Loads and reads at most the given number of audio samples from the given asset file. The rest
+   * of the file is not decoded.
+   *
+   * @param filename Name of the asset file
+   * @param maxSamples the most samples to read
+   * @return samples
+   * @throws FileNotFoundException
+   */
+  public static double[] readSamplesFromAssetFile(String filename, int maxSamples)
+      throws FileNotFoundException {
     try {
       final URL audioFileUrl =
           new URL(
@@ -185,10 +217,10 @@ public final class AudioUtils {
                   .getGlobalProtocol()
                   .getContentManager()
                   .getAssetUrl(filename));
-      final AudioInputStream audioInputStream =
-          AudioUtils.convertStreamToDefaultAudioFormat(
-              AudioSystem.getAudioInputStream(audioFileUrl));
-      return AudioUtils.readSamplesFromInputStream(audioInputStream);
+      return AudioUtils.readSamplesFromInputStream(
+          AudioSystem.getAudioInputStream(
+              CachedResources.getInstance().getAssetCache().openStream(audioFileUrl)),
+          maxSamples);
     } catch (IOException e) {
       throw new FileNotFoundException(filename);
     } catch (UnsupportedAudioFileException e) {
@@ -205,10 +237,23 @@ public final class AudioUtils {
    * @throws FileNotFoundException
    */
   public static double[] readSamplesFromLocalFile(String filepath) throws FileNotFoundException {
+    return AudioUtils.readSamplesFromLocalFile(filepath, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Loads and reads at most the given number of audio samples from the file referenced by the given
+   * local filepath. The rest of the file is not decoded. Meant for internal use.
+   *
+   * @param filepath local path
+   * @param maxSamples the most samples to read
+   * @return samples
+   * @throws FileNotFoundException
+   */
+  public static double[] readSamplesFromLocalFile(String filepath, int maxSamples)
+      throws FileNotFoundException {
     try {
       return AudioUtils.readSamplesFromInputStream(
-          AudioUtils.convertStreamToDefaultAudioFormat(
-              AudioSystem.getAudioInputStream(new File(filepath))));
+          AudioSystem.getAudioInputStream(new File(filepath)), maxSamples);
     } catch (IOException e) {
       throw new FileNotFoundException(filepath);
     } catch (UnsupportedAudioFileException e) {
@@ -216,17 +261,80 @@ public final class AudioUtils {
     }
   }
 
-  private static double[] readSamplesFromInputStream(AudioInputStream audioInputStream) {
-    final byte[] bytes;
+  /** @return the number of samples in the given length of audio at the default sample rate */
+  public static int getSampleCount(double lengthSeconds) {
+    return (int) (lengthSeconds * (double) DEFAULT_SAMPLE_RATE);
+  }
+
+  /**
+   * Reads up to maxSamples samples from the given stream, converting each frame to a sample as it
+   * is read, so the stream is never held in memory as bytes. Streams in 16-bit little-endian PCM at
+   * the default sample rate are read directly, with stereo channels averaged; other formats are
+   * converted by Java Sound first. The stream is closed once the samples have been read.
+   */
+  private static double[] readSamplesFromInputStream(
+      AudioInputStream sourceStream, int maxSamples) {
+    final AudioInputStream audioInputStream =
+        AudioUtils.isDirectlyReadable(sourceStream.getFormat())
+            ? sourceStream
+            : AudioUtils.convertStreamToDefaultAudioFormat(sourceStream);
+    final int numChannels = audioInputStream.getFormat().getChannels();
+    if (numChannels != MONO_CHANNELS && numChannels != STEREO_CHANNELS) {
+      throw new SoundException(SoundExceptionKeys.INVALID_AUDIO_FILE_FORMAT);
+    }
+    final int frameSize = 2 * numChannels;
+
+    final int sampleLimit = Math.max(0, maxSamples);
+    // Size the result from the length in the file header when there is one, so it is not resized.
+    final long frameLength = audioInputStream.getFrameLength();
+    final long expectedSamples =
+        frameLength == AudioSystem.NOT_SPECIFIED ? DEFAULT_SAMPLE_RATE : frameLength;
+    double[] samples = new double[(int) Math.min(sampleLimit, expectedSamples)];
+    final byte[] buffer = new byte[READ_BUFFER_FRAMES * frameSize];
+    int sampleCount = 0;
+    int bufferedBytes = 0;
     try {
-      bytes = audioInputStream.readAllBytes();
+      while (sampleCount < sampleLimit) {
+        final int bytesRead =
+            audioInputStream.read(buffer, bufferedBytes, buffer.length - bufferedBytes);
+        if (bytesRead < 0) {
+          break;
+        }
+        bufferedBytes += bytesRead;
+
+        final int frames = Math.min(bufferedBytes / frameSize, sampleLimit - sampleCount);
+        if (sampleCount + frames > samples.length) {
+          samples =
+              Arrays.copyOf(
+                  samples,
+                  (int) Math.min(sampleLimit, Math.max(sampleCount + frames, 2L * samples.length)));
+        }
+        for (int i = 0; i < frames; i++) {
+          samples[sampleCount + i] =
+              AudioUtils.convertFrameToSample(buffer, i * frameSize, numChannels);
+        }
+        sampleCount += frames;
+
+        // Keep any partial frame for the next read.
+        final int usedBytes = frames * frameSize;
+        System.arraycopy(buffer, usedBytes, buffer, 0, bufferedBytes - usedBytes);
+        bufferedBytes -= usedBytes;
+      }
       audioInputStream.close();
     } catch (IOException e) {
       throw new InternalServerRuntimeException(InternalExceptionKey.INTERNAL_EXCEPTION, e);
     }
 
-    return AudioUtils.convertByteArrayToDoubleArray(
-        bytes, audioInputStream.getFormat().getChannels());
+    return sampleCount == samples.length ? samples : Arrays.copyOf(samples, sampleCount);
+  }
+
+  private static boolean isDirectlyReadable(AudioFormat format) {
+    return AudioFormat.Encoding.PCM_SIGNED.equals(format.getEncoding())
+        && format.getSampleSizeInBits() == DEFAULT_BITS_PER_SAMPLE
+        && !format.isBigEndian()
+        && format.getSampleRate() == DEFAULT_SAMPLE_RATE
+        && (format.getChannels() == MONO_CHANNELS || format.getChannels() == STEREO_CHANNELS)
+        && format.getFrameSize() == 2 * format.getChannels();
   }
 
   private static AudioInputStream convertStreamToDefaultAudioFormat(AudioInputStream stream)
@@ -6,6 +6,7 @@ import static org.mockito.Mockito.*;
 import java.awt.image.BufferedImage;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import org.code.protocol.CachedResources;
 import org.code.protocol.ContentManager;
 import org.code.protocol.GlobalProtocolTestFactory;
 import org.junit.jupiter.api.BeforeEach;
@@ -18,6 +19,7 @@ public class ImageTest {
   public void setUp() {
     contentManager = mock(ContentManager.class);
     GlobalProtocolTestFactory.builder().withContentManager(contentManager).create();
+    CachedResources.create();
   }
 
   @Test
@@ -105,6 +107,24 @@ public class ImageTest {
     assertEquals(100, image.getWidth());
   }
 
+  @Test
+  public void getImageReturnsSeparateCopiesOfCachedImage() throws FileNotFoundException {
+    String imageFileName = "600w300h.png";
+    String testFileURL =
+        Thread.currentThread().getContextClassLoader().getResource(imageFileName).toString();
+    when(contentManager.getAssetUrl(imageFileName)).thenReturn(testFileURL);
+
+    BufferedImage first = Image.getImageAssetFromFile(imageFileName);
+    int originalColor = first.getRGB(0, 0);
+    first.setRGB(0, 0, ~originalColor);
+
+    BufferedImage second = Image.getImageAssetFromFile(imageFileName);
+    assertNotSame(first, second);
+    assertEquals(originalColor, second.getRGB(0, 0));
+    assertEquals(200, second.getHeight());
+    assertEquals(400, second.getWidth());
+  }
+
   @Test
   public void getImageThrowsIOExceptionIfFilenameInvalid() {
     String imageFileName = "notHere.png";
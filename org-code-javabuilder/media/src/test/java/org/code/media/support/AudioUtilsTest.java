@@ -3,9 +3,15 @@ package org.code.media.support;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
+import java.io.ByteArrayInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.net.URL;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Arrays;
 import javax.sound.sampled.AudioFormat;
 import javax.sound.sampled.AudioInputStream;
@@ -17,12 +23,11 @@ import org.code.protocol.*;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.MockedStatic;
 
 class AudioUtilsTest {
 
-  private static final String TEST_FILE_URL =
-      "https://localhost-studio.code.org/assets/beatbox.wav";
   private static final String TEST_FILE_NAME = "beatbox.wav";
   private static final int TEST_CHANNELS = 1;
 
@@ -39,12 +44,17 @@ class AudioUtilsTest {
   private AudioInputStream audioInputStream;
   private AudioFormat audioFormat;
 
+  @TempDir Path tempDir;
+
   @BeforeEach
-  public void setUp() {
+  public void setUp() throws IOException {
     final ContentManager contentManager = mock(ContentManager.class);
     GlobalProtocolTestFactory.builder().withContentManager(contentManager).create();
+    CachedResources.create();
 
-    when(contentManager.getAssetUrl(TEST_FILE_NAME)).thenReturn(TEST_FILE_URL);
+    // Asset files are read through the asset cache, so the file needs to exist.
+    final Path testFile = Files.write(tempDir.resolve(TEST_FILE_NAME), BYTE_ARRAY_MONO);
+    when(contentManager.getAssetUrl(TEST_FILE_NAME)).thenReturn(testFile.toUri().toString());
 
     audioSystem = mockStatic(AudioSystem.class);
     audioInputStream = mock(AudioInputStream.class);
@@ -62,7 +72,7 @@ class AudioUtilsTest {
   @Test
   public void testReadThrowsIOExceptionIfFilenameInvalid() {
     audioSystem
-        .when(() -> AudioSystem.getAudioInputStream(any(URL.class)))
+        .when(() -> AudioSystem.getAudioInputStream(any(InputStream.class)))
         .thenThrow(IOException.class);
     Exception exception =
         assertThrows(
@@ -76,7 +86,7 @@ class AudioUtilsTest {
   @Test
   public void testReadThrowsSoundExceptionIfFileFormatInvalid() {
     audioSystem
-        .when(() -> AudioSystem.getAudioInputStream(any(URL.class)))
+        .when(() -> AudioSystem.getAudioInputStream(any(InputStream.class)))
         .thenThrow(UnsupportedAudioFileException.class);
     Exception exception =
         assertThrows(
@@ -92,7 +102,7 @@ class AudioUtilsTest {
     final SoundException soundException =
         new SoundException(SoundExceptionKeys.INVALID_AUDIO_FILE_FORMAT);
     audioSystem
-        .when(() -> AudioSystem.getAudioInputStream(any(URL.class)))
+        .when(() -> AudioSystem.getAudioInputStream(any(InputStream.class)))
         .thenReturn(audioInputStream);
     audioSystem
         .when(() -> AudioSystem.isConversionSupported(any(AudioFormat.class), eq(audioFormat)))
@@ -109,7 +119,7 @@ class AudioUtilsTest {
   @Test
   public void testReadThrowsInternalExceptionIfErrorInReadingBytes() throws IOException {
     audioSystem
-        .when(() -> AudioSystem.getAudioInputStream(any(URL.class)))
+        .when(() -> AudioSystem.getAudioInputStream(any(InputStream.class)))
         .thenReturn(audioInputStream);
     audioSystem
         .when(() -> AudioSystem.isConversionSupported(any(AudioFormat.class), eq(audioFormat)))
@@ -118,7 +128,8 @@ class AudioUtilsTest {
         .when(() -> AudioSystem.getAudioInputStream(any(AudioFormat.class), eq(audioInputStream)))
         .thenReturn(audioInputStream);
 
-    when(audioInputStream.readAllBytes()).thenThrow(IOException.class);
+    when(audioInputStream.read(any(byte[].class), anyInt(), anyInt()))
+        .thenThrow(IOException.class);
 
     Exception exception =
         assertThrows(
@@ -128,13 +139,13 @@ class AudioUtilsTest {
             });
 
     assertEquals(InternalExceptionKey.INTERNAL_EXCEPTION.toString(), exception.getMessage());
-    verify(audioInputStream).readAllBytes();
+    verify(audioInputStream).read(any(byte[].class), anyInt(), anyInt());
   }
 
   @Test
   public void testReadThrowsInternalExceptionIfErrorInClosingStream() throws IOException {
     audioSystem
-        .when(() -> AudioSystem.getAudioInputStream(any(URL.class)))
+        .when(() -> AudioSystem.getAudioInputStream(any(InputStream.class)))
         .thenReturn(audioInputStream);
     audioSystem
         .when(() -> AudioSystem.isConversionSupported(any(AudioFormat.class), eq(audioFormat)))
@@ -143,7 +154,7 @@ class AudioUtilsTest {
         .when(() -> AudioSystem.getAudioInputStream(any(AudioFormat.class), eq(audioInputStream)))
         .thenReturn(audioInputStream);
 
-    when(audioInputStream.readAllBytes()).thenReturn(BYTE_ARRAY_MONO);
+    stubStreamContents(BYTE_ARRAY_MONO);
     doThrow(IOException.class).when(audioInputStream).close();
 
     Exception exception =
@@ -154,14 +165,13 @@ class AudioUtilsTest {
             });
 
     assertEquals(InternalExceptionKey.INTERNAL_EXCEPTION.toString(), exception.getMessage());
-    verify(audioInputStream).readAllBytes();
     verify(audioInputStream).close();
   }
 
   @Test
   public void testReadReturnsConvertedArrayIfFileIsValid() throws IOException {
     audioSystem
-        .when(() -> AudioSystem.getAudioInputStream(any(URL.class)))
+        .when(() -> AudioSystem.getAudioInputStream(any(InputStream.class)))
         .thenReturn(audioInputStream);
     audioSystem
         .when(() -> AudioSystem.isConversionSupported(any(AudioFormat.class), eq(audioFormat)))
@@ -170,12 +180,55 @@ class AudioUtilsTest {
         .when(() -> AudioSystem.getAudioInputStream(any(AudioFormat.class), eq(audioInputStream)))
         .thenReturn(audioInputStream);
 
-    when(audioInputStream.readAllBytes()).thenReturn(BYTE_ARRAY_MONO);
+    stubStreamContents(BYTE_ARRAY_MONO);
 
     final double[] converted = AudioUtils.readSamplesFromAssetFile(TEST_FILE_NAME);
     assertSampleArraysMatch(DOUBLE_ARRAY, converted);
+    assertEquals(DOUBLE_ARRAY.length, converted.length);
 
     verify(audioFormat).getChannels();
+    verify(audioInputStream).close();
+  }
+
+  @Test
+  public void testReadStopsAtMaxSamples() throws IOException {
+    audioSystem
+        .when(() -> AudioSystem.getAudioInputStream(any(InputStream.class)))
+        .thenReturn(createDefaultFormatStream(BYTE_ARRAY_MONO, 1));
+
+    final double[] converted = AudioUtils.readSamplesFromAssetFile(TEST_FILE_NAME, 2);
+    assertEquals(2, converted.length);
+    assertSampleArraysMatch(Arrays.copyOf(DOUBLE_ARRAY, 2), converted);
+  }
+
+  @Test
+  public void testReadAveragesStereoChannelsWithoutConversion() throws IOException {
+    final byte[] stereo = {
+      (byte) 0x00, (byte) 0x40, (byte) 0x00, (byte) 0x40, // 0.5, 0.5
+      (byte) 0x00, (byte) 0x40, (byte) 0x00, (byte) 0xC0 // 0.5, -0.5
+    };
+    audioSystem
+        .when(() -> AudioSystem.getAudioInputStream(any(InputStream.class)))
+        .thenReturn(createDefaultFormatStream(stereo, 2));
+
+    final double[] converted = AudioUtils.readSamplesFromAssetFile(TEST_FILE_NAME);
+    assertArrayEquals(new double[] {0.5, 0.0}, converted);
+    audioSystem.verify(
+        never(),
+        () -> AudioSystem.getAudioInputStream(any(AudioFormat.class), any(AudioInputStream.class)));
+  }
+
+  @Test
+  public void testReadThrowsIOExceptionIfFileMissing() throws IOException {
+    Files.delete(tempDir.resolve(TEST_FILE_NAME));
+    Exception exception =
+        assertThrows(
+            FileNotFoundException.class,
+            () -> {
+              AudioUtils.readSamplesFromAssetFile(TEST_FILE_NAME);
+            });
+    assertTrue(exception.getMessage().contains(TEST_FILE_NAME));
+    audioSystem.verifyNoInteractions();
   }
 
   @Test
@@ -208,6 +261,17 @@ class AudioUtilsTest {
     assertSampleArraysMatch(DOUBLE_ARRAY, converted);
   }
 
+  @Test
+  public void testConvertShortBufferConvertsRemainingSamples() {
+    final ShortBuffer pcm =
+        ByteBuffer.wrap(BYTE_ARRAY_MONO).order(ByteOrder.LITTLE_ENDIAN).asShortBuffer();
+    pcm.position(1);
+
+    double[] converted = AudioUtils.convertShortBufferToDoubleArray(pcm);
+    assertSampleArraysMatch(Arrays.copyOfRange(DOUBLE_ARRAY, 1, DOUBLE_ARRAY.length), converted);
+    assertEquals(1, pcm.position());
+  }
+
   @Test
   public void testConvertDoubleArrayThrowsIfArrayIsNull() {
     Exception exception =
@@ -259,6 +323,26 @@ class AudioUtilsTest {
     assertSampleArraysMatch(expected, AudioUtils.blendSamples(samples, samples, 2));
   }
 
+  // Makes the mocked stream return the given bytes as its contents
+  private void stubStreamContents(byte[] bytes) throws IOException {
+    final ByteArrayInputStream contents = new ByteArrayInputStream(bytes);
+    when(audioInputStream.read(any(byte[].class), anyInt(), anyInt()))
+        .thenAnswer(
+            invocation ->
+                contents.read(
+                    invocation.getArgument(0),
+                    invocation.getArgument(1),
+                    invocation.getArgument(2)));
+  }
+
+  // Creates a stream of 16-bit little-endian samples at the default sample rate
+  private static AudioInputStream createDefaultFormatStream(byte[] bytes, int channels) {
+    final AudioFormat format =
+        new AudioFormat(AudioUtils.getDefaultSampleRate(), 16, channels, true, false);
+    return new AudioInputStream(
+        new ByteArrayInputStream(bytes), format, bytes.length / 2 / channels);
+  }
+
   // Verify values are correct when rounded
   private void assertSampleArraysMatch(double[] expected, double[] actual) {
     for (int i = 0; i < expected.length; i++) {
@@ -23,4 +23,16 @@ public class FontHelperTest {
       }
     }
   }
+
+  @Test
+  void reusesFontsAtTheSameSize() {
+    FontHelper fontHelper = new FontHelper();
+    java.awt.Font sized = fontHelper.getFont(Font.SERIF, FontStyle.ITALIC, 24);
+
+    assertEquals(24f, sized.getSize2D());
+    assertEquals(
+        fontHelper.getFont(Font.SERIF, FontStyle.ITALIC).getFontName(), sized.getFontName());
+    assertSame(sized, fontHelper.getFont(Font.SERIF, FontStyle.ITALIC, 24));
+    assertEquals(12f, fontHelper.getFont(Font.SERIF, FontStyle.ITALIC, 12).getSize2D());
+  }
 }
@@ -2,6 +2,7 @@ package org.code.protocol;
 
 public class AllowedFileNames {
   public static final String THEATER_IMAGE_NAME = "theaterImage.gif";
+  public static final String THEATER_SCENE_NAME = "theaterScene.json";
   public static final String THEATER_AUDIO_NAME = "theaterAudio.wav";
   public static final String PROMPTER_FILE_NAME_PREFIX = "prompterImage-";
 }
@@ -0,0 +1,328 @@
+package org.code.protocol;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.time.Clock;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * A cache of asset files (such as images and sounds) keyed by URL, shared by all sessions in a
+ * container. Without it, every use of an asset downloads and decodes it again, even within a single
+ * program.
+ *
+ * <p>Each entry holds the raw bytes of the file and, optionally, a decoded form of it (for example,
+ * a scaled image), so that repeated uses skip decoding as well. The cache is bounded by the total
+ * size of its entries, and evicts the least recently used entries first. Entries are revalidated
+ * with the server after a short time, using a conditional request (ETag or Last-Modified) when the
+ * server provided one, so assets that change are picked up without downloading unchanged ones
+ * again. If revalidation fails, the cached copy is still used, unless the server says the asset no
+ * longer exists (404 or 410). Pinned URLs, such as local stub assets, are never evicted or
+ * revalidated.
+ *
+ * <p>Assets can be prefetched in the background before they are needed. Concurrent requests for the
+ * same URL share a single download, so a program that uses an asset while it is being prefetched
+ * waits for that download rather than starting another.
+ *
+ * <p>Entries are kept in memory rather than on local disk, since the temp directory is cleared
+ * before every session and is writable by user code.
+ */
+public class AssetCache {
+  /** Decodes the raw bytes of an asset into the form it is used in. */
+  public interface Decoder<T> {
+    T decode(byte[] bytes) throws IOException;
+
+    /** @return roughly how much memory the decoded value uses, in bytes. */
+    long getSizeInBytes(T value);
+  }
+
+  private static final long DEFAULT_MAX_BYTES = 48L * 1024 * 1024;
+  private static final long DEFAULT_REVALIDATE_AFTER_MS = 60 * 1000;
+  // Larger assets are not cached, so that one asset cannot push out everything else.
+  private static final int MAX_ENTRY_SHARE = 4;
+  private static final int PREFETCH_THREADS = 4;
+
+  private final long maxBytes;
+  private final long revalidateAfterMs;
+  private final Clock clock;
+  // In least recently used order. All state below is guarded by this.
+  private final LinkedHashMap<String, Entry> entries;
+  private final Set<String> pinnedUrls;
+  // Downloads that have started and not yet finished, by URL.
+  private final Map<String, CompletableFuture<Entry>> pendingFetches;
+  private long totalBytes;
+  private ExecutorService prefetchExecutor;
+
+  private static class Entry {
+    private final byte[] bytes;
+    private final String etag;
+    private final String lastModified;
+    private long validatedAt;
+    private Decoder<?> decoder;
+    private Object decoded;
+    private long decodedSize;
+
+    private Entry(byte[] bytes, String etag, String lastModified, long validatedAt) {
+      this.bytes = bytes;
+      this.etag = etag;
+      this.lastModified = lastModified;
+      this.validatedAt = validatedAt;
+    }
+
+    private long getSize() {
+      return this.bytes.length + this.decodedSize;
+    }
+  }
+
+  public AssetCache() {
+    this(DEFAULT_MAX_BYTES, DEFAULT_REVALIDATE_AFTER_MS, Clock.systemUTC());
+  }
+
+  AssetCache(long maxBytes, long revalidateAfterMs, Clock clock) {
+    this.maxBytes = maxBytes;
+    this.revalidateAfterMs = revalidateAfterMs;
+    this.clock = clock;
+    this.entries = new LinkedHashMap<>(16, 0.75f, true);
+    this.pinnedUrls = new HashSet<>();
+    this.pendingFetches = new HashMap<>();
+    this.totalBytes = 0;
+  }
+
+  /** Keeps the asset at the given URL in the cache permanently once it has been loaded. */
+  public synchronized void pin(String url) {
+    this.pinnedUrls.add(url);
+  }
+
+  /**
+   * Starts loading the asset at the given URL in the background, if it is not already cached. Any
+   * error is ignored here, and will be raised when the asset is used.
+   */
+  public void prefetch(URL url) {
+    final ExecutorService executor;
+    synchronized (this) {
+      if (this.isFresh(url.toString())) {
+        return;
+      }
+      if (this.prefetchExecutor == null) {
+        this.prefetchExecutor =
+            Executors.newFixedThreadPool(
+                PREFETCH_THREADS,
+                runnable -> {
+                  final Thread thread = new Thread(runnable, "asset-prefetch");
+                  thread.setDaemon(true);
+                  return thread;
+                });
+      }
+      executor = this.prefetchExecutor;
+    }
+    executor.execute(
+        () -> {
+          try {
+            this.getEntry(url);
+          } catch (IOException | RuntimeException e) {
+            LoggerUtils.logInfo("Could not prefetch asset " + url + ": " + e);
+          }
+        });
+  }
+
+  /** @return a stream of the raw bytes of the asset at the given URL. */
+  public InputStream openStream(URL url) throws IOException {
+    return new ByteArrayInputStream(this.getEntry(url).bytes);
+  }
+
+  /**
+   * @return the asset at the given URL, decoded with the given decoder. The result may be shared
+   *     with other callers, so it must not be modified.
+   */
+  @SuppressWarnings("unchecked")
+  public <T> T get(URL url, Decoder<T> decoder) throws IOException {
+    final String key = url.toString();
+    final Entry entry = this.getEntry(url);
+    synchronized (this) {
+      if (entry.decoder == decoder) {
+        return (T) entry.decoded;
+      }
+    }
+
+    final T decoded = decoder.decode(entry.bytes);
+    synchronized (this) {
+      // Only keep the decoded value if the entry has not been replaced or evicted in the meantime.
+      if (this.entries.get(key) == entry) {
+        this.totalBytes -= entry.getSize();
+        entry.decoder = decoder;
+        entry.decoded = decoded;
+        entry.decodedSize = decoder.getSizeInBytes(decoded);
+        this.totalBytes += entry.getSize();
+        this.evict();
+      }
+    }
+    return decoded;
+  }
+
+  private Entry getEntry(URL url) throws IOException {
+    final String key = url.toString();
+    final Entry cached;
+    final CompletableFuture<Entry> existing;
+    final CompletableFuture<Entry> pending = new CompletableFuture<>();
+    synchronized (this) {
+      cached = this.entries.get(key);
+      if (this.isFresh(key)) {
+        return cached;
+      }
+      existing = this.pendingFetches.putIfAbsent(key, pending);
+    }
+    if (existing != null) {
+      // Another thread is already loading this asset, so share its result.
+      return awaitFetch(existing);
+    }
+
+    try {
+      final Entry entry = this.fetchAndStore(url, cached);
+      pending.complete(entry);
+      return entry;
+    } catch (IOException | RuntimeException | Error e) {
+      pending.completeExceptionally(e);
+      throw e;
+    } finally {
+      synchronized (this) {
+        this.pendingFetches.remove(key);
+      }
+    }
+  }
+
+  private Entry fetchAndStore(URL url, Entry cached) throws IOException {
+    final String key = url.toString();
+    final Entry fetched;
+    try {
+      fetched = this.fetch(url, cached);
+    } catch (IOException | RuntimeException e) {
+      if (cached == null) {
+        throw e;
+      }
+      synchronized (this) {
+        if (e instanceof AssetRemovedException) {
+          // The server says the asset no longer exists, so the cached copy must not be used.
+          if (this.entries.get(key) == cached) {
+            this.entries.remove(key);
+            this.totalBytes -= cached.getSize();
+          }
+          throw e;
+        }
+        // The cached copy is still the best there is. Wait a full interval before trying again, so
+        // an unavailable server does not slow down every use of the asset.
+        cached.validatedAt = this.clock.millis();
+      }
+      LoggerUtils.logInfo("Could not revalidate asset " + url + ", using cached copy: " + e);
+      return cached;
+    }
+    synchronized (this) {
+      if (fetched == cached) {
+        // Not modified
+        cached.validatedAt = this.clock.millis();
+        return cached;
+      }
+      final Entry previous = this.entries.remove(key);
+      if (previous != null) {
+        this.totalBytes -= previous.getSize();
+      }
+      if (fetched.getSize() <= this.maxBytes / MAX_ENTRY_SHARE || this.pinnedUrls.contains(key)) {
+        this.entries.put(key, fetched);
+        this.totalBytes += fetched.getSize();
+        this.evict();
+      }
+    }
+    return fetched;
+  }
+
+  /** Must be called while holding the lock on this. */
+  private boolean isFresh(String key) {
+    final Entry entry = this.entries.get(key);
+    return entry != null
+        && (this.pinnedUrls.contains(key)
+            || this.clock.millis() - entry.validatedAt < this.revalidateAfterMs);
+  }
+
+  private static Entry awaitFetch(CompletableFuture<Entry> pending) throws IOException {
+    try {
+      return pending.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while loading asset");
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new IOException(e.getCause());
+    }
+  }
+
+  /**
+   * Downloads the asset, or checks whether the cached copy is still current if there is one.
+   *
+   * @return the cached entry if it has not been modified, otherwise a new entry.
+   */
+  private Entry fetch(URL url, Entry cached) throws IOException {
+    final URLConnection connection = url.openConnection();
+    if (connection instanceof HttpURLConnection && cached != null) {
+      if (cached.etag != null) {
+        connection.setRequestProperty("If-None-Match", cached.etag);
+      }
+      if (cached.lastModified != null) {
+        connection.setRequestProperty("If-Modified-Since", cached.lastModified);
+      }
+      final int status = ((HttpURLConnection) connection).getResponseCode();
+      if (status == HttpURLConnection.HTTP_NOT_MODIFIED) {
+        return cached;
+      }
+      if (status == HttpURLConnection.HTTP_NOT_FOUND || status == HttpURLConnection.HTTP_GONE) {
+        throw new AssetRemovedException(url);
+      }
+    }
+
+    final byte[] bytes;
+    try (final InputStream inputStream = connection.getInputStream()) {
+      bytes = inputStream.readAllBytes();
+    }
+    return new Entry(
+        bytes,
+        connection.getHeaderField("ETag"),
+        connection.getHeaderField("Last-Modified"),
+        this.clock.millis());
+  }
+
+  /** Thrown when revalidation finds that a cached asset has been removed from the server. */
+  private static class AssetRemovedException extends FileNotFoundException {
+    private AssetRemovedException(URL url) {
+      super(url.toString());
+    }
+  }
+
+  /** Removes the least recently used entries that are not pinned until the cache fits. */
+  private void evict() {
+    final Iterator<Map.Entry<String, Entry>> iterator = this.entries.entrySet().iterator();
+    while (this.totalBytes > this.maxBytes && iterator.hasNext()) {
+      final Map.Entry<String, Entry> eldest = iterator.next();
+      if (!this.pinnedUrls.contains(eldest.getKey())) {
+        this.totalBytes -= eldest.getValue().getSize();
+        iterator.remove();
+      }
+    }
+  }
+}
@@ -1,12 +1,22 @@
 package org.code.protocol;
 
 import java.awt.Font;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
 import java.util.Map;
 
 // Resources we want to use across multiple invocations of Javabuilder.
 public class CachedResources {
   private static CachedResources cachedResourcesInstance;
-  private Map<String, Font> fontMap;
+  // Font faces by file name, loaded the first time each is used.
+  private final Map<String, Font> fonts = new HashMap<>();
+  private AssetCache assetCache;
+  private final Map<Path, MappedByteBuffer> mappedFiles = new HashMap<>();
 
   public static void create() {
     CachedResources.cachedResourcesInstance = new CachedResources();
@@ -20,10 +30,40 @@ public class CachedResources {
     return CachedResources.cachedResourcesInstance;
   }
 
-  public Map<String, Font> getFontMap() {
-    if (this.fontMap == null) {
-      this.fontMap = FontLoader.getFontMap();
+  /** @return the font face in the given file, such as "LiberationSans-Bold.ttf". */
+  public synchronized Font getFont(String filename) {
+    Font font = this.fonts.get(filename);
+    if (font == null) {
+      font = FontLoader.loadFont(filename);
+      this.fonts.put(filename, font);
     }
-    return this.fontMap;
+    return font;
+  }
+
+  public synchronized AssetCache getAssetCache() {
+    if (this.assetCache == null) {
+      this.assetCache = new AssetCache();
+    }
+    return this.assetCache;
+  }
+
+  /**
+   * Maps a read-only file into memory the first time it is requested, and reuses the mapping after
+   * that. The file's pages are shared by every session in the container and are read from disk only
+   * as they are used.
+   *
+   * @return a read-only view of the whole file, with its own position and limit.
+   * @throws IOException if the file cannot be opened or mapped.
+   */
+  public synchronized ByteBuffer getMappedFile(Path path) throws IOException {
+    MappedByteBuffer mappedFile = this.mappedFiles.get(path);
+    if (mappedFile == null) {
+      // The mapping stays valid after the channel is closed.
+      try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+        mappedFile = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      }
+      this.mappedFiles.put(path, mappedFile);
+    }
+    return mappedFile.asReadOnlyBuffer();
   }
 }
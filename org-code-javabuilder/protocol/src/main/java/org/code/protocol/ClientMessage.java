@@ -1,6 +1,9 @@
 package org.code.protocol;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Map;
 import org.json.JSONObject;
 
 /**
@@ -25,23 +28,31 @@ import org.json.JSONObject;
 public abstract class ClientMessage {
   private final ClientMessageType type;
   private final String value;
-  private final JSONObject detail;
+  // Details passed in as a map are only converted to a JSONObject if they are asked for, since most
+  // messages are serialized directly from the map by ClientMessageWriter. The map is a copy, since
+  // the message may be serialized on another thread after the caller has moved on. For the same
+  // reason, the JSONObject is volatile and only created once.
+  private final Map<String, String> detailMap;
+  private volatile JSONObject detail;
 
   protected ClientMessage(ClientMessageType type, String value, HashMap<String, String> detail) {
     this.type = type;
     this.value = value;
-    this.detail = new JSONObject(detail);
+    this.detailMap = detail == null ? null : Collections.unmodifiableMap(new HashMap<>(detail));
+    this.detail = null;
   }
 
   protected ClientMessage(ClientMessageType type, String value) {
     this.type = type;
     this.value = value;
-    this.detail = new JSONObject();
+    this.detailMap = null;
+    this.detail = null;
   }
 
   protected ClientMessage(ClientMessageType type, String value, JSONObject detail) {
     this.type = type;
     this.value = value;
+    this.detailMap = null;
     this.detail = detail;
   }
 
@@ -54,18 +65,45 @@ public abstract class ClientMessage {
   }
 
   public JSONObject getDetail() {
+    JSONObject detail = this.detail;
+    if (detail == null) {
+      synchronized (this) {
+        if (this.detail == null) {
+          this.detail = this.detailMap == null ? new JSONObject() : new JSONObject(this.detailMap);
+        }
+        detail = this.detail;
+      }
+    }
     return detail;
   }
 
   /** @return A stringified JSON blob representing the client message */
   public String getFormattedMessage() {
-    JSONObject formattedMessage = new JSONObject();
-    formattedMessage.put("type", this.type);
-    formattedMessage.put("value", this.value);
-    if (this.detail.length() > 0) {
-      formattedMessage.put("detail", this.detail);
-    }
-    return formattedMessage.toString();
+    return new String(ClientMessageWriter.encode(this), StandardCharsets.UTF_8);
+  }
+
+  /**
+   * @return the details of this message as a map if they were provided as one and have not since
+   *     been asked for as a JSONObject, or null otherwise.
+   */
+  Map<String, String> getDetailMap() {
+    return this.detail == null ? this.detailMap : null;
+  }
+
+  /**
+   * @return the details of this message as a JSONObject if they were provided as one or have been
+   *     asked for as one, in which case any changes made to it are serialized, or null otherwise.
+   */
+  JSONObject getDetailObject() {
+    return this.detail;
+  }
+
+  /**
+   * @return the complete serialized form of this message if it never changes and has been encoded
+   *     ahead of time, or null if it must be serialized. The returned array must not be modified.
+   */
+  byte[] getEncodedMessage() {
+    return null;
   }
 
   /**
@@ -0,0 +1,92 @@
+package org.code.protocol;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Splits serialized client messages that are too large to send in one WebSocket message (API
+ * Gateway allows at most 128 KB) into a sequence of smaller chunks. Messages that fit are sent
+ * unchanged. Each chunk starts with a one-line ASCII header:
+ *
+ * <pre>
+ * CHUNK:&lt;message id&gt;:&lt;chunk index&gt;:&lt;chunk count&gt;\n
+ * </pre>
+ *
+ * followed by the next slice of the serialized message. The client collects all chunks with the
+ * same message id and joins them in index order to get the original message. A serialized message
+ * never starts with "CHUNK:" (JSON messages start with "{" and binary messages with a version
+ * byte), so chunks can always be told apart from whole messages. Chunks are split on UTF-8
+ * character boundaries, so each chunk of a JSON message is still valid text.
+ *
+ * <p>A chunker is not thread-safe.
+ */
+public class ClientMessageChunker {
+  public static final int DEFAULT_MAX_MESSAGE_BYTES = 128 * 1024;
+  static final String CHUNK_HEADER_PREFIX = "CHUNK:";
+  // Large enough for the prefix, three integers and the separators.
+  private static final int MAX_HEADER_BYTES = 48;
+
+  private final int maxMessageBytes;
+  private int nextMessageId;
+
+  public ClientMessageChunker() {
+    this(DEFAULT_MAX_MESSAGE_BYTES);
+  }
+
+  public ClientMessageChunker(int maxMessageBytes) {
+    if (maxMessageBytes <= MAX_HEADER_BYTES + 4) {
+      throw new IllegalArgumentException("maxMessageBytes is too small to hold a chunk");
+    }
+    this.maxMessageBytes = maxMessageBytes;
+    this.nextMessageId = 0;
+  }
+
+  /**
+   * @param message a serialized message. Its position is not changed.
+   * @return the message itself if it is small enough to send as-is, otherwise the chunks to send in
+   *     order.
+   */
+  public List<ByteBuffer> split(ByteBuffer message) {
+    if (message.remaining() <= this.maxMessageBytes) {
+      return Collections.singletonList(message);
+    }
+
+    final int messageId = this.nextMessageId++;
+    final int start = message.position();
+    final int end = message.limit();
+    final int maxSliceBytes = this.maxMessageBytes - MAX_HEADER_BYTES;
+
+    final List<int[]> slices = new ArrayList<>();
+    int sliceStart = start;
+    while (sliceStart < end) {
+      int sliceEnd = Math.min(sliceStart + maxSliceBytes, end);
+      // Don't split a multi-byte UTF-8 character. Continuation bytes look like 10xxxxxx.
+      while (sliceEnd < end
+          && sliceEnd > sliceStart + 1
+          && (message.get(sliceEnd) & 0xC0) == 0x80) {
+        sliceEnd--;
+      }
+      slices.add(new int[] {sliceStart, sliceEnd});
+      sliceStart = sliceEnd;
+    }
+
+    final List<ByteBuffer> chunks = new ArrayList<>(slices.size());
+    for (int i = 0; i < slices.size(); i++) {
+      final byte[] header =
+          (CHUNK_HEADER_PREFIX + messageId + ":" + i + ":" + slices.size() + "\n")
+              .getBytes(StandardCharsets.US_ASCII);
+      final int sliceLength = slices.get(i)[1] - slices.get(i)[0];
+      final ByteBuffer chunk = ByteBuffer.allocate(header.length + sliceLength);
+      chunk.put(header);
+      final ByteBuffer slice = message.duplicate();
+      slice.position(slices.get(i)[0]).limit(slices.get(i)[1]);
+      chunk.put(slice);
+      chunk.flip();
+      chunks.add(chunk);
+    }
+    return chunks;
+  }
+}
@@ -0,0 +1,358 @@
+package org.code.protocol;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import org.json.JSONObject;
+
+/**
+ * Serializes {@link ClientMessage}s to UTF-8 JSON, writing directly into a byte buffer that is
+ * reused from one message to the next. This avoids building an intermediate JSONObject and String
+ * for every message, which adds up for programs that send many messages. Messages that never change
+ * may provide their serialized form ahead of time, in which case it is copied as-is.
+ *
+ * <p>The JSON output matches what org.json produces for the same message, including field order
+ * and escaping, so the client sees no difference. Sessions that negotiated the compact {@link
+ * WireFormat#BINARY} format are written in that format instead.
+ *
+ * <p>A writer is not thread-safe, and the buffer returned by {@link #toByteBuffer()} is only valid
+ * until the next call to {@link #write(ClientMessage)}.
+ */
+public class ClientMessageWriter {
+  private static final int DEFAULT_INITIAL_CAPACITY = 1024;
+  private static final byte[] HEX_DIGITS = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+  private static final byte[] DETAIL_FIELD = "\"detail\":".getBytes(StandardCharsets.US_ASCII);
+  private static final byte[] TYPE_FIELD = "\"type\":".getBytes(StandardCharsets.US_ASCII);
+  private static final byte[] VALUE_FIELD = "\"value\":".getBytes(StandardCharsets.US_ASCII);
+
+  private final WireFormat wireFormat;
+  private byte[] buffer;
+  private int length;
+
+  public ClientMessageWriter() {
+    this(WireFormat.JSON);
+  }
+
+  public ClientMessageWriter(WireFormat wireFormat) {
+    this(wireFormat, DEFAULT_INITIAL_CAPACITY);
+  }
+
+  public ClientMessageWriter(int initialCapacity) {
+    this(WireFormat.JSON, initialCapacity);
+  }
+
+  public ClientMessageWriter(WireFormat wireFormat, int initialCapacity) {
+    this.wireFormat = wireFormat;
+    this.buffer = new byte[initialCapacity];
+    this.length = 0;
+  }
+
+  /**
+   * Serializes the given message, replacing whatever was previously written.
+   *
+   * @return this writer
+   */
+  public ClientMessageWriter write(ClientMessage message) {
+    this.length = 0;
+    if (this.wireFormat == WireFormat.BINARY) {
+      this.writeBinary(message);
+      return this;
+    }
+
+    final byte[] encodedMessage = message.getEncodedMessage();
+    if (encodedMessage != null) {
+      this.writeBytes(encodedMessage);
+      return this;
+    }
+
+    this.writeByte('{');
+    boolean isFirstField = true;
+    // Fields are written in the same order org.json used when messages were built as JSONObjects.
+    if (this.hasDetail(message)) {
+      this.writeBytes(DETAIL_FIELD);
+      this.writeDetail(message);
+      isFirstField = false;
+    }
+    if (message.getType() != null) {
+      if (!isFirstField) {
+        this.writeByte(',');
+      }
+      this.writeBytes(TYPE_FIELD);
+      this.writeString(message.getType().name());
+      isFirstField = false;
+    }
+    if (message.getValue() != null) {
+      if (!isFirstField) {
+        this.writeByte(',');
+      }
+      this.writeBytes(VALUE_FIELD);
+      this.writeString(message.getValue());
+    }
+    this.writeByte('}');
+    return this;
+  }
+
+  /** @return the last message written, as a buffer over this writer's internal storage. */
+  public ByteBuffer toByteBuffer() {
+    return ByteBuffer.wrap(this.buffer, 0, this.length);
+  }
+
+  /** @return a copy of the last message written. */
+  public byte[] toByteArray() {
+    return Arrays.copyOf(this.buffer, this.length);
+  }
+
+  /** @return the last message written, as a String. */
+  @Override
+  public String toString() {
+    return new String(this.buffer, 0, this.length, StandardCharsets.UTF_8);
+  }
+
+  /** @return the JSON serialized form of the given message in a new array. */
+  public static byte[] encode(ClientMessage message) {
+    return new ClientMessageWriter(128).write(message).toByteArray();
+  }
+
+  /** Writes the message in the layout described by {@link WireFormat}. */
+  private void writeBinary(ClientMessage message) {
+    final Map<String, String> detailMap = message.getDetailMap();
+    final JSONObject detailObject = message.getDetailObject();
+    final boolean hasDetailMap = detailMap != null && !detailMap.isEmpty();
+    final boolean hasJsonDetail = detailObject != null && detailObject.length() > 0;
+    int flags = 0;
+    if (message.getValue() != null) {
+      flags |= WireFormat.HAS_VALUE_FLAG;
+    }
+    if (hasDetailMap) {
+      flags |= WireFormat.HAS_DETAIL_MAP_FLAG;
+    } else if (hasJsonDetail) {
+      flags |= WireFormat.HAS_JSON_DETAIL_FLAG;
+    }
+
+    this.writeByte(WireFormat.BINARY_VERSION);
+    this.writeByte(message.getType().ordinal());
+    this.writeByte(flags);
+    if (message.getValue() != null) {
+      this.writeLengthPrefixedString(message.getValue());
+    }
+    if (hasDetailMap) {
+      int entryCount = 0;
+      for (String detailValue : detailMap.values()) {
+        if (detailValue != null) {
+          entryCount++;
+        }
+      }
+      this.writeVarint(entryCount);
+      for (Map.Entry<String, String> entry : detailMap.entrySet()) {
+        if (entry.getValue() != null) {
+          this.writeLengthPrefixedString(entry.getKey());
+          this.writeLengthPrefixedString(entry.getValue());
+        }
+      }
+    } else if (hasJsonDetail) {
+      this.writeLengthPrefixedString(detailObject.toString());
+    }
+  }
+
+  private void writeLengthPrefixedString(String value) {
+    this.writeVarint(utf8Length(value));
+    this.writeRawString(value);
+  }
+
+  private void writeVarint(int value) {
+    while ((value & ~0x7F) != 0) {
+      this.writeByte((value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    this.writeByte(value);
+  }
+
+  private boolean hasDetail(ClientMessage message) {
+    final Map<String, String> detailMap = message.getDetailMap();
+    if (detailMap != null) {
+      for (String detailValue : detailMap.values()) {
+        if (detailValue != null) {
+          return true;
+        }
+      }
+      return false;
+    }
+    final JSONObject detailObject = message.getDetailObject();
+    return detailObject != null && detailObject.length() > 0;
+  }
+
+  private void writeDetail(ClientMessage message) {
+    final Map<String, String> detailMap = message.getDetailMap();
+    if (detailMap == null) {
+      // Details provided as JSONObjects may contain nested values of any type, and are rare enough
+      // that there is no need to stream them.
+      this.writeRawString(message.getDetailObject().toString());
+      return;
+    }
+
+    this.writeByte('{');
+    boolean isFirstEntry = true;
+    for (Map.Entry<String, String> entry : detailMap.entrySet()) {
+      // org.json drops entries with null values.
+      if (entry.getValue() == null) {
+        continue;
+      }
+      if (!isFirstEntry) {
+        this.writeByte(',');
+      }
+      this.writeString(entry.getKey());
+      this.writeByte(':');
+      this.writeString(entry.getValue());
+      isFirstEntry = false;
+    }
+    this.writeByte('}');
+  }
+
+  /** Writes a quoted JSON string, escaped the same way as org.json's JSONObject.quote. */
+  private void writeString(String value) {
+    this.writeByte('"');
+    char previous = 0;
+    for (int i = 0; i < value.length(); i++) {
+      final char c = value.charAt(i);
+      switch (c) {
+        case '\\':
+        case '"':
+          this.writeByte('\\');
+          this.writeByte(c);
+          break;
+        case '/':
+          if (previous == '<') {
+            this.writeByte('\\');
+          }
+          this.writeByte(c);
+          break;
+        case '\b':
+          this.writeEscape('b');
+          break;
+        case '\t':
+          this.writeEscape('t');
+          break;
+        case '\n':
+          this.writeEscape('n');
+          break;
+        case '\f':
+          this.writeEscape('f');
+          break;
+        case '\r':
+          this.writeEscape('r');
+          break;
+        default:
+          if (c < ' ' || (c >= 0x80 && c < 0xA0) || (c >= 0x2000 && c < 0x2100)) {
+            this.writeUnicodeEscape(c);
+          } else if (Character.isHighSurrogate(c)
+              && i + 1 < value.length()
+              && Character.isLowSurrogate(value.charAt(i + 1))) {
+            this.writeCodePoint(Character.toCodePoint(c, value.charAt(i + 1)));
+            i++;
+          } else {
+            this.writeChar(c);
+          }
+      }
+      previous = c;
+    }
+    this.writeByte('"');
+  }
+
+  private void writeRawString(String value) {
+    for (int i = 0; i < value.length(); i++) {
+      final char c = value.charAt(i);
+      if (Character.isHighSurrogate(c)
+          && i + 1 < value.length()
+          && Character.isLowSurrogate(value.charAt(i + 1))) {
+        this.writeCodePoint(Character.toCodePoint(c, value.charAt(i + 1)));
+        i++;
+      } else {
+        this.writeChar(c);
+      }
+    }
+  }
+
+  private void writeEscape(char c) {
+    this.writeByte('\\');
+    this.writeByte(c);
+  }
+
+  private void writeUnicodeEscape(char c) {
+    this.ensureCapacity(6);
+    this.buffer[this.length++] = '\\';
+    this.buffer[this.length++] = 'u';
+    this.buffer[this.length++] = HEX_DIGITS[(c >> 12) & 0xF];
+    this.buffer[this.length++] = HEX_DIGITS[(c >> 8) & 0xF];
+    this.buffer[this.length++] = HEX_DIGITS[(c >> 4) & 0xF];
+    this.buffer[this.length++] = HEX_DIGITS[c & 0xF];
+  }
+
+  /** Writes a single UTF-16 character that is not part of a surrogate pair as UTF-8. */
+  private void writeChar(char c) {
+    if (c < 0x80) {
+      this.writeByte(c);
+    } else if (c < 0x800) {
+      this.ensureCapacity(2);
+      this.buffer[this.length++] = (byte) (0xC0 | (c >> 6));
+      this.buffer[this.length++] = (byte) (0x80 | (c & 0x3F));
+    } else if (Character.isSurrogate(c)) {
+      // An unpaired surrogate cannot be encoded. This matches String.getBytes.
+      this.writeByte('?');
+    } else {
+      this.ensureCapacity(3);
+      this.buffer[this.length++] = (byte) (0xE0 | (c >> 12));
+      this.buffer[this.length++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+      this.buffer[this.length++] = (byte) (0x80 | (c & 0x3F));
+    }
+  }
+
+  private void writeCodePoint(int codePoint) {
+    this.ensureCapacity(4);
+    this.buffer[this.length++] = (byte) (0xF0 | (codePoint >> 18));
+    this.buffer[this.length++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+    this.buffer[this.length++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+    this.buffer[this.length++] = (byte) (0x80 | (codePoint & 0x3F));
+  }
+
+  private void writeByte(int b) {
+    this.ensureCapacity(1);
+    this.buffer[this.length++] = (byte) b;
+  }
+
+  private void writeBytes(byte[] bytes) {
+    this.ensureCapacity(bytes.length);
+    System.arraycopy(bytes, 0, this.buffer, this.length, bytes.length);
+    this.length += bytes.length;
+  }
+
+  /** @return the number of bytes writeRawString will write for the given value. */
+  private static int utf8Length(String value) {
+    int length = 0;
+    for (int i = 0; i < value.length(); i++) {
+      final char c = value.charAt(i);
+      if (c < 0x80) {
+        length += 1;
+      } else if (c < 0x800) {
+        length += 2;
+      } else if (Character.isHighSurrogate(c)
+          && i + 1 < value.length()
+          && Character.isLowSurrogate(value.charAt(i + 1))) {
+        length += 4;
+        i++;
+      } else if (Character.isSurrogate(c)) {
+        length += 1;
+      } else {
+        length += 3;
+      }
+    }
+    return length;
+  }
+
+  private void ensureCapacity(int additionalBytes) {
+    final int required = this.length + additionalBytes;
+    if (required > this.buffer.length) {
+      this.buffer = Arrays.copyOf(this.buffer, Math.max(required, this.buffer.length * 2));
+    }
+  }
+}
@@ -3,4 +3,20 @@ package org.code.protocol;
 public interface InputAdapter {
   /** @return The next user input to the currently running program */
   String getNextMessage();
+
+  /**
+   * Waits up to the given time for the next user input. Adapters that cannot stop waiting early
+   * wait until input arrives.
+   *
+   * @return The next user input, or null if none arrived in time
+   */
+  default String getNextMessage(long timeoutMillis) {
+    return this.getNextMessage();
+  }
+
+  /**
+   * Stops receiving input and releases any resources this adapter uses. This is called once the
+   * user's program has finished. By default this does nothing.
+   */
+  default void close() {}
 }
@@ -1,53 +1,297 @@
 package org.code.protocol;
 
-import java.util.HashMap;
-import java.util.LinkedList;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.util.Base64;
+import java.util.EnumMap;
 import java.util.Map;
-import java.util.Queue;
-import org.json.JSONException;
-import org.json.JSONObject;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Handles retrieving various types of JSON messages from the client. Expects JSON in the format:
  *
  * <p>{ "messageType": "<message type>", "message": "<message contents>" }
+ *
+ * <p>If the session uses the {@link WireFormat#BINARY} format, messages are instead expected in the
+ * binary layout described there.
+ *
+ * <p>Messages are read from the input adapter by a single dispatcher thread, which parses each
+ * message once and adds it to the queue for its type. Each consumer (for example, System.in or the
+ * Theater prompter) only waits on the queue for its own type. The dispatcher only reads while some
+ * consumer is waiting on an empty queue, so messages are never read ahead of demand. If reading or
+ * parsing a message fails, the dispatcher stops and the failure is thrown to waiting consumers once
+ * their queues are empty.
+ *
+ * <p>The handler keeps track of how long the program has spent waiting for each type of input, and
+ * can be given an idle timeout after which it stops waiting and ends the program with an {@link
+ * InputIdleTimeoutError}.
  */
 public class InputHandler {
   private static final String MESSAGE_TYPE_KEY = "messageType";
   private static final String MESSAGE_KEY = "message";
+  // How often waiting consumers check whether the dispatcher has failed
+  private static final long CHECK_INTERVAL_MS = 100;
 
-  private final Map<InputMessageType, Queue<String>> inputQueues;
+  private final Map<InputMessageType, BlockingQueue<String>> inputQueues;
   private final InputAdapter inputAdapter;
+  private final OutputAdapter outputAdapter;
+  private final WireFormat wireFormat;
+  private final long idleTimeoutMillis;
+  private final Clock clock;
+  private final Map<InputMessageType, Long> blockedTimeMillis;
+  // Guards pendingRequests and dispatcherThread. The dispatcher waits on it for new requests.
+  private final Object dispatchLock;
+  // For each type, how many waiting consumers have not yet had a message added to their queue.
+  private final Map<InputMessageType, Integer> pendingRequests;
+  private Thread dispatcherThread;
+  private volatile long idleSince;
+  // Either a RuntimeException or an InputIdleTimeoutError
+  private volatile Throwable failure;
+  private volatile boolean isClosed;
 
   public InputHandler(InputAdapter inputAdapter) {
+    this(inputAdapter, null);
+  }
+
+  public InputHandler(InputAdapter inputAdapter, OutputAdapter outputAdapter) {
+    this(inputAdapter, outputAdapter, WireFormat.JSON);
+  }
+
+  /**
+   * @param outputAdapter if provided, this is flushed before waiting on new input, so that any
+   *     output the user should see before responding (such as a prompt) has been sent.
+   * @param wireFormat the format the client sends messages in
+   */
+  public InputHandler(
+      InputAdapter inputAdapter, OutputAdapter outputAdapter, WireFormat wireFormat) {
+    this(inputAdapter, outputAdapter, wireFormat, 0);
+  }
+
+  /**
+   * @param idleTimeoutMillis if greater than 0, how long to wait without receiving any input before
+   *     ending the program.
+   */
+  public InputHandler(
+      InputAdapter inputAdapter,
+      OutputAdapter outputAdapter,
+      WireFormat wireFormat,
+      long idleTimeoutMillis) {
+    this(inputAdapter, outputAdapter, wireFormat, idleTimeoutMillis, Clock.systemUTC());
+  }
+
+  InputHandler(
+      InputAdapter inputAdapter,
+      OutputAdapter outputAdapter,
+      WireFormat wireFormat,
+      long idleTimeoutMillis,
+      Clock clock) {
     this.inputAdapter = inputAdapter;
-    this.inputQueues = new HashMap<>();
+    this.outputAdapter = outputAdapter;
+    this.wireFormat = wireFormat;
+    this.idleTimeoutMillis = idleTimeoutMillis;
+    this.clock = clock;
+    this.inputQueues = new EnumMap<>(InputMessageType.class);
+    for (InputMessageType type : InputMessageType.values()) {
+      this.inputQueues.put(type, new LinkedBlockingQueue<>());
+    }
+    this.blockedTimeMillis = new EnumMap<>(InputMessageType.class);
+    this.dispatchLock = new Object();
+    this.pendingRequests = new EnumMap<>(InputMessageType.class);
+    this.dispatcherThread = null;
+    this.idleSince = 0;
+    this.failure = null;
+    this.isClosed = false;
+  }
+
+  /** @return the total time spent waiting for each type of input so far, in milliseconds. */
+  public Map<InputMessageType, Long> getBlockedTimeMillis() {
+    synchronized (this.blockedTimeMillis) {
+      return new EnumMap<>(this.blockedTimeMillis);
+    }
   }
 
+  /**
+   * Returns the oldest message of the given type that has not been read yet, waiting for one if
+   * there is none. This is a blocking call. Messages of other types received in the meantime are
+   * kept for their own consumers.
+   */
   public String getNextMessageForType(InputMessageType type) {
-    if (!inputQueues.containsKey(type) || inputQueues.get(type).peek() == null) {
-      InputMessageType nextMessageType = null;
-      while (nextMessageType != type) {
-        final String nextMessageData = this.inputAdapter.getNextMessage();
-        String message;
+    final BlockingQueue<String> queue = this.inputQueues.get(type);
+    final String queuedMessage = queue.poll();
+    if (queuedMessage != null) {
+      return queuedMessage;
+    }
+
+    if (this.outputAdapter != null) {
+      this.outputAdapter.flush();
+    }
+    final long waitStart = this.clock.millis();
+    try {
+      return this.waitForMessage(type, waitStart);
+    } finally {
+      synchronized (this.blockedTimeMillis) {
+        this.blockedTimeMillis.merge(type, this.clock.millis() - waitStart, Long::sum);
+      }
+    }
+  }
 
-        try {
-          final JSONObject jsonMessage = new JSONObject(nextMessageData);
-          nextMessageType = InputMessageType.valueOf(jsonMessage.getString(MESSAGE_TYPE_KEY));
-          message = jsonMessage.getString(MESSAGE_KEY);
-        } catch (JSONException | IllegalArgumentException e) {
-          throw new InternalServerRuntimeException(
-              InternalExceptionKey.INTERNAL_RUNTIME_EXCEPTION, e);
+  /** Stops the dispatcher thread. Messages that have already been received are still available. */
+  public void close() {
+    synchronized (this.dispatchLock) {
+      this.isClosed = true;
+      if (this.dispatcherThread != null) {
+        this.dispatcherThread.interrupt();
+      }
+    }
+  }
+
+  private String waitForMessage(InputMessageType type, long waitStart) {
+    final BlockingQueue<String> queue = this.inputQueues.get(type);
+    synchronized (this.dispatchLock) {
+      // A message may have arrived while output was being flushed.
+      final String message = queue.poll();
+      if (message != null) {
+        return message;
+      }
+      this.requestMessage(type, waitStart);
+    }
+
+    try {
+      while (true) {
+        final String message = queue.poll(CHECK_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        if (message != null) {
+          return message;
+        }
+        if (this.failure != null && queue.isEmpty()) {
+          this.cancelRequest(type);
+          throw this.rethrowFailure();
         }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      this.cancelRequest(type);
+      if (this.failure != null) {
+        throw this.rethrowFailure();
+      }
+      throw new InternalServerRuntimeException(InternalExceptionKey.CONNECTION_TERMINATED, e);
+    }
+  }
+
+  /** Asks the dispatcher for a message of the given type, starting it if necessary. */
+  private void requestMessage(InputMessageType type, long waitStart) {
+    if (this.pendingRequests.isEmpty()) {
+      // Nobody else is waiting, so the idle time starts now.
+      this.idleSince = waitStart;
+    }
+    this.pendingRequests.merge(type, 1, Integer::sum);
+    if (this.dispatcherThread == null && !this.isClosed) {
+      this.dispatcherThread = new Thread(this::runDispatcher, "input-dispatcher");
+      this.dispatcherThread.setDaemon(true);
+      this.dispatcherThread.start();
+    }
+    this.dispatchLock.notifyAll();
+  }
+
+  /** Withdraws a request that will not be waited on any more. */
+  private void cancelRequest(InputMessageType type) {
+    synchronized (this.dispatchLock) {
+      this.fulfillRequest(type);
+    }
+  }
+
+  /** Must be called while holding the dispatch lock. */
+  private void fulfillRequest(InputMessageType type) {
+    this.pendingRequests.computeIfPresent(type, (key, count) -> count > 1 ? count - 1 : null);
+  }
+
+  private RuntimeException rethrowFailure() {
+    if (this.failure instanceof Error) {
+      throw (Error) this.failure;
+    }
+    return (RuntimeException) this.failure;
+  }
 
-        if (!inputQueues.containsKey(nextMessageType)) {
-          inputQueues.put(nextMessageType, new LinkedList<>());
+  private void runDispatcher() {
+    long lastMessageTime = Long.MIN_VALUE;
+    try {
+      while (!this.isClosed) {
+        synchronized (this.dispatchLock) {
+          while (this.pendingRequests.isEmpty() && !this.isClosed) {
+            this.dispatchLock.wait();
+          }
         }
+        if (this.isClosed) {
+          return;
+        }
+
+        final String nextMessageData =
+            this.receiveMessage(Math.max(this.idleSince, lastMessageTime));
+        if (nextMessageData == null) {
+          synchronized (this.dispatchLock) {
+            // Only give up if somebody is still waiting.
+            if (!this.pendingRequests.isEmpty()) {
+              this.failure = new InputIdleTimeoutError();
+              return;
+            }
+          }
+          continue;
+        }
+        if (this.idleTimeoutMillis > 0) {
+          lastMessageTime = this.clock.millis();
+        }
+        this.dispatchMessage(nextMessageData);
+      }
+    } catch (InterruptedException e) {
+      // The handler was closed while waiting.
+    } catch (RuntimeException e) {
+      if (!this.isClosed) {
+        this.failure = e;
+      }
+    }
+  }
 
-        inputQueues.get(nextMessageType).add(message);
+  private void dispatchMessage(String messageData) {
+    final InputMessageType messageType;
+    final String message;
+    try {
+      if (this.wireFormat == WireFormat.BINARY) {
+        final byte[] bytes = Base64.getDecoder().decode(messageData);
+        if (bytes.length < 2 || bytes[0] != WireFormat.BINARY_VERSION) {
+          throw new IllegalArgumentException("Unsupported binary input message");
+        }
+        messageType = InputMessageType.values()[bytes[1]];
+        message = new String(bytes, 2, bytes.length - 2, StandardCharsets.UTF_8);
+      } else {
+        final String[] fields =
+            JsonFieldExtractor.extractStrings(messageData, MESSAGE_TYPE_KEY, MESSAGE_KEY);
+        if (fields[0] == null || fields[1] == null) {
+          throw new IllegalArgumentException("Input message is missing a field");
+        }
+        messageType = InputMessageType.valueOf(fields[0]);
+        message = fields[1];
       }
+    } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+      throw new InternalServerRuntimeException(InternalExceptionKey.INTERNAL_RUNTIME_EXCEPTION, e);
     }
 
-    return inputQueues.get(type).remove();
+    synchronized (this.dispatchLock) {
+      this.inputQueues.get(messageType).add(message);
+      this.fulfillRequest(messageType);
+    }
+  }
+
+  /**
+   * @param idleSince when the last message was received, or when consumers started waiting.
+   * @return the next message from the input adapter, or null if none arrived before the idle
+   *     timeout.
+   */
+  private String receiveMessage(long idleSince) {
+    if (this.idleTimeoutMillis <= 0) {
+      return this.inputAdapter.getNextMessage();
+    }
+    final long remainingMillis = this.idleTimeoutMillis - (this.clock.millis() - idleSince);
+    return remainingMillis > 0 ? this.inputAdapter.getNextMessage(remainingMillis) : null;
   }
 }
@@ -0,0 +1,11 @@
+package org.code.protocol;
+
+/**
+ * Thrown when the program has waited longer than the session's input idle timeout for user input.
+ * This is an Error so that it ends the program even if the user's code catches exceptions.
+ */
+public class InputIdleTimeoutError extends JavabuilderError {
+  public InputIdleTimeoutError() {
+    super(StatusMessageKey.INPUT_IDLE_TIMEOUT);
+  }
+}
@@ -0,0 +1,213 @@
+package org.code.protocol;
+
+/**
+ * Reads string fields from the top level of a JSON object in a single pass over the text, without
+ * building a JSONObject. Values of other fields are skipped over without being copied. A value that
+ * has no escape sequences is returned as a substring of the input, so in the common case the only
+ * allocation is the value itself.
+ *
+ * <p>This is only meant for small, flat messages such as those received from the client. It
+ * checks the structure of the object but is more lenient than a full parser about the contents of
+ * values it skips.
+ */
+final class JsonFieldExtractor {
+  private final String json;
+  private int position;
+
+  private JsonFieldExtractor(String json) {
+    this.json = json;
+    this.position = 0;
+  }
+
+  /**
+   * @param json the text of a JSON object
+   * @param keys the names of the fields to read
+   * @return the value of each requested field, in the same order as the keys, or null for fields
+   *     that are not present.
+   * @throws IllegalArgumentException if the text is not a JSON object, or a requested field has a
+   *     value that is not a string.
+   */
+  static String[] extractStrings(String json, String... keys) {
+    return new JsonFieldExtractor(json).readObject(keys);
+  }
+
+  private String[] readObject(String[] keys) {
+    final String[] values = new String[keys.length];
+    this.skipWhitespace();
+    this.expect('{');
+    this.skipWhitespace();
+    if (this.peek() == '}') {
+      this.position++;
+    } else {
+      char next = ',';
+      while (next == ',') {
+        this.skipWhitespace();
+        final String key = this.readString();
+        this.skipWhitespace();
+        this.expect(':');
+        this.skipWhitespace();
+        final int index = indexOf(keys, key);
+        if (index < 0) {
+          this.skipValue();
+        } else if (this.peek() == '"') {
+          values[index] = this.readString();
+        } else {
+          throw new IllegalArgumentException("Expected a string value for " + key);
+        }
+        this.skipWhitespace();
+        next = this.next();
+      }
+      if (next != '}') {
+        throw this.unexpected(next);
+      }
+    }
+    this.skipWhitespace();
+    if (this.position != this.json.length()) {
+      throw this.unexpected(this.json.charAt(this.position));
+    }
+    return values;
+  }
+
+  private String readString() {
+    this.expect('"');
+    final int start = this.position;
+    // Fast path: no escape sequences, so the value is exactly the text between the quotes.
+    while (this.peek() != '"') {
+      if (this.json.charAt(this.position) == '\\') {
+        return this.readEscapedString(start);
+      }
+      this.position++;
+    }
+    final String value = this.json.substring(start, this.position);
+    this.position++;
+    return value;
+  }
+
+  private String readEscapedString(int start) {
+    final StringBuilder builder = new StringBuilder(this.json.length() - start);
+    builder.append(this.json, start, this.position);
+    char current = this.next();
+    while (current != '"') {
+      if (current == '\\') {
+        builder.append(this.readEscape());
+      } else {
+        builder.append(current);
+      }
+      current = this.next();
+    }
+    return builder.toString();
+  }
+
+  private char readEscape() {
+    final char escaped = this.next();
+    switch (escaped) {
+      case '"':
+      case '\\':
+      case '/':
+        return escaped;
+      case 'b':
+        return '\b';
+      case 'f':
+        return '\f';
+      case 'n':
+        return '\n';
+      case 'r':
+        return '\r';
+      case 't':
+        return '\t';
+      case 'u':
+        if (this.position + 4 > this.json.length()) {
+          throw new IllegalArgumentException("Incomplete unicode escape");
+        }
+        final String hex = this.json.substring(this.position, this.position + 4);
+        this.position += 4;
+        try {
+          return (char) Integer.parseInt(hex, 16);
+        } catch (NumberFormatException e) {
+          throw new IllegalArgumentException("Invalid unicode escape: " + hex, e);
+        }
+      default:
+        throw this.unexpected(escaped);
+    }
+  }
+
+  /** Skips over a value of any type, including nested objects and arrays. */
+  private void skipValue() {
+    final char first = this.peek();
+    if (first == '"') {
+      this.readString();
+    } else if (first == '{' || first == '[') {
+      int depth = 0;
+      do {
+        final char current = this.peek();
+        if (current == '"') {
+          this.readString();
+          continue;
+        }
+        if (current == '{' || current == '[') {
+          depth++;
+        } else if (current == '}' || current == ']') {
+          depth--;
+        }
+        this.position++;
+      } while (depth > 0);
+    } else {
+      // A number, true, false or null.
+      final int start = this.position;
+      while (this.position < this.json.length() && !isDelimiter(this.json.charAt(this.position))) {
+        this.position++;
+      }
+      if (this.position == start) {
+        throw this.unexpected(first);
+      }
+    }
+  }
+
+  private void skipWhitespace() {
+    while (this.position < this.json.length()
+        && Character.isWhitespace(this.json.charAt(this.position))) {
+      this.position++;
+    }
+  }
+
+  private void expect(char expected) {
+    final char actual = this.next();
+    if (actual != expected) {
+      throw this.unexpected(actual);
+    }
+  }
+
+  private char peek() {
+    if (this.position >= this.json.length()) {
+      throw new IllegalArgumentException("Unexpected end of JSON");
+    }
+    return this.json.charAt(this.position);
+  }
+
+  private char next() {
+    final char current = this.peek();
+    this.position++;
+    return current;
+  }
+
+  private IllegalArgumentException unexpected(char character) {
+    return new IllegalArgumentException(
+        "Unexpected character '" + character + "' at position " + this.position);
+  }
+
+  private static boolean isDelimiter(char character) {
+    return character == ','
+        || character == '}'
+        || character == ']'
+        || Character.isWhitespace(character);
+  }
+
+  private static int indexOf(String[] keys, String key) {
+    for (int i = 0; i < keys.length; i++) {
+      if (keys[i].equals(key)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+}
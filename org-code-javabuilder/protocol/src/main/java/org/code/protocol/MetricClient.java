@@ -11,4 +11,10 @@ public interface MetricClient {
   void publishTransitionTime(long transitionTime);
 
   void publishCleanupTime(long cleanupTime);
+
+  void publishOutputThrottleCount(long throttleCount);
+
+  void publishOutputRetryCount(long retryCount);
+
+  void publishInputBlockedTime(long inputBlockedTime);
 }
@@ -3,4 +3,19 @@ package org.code.protocol;
 public interface OutputAdapter {
   /** @param message An output from the user program */
   void sendMessage(ClientMessage message);
+
+  /**
+   * Sends any output this adapter is holding on to. This should be called before waiting on input
+   * from the user. By default, adapters do not hold output and this does nothing.
+   */
+  default void flush() {}
+
+  /**
+   * Sends any output this adapter is holding on to and releases any resources it uses. This is
+   * called once the user's program has finished. Messages may still be sent afterwards, so adapters
+   * should continue to accept them. By default this is the same as {@link #flush()}.
+   */
+  default void close() {
+    this.flush();
+  }
 }
@@ -1,10 +1,20 @@
 package org.code.protocol;
 
 public class Properties {
+  /** The session option that turns on streaming Theater rendering */
+  public static final String THEATER_STREAMING_OPTION_KEY = "theaterStreaming";
   /** The connection ID for the current session */
   private static String connectionId = "localhost";
   /** If Javabuilder can access assets from the Dashboard service that invoked it */
   private static boolean CAN_ACCESS_DASHBOARD_ASSETS = true;
+  /** The encoding the client asked for on messages to and from Javabuilder */
+  private static WireFormat wireFormat = WireFormat.JSON;
+  /** How the client asked for Theater output to be sent */
+  private static TheaterOutputFormat theaterOutputFormat = TheaterOutputFormat.GIF;
+  /** If Theater scenes are rendered as they are made, rather than when they are played */
+  private static boolean isTheaterStreaming = false;
+  /** How long to wait for user input before ending the session. 0 means wait indefinitely. */
+  private static long inputIdleTimeoutMillis = 0;
 
   public static void setConnectionId(String connectionId) {
     Properties.connectionId = connectionId;
@@ -21,4 +31,36 @@ public class Properties {
   public static boolean canAccessDashboardAssets() {
     return Properties.CAN_ACCESS_DASHBOARD_ASSETS;
   }
+
+  public static void setWireFormat(WireFormat wireFormat) {
+    Properties.wireFormat = wireFormat;
+  }
+
+  public static WireFormat getWireFormat() {
+    return Properties.wireFormat;
+  }
+
+  public static void setTheaterOutputFormat(TheaterOutputFormat theaterOutputFormat) {
+    Properties.theaterOutputFormat = theaterOutputFormat;
+  }
+
+  public static TheaterOutputFormat getTheaterOutputFormat() {
+    return Properties.theaterOutputFormat;
+  }
+
+  public static void setTheaterStreaming(boolean isTheaterStreaming) {
+    Properties.isTheaterStreaming = isTheaterStreaming;
+  }
+
+  public static boolean isTheaterStreaming() {
+    return Properties.isTheaterStreaming;
+  }
+
+  public static void setInputIdleTimeoutMillis(long inputIdleTimeoutMillis) {
+    Properties.inputIdleTimeoutMillis = inputIdleTimeoutMillis;
+  }
+
+  public static long getInputIdleTimeoutMillis() {
+    return Properties.inputIdleTimeoutMillis;
+  }
 }
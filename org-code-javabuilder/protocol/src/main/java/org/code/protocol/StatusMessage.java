@@ -1,14 +1,38 @@
 package org.code.protocol;
 
+import java.util.EnumMap;
 import java.util.HashMap;
 
 /** A status message directed to the client-side terminal, generated by Javabuilder. */
 public class StatusMessage extends ClientMessage {
+  // Status messages without details never change, so they are serialized once up front.
+  private static final EnumMap<StatusMessageKey, byte[]> ENCODED_MESSAGES =
+      new EnumMap<>(StatusMessageKey.class);
+
+  static {
+    for (StatusMessageKey status : StatusMessageKey.values()) {
+      ENCODED_MESSAGES.put(status, ClientMessageWriter.encode(new StatusMessage(status)));
+    }
+  }
+
+  private final StatusMessageKey status;
+  private final boolean hasDetail;
+
   public StatusMessage(StatusMessageKey status) {
     super(ClientMessageType.STATUS, status.toString());
+    this.status = status;
+    this.hasDetail = false;
   }
 
   public StatusMessage(StatusMessageKey status, HashMap<String, String> detail) {
     super(ClientMessageType.STATUS, status.toString(), detail);
+    this.status = status;
+    this.hasDetail = true;
+  }
+
+  @Override
+  byte[] getEncodedMessage() {
+    // While the cache is being built this returns null, and the message is serialized normally.
+    return this.hasDetail ? null : ENCODED_MESSAGES.get(this.status);
   }
 }
@@ -12,5 +12,6 @@ public enum StatusMessageKey {
   SENDING_VIDEO,
   TIMEOUT_WARNING,
   TIMEOUT,
+  INPUT_IDLE_TIMEOUT,
   EXITED
 }
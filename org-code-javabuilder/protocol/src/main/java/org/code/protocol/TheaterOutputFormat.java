@@ -0,0 +1,27 @@
+package org.code.protocol;
+
+/**
+ * How a Theater project's visual output is sent to the client. This is chosen by the client for
+ * each session through the "theaterOutputFormat" session option, and defaults to GIF.
+ *
+ * <p>In the GIF format, Javabuilder draws every frame and uploads an animated GIF. In the
+ * SCENE_LOG format, Javabuilder uploads the list of drawing commands the project made instead, and
+ * the client draws them. Audio is a WAV file in both formats.
+ */
+public enum TheaterOutputFormat {
+  GIF,
+  SCENE_LOG;
+
+  public static final String OPTION_KEY = "theaterOutputFormat";
+
+  /**
+   * @param option the value of the "theaterOutputFormat" session option, if any
+   * @return the matching TheaterOutputFormat, or GIF if the option is missing or not recognized
+   */
+  public static TheaterOutputFormat fromOption(String option) {
+    if (option != null && option.equalsIgnoreCase(SCENE_LOG.name())) {
+      return SCENE_LOG;
+    }
+    return GIF;
+  }
+}
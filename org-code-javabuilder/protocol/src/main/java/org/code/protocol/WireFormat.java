@@ -0,0 +1,46 @@
+package org.code.protocol;
+
+/**
+ * The encoding used for messages exchanged with the client. This is chosen by the client for each
+ * session through the "wireFormat" session option, and defaults to JSON.
+ *
+ * <p>In the BINARY format, messages to the client are encoded as:
+ *
+ * <pre>
+ * version (1 byte, currently 1)
+ * type (1 byte, the ordinal of the ClientMessageType)
+ * flags (1 byte: 0x1 = has value, 0x2 = has detail map, 0x4 = has JSON detail)
+ * value (varint byte length, then UTF-8 bytes), if present
+ * detail map (varint entry count, then a varint length and UTF-8 bytes for each key and value), or
+ * JSON detail (varint byte length, then the detail object as UTF-8 JSON text), if present
+ * </pre>
+ *
+ * <p>Messages from the client are encoded as a version byte, then the ordinal of the
+ * InputMessageType, then the message as UTF-8 bytes, all Base64 encoded. Clients must send these as
+ * WebSocket text frames, even in the BINARY format: API Gateway WebSocket APIs reject incoming
+ * binary frames, and input is relayed to the session through SQS as text. Only messages to the
+ * client are sent as binary frames. Lengths are unsigned LEB128 varints. Because ordinals are part
+ * of the format, new values of ClientMessageType and InputMessageType must only be added at the
+ * end.
+ */
+public enum WireFormat {
+  JSON,
+  BINARY;
+
+  public static final String OPTION_KEY = "wireFormat";
+  static final int BINARY_VERSION = 1;
+  static final int HAS_VALUE_FLAG = 0x1;
+  static final int HAS_DETAIL_MAP_FLAG = 0x2;
+  static final int HAS_JSON_DETAIL_FLAG = 0x4;
+
+  /**
+   * @param option the value of the "wireFormat" session option, if any
+   * @return the matching WireFormat, or JSON if the option is missing or not recognized
+   */
+  public static WireFormat fromOption(String option) {
+    if (option != null && option.equalsIgnoreCase(BINARY.name())) {
+      return BINARY;
+    }
+    return JSON;
+  }
+}
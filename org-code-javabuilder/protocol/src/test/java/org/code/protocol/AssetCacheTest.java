@@ -0,0 +1,270 @@
+package org.code.protocol;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.*;
+
+import com.sun.net.httpserver.HttpServer;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class AssetCacheTest {
+  private static final long MAX_BYTES = 100;
+  private static final long REVALIDATE_AFTER_MS = 1000;
+  private static final String ETAG = "\"test-etag\"";
+
+  @TempDir Path tempDir;
+
+  private Clock clock;
+  private AssetCache.Decoder<String> decoder;
+  private AssetCache unitUnderTest;
+  private HttpServer server;
+  private AtomicInteger fullResponses;
+  private AtomicInteger notModifiedResponses;
+  // If set, conditional requests are answered with this status instead of 304.
+  private AtomicInteger revalidationStatus;
+
+  @BeforeEach
+  public void setUp() throws IOException {
+    clock = mock(Clock.class);
+    when(clock.millis()).thenReturn(0L);
+    decoder = spy(new StringDecoder());
+    unitUnderTest = new AssetCache(MAX_BYTES, REVALIDATE_AFTER_MS, clock);
+  }
+
+  @AfterEach
+  public void tearDown() {
+    if (server != null) {
+      server.stop(0);
+    }
+  }
+
+  @Test
+  public void testReturnsCachedBytesWithoutReadingAgain() throws IOException {
+    final Path file = writeFile("asset.txt", "hello");
+    final URL url = file.toUri().toURL();
+
+    assertEquals("hello", readAll(unitUnderTest.openStream(url)));
+    Files.writeString(file, "changed");
+    assertEquals("hello", readAll(unitUnderTest.openStream(url)));
+  }
+
+  @Test
+  public void testDecodesOnlyOnce() throws IOException {
+    final URL url = writeFile("asset.txt", "hello").toUri().toURL();
+
+    final String first = unitUnderTest.get(url, decoder);
+    final String second = unitUnderTest.get(url, decoder);
+
+    assertEquals("hello", first);
+    assertSame(first, second);
+    verify(decoder, times(1)).decode(any());
+  }
+
+  @Test
+  public void testRereadsAfterRevalidationInterval() throws IOException {
+    final Path file = writeFile("asset.txt", "hello");
+    final URL url = file.toUri().toURL();
+    unitUnderTest.openStream(url);
+
+    Files.writeString(file, "changed");
+    when(clock.millis()).thenReturn(REVALIDATE_AFTER_MS);
+
+    assertEquals("changed", readAll(unitUnderTest.openStream(url)));
+  }
+
+  @Test
+  public void testEvictsLeastRecentlyUsedEntries() throws IOException {
+    final Path first = writeFile("first.txt", "a".repeat(20));
+    final Path second = writeFile("second.txt", "b".repeat(20));
+    final Path third = writeFile("third.txt", "c".repeat(20));
+    // Each entry takes 40 bytes once decoded, so only two fit.
+    unitUnderTest.get(first.toUri().toURL(), decoder);
+    unitUnderTest.get(second.toUri().toURL(), decoder);
+    unitUnderTest.get(first.toUri().toURL(), decoder);
+    unitUnderTest.get(third.toUri().toURL(), decoder);
+
+    Files.delete(first);
+    Files.delete(second);
+    assertEquals("a".repeat(20), readAll(unitUnderTest.openStream(first.toUri().toURL())));
+    assertThrows(
+        FileNotFoundException.class, () -> unitUnderTest.openStream(second.toUri().toURL()));
+  }
+
+  @Test
+  public void testDoesNotCacheLargeEntries() throws IOException {
+    final Path file = writeFile("large.txt", "a".repeat((int) MAX_BYTES / 2));
+    final URL url = file.toUri().toURL();
+    unitUnderTest.openStream(url);
+
+    Files.delete(file);
+    assertThrows(FileNotFoundException.class, () -> unitUnderTest.openStream(url));
+  }
+
+  @Test
+  public void testPinnedEntriesAreNeverEvictedOrRevalidated() throws IOException {
+    final Path pinned = writeFile("pinned.txt", "p".repeat(40));
+    final URL pinnedUrl = pinned.toUri().toURL();
+    unitUnderTest.pin(pinnedUrl.toString());
+    unitUnderTest.get(pinnedUrl, decoder);
+
+    for (int i = 0; i < 5; i++) {
+      unitUnderTest.get(writeFile(i + ".txt", "x".repeat(20)).toUri().toURL(), decoder);
+    }
+    Files.delete(pinned);
+    when(clock.millis()).thenReturn(REVALIDATE_AFTER_MS * 10);
+
+    assertEquals("p".repeat(40), readAll(unitUnderTest.openStream(pinnedUrl)));
+  }
+
+  @Test
+  public void testRevalidatesWithEtag() throws IOException {
+    final URL url = startServer("hello");
+
+    assertEquals("hello", unitUnderTest.get(url, decoder));
+    when(clock.millis()).thenReturn(REVALIDATE_AFTER_MS);
+    assertEquals("hello", unitUnderTest.get(url, decoder));
+    // Still fresh after being revalidated, so no request is made.
+    assertEquals("hello", unitUnderTest.get(url, decoder));
+
+    assertEquals(1, fullResponses.get());
+    assertEquals(1, notModifiedResponses.get());
+    verify(decoder, times(1)).decode(any());
+  }
+
+  @Test
+  public void testServesCachedCopyIfRevalidationFails() throws IOException {
+    final URL url = startServer("hello");
+
+    assertEquals("hello", unitUnderTest.get(url, decoder));
+    revalidationStatus.set(503);
+    when(clock.millis()).thenReturn(REVALIDATE_AFTER_MS);
+    assertEquals("hello", unitUnderTest.get(url, decoder));
+
+    assertEquals(1, fullResponses.get());
+    verify(decoder, times(1)).decode(any());
+  }
+
+  @Test
+  public void testDropsCachedCopyIfAssetWasRemoved() throws IOException {
+    final URL url = startServer("hello");
+
+    assertEquals("hello", unitUnderTest.get(url, decoder));
+    revalidationStatus.set(404);
+    when(clock.millis()).thenReturn(REVALIDATE_AFTER_MS);
+    assertThrows(FileNotFoundException.class, () -> unitUnderTest.get(url, decoder));
+
+    // The asset is downloaded again once it is back.
+    revalidationStatus.set(0);
+    assertEquals("hello", unitUnderTest.get(url, decoder));
+    assertEquals(2, fullResponses.get());
+  }
+
+  @Test
+  public void testSharesPrefetchWithConcurrentLoad() throws Exception {
+    final CountDownLatch requestStarted = new CountDownLatch(1);
+    final CountDownLatch releaseResponse = new CountDownLatch(1);
+    final URL url = startServer("hello", requestStarted, releaseResponse);
+
+    unitUnderTest.prefetch(url);
+    assertTrue(requestStarted.await(5, TimeUnit.SECONDS));
+    final CompletableFuture<String> load =
+        CompletableFuture.supplyAsync(
+            () -> {
+              try {
+                return readAll(unitUnderTest.openStream(url));
+              } catch (IOException e) {
+                throw new UncheckedIOException(e);
+              }
+            });
+    releaseResponse.countDown();
+
+    assertEquals("hello", load.get(5, TimeUnit.SECONDS));
+    assertEquals(1, fullResponses.get());
+  }
+
+  @Test
+  public void testPropagatesErrors() throws IOException {
+    final URL url = tempDir.resolve("missing.txt").toUri().toURL();
+    assertThrows(FileNotFoundException.class, () -> unitUnderTest.openStream(url));
+  }
+
+  private URL startServer(String body) throws IOException {
+    return startServer(body, new CountDownLatch(1), new CountDownLatch(0));
+  }
+
+  private URL startServer(String body, CountDownLatch requestStarted, CountDownLatch release)
+      throws IOException {
+    fullResponses = new AtomicInteger();
+    notModifiedResponses = new AtomicInteger();
+    revalidationStatus = new AtomicInteger();
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext(
+        "/asset",
+        exchange -> {
+          final boolean isRevalidation =
+              ETAG.equals(exchange.getRequestHeaders().getFirst("If-None-Match"));
+          if (isRevalidation && revalidationStatus.get() != 0) {
+            exchange.sendResponseHeaders(revalidationStatus.get(), -1);
+          } else if (isRevalidation) {
+            notModifiedResponses.incrementAndGet();
+            exchange.sendResponseHeaders(304, -1);
+          } else {
+            fullResponses.incrementAndGet();
+            requestStarted.countDown();
+            try {
+              release.await();
+            } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+            }
+            final byte[] bytes = body.getBytes();
+            exchange.getResponseHeaders().set("ETag", ETAG);
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream outputStream = exchange.getResponseBody()) {
+              outputStream.write(bytes);
+            }
+          }
+          exchange.close();
+        });
+    server.start();
+    return new URL("http://localhost:" + server.getAddress().getPort() + "/asset");
+  }
+
+  private Path writeFile(String name, String contents) throws IOException {
+    return Files.writeString(tempDir.resolve(name), contents);
+  }
+
+  private static String readAll(InputStream inputStream) throws IOException {
+    return new String(inputStream.readAllBytes());
+  }
+
+  static class StringDecoder implements AssetCache.Decoder<String> {
+    @Override
+    public String decode(byte[] bytes) {
+      return new String(bytes);
+    }
+
+    @Override
+    public long getSizeInBytes(String value) {
+      return value.length();
+    }
+  }
+}
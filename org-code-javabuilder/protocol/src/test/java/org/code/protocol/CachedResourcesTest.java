@@ -3,20 +3,42 @@ package org.code.protocol;
 import static org.junit.jupiter.api.Assertions.*;
 
 import java.awt.*;
-import java.util.Map;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 public class CachedResourcesTest {
+  @TempDir Path tempDir;
+
   @Test
-  public void onlyCreatesFontMapOnce() {
+  public void onlyLoadsEachFontOnce() {
     CachedResources cachedResources = new CachedResources();
-    Map<String, Font> fonts = cachedResources.getFontMap();
-    Font monoBold = fonts.get("LiberationMono-Bold.ttf");
-    Map<String, Font> fontsAgain = cachedResources.getFontMap();
-    Font secondMonoBold = fonts.get("LiberationMono-Bold.ttf");
+    Font monoBold = cachedResources.getFont("LiberationMono-Bold.ttf");
+    Font secondMonoBold = cachedResources.getFont("LiberationMono-Bold.ttf");
+    Font sansBold = cachedResources.getFont("LiberationSans-Bold.ttf");
     // assert font is not null
     assertNotNull(monoBold);
     // assert object equality of the two "mono bold" fonts.
     assertTrue(monoBold == secondMonoBold);
+    assertNotEquals(monoBold.getFamily(), sansBold.getFamily());
+  }
+
+  @Test
+  public void mapsFileOnceAndReturnsIndependentReadOnlyViews() throws IOException {
+    final Path file = Files.write(tempDir.resolve("data.bin"), new byte[] {1, 2, 3, 4});
+    CachedResources cachedResources = new CachedResources();
+
+    ByteBuffer first = cachedResources.getMappedFile(file);
+    first.position(2);
+    ByteBuffer second = cachedResources.getMappedFile(file);
+
+    assertTrue(first.isReadOnly());
+    assertEquals(0, second.position());
+    assertEquals(4, second.remaining());
+    assertEquals(3, first.get());
+    assertEquals(1, second.get());
   }
 }
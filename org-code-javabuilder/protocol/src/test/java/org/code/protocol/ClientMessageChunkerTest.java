@@ -0,0 +1,88 @@
+package org.code.protocol;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class ClientMessageChunkerTest {
+  private static final int MAX_MESSAGE_BYTES = 100;
+
+  private ClientMessageChunker unitUnderTest;
+
+  @BeforeEach
+  public void setUp() {
+    unitUnderTest = new ClientMessageChunker(MAX_MESSAGE_BYTES);
+  }
+
+  @Test
+  public void testDoesNotSplitSmallMessages() {
+    final ByteBuffer message = ByteBuffer.wrap("{\"type\":\"SYSTEM_OUT\"}".getBytes());
+
+    final List<ByteBuffer> chunks = unitUnderTest.split(message);
+
+    assertEquals(1, chunks.size());
+    assertSame(message, chunks.get(0));
+  }
+
+  @Test
+  public void testSplitsLargeMessagesIntoChunksThatReassemble() {
+    final byte[] message = "x".repeat(1000).getBytes(StandardCharsets.UTF_8);
+
+    final List<ByteBuffer> chunks = unitUnderTest.split(ByteBuffer.wrap(message));
+
+    assertTrue(chunks.size() > 1);
+    for (int i = 0; i < chunks.size(); i++) {
+      final ByteBuffer chunk = chunks.get(i);
+      assertTrue(chunk.remaining() <= MAX_MESSAGE_BYTES);
+      assertEquals("CHUNK:0:" + i + ":" + chunks.size(), this.getHeader(chunk));
+    }
+    assertArrayEquals(message, this.reassemble(chunks));
+  }
+
+  @Test
+  public void testDoesNotSplitMultiByteCharacters() {
+    // Each character is three bytes long in UTF-8
+    final String value = "\u4e2d".repeat(200);
+
+    final List<ByteBuffer> chunks =
+        unitUnderTest.split(ByteBuffer.wrap(value.getBytes(StandardCharsets.UTF_8)));
+
+    final StringBuilder reassembled = new StringBuilder();
+    for (ByteBuffer chunk : chunks) {
+      final String chunkText = StandardCharsets.UTF_8.decode(chunk.duplicate()).toString();
+      assertFalse(chunkText.contains("\ufffd"));
+      reassembled.append(chunkText.substring(chunkText.indexOf('\n') + 1));
+    }
+    assertEquals(value, reassembled.toString());
+  }
+
+  @Test
+  public void testUsesNewMessageIdForEachChunkedMessage() {
+    final byte[] message = "x".repeat(1000).getBytes(StandardCharsets.UTF_8);
+
+    unitUnderTest.split(ByteBuffer.wrap(message));
+    final List<ByteBuffer> chunks = unitUnderTest.split(ByteBuffer.wrap(message));
+
+    assertTrue(this.getHeader(chunks.get(0)).startsWith("CHUNK:1:"));
+  }
+
+  private String getHeader(ByteBuffer chunk) {
+    final String text = StandardCharsets.UTF_8.decode(chunk.duplicate()).toString();
+    return text.substring(0, text.indexOf('\n'));
+  }
+
+  private byte[] reassemble(List<ByteBuffer> chunks) {
+    final ByteArrayOutputStream output = new ByteArrayOutputStream();
+    for (ByteBuffer chunk : chunks) {
+      final ByteBuffer data = chunk.duplicate();
+      while (data.get() != '\n') {}
+      output.write(data.array(), data.arrayOffset() + data.position(), data.remaining());
+    }
+    return output.toByteArray();
+  }
+}
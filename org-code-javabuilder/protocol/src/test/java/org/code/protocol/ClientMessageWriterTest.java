@@ -0,0 +1,204 @@
+package org.code.protocol;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import org.json.JSONObject;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class ClientMessageWriterTest {
+  enum ExceptionKey {
+    SAMPLE_EXCEPTION
+  }
+
+  private ClientMessageWriter unitUnderTest;
+
+  @BeforeEach
+  public void setUp() {
+    unitUnderTest = new ClientMessageWriter(8);
+  }
+
+  @Test
+  public void testWritesMessageWithDetails() {
+    final HashMap<String, String> details = new HashMap<>();
+    details.put("foo", "bar");
+
+    unitUnderTest.write(new JavabuilderThrowableMessage(ExceptionKey.SAMPLE_EXCEPTION, details));
+
+    assertEquals(
+        "{\"detail\":{\"foo\":\"bar\"},\"type\":\"EXCEPTION\",\"value\":\"SAMPLE_EXCEPTION\"}",
+        unitUnderTest.toString());
+  }
+
+  @Test
+  public void testIgnoresChangesToDetailsAfterMessageIsCreated() {
+    final HashMap<String, String> details = new HashMap<>();
+    details.put("foo", "bar");
+    final ClientMessage message =
+        new JavabuilderThrowableMessage(ExceptionKey.SAMPLE_EXCEPTION, details);
+    details.put("foo", "changed");
+    details.put("extra", "value");
+
+    unitUnderTest.write(message);
+
+    assertEquals(
+        "{\"detail\":{\"foo\":\"bar\"},\"type\":\"EXCEPTION\",\"value\":\"SAMPLE_EXCEPTION\"}",
+        unitUnderTest.toString());
+  }
+
+  @Test
+  public void testWritesChangesMadeThroughGetDetail() {
+    final HashMap<String, String> details = new HashMap<>();
+    details.put("foo", "bar");
+    final ClientMessage message =
+        new JavabuilderThrowableMessage(ExceptionKey.SAMPLE_EXCEPTION, details);
+    message.getDetail().put("foo", "baz");
+
+    unitUnderTest.write(message);
+
+    assertEquals(
+        "{\"detail\":{\"foo\":\"baz\"},\"type\":\"EXCEPTION\",\"value\":\"SAMPLE_EXCEPTION\"}",
+        unitUnderTest.toString());
+  }
+
+  @Test
+  public void testEscapesStringsLikeOrgJson() {
+    final String value = "quote\" slash\\ </tag>\n\t\u0001\u0085\u00e9\u2028\ud83d\ude00";
+    final HashMap<String, String> details = new HashMap<>();
+    details.put("key", value);
+
+    unitUnderTest.write(new JavabuilderThrowableMessage(ExceptionKey.SAMPLE_EXCEPTION, details));
+
+    final JSONObject expected = new JSONObject();
+    expected.put("key", value);
+    assertEquals(
+        "{\"detail\":"
+            + expected.toString()
+            + ",\"type\":\"EXCEPTION\",\"value\":\"SAMPLE_EXCEPTION\"}",
+        unitUnderTest.toString());
+  }
+
+  @Test
+  public void testWritesUtf8Bytes() {
+    unitUnderTest.write(new TestMessage("\u00e9\u4e2d\ud83d\ude00"));
+
+    final ByteBuffer bytes = unitUnderTest.toByteBuffer();
+    final byte[] expected =
+        "{\"type\":\"SYSTEM_OUT\",\"value\":\"\u00e9\u4e2d\ud83d\ude00\"}"
+            .getBytes(StandardCharsets.UTF_8);
+    assertEquals(expected.length, bytes.remaining());
+    final byte[] actual = new byte[bytes.remaining()];
+    bytes.get(actual);
+    assertArrayEquals(expected, actual);
+  }
+
+  @Test
+  public void testReusesWriterForSeveralMessages() {
+    unitUnderTest.write(new TestMessage("a much longer first message that grows the buffer"));
+    unitUnderTest.write(new TestMessage("short"));
+
+    assertEquals("{\"type\":\"SYSTEM_OUT\",\"value\":\"short\"}", unitUnderTest.toString());
+  }
+
+  @Test
+  public void testSkipsEmptyAndNullDetails() {
+    final HashMap<String, String> details = new HashMap<>();
+    details.put("foo", null);
+
+    unitUnderTest.write(new JavabuilderThrowableMessage(ExceptionKey.SAMPLE_EXCEPTION, details));
+
+    assertEquals(
+        "{\"type\":\"EXCEPTION\",\"value\":\"SAMPLE_EXCEPTION\"}", unitUnderTest.toString());
+  }
+
+  @Test
+  public void testWritesJSONObjectDetails() {
+    final JSONObject details = new JSONObject();
+    details.put("count", 3);
+
+    unitUnderTest.write(new TestMessage("value", details));
+
+    assertEquals(
+        "{\"detail\":{\"count\":3},\"type\":\"SYSTEM_OUT\",\"value\":\"value\"}",
+        unitUnderTest.toString());
+  }
+
+  @Test
+  public void testStatusMessagesWithoutDetailsArePreEncoded() {
+    final StatusMessage message = new StatusMessage(StatusMessageKey.RUNNING);
+
+    assertNotNull(message.getEncodedMessage());
+    assertEquals("{\"type\":\"STATUS\",\"value\":\"RUNNING\"}", message.getFormattedMessage());
+  }
+
+  @Test
+  public void testStatusMessagesWithDetailsAreNotPreEncoded() {
+    final HashMap<String, String> details = new HashMap<>();
+    details.put("foo", "bar");
+    final StatusMessage message = new StatusMessage(StatusMessageKey.RUNNING, details);
+
+    assertNull(message.getEncodedMessage());
+    assertEquals(
+        "{\"detail\":{\"foo\":\"bar\"},\"type\":\"STATUS\",\"value\":\"RUNNING\"}",
+        message.getFormattedMessage());
+  }
+
+  @Test
+  public void testWritesBinaryMessageWithDetails() {
+    final HashMap<String, String> details = new HashMap<>();
+    details.put("x", "10");
+    unitUnderTest = new ClientMessageWriter(WireFormat.BINARY, 8);
+
+    unitUnderTest.write(new JavabuilderThrowableMessage(ExceptionKey.SAMPLE_EXCEPTION, details));
+
+    final byte[] expected = {
+      1, // version
+      (byte) ClientMessageType.EXCEPTION.ordinal(),
+      0x3, // has value and detail map
+      16, 'S', 'A', 'M', 'P', 'L', 'E', '_', 'E', 'X', 'C', 'E', 'P', 'T', 'I', 'O', 'N',
+      1, // one detail entry
+      1, 'x',
+      2, '1', '0'
+    };
+    assertArrayEquals(expected, unitUnderTest.toByteArray());
+  }
+
+  @Test
+  public void testWritesBinaryLengthsAsVarints() {
+    final String value = "a".repeat(200);
+    unitUnderTest = new ClientMessageWriter(WireFormat.BINARY, 8);
+
+    unitUnderTest.write(new TestMessage(value));
+
+    final byte[] bytes = unitUnderTest.toByteArray();
+    assertEquals(3 + 2 + 200, bytes.length);
+    // 200 is written as 0xC8 0x01
+    assertEquals((byte) 0xC8, bytes[3]);
+    assertEquals((byte) 0x01, bytes[4]);
+  }
+
+  @Test
+  public void testBinaryStatusMessagesAreNotPreEncodedJson() {
+    unitUnderTest = new ClientMessageWriter(WireFormat.BINARY, 8);
+
+    unitUnderTest.write(new StatusMessage(StatusMessageKey.EXITED));
+
+    final byte[] expected = {
+      1, (byte) ClientMessageType.STATUS.ordinal(), 0x1, 6, 'E', 'X', 'I', 'T', 'E', 'D'
+    };
+    assertArrayEquals(expected, unitUnderTest.toByteArray());
+  }
+
+  private static class TestMessage extends ClientMessage {
+    TestMessage(String value) {
+      super(ClientMessageType.SYSTEM_OUT, value);
+    }
+
+    TestMessage(String value, JSONObject detail) {
+      super(ClientMessageType.SYSTEM_OUT, value, detail);
+    }
+  }
+}
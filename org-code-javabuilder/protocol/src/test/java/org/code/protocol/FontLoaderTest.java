@@ -1,16 +1,30 @@
 package org.code.protocol;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 import java.awt.*;
-import java.util.Map;
 import org.junit.jupiter.api.Test;
 
 public class FontLoaderTest {
   @Test
-  public void createsFontMap() {
-    Map<String, Font> fonts = FontLoader.getFontMap();
-    // there should be 12 fonts in the map
-    assertEquals(12, fonts.keySet().size());
+  public void loadsEveryBundledFont() {
+    for (String family : new String[] {"LiberationMono", "LiberationSans", "LiberationSerif"}) {
+      for (String style : new String[] {"Bold", "BoldItalic", "Italic", "Regular"}) {
+        assertNotNull(FontLoader.loadFont(family + "-" + style + ".ttf"));
+      }
+    }
+  }
+
+  @Test
+  public void loadsSingleFont() {
+    Font font = FontLoader.loadFont("LiberationSerif-Italic.ttf");
+    assertEquals("Liberation Serif Italic", font.getFontName());
+  }
+
+  @Test
+  public void throwsForMissingFont() {
+    assertThrows(InternalServerRuntimeException.class, () -> FontLoader.loadFont("Missing.ttf"));
   }
 }
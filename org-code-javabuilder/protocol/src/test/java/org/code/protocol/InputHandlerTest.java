@@ -1,13 +1,21 @@
 package org.code.protocol;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.Mockito.*;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.util.Base64;
 import java.util.Map;
 import org.json.JSONObject;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
 
 class InputHandlerTest {
 
@@ -20,6 +28,11 @@ class InputHandlerTest {
     unitUnderTest = new InputHandler(inputAdapter);
   }
 
+  @AfterEach
+  public void tearDown() {
+    unitUnderTest.close();
+  }
+
   @Test
   public void testGetsNextMessageForTypeCorrectly() {
     final String testMessage = "test message";
@@ -86,6 +99,171 @@ class InputHandlerTest {
     assertEquals(InternalExceptionKey.INTERNAL_RUNTIME_EXCEPTION.name(), e.getMessage());
   }
 
+  @Test
+  public void testFlushesOutputBeforeWaitingForInput() {
+    final OutputAdapter outputAdapter = mock(OutputAdapter.class);
+    unitUnderTest = new InputHandler(inputAdapter, outputAdapter);
+    when(inputAdapter.getNextMessage())
+        .thenReturn(createJsonMessage(InputMessageType.SYSTEM_IN.name(), "input"));
+
+    unitUnderTest.getNextMessageForType(InputMessageType.SYSTEM_IN);
+
+    final InOrder inOrder = inOrder(outputAdapter, inputAdapter);
+    inOrder.verify(outputAdapter).flush();
+    inOrder.verify(inputAdapter).getNextMessage();
+  }
+
+  @Test
+  public void testGetsNextMessageInBinaryFormat() {
+    unitUnderTest = new InputHandler(inputAdapter, null, WireFormat.BINARY);
+    when(inputAdapter.getNextMessage())
+        .thenReturn(createBinaryMessage(InputMessageType.THEATER, "theater message"))
+        .thenReturn(createBinaryMessage(InputMessageType.SYSTEM_IN, "test message"));
+
+    assertEquals(
+        "test message", unitUnderTest.getNextMessageForType(InputMessageType.SYSTEM_IN));
+    assertEquals(
+        "theater message", unitUnderTest.getNextMessageForType(InputMessageType.THEATER));
+  }
+
+  @Test
+  public void testThrowsExceptionIfBinaryMessageIsInvalid() {
+    unitUnderTest = new InputHandler(inputAdapter, null, WireFormat.BINARY);
+    when(inputAdapter.getNextMessage()).thenReturn(createJsonMessage("SYSTEM_IN", "json"));
+    Exception e =
+        assertThrows(
+            InternalServerRuntimeException.class,
+            () -> unitUnderTest.getNextMessageForType(InputMessageType.SYSTEM_IN));
+    assertEquals(InternalExceptionKey.INTERNAL_RUNTIME_EXCEPTION.name(), e.getMessage());
+  }
+
+  @Test
+  public void testTracksTimeBlockedForEachType() {
+    final Clock clock = mock(Clock.class);
+    when(clock.millis()).thenReturn(1000L, 1500L, 2000L, 2200L);
+    unitUnderTest = new InputHandler(inputAdapter, null, WireFormat.JSON, 0, clock);
+    when(inputAdapter.getNextMessage())
+        .thenReturn(createJsonMessage(InputMessageType.SYSTEM_IN.name(), "first"))
+        .thenReturn(createJsonMessage(InputMessageType.THEATER.name(), "second"));
+
+    unitUnderTest.getNextMessageForType(InputMessageType.SYSTEM_IN);
+    unitUnderTest.getNextMessageForType(InputMessageType.THEATER);
+
+    final Map<InputMessageType, Long> blockedTime = unitUnderTest.getBlockedTimeMillis();
+    assertEquals(500L, blockedTime.get(InputMessageType.SYSTEM_IN));
+    assertEquals(200L, blockedTime.get(InputMessageType.THEATER));
+  }
+
+  @Test
+  public void testDoesNotTrackTimeForQueuedMessages() {
+    when(inputAdapter.getNextMessage())
+        .thenReturn(createJsonMessage(InputMessageType.THEATER.name(), "theater"))
+        .thenReturn(createJsonMessage(InputMessageType.SYSTEM_IN.name(), "input"));
+
+    unitUnderTest.getNextMessageForType(InputMessageType.SYSTEM_IN);
+    unitUnderTest.getNextMessageForType(InputMessageType.THEATER);
+
+    assertFalse(unitUnderTest.getBlockedTimeMillis().containsKey(InputMessageType.THEATER));
+  }
+
+  @Test
+  public void testWaitsForRemainingIdleTimeout() {
+    final Clock clock = mock(Clock.class);
+    when(clock.millis()).thenReturn(0L, 0L, 400L, 700L, 900L);
+    unitUnderTest = new InputHandler(inputAdapter, null, WireFormat.JSON, 1000, clock);
+    when(inputAdapter.getNextMessage(anyLong()))
+        .thenReturn(createJsonMessage(InputMessageType.THEATER.name(), "theater"))
+        .thenReturn(createJsonMessage(InputMessageType.SYSTEM_IN.name(), "input"));
+
+    assertEquals("input", unitUnderTest.getNextMessageForType(InputMessageType.SYSTEM_IN));
+    verify(inputAdapter).getNextMessage(1000);
+    // The idle time starts over once any message is received.
+    verify(inputAdapter).getNextMessage(700);
+    verify(inputAdapter, never()).getNextMessage();
+  }
+
+  @Test
+  public void testThrowsIfNoInputBeforeIdleTimeout() {
+    final Clock clock = mock(Clock.class);
+    when(clock.millis()).thenReturn(0L);
+    unitUnderTest = new InputHandler(inputAdapter, null, WireFormat.JSON, 1000, clock);
+    when(inputAdapter.getNextMessage(anyLong())).thenReturn(null);
+
+    assertThrows(
+        InputIdleTimeoutError.class,
+        () -> unitUnderTest.getNextMessageForType(InputMessageType.SYSTEM_IN));
+    assertEquals(0L, unitUnderTest.getBlockedTimeMillis().get(InputMessageType.SYSTEM_IN));
+  }
+
+  @Test
+  public void testParsesEscapedJsonMessage() {
+    final String testMessage = "say \"hi\"\n\u00e9";
+    when(inputAdapter.getNextMessage())
+        .thenReturn(createJsonMessage(InputMessageType.SYSTEM_IN.name(), testMessage));
+    assertEquals(testMessage, unitUnderTest.getNextMessageForType(InputMessageType.SYSTEM_IN));
+  }
+
+  @Test
+  public void testDoesNotReadInputUntilRequested() {
+    when(inputAdapter.getNextMessage())
+        .thenReturn(createJsonMessage(InputMessageType.SYSTEM_IN.name(), "input"));
+
+    unitUnderTest.getNextMessageForType(InputMessageType.SYSTEM_IN);
+
+    // Once the request is fulfilled, nothing more is read until the next request.
+    verify(inputAdapter, after(200).times(1)).getNextMessage();
+  }
+
+  /** A consumer waiting on one type does not receive, or hold up, messages of another type. */
+  @Test
+  public void testDeliversMessagesToConcurrentConsumers() throws InterruptedException {
+    when(inputAdapter.getNextMessage())
+        .thenReturn(createJsonMessage(InputMessageType.SYSTEM_IN.name(), "input"))
+        .thenReturn(createJsonMessage(InputMessageType.THEATER.name(), "theater"));
+    final String[] theaterMessage = new String[1];
+    final Thread theaterConsumer =
+        new Thread(
+            () ->
+                theaterMessage[0] = unitUnderTest.getNextMessageForType(InputMessageType.THEATER));
+
+    theaterConsumer.start();
+    assertEquals("input", unitUnderTest.getNextMessageForType(InputMessageType.SYSTEM_IN));
+    theaterConsumer.join(1000);
+
+    assertEquals("theater", theaterMessage[0]);
+  }
+
+  @Test
+  public void testThrowsIfInterruptedWhileWaiting() {
+    when(inputAdapter.getNextMessage())
+        .thenAnswer(
+            invocation -> {
+              Thread.sleep(10000);
+              return null;
+            });
+
+    Thread.currentThread().interrupt();
+    try {
+      Exception e =
+          assertThrows(
+              InternalServerRuntimeException.class,
+              () -> unitUnderTest.getNextMessageForType(InputMessageType.SYSTEM_IN));
+      assertEquals(InternalExceptionKey.CONNECTION_TERMINATED.name(), e.getMessage());
+      assertTrue(Thread.currentThread().isInterrupted());
+    } finally {
+      Thread.interrupted();
+    }
+  }
+
+  private String createBinaryMessage(InputMessageType messageType, String message) {
+    final byte[] messageBytes = message.getBytes(StandardCharsets.UTF_8);
+    final byte[] bytes = new byte[messageBytes.length + 2];
+    bytes[0] = 1;
+    bytes[1] = (byte) messageType.ordinal();
+    System.arraycopy(messageBytes, 0, bytes, 2, messageBytes.length);
+    return Base64.getEncoder().encodeToString(bytes);
+  }
+
   private String createJsonMessage(String messageType, String message) {
     return new JSONObject(Map.of("messageType", messageType, "message", message)).toString();
   }
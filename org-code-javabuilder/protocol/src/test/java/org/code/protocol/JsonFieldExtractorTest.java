@@ -0,0 +1,66 @@
+package org.code.protocol;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+class JsonFieldExtractorTest {
+
+  @Test
+  public void testExtractsRequestedFields() {
+    final String json = "{\"messageType\":\"SYSTEM_IN\",\"message\":\"hello\"}";
+    assertArrayEquals(
+        new String[] {"SYSTEM_IN", "hello"},
+        JsonFieldExtractor.extractStrings(json, "messageType", "message"));
+  }
+
+  @Test
+  public void testReturnsNullForMissingFields() {
+    assertArrayEquals(
+        new String[] {"a", null}, JsonFieldExtractor.extractStrings("{\"x\":\"a\"}", "x", "y"));
+  }
+
+  @Test
+  public void testUnescapesValues() {
+    final String json = "{\"message\":\"quote \\\" slash \\\\ \\/ tab \\t line \\n \\u00e9\"}";
+    assertArrayEquals(
+        new String[] {"quote \" slash \\ / tab \t line \n \u00e9"},
+        JsonFieldExtractor.extractStrings(json, "message"));
+  }
+
+  @Test
+  public void testSkipsOtherFieldsOfAnyType() {
+    final String json =
+        " { \"list\" : [1, {\"a\": \"]}\"}], \"number\": -1.5e3, \"flag\": true,"
+            + " \"none\": null, \"message\" : \"hi\" } ";
+    assertArrayEquals(new String[] {"hi"}, JsonFieldExtractor.extractStrings(json, "message"));
+  }
+
+  @Test
+  public void testThrowsIfNotAnObject() {
+    assertThrows(
+        IllegalArgumentException.class, () -> JsonFieldExtractor.extractStrings("not json", "a"));
+    assertThrows(
+        IllegalArgumentException.class, () -> JsonFieldExtractor.extractStrings("{\"a\":", "a"));
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> JsonFieldExtractor.extractStrings("{\"a\":\"b\"} extra", "a"));
+  }
+
+  @Test
+  public void testThrowsIfRequestedFieldIsNotAString() {
+    assertThrows(
+        IllegalArgumentException.class, () -> JsonFieldExtractor.extractStrings("{\"a\":1}", "a"));
+  }
+
+  @Test
+  public void testThrowsOnInvalidEscape() {
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> JsonFieldExtractor.extractStrings("{\"a\":\"\\u12\"}", "a"));
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> JsonFieldExtractor.extractStrings("{\"a\":\"\\x\"}", "a"));
+  }
+}
@@ -67,7 +67,7 @@ public class Scene {
    * @param color new background color
    */
   public final void clear(Color color) {
-    this.actions.add(new ClearSceneAction(color));
+    this.addAction(new ClearSceneAction(color));
   }
 
   /**
@@ -78,7 +78,7 @@ public class Scene {
   public final void playSound(double[] sound) {
     // Copy the array here so subsequent changes to it are not reflected
     // in the sound played here.
-    this.actions.add(new PlaySoundAction(sound.clone()));
+    this.addAction(new PlaySoundAction(sound.clone()));
   }
 
   /**
@@ -88,7 +88,13 @@ public class Scene {
    */
   public final void playSound(String filename) {
     try {
-      this.playSound(AudioUtils.readSamplesFromAssetFile(filename));
+      // A sound is cut off at the length of the longest allowed video, so the rest of a long file
+      // is never decoded. Only pauses count towards the video length, so a long background track
+      // is still allowed.
+      final int maxSamples = AudioUtils.getSampleCount(TheaterProgressPublisher.MAX_TIME_S);
+      final double[] samples = AudioUtils.readSamplesFromAssetFile(filename, maxSamples);
+      // The samples were just read, so there is no need to copy them as playSound(double[]) does.
+      this.addAction(new PlaySoundAction(samples));
     } catch (FileNotFoundException e) {
       throw new TheaterRuntimeException(ExceptionKeys.FILE_NOT_FOUND, e);
     }
@@ -126,7 +132,7 @@ public class Scene {
    * @param seconds length of the note.
    */
   public final void playNote(Instrument instrument, int note, double seconds) {
-    this.actions.add(new PlayNoteAction(instrument, note, seconds));
+    this.addAction(new PlayNoteAction(instrument, note, seconds));
   }
 
   /**
@@ -151,7 +157,7 @@ public class Scene {
    *     smallest value can be .1 seconds.
    */
   public final void pause(double seconds) {
-    this.actions.add(new PauseAction(Math.max(seconds, 0.1)));
+    this.addAction(new PauseAction(Math.max(seconds, 0.1)));
   }
 
   /**
@@ -181,7 +187,7 @@ public class Scene {
     // Copy the image so subsequent changes to this image object are not reflected
     // in the image drawn here.
     Image imageCopy = new Image(image);
-    this.actions.add(
+    this.addAction(
         new DrawImageAction(imageCopy, x, y, size, UNSPECIFIED, UNSPECIFIED, rotation));
   }
 
@@ -200,7 +206,7 @@ public class Scene {
     // Copy the image so subsequent changes to this image object are not reflected
     // in the image drawn here.
     Image imageCopy = new Image(image);
-    this.actions.add(new DrawImageAction(imageCopy, x, y, UNSPECIFIED, width, height, rotation));
+    this.addAction(new DrawImageAction(imageCopy, x, y, UNSPECIFIED, width, height, rotation));
   }
 
   /**
@@ -213,7 +219,7 @@ public class Scene {
    *     does not appear distorted.
    */
   public final void drawImage(String filename, int x, int y, int size) {
-    this.drawImage(new Image(filename), x, y, size);
+    this.drawImage(filename, x, y, size, 0.0);
   }
 
   /**
@@ -227,7 +233,10 @@ public class Scene {
    * @param rotation the amount to rotate the image in degrees
    */
   public final void drawImage(String filename, int x, int y, int size, double rotation) {
-    this.drawImage(new Image(filename), x, y, size, rotation);
+    // The image was just loaded, so there is no need to copy it as drawImage(Image, ...) does.
+    this.addAction(
+        new DrawImageAction(
+            new Image(filename), x, y, size, UNSPECIFIED, UNSPECIFIED, rotation, filename));
   }
 
   /**
@@ -243,7 +252,9 @@ public class Scene {
    */
   public final void drawImage(
       String filename, int x, int y, int width, int height, double rotation) {
-    this.drawImage(new Image(filename), x, y, width, height, rotation);
+    this.addAction(
+        new DrawImageAction(
+            new Image(filename), x, y, UNSPECIFIED, width, height, rotation, filename));
   }
 
   /**
@@ -304,7 +315,7 @@ public class Scene {
    * @param rotation the rotation or tilt of the text, in degrees
    */
   public final void drawText(String text, int x, int y, double rotation) {
-    this.actions.add(
+    this.addAction(
         new DrawTextAction(
             text, x, y, rotation, this.textHeight, this.font, this.fontStyle, this.textColor));
   }
@@ -318,7 +329,7 @@ public class Scene {
    * @param endY the end Y coordinate of the line.
    */
   public final void drawLine(int startX, int startY, int endX, int endY) {
-    this.actions.add(
+    this.addAction(
         new DrawLineAction(
             startX,
             startY,
@@ -337,7 +348,7 @@ public class Scene {
    * @param radius the distance from the center to each point on the polygon
    */
   public final void drawRegularPolygon(int x, int y, int sides, int radius) {
-    this.actions.add(
+    this.addAction(
         new DrawPolygonAction(
             x, y, sides, radius, this.strokeColor, this.fillColor, this.strokeWidth));
   }
@@ -352,7 +363,7 @@ public class Scene {
    *     with that color.
    */
   public final void drawShape(int[] points, boolean close) {
-    this.actions.add(
+    this.addAction(
         new DrawShapeAction(points, close, this.strokeColor, this.fillColor, this.strokeWidth));
   }
 
@@ -365,7 +376,7 @@ public class Scene {
    * @param height the height of the ellipse
    */
   public final void drawEllipse(int x, int y, int width, int height) {
-    this.actions.add(
+    this.addAction(
         new DrawEllipseAction(
             x, y, width, height, this.strokeColor, this.fillColor, this.strokeWidth));
   }
@@ -379,7 +390,7 @@ public class Scene {
    * @param height the height of the rectangle
    */
   public final void drawRectangle(int x, int y, int width, int height) {
-    this.actions.add(
+    this.addAction(
         new DrawRectangleAction(
             x, y, width, height, this.strokeColor, this.fillColor, this.strokeWidth));
   }
@@ -452,6 +463,12 @@ public class Scene {
     this.fillColor = null;
   }
 
+  private void addAction(SceneAction action) {
+    if (!Theater.streamAction(this.actions, action)) {
+      this.actions.add(action);
+    }
+  }
+
   final List<SceneAction> getActions() {
     return this.actions;
   }
@@ -3,6 +3,7 @@ package org.code.theater;
 import java.util.ArrayList;
 import java.util.List;
 import org.code.protocol.JavabuilderContext;
+import org.code.protocol.Properties;
 import org.code.theater.support.SceneAction;
 import org.code.theater.support.TheaterPlayer;
 
@@ -22,16 +23,29 @@ public final class Theater {
   }
 
   private static void playInternal(Scene... scenes) {
-    final List<SceneAction> allActions = new ArrayList<>();
+    final List<List<SceneAction>> sceneActions = new ArrayList<>();
     for (Scene scene : scenes) {
-      allActions.addAll(scene.getActions());
+      sceneActions.add(scene.getActions());
     }
+    Theater.getTheaterPlayer().play(sceneActions);
+  }
+
+  /**
+   * Renders the given action as soon as it is made, if Theater is streaming and the action belongs
+   * to the scene being streamed.
+   *
+   * @return whether the action was rendered, in which case the scene should not keep it
+   */
+  static boolean streamAction(List<SceneAction> sceneActions, SceneAction action) {
+    return Properties.isTheaterStreaming()
+        && Theater.getTheaterPlayer().stream(sceneActions, action);
+  }
+
+  private static TheaterPlayer getTheaterPlayer() {
     JavabuilderContext context = JavabuilderContext.getInstance();
     if (!context.containsKey(TheaterPlayer.class)) {
       context.register(TheaterPlayer.class, new TheaterPlayer());
     }
-    TheaterPlayer theaterPlayer =
-        (TheaterPlayer) JavabuilderContext.getInstance().get(TheaterPlayer.class);
-    theaterPlayer.play(allActions);
+    return (TheaterPlayer) context.get(TheaterPlayer.class);
   }
 }
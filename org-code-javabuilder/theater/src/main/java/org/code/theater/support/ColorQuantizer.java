@@ -0,0 +1,301 @@
+package org.code.theater.support;
+
+import java.util.Arrays;
+
+/**
+ * Reduces the colors of a frame to a palette of at most 256 colors, as required by GIF. Frames with
+ * few enough colors (most Theater frames, which are drawn from shapes, text and a few images) keep
+ * their exact colors. Otherwise the palette is chosen by median cut over a 15-bit color
+ * histogram, and each pixel is mapped to a palette entry through a lookup table indexed by its
+ * 15-bit color.
+ *
+ * <p>A frame may also have transparent pixels, which all map to palette index {@link
+ * #TRANSPARENT_INDEX}, leaving 255 entries for colors.
+ *
+ * <p>All tables are allocated once and reused for every frame. A quantizer is not thread-safe.
+ */
+final class ColorQuantizer {
+  static final int MAX_COLORS = 256;
+  // Marks a transparent pixel. It is not a color, since colors have no alpha bits.
+  static final int TRANSPARENT = -1;
+  static final int TRANSPARENT_INDEX = 0;
+
+  // Open-addressed table of the exact colors seen so far in a frame, at most a quarter full.
+  private static final int EXACT_TABLE_BITS = 10;
+  private static final int EXACT_TABLE_SIZE = 1 << EXACT_TABLE_BITS;
+  private static final int EMPTY = -1;
+  // Colors with 5 bits per channel
+  private static final int HISTOGRAM_SIZE = 1 << 15;
+  private static final int CHANNEL_LEVELS = 32;
+
+  private final int[] palette;
+  private int paletteSize;
+  // The first palette index used for a color, after the transparent index if there is one.
+  private int firstColorIndex;
+
+  private final int[] exactColors;
+  private final byte[] exactIndices;
+
+  private final int[] counts;
+  private final long[] redSums;
+  private final long[] greenSums;
+  private final long[] blueSums;
+  // Histogram bin -> palette index
+  private final byte[] lookup;
+  // The occupied histogram bins, grouped so that each box is a contiguous range.
+  private final int[] bins;
+  private final int[] sortBuffer;
+  private final int[] levelStarts;
+  private final int[] boxStarts;
+  private final int[] boxEnds;
+  // The channel each box would be split along, and how much splitting it is worth.
+  private final int[] boxSplitChannels;
+  private final long[] boxScores;
+
+  ColorQuantizer() {
+    this.palette = new int[MAX_COLORS];
+    this.exactColors = new int[EXACT_TABLE_SIZE];
+    this.exactIndices = new byte[EXACT_TABLE_SIZE];
+    this.counts = new int[HISTOGRAM_SIZE];
+    this.redSums = new long[HISTOGRAM_SIZE];
+    this.greenSums = new long[HISTOGRAM_SIZE];
+    this.blueSums = new long[HISTOGRAM_SIZE];
+    this.lookup = new byte[HISTOGRAM_SIZE];
+    this.bins = new int[HISTOGRAM_SIZE];
+    this.sortBuffer = new int[HISTOGRAM_SIZE];
+    this.levelStarts = new int[CHANNEL_LEVELS + 1];
+    this.boxStarts = new int[MAX_COLORS];
+    this.boxEnds = new int[MAX_COLORS];
+    this.boxSplitChannels = new int[MAX_COLORS];
+    this.boxScores = new long[MAX_COLORS];
+  }
+
+  /**
+   * Chooses a palette for the given pixels and maps each pixel to it.
+   *
+   * @param pixels RGB pixels; any alpha bits are ignored
+   * @param count the number of pixels to read
+   * @param indices receives the palette index of each pixel
+   * @return the number of colors in the palette, which is at least 1
+   */
+  int quantize(int[] pixels, int count, byte[] indices) {
+    return this.quantize(pixels, count, indices, false);
+  }
+
+  /**
+   * Chooses a palette for the given pixels and maps each pixel to it.
+   *
+   * @param pixels RGB pixels with their alpha bits cleared, or {@link #TRANSPARENT}
+   * @param count the number of pixels to read
+   * @param indices receives the palette index of each pixel
+   * @param hasTransparency whether to reserve {@link #TRANSPARENT_INDEX} for transparent pixels
+   * @return the number of entries in the palette, including the transparent one, which is at least
+   *     1
+   */
+  int quantize(int[] pixels, int count, byte[] indices, boolean hasTransparency) {
+    this.firstColorIndex = hasTransparency ? TRANSPARENT_INDEX + 1 : 0;
+    // The transparent entry's color is never shown.
+    this.palette[TRANSPARENT_INDEX] = 0;
+    if (!this.quantizeExactly(pixels, count, indices)) {
+      this.quantizeByMedianCut(pixels, count, indices);
+    }
+    if (this.paletteSize == 0) {
+      // An empty frame still needs a palette.
+      this.palette[0] = 0;
+      this.paletteSize = 1;
+    }
+    return this.paletteSize;
+  }
+
+  /** @return the palette chosen by the last call to quantize, as RGB colors. */
+  int[] getPalette() {
+    return this.palette;
+  }
+
+  /** @return false if the pixels have too many colors to be kept exactly. */
+  private boolean quantizeExactly(int[] pixels, int count, byte[] indices) {
+    Arrays.fill(this.exactColors, EMPTY);
+    this.paletteSize = this.firstColorIndex;
+    int previousColor = EMPTY;
+    byte previousIndex = 0;
+    for (int i = 0; i < count; i++) {
+      if (this.firstColorIndex > 0 && pixels[i] == TRANSPARENT) {
+        indices[i] = TRANSPARENT_INDEX;
+        continue;
+      }
+      final int color = pixels[i] & 0xFFFFFF;
+      // Neighboring pixels are usually the same color.
+      if (color != previousColor) {
+        int slot = (color * 0x9E3779B1) >>> (32 - EXACT_TABLE_BITS);
+        while (this.exactColors[slot] != EMPTY && this.exactColors[slot] != color) {
+          slot = (slot + 1) & (EXACT_TABLE_SIZE - 1);
+        }
+        if (this.exactColors[slot] == EMPTY) {
+          if (this.paletteSize == MAX_COLORS) {
+            return false;
+          }
+          this.exactColors[slot] = color;
+          this.exactIndices[slot] = (byte) this.paletteSize;
+          this.palette[this.paletteSize++] = color;
+        }
+        previousColor = color;
+        previousIndex = this.exactIndices[slot];
+      }
+      indices[i] = previousIndex;
+    }
+    return true;
+  }
+
+  private void quantizeByMedianCut(int[] pixels, int count, byte[] indices) {
+    Arrays.fill(this.counts, 0);
+    Arrays.fill(this.redSums, 0);
+    Arrays.fill(this.greenSums, 0);
+    Arrays.fill(this.blueSums, 0);
+    for (int i = 0; i < count; i++) {
+      final int color = pixels[i];
+      if (this.firstColorIndex > 0 && color == TRANSPARENT) {
+        continue;
+      }
+      final int bin = toBin(color);
+      this.counts[bin]++;
+      this.redSums[bin] += (color >> 16) & 0xFF;
+      this.greenSums[bin] += (color >> 8) & 0xFF;
+      this.blueSums[bin] += color & 0xFF;
+    }
+
+    int binCount = 0;
+    for (int bin = 0; bin < HISTOGRAM_SIZE; bin++) {
+      if (this.counts[bin] > 0) {
+        this.bins[binCount++] = bin;
+      }
+    }
+
+    int boxCount = 1;
+    this.setBox(0, 0, binCount);
+    while (boxCount < MAX_COLORS - this.firstColorIndex) {
+      int boxToSplit = -1;
+      for (int box = 0; box < boxCount; box++) {
+        if (this.boxScores[box] > 0
+            && (boxToSplit < 0 || this.boxScores[box] > this.boxScores[boxToSplit])) {
+          boxToSplit = box;
+        }
+      }
+      if (boxToSplit < 0) {
+        // Every box holds a single color.
+        break;
+      }
+      final int middle = this.splitBox(boxToSplit);
+      final int end = this.boxEnds[boxToSplit];
+      this.setBox(boxToSplit, this.boxStarts[boxToSplit], middle);
+      this.setBox(boxCount++, middle, end);
+    }
+
+    // Each palette color is the average of the actual colors in its box.
+    for (int box = 0; box < boxCount; box++) {
+      long pixelCount = 0;
+      long red = 0;
+      long green = 0;
+      long blue = 0;
+      for (int i = this.boxStarts[box]; i < this.boxEnds[box]; i++) {
+        final int bin = this.bins[i];
+        pixelCount += this.counts[bin];
+        red += this.redSums[bin];
+        green += this.greenSums[bin];
+        blue += this.blueSums[bin];
+        this.lookup[bin] = (byte) (this.firstColorIndex + box);
+      }
+      this.palette[this.firstColorIndex + box] =
+          (int) ((red + pixelCount / 2) / pixelCount) << 16
+              | (int) ((green + pixelCount / 2) / pixelCount) << 8
+              | (int) ((blue + pixelCount / 2) / pixelCount);
+    }
+    this.paletteSize = this.firstColorIndex + (binCount == 0 ? 0 : boxCount);
+
+    for (int i = 0; i < count; i++) {
+      if (this.firstColorIndex > 0 && pixels[i] == TRANSPARENT) {
+        indices[i] = TRANSPARENT_INDEX;
+      } else {
+        indices[i] = this.lookup[toBin(pixels[i])];
+      }
+    }
+  }
+
+  /**
+   * Records the box holding bins[start, end), and which channel it should be split along: the one
+   * with the widest range. A box is worth splitting in proportion to the number of pixels in it and
+   * the width of that range.
+   */
+  private void setBox(int box, int start, int end) {
+    this.boxStarts[box] = start;
+    this.boxEnds[box] = end;
+    long pixelCount = 0;
+    int bestChannel = 0;
+    int bestRange = 0;
+    for (int channel = 0; channel < 3; channel++) {
+      int min = CHANNEL_LEVELS;
+      int max = -1;
+      for (int i = start; i < end; i++) {
+        final int level = channelLevel(this.bins[i], channel);
+        min = Math.min(min, level);
+        max = Math.max(max, level);
+      }
+      if (max - min > bestRange) {
+        bestRange = max - min;
+        bestChannel = channel;
+      }
+    }
+    for (int i = start; i < end; i++) {
+      pixelCount += this.counts[this.bins[i]];
+    }
+    this.boxSplitChannels[box] = bestChannel;
+    this.boxScores[box] = pixelCount * bestRange;
+  }
+
+  /**
+   * Sorts the bins of the given box along its split channel, and finds the point that divides its
+   * pixels in half.
+   *
+   * @return the index of the first bin in the second half, which leaves neither half empty.
+   */
+  private int splitBox(int box) {
+    final int start = this.boxStarts[box];
+    final int end = this.boxEnds[box];
+    final int channel = this.boxSplitChannels[box];
+
+    // Counting sort, since each channel has only 32 levels.
+    final int[] levelStarts = this.levelStarts;
+    Arrays.fill(levelStarts, 0);
+    for (int i = start; i < end; i++) {
+      levelStarts[channelLevel(this.bins[i], channel) + 1]++;
+    }
+    for (int level = 0; level < CHANNEL_LEVELS; level++) {
+      levelStarts[level + 1] += levelStarts[level];
+    }
+    for (int i = start; i < end; i++) {
+      final int bin = this.bins[i];
+      this.sortBuffer[start + levelStarts[channelLevel(bin, channel)]++] = bin;
+    }
+    System.arraycopy(this.sortBuffer, start, this.bins, start, end - start);
+
+    long total = 0;
+    for (int i = start; i < end; i++) {
+      total += this.counts[this.bins[i]];
+    }
+    long seen = 0;
+    int middle = start;
+    while (middle < end - 1 && seen + this.counts[this.bins[middle]] <= total / 2) {
+      seen += this.counts[this.bins[middle]];
+      middle++;
+    }
+    return Math.max(middle, start + 1);
+  }
+
+  private static int toBin(int color) {
+    return ((color >> 9) & 0x7C00) | ((color >> 6) & 0x3E0) | ((color >> 3) & 0x1F);
+  }
+
+  /** @return the 5-bit level of a histogram bin in the given channel (0 red, 1 green, 2 blue). */
+  private static int channelLevel(int bin, int channel) {
+    return (bin >> (10 - 5 * channel)) & 0x1F;
+  }
+}
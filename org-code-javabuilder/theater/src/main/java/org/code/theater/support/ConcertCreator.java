@@ -2,10 +2,10 @@ package org.code.theater.support;
 
 import static org.code.protocol.AllowedFileNames.THEATER_AUDIO_NAME;
 import static org.code.protocol.AllowedFileNames.THEATER_IMAGE_NAME;
+import static org.code.protocol.AllowedFileNames.THEATER_SCENE_NAME;
 import static org.code.protocol.ClientMessageDetailKeys.URL;
 import static org.code.theater.support.Constants.THEATER_HEIGHT;
 import static org.code.theater.support.Constants.THEATER_WIDTH;
-import static org.code.theater.support.DrawImageAction.UNSPECIFIED;
 
 import java.awt.image.BufferedImage;
 import java.io.ByteArrayOutputStream;
@@ -20,14 +20,18 @@ import org.code.theater.Instrument;
 
 /**
  * Creates and publishes a "concert" (the output of a student's Theater project) from a list of
- * {@link SceneAction}s. A concert consists of a GIF file and an audio file. This class implements
- * {@link AutoCloseable} so image and audio resources are always released if an exception is thrown.
+ * {@link SceneAction}s. A concert consists of a GIF file and an audio file, or, if the client asked
+ * for the {@link TheaterOutputFormat#SCENE_LOG} format, a scene log written by a {@link
+ * SceneLogWriter} for the client to draw and an audio file. This class implements {@link
+ * AutoCloseable} so image and audio resources are always released if an exception is thrown.
  */
 public class ConcertCreator implements AutoCloseable {
   private final BufferedImage image;
   private final OutputAdapter outputAdapter;
   private final ContentManager contentManager;
+  // Exactly one of these is set, depending on the output format.
   private final GifWriter gifWriter;
+  private final SceneLogWriter sceneLogWriter;
   private final ByteArrayOutputStream imageOutputStream;
   private final GraphicsHelper graphicsHelper;
   private final ByteArrayOutputStream audioOutputStream;
@@ -40,6 +44,8 @@ public class ConcertCreator implements AutoCloseable {
     this(
         new BufferedImage(THEATER_WIDTH, THEATER_HEIGHT, BufferedImage.TYPE_INT_RGB),
         new GifWriter.Factory(),
+        new SceneLogWriter.Factory(),
+        Properties.getTheaterOutputFormat(),
         new AudioWriter.Factory(),
         new GraphicsHelper.Factory(),
         new InstrumentSampleLoader(),
@@ -52,6 +58,8 @@ public class ConcertCreator implements AutoCloseable {
   ConcertCreator(
       BufferedImage image,
       GifWriter.Factory gifWriterFactory,
+      SceneLogWriter.Factory sceneLogWriterFactory,
+      TheaterOutputFormat outputFormat,
       AudioWriter.Factory audioWriterFactory,
       GraphicsHelper.Factory graphicsHelperFactory,
       InstrumentSampleLoader instrumentSampleLoader,
@@ -62,7 +70,13 @@ public class ConcertCreator implements AutoCloseable {
     this.audioOutputStream = new ByteArrayOutputStream();
 
     this.image = image;
-    this.gifWriter = gifWriterFactory.createGifWriter(this.imageOutputStream);
+    if (outputFormat == TheaterOutputFormat.SCENE_LOG) {
+      this.gifWriter = null;
+      this.sceneLogWriter = sceneLogWriterFactory.createSceneLogWriter(this.imageOutputStream);
+    } else {
+      this.gifWriter = gifWriterFactory.createGifWriter(this.imageOutputStream);
+      this.sceneLogWriter = null;
+    }
     this.audioWriter = audioWriterFactory.createAudioWriter(this.audioOutputStream);
     this.graphicsHelper =
         graphicsHelperFactory.createGraphicsHelper(this.image.createGraphics(), new FontHelper());
@@ -86,117 +100,141 @@ public class ConcertCreator implements AutoCloseable {
    */
   public void publishConcert(List<SceneAction> actions) {
     for (SceneAction action : actions) {
-      switch (action.getType()) {
-        case CLEAR_SCENE:
-          this.graphicsHelper.clear(((ClearSceneAction) action).getColor());
-          break;
-        case PLAY_SOUND:
-          this.audioWriter.writeAudioSamples(((PlaySoundAction) action).getSamples());
-          break;
-        case PLAY_NOTE:
-          final PlayNoteAction playNoteAction = (PlayNoteAction) action;
-          this.playNote(
-              playNoteAction.getInstrument(),
-              playNoteAction.getNote(),
-              playNoteAction.getSeconds());
-          break;
-        case PAUSE:
-          this.pause(((PauseAction) action).getSeconds());
-          break;
-        case DRAW_IMAGE:
-          final DrawImageAction drawImageAction = (DrawImageAction) action;
-          final int width, height;
-          if (drawImageAction.getSize() != UNSPECIFIED) {
-            // If the "size" value was provided, we need to scale the height proportionally.
-            width = drawImageAction.getSize();
-            final int imageHeight = drawImageAction.getImage().getHeight();
-            final int imageWidth = drawImageAction.getImage().getWidth();
-            height = (int) ((double) imageHeight * ((double) width / (double) imageWidth));
-          } else {
-            width = drawImageAction.getWidth();
-            height = drawImageAction.getHeight();
-          }
-          this.graphicsHelper.drawImage(
-              drawImageAction.getImage().getBufferedImage(),
-              drawImageAction.getX(),
-              drawImageAction.getY(),
-              width,
-              height,
-              drawImageAction.getRotation());
-          break;
-        case DRAW_TEXT:
-          final DrawTextAction drawTextAction = (DrawTextAction) action;
-          this.graphicsHelper.drawText(
-              drawTextAction.getText(),
-              drawTextAction.getX(),
-              drawTextAction.getY(),
-              drawTextAction.getColor(),
-              drawTextAction.getFont(),
-              drawTextAction.getFontStyle(),
-              drawTextAction.getHeight(),
-              drawTextAction.getRotation());
-          break;
-        case DRAW_LINE:
-          final DrawLineAction drawLineAction = (DrawLineAction) action;
-          this.graphicsHelper.setStrokeWidth(drawLineAction.getStrokeWidth());
-          this.graphicsHelper.drawLine(
-              drawLineAction.getColor(),
-              drawLineAction.getStartX(),
-              drawLineAction.getStartY(),
-              drawLineAction.getEndX(),
-              drawLineAction.getEndY());
-          break;
-        case DRAW_POLYGON:
-          final DrawPolygonAction drawPolygonAction = (DrawPolygonAction) action;
-          this.graphicsHelper.setStrokeWidth(drawPolygonAction.getStrokeWidth());
-          this.graphicsHelper.drawRegularPolygon(
-              drawPolygonAction.getX(),
-              drawPolygonAction.getY(),
-              drawPolygonAction.getSides(),
-              drawPolygonAction.getRadius(),
-              drawPolygonAction.getStrokeColor(),
-              drawPolygonAction.getFillColor());
-          break;
-        case DRAW_SHAPE:
-          final DrawShapeAction drawShapeAction = (DrawShapeAction) action;
-          this.graphicsHelper.setStrokeWidth(drawShapeAction.getStrokeWidth());
-          this.graphicsHelper.drawShape(
-              drawShapeAction.getPoints(),
-              drawShapeAction.isClosed(),
-              drawShapeAction.getStrokeColor(),
-              drawShapeAction.getFillColor());
-          break;
-        case DRAW_ELLIPSE:
-          final DrawEllipseAction drawEllipseAction = (DrawEllipseAction) action;
-          this.graphicsHelper.setStrokeWidth(drawEllipseAction.getStrokeWidth());
-          this.graphicsHelper.drawEllipse(
-              drawEllipseAction.getX(),
-              drawEllipseAction.getY(),
-              drawEllipseAction.getWidth(),
-              drawEllipseAction.getHeight(),
-              drawEllipseAction.getStrokeColor(),
-              drawEllipseAction.getFillColor());
-          break;
-        case DRAW_RECTANGLE:
-          final DrawRectangleAction drawRectangleAction = (DrawRectangleAction) action;
-          this.graphicsHelper.setStrokeWidth(drawRectangleAction.getStrokeWidth());
-          this.graphicsHelper.drawRectangle(
-              drawRectangleAction.getX(),
-              drawRectangleAction.getY(),
-              drawRectangleAction.getWidth(),
-              drawRectangleAction.getHeight(),
-              drawRectangleAction.getStrokeColor(),
-              drawRectangleAction.getFillColor());
-          break;
-        default:
-          break;
-      }
+      this.addAction(action);
+    }
+    this.publish();
+  }
+
+  /**
+   * Adds the given action to the concert. Drawing and sound are written to the GIF (or scene log)
+   * and audio streams straight away, so the action does not need to be kept afterwards.
+   *
+   * @param action the next action in the concert
+   */
+  public void addAction(SceneAction action) {
+    switch (action.getType()) {
+      case PLAY_SOUND:
+        this.audioWriter.writeAudioSamples(((PlaySoundAction) action).getSamples());
+        break;
+      case PLAY_NOTE:
+        final PlayNoteAction playNoteAction = (PlayNoteAction) action;
+        this.playNote(
+            playNoteAction.getInstrument(), playNoteAction.getNote(), playNoteAction.getSeconds());
+        break;
+      case PAUSE:
+        this.pause((PauseAction) action);
+        break;
+      default:
+        if (this.sceneLogWriter != null) {
+          this.sceneLogWriter.writeAction(action);
+        } else {
+          this.draw(action);
+        }
+        break;
     }
+  }
 
+  /**
+   * Finishes the concert once every action has been added, and publishes the generated file URLs
+   * using the {@link OutputAdapter}
+   */
+  public void publish() {
     this.writeImageAndAudioToFile();
   }
 
+  /** Draws the given action onto the image that becomes the next frame of the GIF. */
+  private void draw(SceneAction action) {
+    switch (action.getType()) {
+      case CLEAR_SCENE:
+        this.graphicsHelper.clear(((ClearSceneAction) action).getColor());
+        break;
+      case DRAW_IMAGE:
+        final DrawImageAction drawImageAction = (DrawImageAction) action;
+        this.graphicsHelper.drawImage(
+            drawImageAction.getImage().getBufferedImage(),
+            drawImageAction.getX(),
+            drawImageAction.getY(),
+            drawImageAction.getDrawnWidth(),
+            drawImageAction.getDrawnHeight(),
+            drawImageAction.getRotation());
+        break;
+      case DRAW_TEXT:
+        final DrawTextAction drawTextAction = (DrawTextAction) action;
+        this.graphicsHelper.drawText(
+            drawTextAction.getText(),
+            drawTextAction.getX(),
+            drawTextAction.getY(),
+            drawTextAction.getColor(),
+            drawTextAction.getFont(),
+            drawTextAction.getFontStyle(),
+            drawTextAction.getHeight(),
+            drawTextAction.getRotation());
+        break;
+      case DRAW_LINE:
+        final DrawLineAction drawLineAction = (DrawLineAction) action;
+        this.graphicsHelper.setStrokeWidth(drawLineAction.getStrokeWidth());
+        this.graphicsHelper.drawLine(
+            drawLineAction.getColor(),
+            drawLineAction.getStartX(),
+            drawLineAction.getStartY(),
+            drawLineAction.getEndX(),
+            drawLineAction.getEndY());
+        break;
+      case DRAW_POLYGON:
+        final DrawPolygonAction drawPolygonAction = (DrawPolygonAction) action;
+        this.graphicsHelper.setStrokeWidth(drawPolygonAction.getStrokeWidth());
+        this.graphicsHelper.drawRegularPolygon(
+            drawPolygonAction.getX(),
+            drawPolygonAction.getY(),
+            drawPolygonAction.getSides(),
+            drawPolygonAction.getRadius(),
+            drawPolygonAction.getStrokeColor(),
+            drawPolygonAction.getFillColor());
+        break;
+      case DRAW_SHAPE:
+        final DrawShapeAction drawShapeAction = (DrawShapeAction) action;
+        this.graphicsHelper.setStrokeWidth(drawShapeAction.getStrokeWidth());
+        this.graphicsHelper.drawShape(
+            drawShapeAction.getPoints(),
+            drawShapeAction.isClosed(),
+            drawShapeAction.getStrokeColor(),
+            drawShapeAction.getFillColor());
+        break;
+      case DRAW_ELLIPSE:
+        final DrawEllipseAction drawEllipseAction = (DrawEllipseAction) action;
+        this.graphicsHelper.setStrokeWidth(drawEllipseAction.getStrokeWidth());
+        this.graphicsHelper.drawEllipse(
+            drawEllipseAction.getX(),
+            drawEllipseAction.getY(),
+            drawEllipseAction.getWidth(),
+            drawEllipseAction.getHeight(),
+            drawEllipseAction.getStrokeColor(),
+            drawEllipseAction.getFillColor());
+        break;
+      case DRAW_RECTANGLE:
+        final DrawRectangleAction drawRectangleAction = (DrawRectangleAction) action;
+        this.graphicsHelper.setStrokeWidth(drawRectangleAction.getStrokeWidth());
+        this.graphicsHelper.drawRectangle(
+            drawRectangleAction.getX(),
+            drawRectangleAction.getY(),
+            drawRectangleAction.getWidth(),
+            drawRectangleAction.getHeight(),
+            drawRectangleAction.getStrokeColor(),
+            drawRectangleAction.getFillColor());
+        break;
+      default:
+        break;
+    }
+  }
+
   private void playNote(Instrument instrument, int note, double noteLength) {
+    final double[] samples =
+        this.instrumentSampleLoader.getNoteSamples(instrument, note, noteLength);
+    if (samples != null) {
+      this.audioWriter.writeAudioSamples(samples);
+      return;
+    }
+
     final String sampleFilePath = instrumentSampleLoader.getSampleFilePath(instrument, note);
     if (sampleFilePath == null) {
       return;
@@ -209,15 +247,22 @@ public class ConcertCreator implements AutoCloseable {
     }
   }
 
-  private void pause(double seconds) {
-    this.gifWriter.writeToGif(this.image, (int) (Math.max(seconds, 0.1) * 1000));
+  private void pause(PauseAction action) {
+    final double seconds = action.getSeconds();
+    if (this.sceneLogWriter != null) {
+      this.sceneLogWriter.writeAction(action);
+    } else {
+      this.gifWriter.writeToGif(this.image, (int) (Math.max(seconds, 0.1) * 1000));
+    }
     this.audioWriter.addDelay(Math.max(seconds, 0.1));
     this.progressPublisher.onPause(seconds);
   }
 
   private void writeImageAndAudioToFile() {
     this.progressPublisher.onPlay(this.audioWriter.getTotalAudioLength());
-    this.gifWriter.writeToGif(this.image, 0);
+    if (this.gifWriter != null) {
+      this.gifWriter.writeToGif(this.image, 0);
+    }
     boolean shouldSendAudio = true;
     if (this.audioWriter.getTotalAudioLength() == 0) {
       shouldSendAudio = false;
@@ -230,13 +275,25 @@ public class ConcertCreator implements AutoCloseable {
     this.close();
 
     try {
-      String imageUrl =
-          this.contentManager.writeToOutputFile(
-              THEATER_IMAGE_NAME, this.imageOutputStream.toByteArray(), "image/gif");
+      if (this.sceneLogWriter != null) {
+        String sceneUrl =
+            this.contentManager.writeToOutputFile(
+                THEATER_SCENE_NAME, this.imageOutputStream.toByteArray(), "application/json");
 
-      HashMap<String, String> imageMessage = new HashMap<>();
-      imageMessage.put(URL, imageUrl);
-      this.outputAdapter.sendMessage(new TheaterMessage(TheaterSignalKey.VISUAL_URL, imageMessage));
+        HashMap<String, String> sceneMessage = new HashMap<>();
+        sceneMessage.put(URL, sceneUrl);
+        this.outputAdapter.sendMessage(
+            new TheaterMessage(TheaterSignalKey.SCENE_URL, sceneMessage));
+      } else {
+        String imageUrl =
+            this.contentManager.writeToOutputFile(
+                THEATER_IMAGE_NAME, this.imageOutputStream.toByteArray(), "image/gif");
+
+        HashMap<String, String> imageMessage = new HashMap<>();
+        imageMessage.put(URL, imageUrl);
+        this.outputAdapter.sendMessage(
+            new TheaterMessage(TheaterSignalKey.VISUAL_URL, imageMessage));
+      }
 
       if (shouldSendAudio) {
         String audioUrl =
@@ -259,7 +316,11 @@ public class ConcertCreator implements AutoCloseable {
   @Override
   public void close() {
     if (!this.hasClosed) {
-      this.gifWriter.close();
+      if (this.gifWriter != null) {
+        this.gifWriter.close();
+      } else {
+        this.sceneLogWriter.close();
+      }
       this.audioWriter.close();
       this.hasClosed = true;
     }
@@ -12,9 +12,23 @@ public class DrawImageAction implements SceneAction {
   private final int width;
   private final int height;
   private final double rotation;
+  // The asset the image was loaded from, or null if it was not drawn straight from an asset file.
+  private final String assetFilename;
 
   public DrawImageAction(
       Image image, int x, int y, int size, int width, int height, double rotation) {
+    this(image, x, y, size, width, height, rotation, null);
+  }
+
+  public DrawImageAction(
+      Image image,
+      int x,
+      int y,
+      int size,
+      int width,
+      int height,
+      double rotation,
+      String assetFilename) {
     this.image = image;
     this.x = x;
     this.y = y;
@@ -22,6 +36,7 @@ public class DrawImageAction implements SceneAction {
     this.width = width;
     this.height = height;
     this.rotation = rotation;
+    this.assetFilename = assetFilename;
   }
 
   public Image getImage() {
@@ -52,6 +67,26 @@ public class DrawImageAction implements SceneAction {
     return rotation;
   }
 
+  public String getAssetFilename() {
+    return assetFilename;
+  }
+
+  /** @return the width to draw the image at, which is the size if one was given. */
+  public int getDrawnWidth() {
+    return this.size != UNSPECIFIED ? this.size : this.width;
+  }
+
+  /**
+   * @return the height to draw the image at. If a size was given, the height is scaled to keep the
+   *     image's proportions.
+   */
+  public int getDrawnHeight() {
+    if (this.size == UNSPECIFIED) {
+      return this.height;
+    }
+    return (int) ((double) this.image.getHeight() * ((double) this.size / this.image.getWidth()));
+  }
+
   @Override
   public SceneActionType getType() {
     return SceneActionType.DRAW_IMAGE;
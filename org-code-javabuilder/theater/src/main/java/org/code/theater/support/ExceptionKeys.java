@@ -5,5 +5,6 @@ public enum ExceptionKeys {
   INVALID_SHAPE,
   VIDEO_TOO_LONG,
   VIDEO_TOO_LARGE,
-  FILE_NOT_FOUND
+  FILE_NOT_FOUND,
+  SCENE_PLAYED_OUT_OF_ORDER
 }
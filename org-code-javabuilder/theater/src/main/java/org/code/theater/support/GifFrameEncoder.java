@@ -0,0 +1,234 @@
+package org.code.theater.support;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * Encodes one frame of a GIF: its graphic control extension, image descriptor, local color table
+ * and compressed image data. Each frame is reduced to a palette of its own by a {@link
+ * ColorQuantizer} and compressed by an {@link LzwEncoder}; both, and the frame buffers, are reused
+ * for every frame the encoder writes. An encoder is not thread-safe, but encoders are independent
+ * of each other, so several can encode different frames at once.
+ *
+ * <p>When given the previous frame, a frame only covers the smallest rectangle containing every
+ * pixel that changed since then, and runs of unchanged pixels inside that rectangle are
+ * transparent. Since frames are left in place when the next one is drawn, the animation looks the
+ * same as if every frame were written in full, but most Theater animations only move a few things
+ * at a time, so their frames are much smaller and quicker to encode.
+ */
+final class GifFrameEncoder {
+  private static final int MIN_LZW_CODE_SIZE = 2;
+  private static final int DISPOSE_DO_NOT_DISPOSE = 1;
+  // The fewest unchanged pixels in a row that are made transparent
+  private static final int MIN_TRANSPARENT_RUN = 8;
+
+  private final ColorQuantizer quantizer;
+  private final LzwEncoder lzwEncoder;
+  private final byte[] colorTable;
+  // The part of the frame being written, as { left, top, right, bottom }, and its pixels
+  private final int[] frameBounds;
+  private int[] framePixels;
+  private byte[] indices;
+
+  GifFrameEncoder() {
+    this.quantizer = new ColorQuantizer();
+    this.lzwEncoder = new LzwEncoder();
+    this.colorTable = new byte[ColorQuantizer.MAX_COLORS * 3];
+    this.frameBounds = new int[4];
+    this.framePixels = new int[0];
+    this.indices = new byte[0];
+  }
+
+  /**
+   * Writes a frame.
+   *
+   * @param pixels the RGB pixels of the whole frame, in rows from the top left
+   * @param previousPixels the pixels of the previous frame, which must be the same size, or null to
+   *     write the whole frame
+   * @param width the width of the frame
+   * @param height the height of the frame
+   * @param delay delay in milliseconds after this frame
+   * @param out receives the encoded frame
+   */
+  void encode(
+      int[] pixels,
+      int[] previousPixels,
+      int width,
+      int height,
+      int delay,
+      ByteArrayOutputStream out) {
+    if (this.framePixels.length < width * height) {
+      this.framePixels = new int[width * height];
+      this.indices = new byte[width * height];
+    }
+
+    // Whether any pixels in the part of the frame being written are unchanged, and so transparent
+    final boolean hasTransparency;
+    final int[] bounds = this.frameBounds;
+    if (previousPixels != null) {
+      this.findChangedBounds(pixels, previousPixels, width, height);
+      hasTransparency = this.copyChangedPixels(pixels, previousPixels, width);
+    } else {
+      this.setFrameBounds(0, 0, width, height);
+      hasTransparency = false;
+      System.arraycopy(pixels, 0, this.framePixels, 0, width * height);
+    }
+    final int frameWidth = bounds[2] - bounds[0];
+    final int frameHeight = bounds[3] - bounds[1];
+    final int pixelCount = frameWidth * frameHeight;
+
+    final int paletteSize =
+        this.quantizer.quantize(this.framePixels, pixelCount, this.indices, hasTransparency);
+    // The color table size is 2^(colorTableBits), and the LZW code size must be at least 2.
+    int colorTableBits = 1;
+    while ((1 << colorTableBits) < paletteSize) {
+      colorTableBits++;
+    }
+
+    this.writeGraphicControlExtension(delay, hasTransparency, out);
+    // Image descriptor, with a local color table
+    out.write(0x2C);
+    writeShort(bounds[0], out);
+    writeShort(bounds[1], out);
+    writeShort(frameWidth, out);
+    writeShort(frameHeight, out);
+    out.write(0x80 | (colorTableBits - 1));
+    this.writeColorTable(paletteSize, 1 << colorTableBits, out);
+    this.lzwEncoder.encode(
+        this.indices, pixelCount, Math.max(MIN_LZW_CODE_SIZE, colorTableBits), out);
+  }
+
+  /**
+   * Writes the graphic control extension for the next frame, which sets its delay and whether it
+   * has a transparent color. The frame is left in place (disposal method "doNotDispose") when the
+   * next frame is drawn, so that the next frame only needs to cover what changed.
+   *
+   * @param delay int delay in milliseconds after this frame
+   * @param hasTransparency whether palette index {@link ColorQuantizer#TRANSPARENT_INDEX} is
+   *     transparent
+   */
+  private void writeGraphicControlExtension(
+      int delay, boolean hasTransparency, ByteArrayOutputStream out) {
+    out.write(0x21);
+    out.write(0xF9);
+    out.write(4);
+    out.write(DISPOSE_DO_NOT_DISPOSE << 2 | (hasTransparency ? 1 : 0));
+    // delay is expected in hundredths of a second, divide milliseconds by 10
+    writeShort(Math.min(Math.max(delay / 10, 0), 0xFFFF), out);
+    // Transparent color index and block terminator
+    out.write(ColorQuantizer.TRANSPARENT_INDEX);
+    out.write(0);
+  }
+
+  /**
+   * Sets the frame bounds to the smallest rectangle containing every pixel that differs from the
+   * previous frame. If nothing changed, this is the top left pixel, since the frame still has to be
+   * written for its delay.
+   */
+  private void findChangedBounds(int[] pixels, int[] previousPixels, int width, int height) {
+    int top = 0;
+    while (top < height && rowMatches(pixels, previousPixels, top, width)) {
+      top++;
+    }
+    if (top == height) {
+      this.setFrameBounds(0, 0, 1, 1);
+      return;
+    }
+    int bottom = height;
+    while (rowMatches(pixels, previousPixels, bottom - 1, width)) {
+      bottom--;
+    }
+
+    int left = width;
+    int right = 0;
+    for (int y = top; y < bottom; y++) {
+      final int rowStart = y * width;
+      int x = 0;
+      while (x < left && pixels[rowStart + x] == previousPixels[rowStart + x]) {
+        x++;
+      }
+      left = x;
+      x = width;
+      while (x > right && pixels[rowStart + x - 1] == previousPixels[rowStart + x - 1]) {
+        x--;
+      }
+      right = x;
+    }
+    this.setFrameBounds(left, top, right, bottom);
+  }
+
+  private static boolean rowMatches(int[] pixels, int[] previousPixels, int y, int width) {
+    final int rowStart = y * width;
+    for (int i = rowStart; i < rowStart + width; i++) {
+      if (pixels[i] != previousPixels[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private void setFrameBounds(int left, int top, int right, int bottom) {
+    this.frameBounds[0] = left;
+    this.frameBounds[1] = top;
+    this.frameBounds[2] = right;
+    this.frameBounds[3] = bottom;
+  }
+
+  /**
+   * Copies the pixels inside the frame bounds into the frame buffer, marking runs of unchanged
+   * pixels as transparent. Unchanged pixels scattered among changed ones (as in a moving photo)
+   * keep their color, since breaking up the changed pixels would make the frame compress worse.
+   *
+   * @return whether any pixels were made transparent.
+   */
+  private boolean copyChangedPixels(int[] pixels, int[] previousPixels, int width) {
+    final int[] bounds = this.frameBounds;
+    boolean hasTransparency = false;
+    int i = 0;
+    for (int y = bounds[1]; y < bounds[3]; y++) {
+      final int rowStart = y * width;
+      int x = bounds[0];
+      while (x < bounds[2]) {
+        int runEnd = x;
+        while (runEnd < bounds[2]
+            && pixels[rowStart + runEnd] == previousPixels[rowStart + runEnd]) {
+          runEnd++;
+        }
+        if (runEnd - x >= MIN_TRANSPARENT_RUN) {
+          hasTransparency = true;
+          while (x < runEnd) {
+            this.framePixels[i++] = ColorQuantizer.TRANSPARENT;
+            x++;
+          }
+        } else {
+          // Include the changed pixel that ended the run, if there is one.
+          runEnd = Math.min(runEnd + 1, bounds[2]);
+          while (x < runEnd) {
+            this.framePixels[i++] = pixels[rowStart + x] & 0xFFFFFF;
+            x++;
+          }
+        }
+      }
+    }
+    return hasTransparency;
+  }
+
+  private void writeColorTable(int paletteSize, int tableSize, ByteArrayOutputStream out) {
+    final int[] palette = this.quantizer.getPalette();
+    int offset = 0;
+    for (int i = 0; i < paletteSize; i++) {
+      this.colorTable[offset++] = (byte) (palette[i] >> 16);
+      this.colorTable[offset++] = (byte) (palette[i] >> 8);
+      this.colorTable[offset++] = (byte) palette[i];
+    }
+    // Unused entries are black.
+    while (offset < tableSize * 3) {
+      this.colorTable[offset++] = 0;
+    }
+    out.write(this.colorTable, 0, offset);
+  }
+
+  static void writeShort(int value, ByteArrayOutputStream out) {
+    out.write(value & 0xFF);
+    out.write((value >> 8) & 0xFF);
+  }
+}
@@ -1,26 +1,60 @@
 package org.code.theater.support;
 
+import static org.code.theater.support.Constants.THEATER_HEIGHT;
+import static org.code.theater.support.Constants.THEATER_WIDTH;
+
 import java.awt.image.BufferedImage;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import javax.imageio.*;
-import javax.imageio.metadata.IIOInvalidTreeException;
-import javax.imageio.metadata.IIOMetadata;
-import javax.imageio.metadata.IIOMetadataNode;
-import javax.imageio.stream.ImageOutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import org.code.protocol.InternalExceptionKey;
 import org.code.protocol.InternalServerRuntimeException;
 
 /**
  * Writer to generate a gif from a set of images. The gif will be stored in the given
  * ByteArrayOutputStream.
+ *
+ * <p>The GIF blocks are written directly rather than through ImageIO, with each frame encoded by a
+ * {@link GifFrameEncoder}. See the GIF specification here:
+ * https://www.w3.org/Graphics/GIF/spec-gif89a.txt
+ *
+ * <p>Drawing the frames is sequential, but once a frame is drawn, encoding it only depends on its
+ * pixels and those of the frame before it. So when there is more than one CPU, each frame's pixels
+ * are copied, and the frame is encoded on a pool of background threads while the next one is drawn.
+ * The encoded frames are written to the stream in order, on the thread that calls this writer. At
+ * most a few frames are in progress at once; if encoding falls behind, writeToGif waits for the
+ * oldest frame to finish.
  */
 public class GifWriter {
-  private ImageWriter writer;
-  private ImageWriteParam params;
-  private ImageOutputStream imageOutputStream;
   // 30 mb
   private static final int MAX_STREAM_LENGTH_BYTES = 31457280;
+  // Frames waiting to be written per encoder thread, which keeps the threads busy while bounding
+  // the memory used by frame copies.
+  private static final int FRAMES_IN_FLIGHT_PER_THREAD = 2;
+
+  private final ByteArrayOutputStream out;
+  // Null if frames are encoded on the calling thread.
+  private final ExecutorService executor;
+  // Encoders not in use. There is one for each thread that can encode, so one is always free.
+  private final BlockingQueue<GifFrameEncoder> encoders;
+  private final int maxFramesInFlight;
+  // Frames that have been submitted and not yet written, oldest first
+  private final Deque<CompletableFuture<Frame>> pendingFrames;
+  // Frame buffers that can be reused
+  private final Deque<Frame> freeFrames;
+  // The last frame submitted, which the next frame is compared with
+  private Frame lastSubmittedFrame;
+  // The last frame written to the stream. It is kept until the frame after it is written, since
+  // that frame is compared with it.
+  private Frame lastWrittenFrame;
+  private boolean hasClosed;
 
   public static class Factory {
     public GifWriter createGifWriter(ByteArrayOutputStream out) {
@@ -28,38 +62,80 @@ public class GifWriter {
     }
   }
 
+  /** A copy of one frame's pixels, and its encoded form once it has been encoded. */
+  private static class Frame {
+    private int[] pixels;
+    private int width;
+    private int height;
+    private int delay;
+    private final ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+  }
+
   GifWriter(ByteArrayOutputStream out) {
-    try {
-      this.imageOutputStream = ImageIO.createImageOutputStream(out);
-      this.writer = ImageIO.getImageWritersBySuffix("gif").next();
-      this.params = writer.getDefaultWriteParam();
-      this.writer.setOutput(this.imageOutputStream);
-      IIOMetadata streamData = this.getMetadataForGif();
-      this.writer.prepareWriteSequence(streamData);
-    } catch (IOException e) {
-      throw new InternalServerRuntimeException(
-          InternalExceptionKey.INTERNAL_RUNTIME_EXCEPTION, e.getCause());
+    // The thread drawing the frames keeps one CPU busy.
+    this(out, Runtime.getRuntime().availableProcessors() - 1);
+  }
+
+  /** @param encoderThreads the number of background threads to encode on, or 0 for none. */
+  GifWriter(ByteArrayOutputStream out, int encoderThreads) {
+    this.out = out;
+    final int encoderCount = Math.max(1, encoderThreads);
+    this.encoders = new ArrayBlockingQueue<>(encoderCount);
+    for (int i = 0; i < encoderCount; i++) {
+      this.encoders.add(new GifFrameEncoder());
     }
+    if (encoderThreads > 0) {
+      this.executor =
+          Executors.newFixedThreadPool(
+              encoderThreads,
+              runnable -> {
+                final Thread thread = new Thread(runnable, "gif-encoder");
+                thread.setDaemon(true);
+                return thread;
+              });
+      this.maxFramesInFlight = encoderThreads * FRAMES_IN_FLIGHT_PER_THREAD;
+    } else {
+      this.executor = null;
+      this.maxFramesInFlight = 0;
+    }
+    this.pendingFrames = new ArrayDeque<>();
+    this.freeFrames = new ArrayDeque<>();
+    this.hasClosed = false;
+    this.writeHeader();
   }
 
   /**
-   * Write the given image as the next frame of the gif.
+   * Write the given image as the next frame of the gif. The image is copied, so it can be changed
+   * as soon as this returns, although the frame may not have been written to the stream yet.
    *
    * @param img BufferedImage
    * @param delay delay in milliseconds after this frame of the gif.
    */
   public void writeToGif(BufferedImage img, int delay) {
-    try {
-      if (this.imageOutputStream.length() > MAX_STREAM_LENGTH_BYTES) {
-        throw new TheaterRuntimeException(ExceptionKeys.VIDEO_TOO_LARGE);
-      }
-      this.writer.writeToSequence(
-          new IIOImage(img, null, getMetadataForFrame(delay, img.getType())), this.params);
-
-    } catch (IOException e) {
+    if (this.hasClosed) {
       throw new InternalServerRuntimeException(
-          InternalExceptionKey.INTERNAL_RUNTIME_EXCEPTION, e.getCause());
+          InternalExceptionKey.INTERNAL_RUNTIME_EXCEPTION,
+          new IllegalStateException("GIF writer has been closed"));
+    }
+    // Frames still being encoded are not counted, so the limit may be passed by a few frames.
+    if (this.out.size() > MAX_STREAM_LENGTH_BYTES) {
+      throw new TheaterRuntimeException(ExceptionKeys.VIDEO_TOO_LARGE);
+    }
+
+    final Frame frame = this.copyFrame(img, delay);
+    final Frame previous = this.lastSubmittedFrame;
+    final int[] previousPixels =
+        previous != null && previous.width == frame.width && previous.height == frame.height
+            ? previous.pixels
+            : null;
+    this.lastSubmittedFrame = frame;
+    if (this.executor == null) {
+      this.pendingFrames.add(CompletableFuture.completedFuture(encode(frame, previousPixels)));
+    } else {
+      this.pendingFrames.add(
+          CompletableFuture.supplyAsync(() -> encode(frame, previousPixels), this.executor));
     }
+    this.writeEncodedFrames(this.maxFramesInFlight);
   }
 
   /**
@@ -67,86 +143,108 @@ public class GifWriter {
    * exception because the writer has been closed.
    */
   public void close() {
+    if (this.hasClosed) {
+      return;
+    }
+    this.hasClosed = true;
     try {
-      this.writer.endWriteSequence();
-      this.imageOutputStream.flush();
-      this.imageOutputStream.close();
-    } catch (IOException e) {
-      throw new InternalServerRuntimeException(
-          InternalExceptionKey.INTERNAL_RUNTIME_EXCEPTION, e.getCause());
+      this.writeEncodedFrames(0);
+      // Trailer
+      this.out.write(0x3B);
+    } finally {
+      if (this.executor != null) {
+        this.executor.shutdownNow();
+      }
     }
   }
 
-  /**
-   * Get the metadata for the next frame with the given delay and image type. See Gif metadata
-   * specification here:
-   * https://javadoc.scijava.org/Java7/javax/imageio/metadata/doc-files/gif_metadata.html
-   *
-   * @param delay int delay in milliseconds after this frame
-   * @param imageType int
-   * @return IIOMetadata for the next frame
-   */
-  private IIOMetadata getMetadataForFrame(int delay, int imageType) {
-    IIOMetadata metadata =
-        this.writer.getDefaultImageMetadata(
-            ImageTypeSpecifier.createFromBufferedImageType(imageType), params);
-    String metaFormatName = metadata.getNativeMetadataFormatName();
-    IIOMetadataNode root = (IIOMetadataNode) metadata.getAsTree(metaFormatName);
-
-    IIOMetadataNode graphicsControlExtensionNode = this.getNode(root, "GraphicControlExtension");
-    graphicsControlExtensionNode.setAttribute("disposalMethod", "none");
-    graphicsControlExtensionNode.setAttribute("userInputFlag", "FALSE");
-    graphicsControlExtensionNode.setAttribute("transparentColorFlag", "FALSE");
-    // delay is expected in hundredths of a second, divide milliseconds by 10
-    graphicsControlExtensionNode.setAttribute("delayTime", Integer.toString(delay / 10));
-    graphicsControlExtensionNode.setAttribute("transparentColorIndex", "0");
-
+  private Frame encode(Frame frame, int[] previousPixels) {
+    // There are as many encoders as threads that can encode, so this always finds one.
+    final GifFrameEncoder encoder = this.encoders.poll();
     try {
-      metadata.setFromTree(metaFormatName, root);
-    } catch (IIOInvalidTreeException e) {
-      throw new InternalServerRuntimeException(
-          InternalExceptionKey.INTERNAL_RUNTIME_EXCEPTION, e.getCause());
+      frame.encoded.reset();
+      encoder.encode(
+          frame.pixels, previousPixels, frame.width, frame.height, frame.delay, frame.encoded);
+      return frame;
+    } finally {
+      this.encoders.add(encoder);
     }
-    return metadata;
   }
 
   /**
-   * Find metadata node with the given name from the rootNode
-   *
-   * @param rootNode
-   * @param nodeName
-   * @return Requested IIOMetadataNode
+   * Writes frames that have been encoded to the stream, in order. Waits for the oldest frame to be
+   * encoded while more than the given number of frames are pending.
    */
-  private IIOMetadataNode getNode(IIOMetadataNode rootNode, String nodeName) {
-    int nNodes = rootNode.getLength();
-    for (int i = 0; i < nNodes; i++) {
-      if (rootNode.item(i).getNodeName().equalsIgnoreCase(nodeName)) {
-        return (IIOMetadataNode) rootNode.item(i);
+  private void writeEncodedFrames(int maxPending) {
+    while (!this.pendingFrames.isEmpty()
+        && (this.pendingFrames.size() > maxPending || this.pendingFrames.peek().isDone())) {
+      final Frame frame = awaitFrame(this.pendingFrames.remove());
+      try {
+        frame.encoded.writeTo(this.out);
+      } catch (IOException e) {
+        throw new InternalServerRuntimeException(
+            InternalExceptionKey.INTERNAL_RUNTIME_EXCEPTION, e);
+      }
+      if (this.lastWrittenFrame != null) {
+        this.freeFrames.add(this.lastWrittenFrame);
       }
+      this.lastWrittenFrame = frame;
     }
-    IIOMetadataNode node = new IIOMetadataNode(nodeName);
-    rootNode.appendChild(node);
-    return (node);
   }
 
-  /**
-   * Get overall metadata for the gif. Sets the width and height to be 400 px.
-   *
-   * @return IIOMetadata
-   */
-  private IIOMetadata getMetadataForGif() {
-    IIOMetadata streamData = this.writer.getDefaultStreamMetadata(this.params);
-    String metaFormatName = streamData.getNativeMetadataFormatName();
-    IIOMetadataNode root = (IIOMetadataNode) streamData.getAsTree(metaFormatName);
-    IIOMetadataNode screenDescriptor = this.getNode(root, "LogicalScreenDescriptor");
-    screenDescriptor.setAttribute("logicalScreenWidth", "400");
-    screenDescriptor.setAttribute("logicalScreenHeight", "400");
+  private static Frame awaitFrame(CompletableFuture<Frame> pending) {
     try {
-      streamData.setFromTree(metaFormatName, root);
-    } catch (IIOInvalidTreeException e) {
+      return pending.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InternalServerRuntimeException(
+          InternalExceptionKey.INTERNAL_RUNTIME_EXCEPTION, e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
       throw new InternalServerRuntimeException(
           InternalExceptionKey.INTERNAL_RUNTIME_EXCEPTION, e.getCause());
     }
-    return streamData;
+  }
+
+  /** Copies the RGB value of each pixel of the image into a frame buffer. */
+  private Frame copyFrame(BufferedImage img, int delay) {
+    final Frame frame = this.freeFrames.isEmpty() ? new Frame() : this.freeFrames.remove();
+    frame.width = img.getWidth();
+    frame.height = img.getHeight();
+    frame.delay = delay;
+    final int pixelCount = frame.width * frame.height;
+    if (frame.pixels == null || frame.pixels.length < pixelCount) {
+      frame.pixels = new int[Math.max(pixelCount, THEATER_WIDTH * THEATER_HEIGHT)];
+    }
+    final int type = img.getType();
+    if (type == BufferedImage.TYPE_INT_RGB || type == BufferedImage.TYPE_INT_ARGB) {
+      // The raster already holds packed RGB ints, so copy them directly.
+      img.getRaster().getDataElements(0, 0, frame.width, frame.height, frame.pixels);
+    } else {
+      img.getRGB(0, 0, frame.width, frame.height, frame.pixels, 0, frame.width);
+    }
+    return frame;
+  }
+
+  /**
+   * Writes the GIF header and the logical screen descriptor, which sets the width and height to be
+   * 400 px. There is no global color table, since each frame has its own.
+   */
+  private void writeHeader() {
+    this.out.write('G');
+    this.out.write('I');
+    this.out.write('F');
+    this.out.write('8');
+    this.out.write('9');
+    this.out.write('a');
+    GifFrameEncoder.writeShort(THEATER_WIDTH, this.out);
+    GifFrameEncoder.writeShort(THEATER_HEIGHT, this.out);
+    // No global color table, 8 bits per primary color
+    this.out.write(0x70);
+    // Background color index and pixel aspect ratio
+    this.out.write(0);
+    this.out.write(0);
   }
 }
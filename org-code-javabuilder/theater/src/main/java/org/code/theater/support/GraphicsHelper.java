@@ -65,8 +65,7 @@ class GraphicsHelper {
     if (rotation != 0) {
       this.graphics.rotate(Math.toRadians(rotation), x, y);
     }
-    java.awt.Font sizedFont = this.fontHelper.getFont(font, fontStyle).deriveFont((float) height);
-    this.graphics.setFont(sizedFont);
+    this.graphics.setFont(this.fontHelper.getFont(font, fontStyle, height));
     this.graphics.setColor(Color.convertToAWTColor(color));
     this.graphics.drawString(text, x, y);
     if (rotation != 0) {
@@ -0,0 +1,116 @@
+package org.code.theater.support;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystemNotFoundException;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+import org.code.media.util.AudioUtils;
+import org.code.protocol.CachedResources;
+import org.code.protocol.LoggerUtils;
+
+/**
+ * All instrument samples, decoded ahead of time into a single file of 16-bit mono PCM at the
+ * default sample rate. The file is built from the instrument WAV files by the packInstrumentSamples
+ * task in lib/build.gradle, and is memory-mapped once per container, so playing a note only reads
+ * the part of the sample that is used rather than decoding the whole WAV file.
+ *
+ * <p>File format. Header values are big-endian; sample data is little-endian.
+ *
+ * <pre>
+ * int magic, int version, int sampleRate, int entryCount
+ * entryCount * { UTF name (as written by DataOutput.writeUTF), int byteOffset, int sampleCount }
+ * sample data
+ * </pre>
+ *
+ * Entries are named by the resource path of the WAV file they were built from, such as
+ * "instruments/javalab-piano-60.wav".
+ */
+class InstrumentSampleBank {
+  static final String BANK_RESOURCE_NAME = "instruments/javalab-instruments.bank";
+  private static final int MAGIC = 0x4A424E4B; // "JBNK"
+  private static final int VERSION = 1;
+
+  private final ShortBuffer sampleData;
+  // Resource path -> { first sample index, sample count }
+  private final Map<String, int[]> index;
+
+  /**
+   * Loads the bank built into the Javabuilder resources.
+   *
+   * @return the bank, or null if it is not available, in which case the WAV files should be used.
+   */
+  static InstrumentSampleBank load() {
+    final URL resourceUrl =
+        InstrumentSampleBank.class.getClassLoader().getResource(BANK_RESOURCE_NAME);
+    if (resourceUrl == null) {
+      return null;
+    }
+    try {
+      return new InstrumentSampleBank(
+          CachedResources.getInstance().getMappedFile(Paths.get(resourceUrl.toURI())));
+    } catch (IOException
+        | URISyntaxException
+        | FileSystemNotFoundException
+        | IllegalArgumentException
+        | BufferUnderflowException e) {
+      LoggerUtils.logTrackingExceptionAsWarning(e);
+      return null;
+    }
+  }
+
+  /** @throws IllegalArgumentException if the data is not a valid bank. */
+  InstrumentSampleBank(ByteBuffer bank) {
+    bank.order(ByteOrder.BIG_ENDIAN);
+    if (bank.getInt() != MAGIC || bank.getInt() != VERSION) {
+      throw new IllegalArgumentException("Unrecognized instrument sample bank");
+    }
+    if (bank.getInt() != AudioUtils.getDefaultSampleRate()) {
+      throw new IllegalArgumentException("Instrument sample bank has the wrong sample rate");
+    }
+    final int entryCount = bank.getInt();
+    this.index = new HashMap<>();
+    for (int i = 0; i < entryCount; i++) {
+      final byte[] name = new byte[Short.toUnsignedInt(bank.getShort())];
+      bank.get(name);
+      final int byteOffset = bank.getInt();
+      final int sampleCount = bank.getInt();
+      if (byteOffset % 2 != 0 || sampleCount < 0) {
+        throw new IllegalArgumentException("Invalid instrument sample bank entry");
+      }
+      this.index.put(
+          new String(name, StandardCharsets.UTF_8), new int[] {byteOffset / 2, sampleCount});
+    }
+    this.sampleData =
+        bank.duplicate().position(0).order(ByteOrder.LITTLE_ENDIAN).asShortBuffer();
+    for (int[] entry : this.index.values()) {
+      if ((long) entry[0] + entry[1] > this.sampleData.capacity()) {
+        throw new IllegalArgumentException("Instrument sample bank is truncated");
+      }
+    }
+  }
+
+  /**
+   * @param samplePath the resource path of the sample's WAV file
+   * @param maxSamples the most samples needed
+   * @return a read-only view of the first maxSamples samples, or of the whole sample if it is
+   *     shorter, or null if the bank does not contain the sample.
+   */
+  ShortBuffer getSamples(String samplePath, int maxSamples) {
+    final int[] entry = this.index.get(samplePath);
+    if (entry == null) {
+      return null;
+    }
+    final ShortBuffer samples = this.sampleData.duplicate();
+    samples.position(entry[0]);
+    samples.limit(entry[0] + Math.max(0, Math.min(entry[1], maxSamples)));
+    return samples.slice().asReadOnlyBuffer();
+  }
+}
@@ -2,9 +2,11 @@ package org.code.theater.support;
 
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.ShortBuffer;
 import java.nio.file.Paths;
 import java.util.HashMap;
 import java.util.Map;
+import org.code.media.util.AudioUtils;
 import org.code.theater.Instrument;
 
 public class InstrumentSampleLoader {
@@ -31,13 +33,44 @@ public class InstrumentSampleLoader {
 
   // Map of Instrument -> Map of note value (int) -> file path / name
   private final Map<Instrument, Map<Integer, String>> instrumentFileMap;
+  // Pre-decoded samples, or null if they are not available and the WAV files must be decoded.
+  private final InstrumentSampleBank sampleBank;
 
   public InstrumentSampleLoader() {
-    this(InstrumentSampleLoader.generateInstrumentFileMap());
+    this(InstrumentSampleLoader.generateInstrumentFileMap(), InstrumentSampleBank.load());
   }
 
   InstrumentSampleLoader(Map<Instrument, Map<Integer, String>> instrumentFileMap) {
+    this(instrumentFileMap, null);
+  }
+
+  InstrumentSampleLoader(
+      Map<Instrument, Map<Integer, String>> instrumentFileMap, InstrumentSampleBank sampleBank) {
     this.instrumentFileMap = instrumentFileMap;
+    this.sampleBank = sampleBank;
+  }
+
+  /**
+   * Retrieves the samples for the given instrument and note from the pre-decoded sample bank,
+   * reading only as much of the sample as is needed. Returns null if the sample is not in the bank;
+   * {@link #getSampleFilePath(Instrument, int)} should be used in that case.
+   *
+   * @param instrument
+   * @param note
+   * @param lengthSeconds how long the note is played for
+   * @return samples for the note, at most lengthSeconds long, or null if none are found.
+   */
+  public double[] getNoteSamples(Instrument instrument, int note, double lengthSeconds) {
+    final Map<Integer, String> noteToFileMap = instrumentFileMap.get(instrument);
+    if (this.sampleBank == null || noteToFileMap == null || !noteToFileMap.containsKey(note)) {
+      return null;
+    }
+
+    final ShortBuffer samples =
+        this.sampleBank.getSamples(
+            noteToFileMap.get(note),
+            (int) (lengthSeconds * (double) AudioUtils.getDefaultSampleRate()));
+    return samples == null ? null : AudioUtils.convertShortBufferToDoubleArray(samples);
   }
 
   /**
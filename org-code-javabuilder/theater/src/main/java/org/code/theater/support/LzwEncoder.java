@@ -0,0 +1,141 @@
+package org.code.theater.support;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+/**
+ * Compresses the color indices of a GIF frame with the variable-length LZW coding GIF uses, and
+ * writes them as GIF data sub-blocks. The string table is an open-addressed hash table, as in the
+ * classic GIF encoders, and it and the output block are allocated once and reused for every frame.
+ * An encoder is not thread-safe.
+ */
+final class LzwEncoder {
+  private static final int MAX_CODE_SIZE = 12;
+  private static final int MAX_CODES = 1 << MAX_CODE_SIZE;
+  // A prime about 25% larger than the number of codes, with the matching hash shift.
+  private static final int HASH_SIZE = 5003;
+  private static final int HASH_SHIFT = 4;
+  private static final int EMPTY = -1;
+  private static final int MAX_SUB_BLOCK_SIZE = 255;
+
+  // Each key is a string table entry, as (suffix << 12) | prefix code.
+  private final int[] hashKeys;
+  private final short[] hashCodes;
+  // The length of the current sub-block, followed by its data.
+  private final byte[] subBlock;
+  private int subBlockSize;
+
+  private ByteArrayOutputStream out;
+  private int initialCodeSize;
+  private int codeSize;
+  private int clearCode;
+  private int nextCode;
+  private int bitBuffer;
+  private int bitCount;
+
+  LzwEncoder() {
+    this.hashKeys = new int[HASH_SIZE];
+    this.hashCodes = new short[HASH_SIZE];
+    this.subBlock = new byte[MAX_SUB_BLOCK_SIZE + 1];
+  }
+
+  /**
+   * Writes the LZW minimum code size, the compressed indices and the block terminator.
+   *
+   * @param indices the color index of each pixel, in rows from the top left
+   * @param count the number of indices to write
+   * @param minCodeSize the number of bits needed for the largest color index, at least 2
+   */
+  void encode(byte[] indices, int count, int minCodeSize, ByteArrayOutputStream out) {
+    this.out = out;
+    this.initialCodeSize = minCodeSize + 1;
+    this.clearCode = 1 << minCodeSize;
+    this.subBlockSize = 0;
+    this.bitBuffer = 0;
+    this.bitCount = 0;
+    out.write(minCodeSize);
+
+    this.clearTable();
+    this.writeCode(this.clearCode);
+    if (count > 0) {
+      int prefix = indices[0] & 0xFF;
+      for (int i = 1; i < count; i++) {
+        final int suffix = indices[i] & 0xFF;
+        final int key = (suffix << MAX_CODE_SIZE) | prefix;
+        int slot = (suffix << HASH_SHIFT) ^ prefix;
+        final int step = slot == 0 ? 1 : HASH_SIZE - slot;
+        while (this.hashKeys[slot] != EMPTY && this.hashKeys[slot] != key) {
+          slot -= step;
+          if (slot < 0) {
+            slot += HASH_SIZE;
+          }
+        }
+        if (this.hashKeys[slot] == key) {
+          // The string continues an entry already in the table.
+          prefix = this.hashCodes[slot];
+          continue;
+        }
+
+        this.writeCode(prefix);
+        if (this.nextCode < MAX_CODES) {
+          this.hashKeys[slot] = key;
+          this.hashCodes[slot] = (short) this.nextCode++;
+        } else {
+          // The table is full, so start over.
+          this.writeCode(this.clearCode);
+          this.clearTable();
+          this.codeSize = this.initialCodeSize;
+        }
+        prefix = suffix;
+      }
+      this.writeCode(prefix);
+    }
+    this.writeCode(this.clearCode + 1);
+
+    if (this.bitCount > 0) {
+      this.writeByte(this.bitBuffer);
+    }
+    this.flushSubBlock();
+    // Block terminator
+    out.write(0);
+    this.out = null;
+  }
+
+  private void clearTable() {
+    Arrays.fill(this.hashKeys, EMPTY);
+    this.nextCode = this.clearCode + 2;
+    this.codeSize = this.initialCodeSize;
+  }
+
+  /**
+   * Writes a code at the current code size. The code size grows once the next code to be added to
+   * the table no longer fits, which is when the decoder grows its own.
+   */
+  private void writeCode(int code) {
+    this.bitBuffer |= code << this.bitCount;
+    this.bitCount += this.codeSize;
+    while (this.bitCount >= 8) {
+      this.writeByte(this.bitBuffer);
+      this.bitBuffer >>>= 8;
+      this.bitCount -= 8;
+    }
+    if (this.nextCode >= (1 << this.codeSize) && this.codeSize < MAX_CODE_SIZE) {
+      this.codeSize++;
+    }
+  }
+
+  private void writeByte(int value) {
+    this.subBlock[++this.subBlockSize] = (byte) value;
+    if (this.subBlockSize == MAX_SUB_BLOCK_SIZE) {
+      this.flushSubBlock();
+    }
+  }
+
+  private void flushSubBlock() {
+    if (this.subBlockSize > 0) {
+      this.subBlock[0] = (byte) this.subBlockSize;
+      this.out.write(this.subBlock, 0, this.subBlockSize + 1);
+      this.subBlockSize = 0;
+    }
+  }
+}
@@ -0,0 +1,315 @@
+package org.code.theater.support;
+
+import static org.code.theater.support.Constants.THEATER_HEIGHT;
+import static org.code.theater.support.Constants.THEATER_WIDTH;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import javax.imageio.ImageIO;
+import org.code.media.Color;
+import org.code.protocol.ContentManager;
+import org.code.protocol.InternalExceptionKey;
+import org.code.protocol.InternalServerRuntimeException;
+import org.code.protocol.JavabuilderContext;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Writer to generate a scene log from the drawing commands of a Theater project, so that the client
+ * can draw the project itself instead of receiving a GIF. The log will be stored in the given
+ * ByteArrayOutputStream as UTF-8 JSON of the form:
+ *
+ * <pre>
+ * {
+ *   "version": 1,
+ *   "width": 400,
+ *   "height": 400,
+ *   "actions": [
+ *     ["CLEAR_SCENE", color],
+ *     ["PAUSE", seconds],
+ *     ["DRAW_IMAGE", image, x, y, width, height, rotation],
+ *     ["DRAW_TEXT", text, x, y, color, font, fontStyle, height, rotation],
+ *     ["DRAW_LINE", color, startX, startY, endX, endY, strokeWidth],
+ *     ["DRAW_POLYGON", x, y, sides, radius, strokeColor, fillColor, strokeWidth],
+ *     ["DRAW_SHAPE", [x1, y1, x2, y2, ...], closed, strokeColor, fillColor, strokeWidth],
+ *     ["DRAW_ELLIPSE", x, y, width, height, strokeColor, fillColor, strokeWidth],
+ *     ["DRAW_RECTANGLE", x, y, width, height, strokeColor, fillColor, strokeWidth]
+ *   ],
+ *   "images": [{"url": assetUrl}, {"hash": sha256, "data": base64Png}, ...]
+ * }
+ * </pre>
+ *
+ * Actions are in the order they were made, and draw onto a white canvas. Each pause shows the
+ * canvas as it is for that many seconds, and the canvas as it is after the last action is shown
+ * when the video ends. Colors are RGB integers (0xRRGGBB), or null for no stroke or fill, and
+ * rotations are in degrees. Sounds are not part of the log, since they are still sent as an audio
+ * file.
+ *
+ * <p>An image is the index of an entry in "images". Images drawn straight from an asset file are
+ * referenced by the asset's http(s) URL. Any other image, including a stubbed asset that only the
+ * server can load, is sent once as a PNG, identified by the SHA-256 hash of its pixels, however
+ * many times it is drawn. A client that does not recognize the version should fall back to asking
+ * for a GIF.
+ */
+public class SceneLogWriter {
+  public static final int VERSION = 1;
+  // 30 mb, the same as the largest GIF
+  private static final int MAX_STREAM_LENGTH_BYTES = 31457280;
+
+  private final ByteArrayOutputStream out;
+  private final ContentManager contentManager;
+  // The index in images of each image written so far, by asset file name or content hash
+  private final Map<String, Integer> imageIndices;
+  private final JSONArray images;
+  private long imageBytes;
+  private boolean hasActions;
+  private boolean hasClosed;
+
+  public static class Factory {
+    public SceneLogWriter createSceneLogWriter(ByteArrayOutputStream out) {
+      return new SceneLogWriter(
+          out, JavabuilderContext.getInstance().getGlobalProtocol().getContentManager());
+    }
+  }
+
+  SceneLogWriter(ByteArrayOutputStream out, ContentManager contentManager) {
+    this.out = out;
+    this.contentManager = contentManager;
+    this.imageIndices = new HashMap<>();
+    this.images = new JSONArray();
+    this.imageBytes = 0;
+    this.hasActions = false;
+    this.hasClosed = false;
+    this.write(
+        String.format(
+            "{\"version\":%d,\"width\":%d,\"height\":%d,\"actions\":[",
+            VERSION, THEATER_WIDTH, THEATER_HEIGHT));
+  }
+
+  /**
+   * Write the given action as the next entry in the log. Actions that only play sound are ignored.
+   *
+   * @param action SceneAction
+   */
+  public void writeAction(SceneAction action) {
+    if (this.hasClosed) {
+      throw new InternalServerRuntimeException(
+          InternalExceptionKey.INTERNAL_RUNTIME_EXCEPTION,
+          new IllegalStateException("Scene log writer has been closed"));
+    }
+    if (this.out.size() + this.imageBytes > MAX_STREAM_LENGTH_BYTES) {
+      throw new TheaterRuntimeException(ExceptionKeys.VIDEO_TOO_LARGE);
+    }
+
+    final JSONArray entry = this.createEntry(action);
+    if (entry == null) {
+      return;
+    }
+    if (this.hasActions) {
+      this.write(",");
+    }
+    this.write(entry.toString());
+    this.hasActions = true;
+  }
+
+  /**
+   * Close the log and write the image table. Any updates after close will throw an exception
+   * because the writer has been closed.
+   */
+  public void close() {
+    if (this.hasClosed) {
+      return;
+    }
+    this.hasClosed = true;
+    this.write("],\"images\":");
+    this.write(this.images.toString());
+    this.write("}");
+  }
+
+  private JSONArray createEntry(SceneAction action) {
+    final JSONArray entry = new JSONArray().put(action.getType().name());
+    switch (action.getType()) {
+      case CLEAR_SCENE:
+        return entry.put(toJSON(((ClearSceneAction) action).getColor()));
+      case PAUSE:
+        return entry.put(toJSON(((PauseAction) action).getSeconds()));
+      case DRAW_IMAGE:
+        final DrawImageAction drawImageAction = (DrawImageAction) action;
+        return entry
+            .put(this.getImageIndex(drawImageAction))
+            .put(drawImageAction.getX())
+            .put(drawImageAction.getY())
+            .put(drawImageAction.getDrawnWidth())
+            .put(drawImageAction.getDrawnHeight())
+            .put(toJSON(drawImageAction.getRotation()));
+      case DRAW_TEXT:
+        final DrawTextAction drawTextAction = (DrawTextAction) action;
+        return entry
+            .put(drawTextAction.getText())
+            .put(drawTextAction.getX())
+            .put(drawTextAction.getY())
+            .put(toJSON(drawTextAction.getColor()))
+            .put(drawTextAction.getFont().name())
+            .put(drawTextAction.getFontStyle().name())
+            .put(drawTextAction.getHeight())
+            .put(toJSON(drawTextAction.getRotation()));
+      case DRAW_LINE:
+        final DrawLineAction drawLineAction = (DrawLineAction) action;
+        return entry
+            .put(toJSON(drawLineAction.getColor()))
+            .put(drawLineAction.getStartX())
+            .put(drawLineAction.getStartY())
+            .put(drawLineAction.getEndX())
+            .put(drawLineAction.getEndY())
+            .put(toJSON(drawLineAction.getStrokeWidth()));
+      case DRAW_POLYGON:
+        final DrawPolygonAction drawPolygonAction = (DrawPolygonAction) action;
+        return entry
+            .put(drawPolygonAction.getX())
+            .put(drawPolygonAction.getY())
+            .put(drawPolygonAction.getSides())
+            .put(drawPolygonAction.getRadius())
+            .put(toJSON(drawPolygonAction.getStrokeColor()))
+            .put(toJSON(drawPolygonAction.getFillColor()))
+            .put(toJSON(drawPolygonAction.getStrokeWidth()));
+      case DRAW_SHAPE:
+        final DrawShapeAction drawShapeAction = (DrawShapeAction) action;
+        return entry
+            .put(toJSON(drawShapeAction.getPoints()))
+            .put(drawShapeAction.isClosed())
+            .put(toJSON(drawShapeAction.getStrokeColor()))
+            .put(toJSON(drawShapeAction.getFillColor()))
+            .put(toJSON(drawShapeAction.getStrokeWidth()));
+      case DRAW_ELLIPSE:
+        final DrawEllipseAction drawEllipseAction = (DrawEllipseAction) action;
+        return entry
+            .put(drawEllipseAction.getX())
+            .put(drawEllipseAction.getY())
+            .put(drawEllipseAction.getWidth())
+            .put(drawEllipseAction.getHeight())
+            .put(toJSON(drawEllipseAction.getStrokeColor()))
+            .put(toJSON(drawEllipseAction.getFillColor()))
+            .put(toJSON(drawEllipseAction.getStrokeWidth()));
+      case DRAW_RECTANGLE:
+        final DrawRectangleAction drawRectangleAction = (DrawRectangleAction) action;
+        return entry
+            .put(drawRectangleAction.getX())
+            .put(drawRectangleAction.getY())
+            .put(drawRectangleAction.getWidth())
+            .put(drawRectangleAction.getHeight())
+            .put(toJSON(drawRectangleAction.getStrokeColor()))
+            .put(toJSON(drawRectangleAction.getFillColor()))
+            .put(toJSON(drawRectangleAction.getStrokeWidth()));
+      default:
+        return null;
+    }
+  }
+
+  /**
+   * Returns the index of the action's image in the image table, adding it if it has not been drawn
+   * before.
+   */
+  private int getImageIndex(DrawImageAction action) {
+    final String filename = action.getAssetFilename();
+    final String assetKey = filename == null ? null : "asset:" + filename;
+    if (assetKey != null && this.imageIndices.containsKey(assetKey)) {
+      return this.imageIndices.get(assetKey);
+    }
+    if (filename != null) {
+      final String url = this.contentManager.getAssetUrl(filename);
+      if (isWebUrl(url)) {
+        this.addImage(assetKey, new JSONObject().put("url", url));
+        return this.imageIndices.get(assetKey);
+      }
+    }
+
+    final BufferedImage image = action.getImage().getBufferedImage();
+    final String hash = getContentHash(image);
+    if (!this.imageIndices.containsKey(hash)) {
+      final String data = Base64.getEncoder().encodeToString(encodePng(image));
+      this.imageBytes += data.length();
+      this.addImage(hash, new JSONObject().put("hash", hash).put("data", data));
+    }
+    final int index = this.imageIndices.get(hash);
+    if (assetKey != null) {
+      // The client cannot load this asset itself, so remember that it was sent with the log.
+      this.imageIndices.put(assetKey, index);
+    }
+    return index;
+  }
+
+  private void addImage(String key, JSONObject image) {
+    this.imageIndices.put(key, this.images.length());
+    this.images.put(image);
+  }
+
+  private void write(String text) {
+    final byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+    this.out.write(bytes, 0, bytes.length);
+  }
+
+  /**
+   * @return whether the client can load the given URL. Assets that Javabuilder cannot access are
+   *     stubbed with files on the server's classpath, whose URLs mean nothing to the client.
+   */
+  private static boolean isWebUrl(String url) {
+    return url != null && (url.startsWith("https://") || url.startsWith("http://"));
+  }
+
+  private static Object toJSON(Color color) {
+    if (color == null) {
+      return JSONObject.NULL;
+    }
+    return color.getRed() << 16 | color.getGreen() << 8 | color.getBlue();
+  }
+
+  private static JSONArray toJSON(int[] values) {
+    final JSONArray array = new JSONArray();
+    for (int value : values) {
+      array.put(value);
+    }
+    return array;
+  }
+
+  private static double toJSON(double value) {
+    // JSON has no NaN or infinity, and Java2D draws nothing useful with them either.
+    return Double.isFinite(value) ? value : 0;
+  }
+
+  /** @return the SHA-256 hash of the image's size and pixels, as hex. */
+  private static String getContentHash(BufferedImage image) {
+    final int width = image.getWidth();
+    final int height = image.getHeight();
+    final int[] pixels = image.getRGB(0, 0, width, height, null, 0, width);
+    final ByteBuffer buffer = ByteBuffer.allocate((pixels.length + 2) * Integer.BYTES);
+    buffer.putInt(width).putInt(height).asIntBuffer().put(pixels);
+    try {
+      final byte[] digest = MessageDigest.getInstance("SHA-256").digest(buffer.array());
+      final StringBuilder hex = new StringBuilder(digest.length * 2);
+      for (byte b : digest) {
+        hex.append(String.format("%02x", b));
+      }
+      return hex.toString();
+    } catch (NoSuchAlgorithmException e) {
+      throw new InternalServerRuntimeException(InternalExceptionKey.INTERNAL_RUNTIME_EXCEPTION, e);
+    }
+  }
+
+  private static byte[] encodePng(BufferedImage image) {
+    final ByteArrayOutputStream png = new ByteArrayOutputStream();
+    try {
+      ImageIO.write(image, "png", png);
+    } catch (IOException e) {
+      throw new InternalServerRuntimeException(InternalExceptionKey.INTERNAL_RUNTIME_EXCEPTION, e);
+    }
+    return png.toByteArray();
+  }
+}
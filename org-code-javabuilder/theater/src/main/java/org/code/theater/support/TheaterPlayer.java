@@ -4,9 +4,19 @@ import java.util.List;
 import org.code.protocol.JavabuilderSharedObject;
 
 /**
- * Plays a Theater concert with the provided list of {@link SceneAction}s, using a {@link
+ * Plays a Theater concert with the provided lists of {@link SceneAction}s, using a {@link
  * ConcertCreator}. It manages the global Theater state to ensure that a concert is only played once
  * per session. The object should not persist past a single session.
+ *
+ * <p>When streaming, the actions of the first scene to make one are added to a concert as they are
+ * made, rather than kept until the concert is played. Frames and audio are rendered while the
+ * program runs, and the scene does not keep its actions. That concert is finished when the scene is
+ * played, which must be as the first scene, since any scenes before it would have to be drawn
+ * first. It also cannot be played a second time in the same concert, since its actions are not
+ * kept. If the scene is not played, the concert is discarded.
+ *
+ * <p>An error while streaming, such as a video that is too long, is thrown at the call that caused
+ * it. It is not thrown again when the scene is played, and nothing is played.
  */
 public class TheaterPlayer extends JavabuilderSharedObject {
   // Factory for ease of testing
@@ -18,6 +28,12 @@ public class TheaterPlayer extends JavabuilderSharedObject {
 
   private final ConcertCreatorFactory concertCreatorFactory;
   private boolean hasPlayed;
+  // The action list of the scene being streamed, which identifies it, and the concert its actions
+  // have been added to. Both are null until a scene is streamed.
+  private List<SceneAction> streamedScene;
+  private ConcertCreator streamedConcert;
+  // Whether adding an action to the streamed concert failed, in which case it was closed
+  private boolean hasStreamFailed;
 
   public TheaterPlayer() {
     this(new ConcertCreatorFactory());
@@ -29,14 +45,96 @@ public class TheaterPlayer extends JavabuilderSharedObject {
     this.hasPlayed = false;
   }
 
-  public void play(List<SceneAction> actions) {
+  /**
+   * Adds the given action straight to the streamed concert if it belongs to the streamed scene. The
+   * first scene to call this becomes the streamed scene.
+   *
+   * @param scene the list the scene keeps its actions in
+   * @param action the action the scene just made
+   * @return whether the action was added to the concert, in which case the scene should not keep it
+   */
+  public boolean stream(List<SceneAction> scene, SceneAction action) {
+    if (this.hasPlayed) {
+      return false;
+    }
+    if (this.streamedScene == null) {
+      this.streamedScene = scene;
+      this.streamedConcert = this.concertCreatorFactory.create();
+    } else if (this.streamedScene != scene) {
+      return false;
+    }
+    if (this.hasStreamFailed) {
+      // The concert cannot be played, so the action is not needed.
+      return true;
+    }
+
+    try {
+      this.streamedConcert.addAction(action);
+    } catch (RuntimeException e) {
+      this.hasStreamFailed = true;
+      this.discardStreamedConcert();
+      throw e;
+    }
+    return true;
+  }
+
+  /**
+   * Plays the given scenes in order, as one concert.
+   *
+   * @param scenes the action list of each scene
+   */
+  public void play(List<List<SceneAction>> scenes) {
     if (this.hasPlayed) {
       throw new TheaterRuntimeException(ExceptionKeys.DUPLICATE_PLAY_COMMAND);
     }
 
     this.hasPlayed = true;
-    try (final ConcertCreator concertCreator = this.concertCreatorFactory.create()) {
-      concertCreator.publishConcert(actions);
+    // The streamed concert can only be used if the streamed scene is played first, and only once.
+    int streamedSceneCount = 0;
+    for (List<SceneAction> scene : scenes) {
+      if (this.streamedScene != null && scene == this.streamedScene) {
+        streamedSceneCount++;
+      }
+    }
+    final boolean playsStreamedSceneFirst =
+        streamedSceneCount > 0 && scenes.get(0) == this.streamedScene;
+
+    final ConcertCreator concertCreator;
+    if (playsStreamedSceneFirst && streamedSceneCount == 1) {
+      if (this.hasStreamFailed) {
+        // The student has already been shown the error.
+        return;
+      }
+      concertCreator = this.streamedConcert;
+      this.streamedConcert = null;
+    } else {
+      this.discardStreamedConcert();
+      if (streamedSceneCount > 0) {
+        throw new TheaterRuntimeException(ExceptionKeys.SCENE_PLAYED_OUT_OF_ORDER);
+      }
+      concertCreator = this.concertCreatorFactory.create();
+    }
+
+    try (concertCreator) {
+      for (List<SceneAction> actions : scenes) {
+        for (SceneAction action : actions) {
+          concertCreator.addAction(action);
+        }
+      }
+      concertCreator.publish();
+    }
+  }
+
+  @Override
+  public void destroy() {
+    // The streamed scene was never played.
+    this.discardStreamedConcert();
+  }
+
+  private void discardStreamedConcert() {
+    if (this.streamedConcert != null) {
+      this.streamedConcert.close();
+      this.streamedConcert = null;
     }
   }
 }
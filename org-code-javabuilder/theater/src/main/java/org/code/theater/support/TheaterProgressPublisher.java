@@ -9,7 +9,8 @@ import org.code.protocol.*;
  */
 public class TheaterProgressPublisher {
   private static final double UPDATE_TIME_S = 5.0;
-  private static final double MAX_TIME_S = 120.0;
+  // The longest a Theater video may be
+  public static final double MAX_TIME_S = 120.0;
 
   private final OutputAdapter outputAdapter;
   private double pauseTimeSeconds;
@@ -8,5 +8,7 @@ public enum TheaterSignalKey {
   // Get an image from the user via Prompter
   GET_IMAGE,
   // There is no audio for this Theater
-  NO_AUDIO
+  NO_AUDIO,
+  // This message contains the url to a scene log, which the client draws instead of a GIF
+  SCENE_URL
 }
@@ -3,14 +3,20 @@ package org.code.theater;
 import static org.code.theater.Scene.*;
 import static org.code.theater.support.DrawImageAction.UNSPECIFIED;
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.CALLS_REAL_METHODS;
+import static org.mockito.Mockito.mockStatic;
 
 import org.code.media.Color;
 import org.code.media.Font;
 import org.code.media.FontStyle;
 import org.code.media.Image;
+import org.code.media.util.AudioUtils;
 import org.code.theater.support.*;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.MockedStatic;
 
 class SceneTest {
 
@@ -35,6 +41,27 @@ class SceneTest {
     assertEquals(1.0, getLastAction(PlaySoundAction.class).getSamples()[0]);
   }
 
+  @Test
+  public void testPlaySoundFromFileReadsAtMostMaxVideoLength() {
+    final int maxSamples = AudioUtils.getSampleCount(TheaterProgressPublisher.MAX_TIME_S);
+    try (MockedStatic<AudioUtils> audioUtils = mockStatic(AudioUtils.class, CALLS_REAL_METHODS)) {
+      audioUtils
+          .when(() -> AudioUtils.readSamplesFromAssetFile(eq("short.wav"), anyInt()))
+          .thenReturn(new double[] {0.5});
+      audioUtils
+          .when(() -> AudioUtils.readSamplesFromAssetFile(eq("long.wav"), anyInt()))
+          .thenReturn(new double[maxSamples]);
+
+      unitUnderTest.playSound("short.wav");
+      assertEquals(0.5, getLastAction(PlaySoundAction.class).getSamples()[0]);
+      audioUtils.verify(() -> AudioUtils.readSamplesFromAssetFile("short.wav", maxSamples));
+
+      // A sound as long as the longest video is played rather than rejected.
+      unitUnderTest.playSound("long.wav");
+      assertEquals(maxSamples, getLastAction(PlaySoundAction.class).getSamples().length);
+    }
+  }
+
   @Test
   public void testPlayNote() {
     final Instrument instrument = Instrument.PIANO;
@@ -0,0 +1,97 @@
+package org.code.theater.support;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ColorQuantizerTest {
+  private ColorQuantizer unitUnderTest;
+
+  @BeforeEach
+  public void setUp() {
+    unitUnderTest = new ColorQuantizer();
+  }
+
+  @Test
+  public void testKeepsExactColorsWhenThereAreFewEnough() {
+    final int[] pixels = new int[1000];
+    for (int i = 0; i < pixels.length; i++) {
+      // Alpha is ignored.
+      pixels[i] = 0xFF000000 | (i % ColorQuantizer.MAX_COLORS) * 0x010203;
+    }
+    final byte[] indices = new byte[pixels.length];
+
+    final int paletteSize = unitUnderTest.quantize(pixels, pixels.length, indices);
+
+    assertEquals(ColorQuantizer.MAX_COLORS, paletteSize);
+    for (int i = 0; i < pixels.length; i++) {
+      assertEquals(pixels[i] & 0xFFFFFF, unitUnderTest.getPalette()[indices[i] & 0xFF]);
+    }
+  }
+
+  @Test
+  public void testApproximatesFramesWithTooManyColors() {
+    // A smooth gradient with 65536 colors
+    final int[] pixels = new int[256 * 256];
+    for (int i = 0; i < pixels.length; i++) {
+      pixels[i] = (i & 0xFF) << 16 | (i >> 8) << 8 | 0x80;
+    }
+    final byte[] indices = new byte[pixels.length];
+
+    final int paletteSize = unitUnderTest.quantize(pixels, pixels.length, indices);
+
+    assertTrue(paletteSize <= ColorQuantizer.MAX_COLORS);
+    long totalError = 0;
+    for (int i = 0; i < pixels.length; i++) {
+      final int color = unitUnderTest.getPalette()[indices[i] & 0xFF];
+      final int redError = Math.abs((color >> 16) - (pixels[i] >> 16));
+      final int greenError = Math.abs(((color >> 8) & 0xFF) - ((pixels[i] >> 8) & 0xFF));
+      assertTrue(redError <= 16 && greenError <= 16, "Pixel " + i + " is too far off");
+      assertEquals(0x80, color & 0xFF);
+      totalError += redError + greenError;
+    }
+    // 256 colors spread evenly over the gradient are at most 8 off in each channel.
+    assertTrue((double) totalError / pixels.length < 10);
+  }
+
+  @Test
+  public void testReusesTablesForTheNextFrame() {
+    final int[] many = new int[512];
+    for (int i = 0; i < many.length; i++) {
+      many[i] = i * 0x8001;
+    }
+    final byte[] indices = new byte[many.length];
+    unitUnderTest.quantize(many, many.length, indices);
+
+    final int[] few = {0x123456, 0xABCDEF, 0x123456};
+    assertEquals(2, unitUnderTest.quantize(few, few.length, indices));
+    assertEquals(0x123456, unitUnderTest.getPalette()[indices[0]]);
+    assertEquals(0xABCDEF, unitUnderTest.getPalette()[indices[1]]);
+    assertEquals(indices[0], indices[2]);
+  }
+
+  @Test
+  public void testMapsTransparentPixelsToTheTransparentIndex() {
+    final Random random = new Random(1);
+    final int[] pixels = new int[600];
+    for (int i = 0; i < pixels.length; i++) {
+      pixels[i] = i % 2 == 0 ? ColorQuantizer.TRANSPARENT : random.nextInt(0x1000000);
+    }
+    final byte[] indices = new byte[pixels.length];
+
+    final int paletteSize = unitUnderTest.quantize(pixels, pixels.length, indices, true);
+
+    // 300 colors do not fit alongside the transparent entry, so they are approximated.
+    assertEquals(ColorQuantizer.MAX_COLORS, paletteSize);
+    for (int i = 0; i < pixels.length; i++) {
+      if (i % 2 == 0) {
+        assertEquals(ColorQuantizer.TRANSPARENT_INDEX, indices[i]);
+      } else {
+        assertTrue(indices[i] != ColorQuantizer.TRANSPARENT_INDEX);
+      }
+    }
+  }
+}
@@ -2,6 +2,7 @@ package org.code.theater.support;
 
 import static org.code.protocol.AllowedFileNames.THEATER_AUDIO_NAME;
 import static org.code.protocol.AllowedFileNames.THEATER_IMAGE_NAME;
+import static org.code.protocol.AllowedFileNames.THEATER_SCENE_NAME;
 import static org.code.protocol.ClientMessageDetailKeys.URL;
 import static org.code.theater.support.DrawImageAction.UNSPECIFIED;
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -23,6 +24,11 @@ class ConcertCreatorTest {
 
   private BufferedImage image;
   private GifWriter gifWriter;
+  private GifWriter.Factory gifWriterFactory;
+  private SceneLogWriter sceneLogWriter;
+  private SceneLogWriter.Factory sceneLogWriterFactory;
+  private AudioWriter.Factory audioWriterFactory;
+  private GraphicsHelper.Factory graphicsHelperFactory;
   private AudioWriter audioWriter;
   private GraphicsHelper graphicsHelper;
   private InstrumentSampleLoader instrumentSampleLoader;
@@ -37,6 +43,7 @@ class ConcertCreatorTest {
     CachedResources.create();
     image = mock(BufferedImage.class);
     gifWriter = mock(GifWriter.class);
+    sceneLogWriter = mock(SceneLogWriter.class);
     audioWriter = mock(AudioWriter.class);
     graphicsHelper = mock(GraphicsHelper.class);
     instrumentSampleLoader = mock(InstrumentSampleLoader.class);
@@ -45,23 +52,16 @@ class ConcertCreatorTest {
     contentManager = mock(ContentManager.class);
     theaterMessageCaptor = ArgumentCaptor.forClass(TheaterMessage.class);
 
-    final GifWriter.Factory gifWriterFactory = mock(GifWriter.Factory.class);
+    gifWriterFactory = mock(GifWriter.Factory.class);
     when(gifWriterFactory.createGifWriter(any())).thenReturn(gifWriter);
-    final AudioWriter.Factory audioWriterFactory = mock(AudioWriter.Factory.class);
+    sceneLogWriterFactory = mock(SceneLogWriter.Factory.class);
+    when(sceneLogWriterFactory.createSceneLogWriter(any())).thenReturn(sceneLogWriter);
+    audioWriterFactory = mock(AudioWriter.Factory.class);
     when(audioWriterFactory.createAudioWriter(any())).thenReturn(audioWriter);
-    final GraphicsHelper.Factory graphicsHelperFactory = mock(GraphicsHelper.Factory.class);
+    graphicsHelperFactory = mock(GraphicsHelper.Factory.class);
     when(graphicsHelperFactory.createGraphicsHelper(any(), any())).thenReturn(graphicsHelper);
 
-    unitUnderTest =
-        new ConcertCreator(
-            image,
-            gifWriterFactory,
-            audioWriterFactory,
-            graphicsHelperFactory,
-            instrumentSampleLoader,
-            theaterProgressPublisher,
-            outputAdapter,
-            contentManager);
+    unitUnderTest = createConcertCreator(TheaterOutputFormat.GIF);
   }
 
   @Test
@@ -107,6 +107,19 @@ class ConcertCreatorTest {
     verify(audioWriter, never()).addDelay(anyDouble());
   }
 
+  @Test
+  public void testPlayNoteWritesSamplesFromSampleBank() throws FileNotFoundException {
+    final double[] samples = {0.5, -0.5};
+    when(instrumentSampleLoader.getNoteSamples(Instrument.PIANO, 60, 2.0)).thenReturn(samples);
+
+    final PlayNoteAction action = new PlayNoteAction(Instrument.PIANO, 60, 2.0);
+    unitUnderTest.publishConcert(List.of(action));
+
+    verify(audioWriter).writeAudioSamples(samples);
+    verify(instrumentSampleLoader, never()).getSampleFilePath(any(Instrument.class), anyInt());
+    verify(audioWriter, never()).writeAudioFromLocalFile(anyString(), anyDouble());
+  }
+
   @Test
   public void testPause() {
     final double pauseTime = 15.0;
@@ -277,4 +290,64 @@ class ConcertCreatorTest {
     verify(gifWriter, times(1)).close();
     verify(audioWriter, times(1)).close();
   }
+
+  @Test
+  public void testSceneLogFormatWritesDrawingActionsToTheLog() {
+    unitUnderTest = createConcertCreator(TheaterOutputFormat.SCENE_LOG);
+    final DrawRectangleAction action =
+        new DrawRectangleAction(20, 20, 100, 100, Color.CHOCOLATE, Color.INDIGO, 10.0);
+    final double[] samples = {1.0, 0.0};
+
+    unitUnderTest.publishConcert(List.of(action, new PlaySoundAction(samples)));
+
+    verify(sceneLogWriter).writeAction(action);
+    verify(audioWriter).writeAudioSamples(samples);
+    verify(graphicsHelper, never())
+        .drawRectangle(anyInt(), anyInt(), anyInt(), anyInt(), any(), any());
+    verify(gifWriterFactory, never()).createGifWriter(any());
+  }
+
+  @Test
+  public void testSceneLogFormatPause() {
+    unitUnderTest = createConcertCreator(TheaterOutputFormat.SCENE_LOG);
+    final double pauseTime = 15.0;
+    final PauseAction action = new PauseAction(pauseTime);
+
+    unitUnderTest.publishConcert(List.of(action));
+
+    verify(sceneLogWriter).writeAction(action);
+    verify(audioWriter).addDelay(pauseTime);
+    verify(theaterProgressPublisher).onPause(pauseTime);
+  }
+
+  @Test
+  public void testSceneLogFormatWritesSceneFile() throws JavabuilderException {
+    unitUnderTest = createConcertCreator(TheaterOutputFormat.SCENE_LOG);
+    final String sceneUrl = "sceneUrl";
+    when(contentManager.writeToOutputFile(eq(THEATER_SCENE_NAME), any(), eq("application/json")))
+        .thenReturn(sceneUrl);
+    doNothing().when(outputAdapter).sendMessage(theaterMessageCaptor.capture());
+
+    unitUnderTest.publishConcert(List.of());
+
+    verify(sceneLogWriter).close();
+    verify(contentManager, never()).writeToOutputFile(eq(THEATER_IMAGE_NAME), any(), any());
+    final TheaterMessage sceneMessage = theaterMessageCaptor.getAllValues().get(1);
+    assertEquals(TheaterSignalKey.SCENE_URL.toString(), sceneMessage.getValue());
+    assertEquals(sceneUrl, sceneMessage.getDetail().get(URL));
+  }
+
+  private ConcertCreator createConcertCreator(TheaterOutputFormat outputFormat) {
+    return new ConcertCreator(
+        image,
+        gifWriterFactory,
+        sceneLogWriterFactory,
+        outputFormat,
+        audioWriterFactory,
+        graphicsHelperFactory,
+        instrumentSampleLoader,
+        theaterProgressPublisher,
+        outputAdapter,
+        contentManager);
+  }
 }
@@ -1,7 +1,19 @@
 package org.code.theater.support;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.awt.Graphics2D;
 import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.metadata.IIOMetadataNode;
+import org.code.protocol.InternalServerRuntimeException;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
@@ -15,4 +27,162 @@ public class GifWriterTest {
     writer.close();
     Assertions.assertNotEquals(0, stream.size());
   }
+
+  @Test
+  public void writesFramesThatDecodeToTheOriginalPixels() throws IOException {
+    // 256 colors in a random order, which fills the LZW string table several times.
+    final BufferedImage noise = createImage(new Random(1), 256);
+    final BufferedImage flat = createImage(new Random(2), 3);
+    ByteArrayOutputStream stream = new ByteArrayOutputStream();
+    GifWriter writer = new GifWriter(stream);
+    writer.writeToGif(noise, 1500);
+    writer.writeToGif(flat, 0);
+    writer.close();
+
+    final ImageReader reader = createReader(stream);
+    final BufferedImage screen = createScreen();
+    assertEquals(2, reader.getNumImages(true));
+    assertArrayEquals(getPixels(noise), getPixels(drawFrame(reader, 0, screen)));
+    assertArrayEquals(getPixels(flat), getPixels(drawFrame(reader, 1, screen)));
+    assertEquals("150", getGraphicControlExtension(reader, 0).getAttribute("delayTime"));
+    assertEquals("0", getGraphicControlExtension(reader, 1).getAttribute("delayTime"));
+    assertEquals(
+        "doNotDispose", getGraphicControlExtension(reader, 0).getAttribute("disposalMethod"));
+  }
+
+  @Test
+  public void writesOnlyTheChangedPartOfEachFrame() throws IOException {
+    final BufferedImage image = createImage(new Random(3), 2);
+    final int[] first = getPixels(image);
+    final Graphics2D graphics = image.createGraphics();
+    graphics.setColor(java.awt.Color.RED);
+    graphics.fillRect(100, 50, 20, 30);
+    graphics.setColor(java.awt.Color.BLUE);
+    graphics.drawLine(110, 60, 150, 90);
+    final int[] second = getPixels(image);
+    ByteArrayOutputStream stream = new ByteArrayOutputStream();
+    GifWriter writer = new GifWriter(stream);
+    image.setRGB(0, 0, 400, 400, first, 0, 400);
+    writer.writeToGif(image, 100);
+    image.setRGB(0, 0, 400, 400, second, 0, 400);
+    writer.writeToGif(image, 100);
+    writer.writeToGif(image, 500);
+    writer.close();
+
+    final ImageReader reader = createReader(stream);
+    final BufferedImage screen = createScreen();
+    assertEquals(3, reader.getNumImages(true));
+    assertArrayEquals(first, getPixels(drawFrame(reader, 0, screen)));
+    assertArrayEquals(second, getPixels(drawFrame(reader, 1, screen)));
+    assertArrayEquals(second, getPixels(drawFrame(reader, 2, screen)));
+    // The second frame covers only the rectangle and line, and the third only a single pixel.
+    assertEquals("100", getImageDescriptor(reader, 1).getAttribute("imageLeftPosition"));
+    assertEquals("50", getImageDescriptor(reader, 1).getAttribute("imageTopPosition"));
+    assertEquals("51", getImageDescriptor(reader, 1).getAttribute("imageWidth"));
+    assertEquals("41", getImageDescriptor(reader, 1).getAttribute("imageHeight"));
+    assertEquals("1", getImageDescriptor(reader, 2).getAttribute("imageWidth"));
+    assertEquals("1", getImageDescriptor(reader, 2).getAttribute("imageHeight"));
+    assertEquals("50", getGraphicControlExtension(reader, 2).getAttribute("delayTime"));
+    // The unchanged pixels beside the line are left transparent.
+    assertEquals(
+        "TRUE", getGraphicControlExtension(reader, 1).getAttribute("transparentColorFlag"));
+  }
+
+  @Test
+  public void writesTheSameBytesWhenEncodingInParallel() {
+    final Random random = new Random(4);
+    final BufferedImage image = createImage(random, 40);
+    ByteArrayOutputStream sequential = new ByteArrayOutputStream();
+    ByteArrayOutputStream parallel = new ByteArrayOutputStream();
+    GifWriter sequentialWriter = new GifWriter(sequential, 0);
+    GifWriter parallelWriter = new GifWriter(parallel, 3);
+    final Graphics2D graphics = image.createGraphics();
+    for (int i = 0; i < 30; i++) {
+      graphics.setColor(new java.awt.Color(random.nextInt(0x1000000)));
+      graphics.fillOval(random.nextInt(400), random.nextInt(400), 60, 60);
+      sequentialWriter.writeToGif(image, i * 10);
+      parallelWriter.writeToGif(image, i * 10);
+    }
+    sequentialWriter.close();
+    parallelWriter.close();
+
+    assertArrayEquals(sequential.toByteArray(), parallel.toByteArray());
+  }
+
+  @Test
+  public void throwsIfWrittenAfterClose() {
+    GifWriter writer = new GifWriter(new ByteArrayOutputStream());
+    writer.close();
+    assertThrows(
+        InternalServerRuntimeException.class,
+        () -> writer.writeToGif(new BufferedImage(1, 1, 1), 0));
+  }
+
+  private static BufferedImage createImage(Random random, int colorCount) {
+    final int[] colors = new int[colorCount];
+    for (int i = 0; i < colorCount; i++) {
+      colors[i] = random.nextInt(0x1000000);
+    }
+    final BufferedImage image =
+        new BufferedImage(
+            Constants.THEATER_WIDTH, Constants.THEATER_HEIGHT, BufferedImage.TYPE_INT_RGB);
+    for (int y = 0; y < image.getHeight(); y++) {
+      for (int x = 0; x < image.getWidth(); x++) {
+        image.setRGB(x, y, colors[random.nextInt(colorCount)]);
+      }
+    }
+    return image;
+  }
+
+  private static ImageReader createReader(ByteArrayOutputStream stream) throws IOException {
+    final ImageReader reader = ImageIO.getImageReadersByFormatName("gif").next();
+    reader.setInput(
+        ImageIO.createImageInputStream(new ByteArrayInputStream(stream.toByteArray())));
+    return reader;
+  }
+
+  private static BufferedImage createScreen() {
+    return new BufferedImage(
+        Constants.THEATER_WIDTH, Constants.THEATER_HEIGHT, BufferedImage.TYPE_INT_RGB);
+  }
+
+  /** Draws a frame over the previous ones at its position, as a GIF viewer would. */
+  private static BufferedImage drawFrame(ImageReader reader, int frame, BufferedImage screen)
+      throws IOException {
+    final IIOMetadataNode descriptor = getImageDescriptor(reader, frame);
+    final Graphics2D graphics = screen.createGraphics();
+    graphics.drawImage(
+        reader.read(frame),
+        Integer.parseInt(descriptor.getAttribute("imageLeftPosition")),
+        Integer.parseInt(descriptor.getAttribute("imageTopPosition")),
+        null);
+    graphics.dispose();
+    return screen;
+  }
+
+  private static int[] getPixels(BufferedImage image) {
+    final int[] pixels =
+        image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth());
+    for (int i = 0; i < pixels.length; i++) {
+      pixels[i] &= 0xFFFFFF;
+    }
+    return pixels;
+  }
+
+  private static IIOMetadataNode getGraphicControlExtension(ImageReader reader, int frame)
+      throws IOException {
+    return getMetadataNode(reader, frame, "GraphicControlExtension");
+  }
+
+  private static IIOMetadataNode getImageDescriptor(ImageReader reader, int frame)
+      throws IOException {
+    return getMetadataNode(reader, frame, "ImageDescriptor");
+  }
+
+  private static IIOMetadataNode getMetadataNode(ImageReader reader, int frame, String name)
+      throws IOException {
+    final IIOMetadataNode root =
+        (IIOMetadataNode) reader.getImageMetadata(frame).getAsTree("javax_imageio_gif_image_1.0");
+    return (IIOMetadataNode) root.getElementsByTagName(name).item(0);
+  }
 }
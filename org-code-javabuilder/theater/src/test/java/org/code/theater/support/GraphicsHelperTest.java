@@ -109,9 +109,9 @@ class GraphicsHelperTest {
   @Test
   void drawTextWithoutRotationDrawsTextCorrectly() {
     final java.awt.Font awtFont = mock(java.awt.Font.class);
-    when(fontHelper.getFont(any(), any())).thenReturn(awtFont);
-    when(awtFont.deriveFont(anyFloat())).thenReturn(awtFont);
+    when(fontHelper.getFont(any(), any(), anyInt())).thenReturn(awtFont);
     unitUnderTest.drawText("hello", 0, 0, Color.BLUE, Font.SANS, FontStyle.BOLD, 12, 0);
+    verify(fontHelper).getFont(Font.SANS, FontStyle.BOLD, 12);
     verify(graphics).drawString("hello", 0, 0);
     verify(graphics).setFont(awtFont);
     // verify we never rotate
@@ -121,8 +121,7 @@ class GraphicsHelperTest {
   @Test
   void drawTextWithRotationDrawsTextCorrectly() {
     final java.awt.Font awtFont = mock(java.awt.Font.class);
-    when(fontHelper.getFont(any(), any())).thenReturn(awtFont);
-    when(awtFont.deriveFont(anyFloat())).thenReturn(awtFont);
+    when(fontHelper.getFont(any(), any(), anyInt())).thenReturn(awtFont);
     unitUnderTest.drawText("hello world", 50, 150, Color.BLUE, Font.SANS, FontStyle.BOLD, 12, 95);
     verify(graphics).drawString("hello world", 50, 150);
     double radians = Math.toRadians(95);
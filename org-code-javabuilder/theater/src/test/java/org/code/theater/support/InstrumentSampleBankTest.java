@@ -0,0 +1,90 @@
+package org.code.theater.support;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ShortBuffer;
+import org.junit.jupiter.api.Test;
+
+class InstrumentSampleBankTest {
+  private static final String FIRST_SAMPLE = "instruments/first.wav";
+  private static final String SECOND_SAMPLE = "instruments/second.wav";
+
+  @Test
+  public void testGetSamplesReturnsRequestedLength() throws IOException {
+    final InstrumentSampleBank unitUnderTest =
+        new InstrumentSampleBank(createBank(0x4A424E4B, 44100));
+
+    assertArrayEquals(new short[] {1, 2}, toArray(unitUnderTest.getSamples(FIRST_SAMPLE, 2)));
+    assertArrayEquals(new short[] {1, 2, 3}, toArray(unitUnderTest.getSamples(FIRST_SAMPLE, 10)));
+    assertArrayEquals(
+        new short[] {-4, 5}, toArray(unitUnderTest.getSamples(SECOND_SAMPLE, 10)));
+    assertEquals(0, unitUnderTest.getSamples(SECOND_SAMPLE, -1).remaining());
+  }
+
+  @Test
+  public void testGetSamplesReturnsReadOnlyBuffer() throws IOException {
+    final InstrumentSampleBank unitUnderTest =
+        new InstrumentSampleBank(createBank(0x4A424E4B, 44100));
+
+    assertTrue(unitUnderTest.getSamples(FIRST_SAMPLE, 3).isReadOnly());
+  }
+
+  @Test
+  public void testGetSamplesReturnsNullForMissingSample() throws IOException {
+    final InstrumentSampleBank unitUnderTest =
+        new InstrumentSampleBank(createBank(0x4A424E4B, 44100));
+
+    assertNull(unitUnderTest.getSamples("instruments/missing.wav", 10));
+  }
+
+  @Test
+  public void testThrowsForInvalidBank() throws IOException {
+    final ByteBuffer wrongMagic = createBank(0x12345678, 44100);
+    assertThrows(IllegalArgumentException.class, () -> new InstrumentSampleBank(wrongMagic));
+
+    final ByteBuffer wrongSampleRate = createBank(0x4A424E4B, 22050);
+    assertThrows(IllegalArgumentException.class, () -> new InstrumentSampleBank(wrongSampleRate));
+
+    final ByteBuffer valid = createBank(0x4A424E4B, 44100);
+    final ByteBuffer truncated = valid.limit(valid.limit() - 2).slice();
+    assertThrows(IllegalArgumentException.class, () -> new InstrumentSampleBank(truncated));
+  }
+
+  // Creates a bank in the format written by the packInstrumentSamples build task.
+  private static ByteBuffer createBank(int magic, int sampleRate) throws IOException {
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    final DataOutputStream out = new DataOutputStream(bytes);
+    out.writeInt(magic);
+    out.writeInt(1);
+    out.writeInt(sampleRate);
+    out.writeInt(2);
+    final int headerSize = 16 + (2 + FIRST_SAMPLE.length() + 8) + (2 + SECOND_SAMPLE.length() + 8);
+    // Sample data starts at an even offset
+    final int dataOffset = headerSize + (headerSize % 2);
+    out.writeUTF(FIRST_SAMPLE);
+    out.writeInt(dataOffset);
+    out.writeInt(3);
+    out.writeUTF(SECOND_SAMPLE);
+    out.writeInt(dataOffset + 6);
+    out.writeInt(2);
+    if (dataOffset > headerSize) {
+      out.writeByte(0);
+    }
+    for (short sample : new short[] {1, 2, 3, -4, 5}) {
+      // Sample data is little-endian
+      out.writeByte(sample & 0xFF);
+      out.writeByte((sample >> 8) & 0xFF);
+    }
+    return ByteBuffer.wrap(bytes.toByteArray());
+  }
+
+  private static short[] toArray(ShortBuffer buffer) {
+    final short[] samples = new short[buffer.remaining()];
+    buffer.duplicate().get(samples);
+    return samples;
+  }
+}
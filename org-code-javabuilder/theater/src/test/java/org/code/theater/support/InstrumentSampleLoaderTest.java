@@ -1,7 +1,9 @@
 package org.code.theater.support;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
 
+import java.nio.ShortBuffer;
 import java.util.HashMap;
 import java.util.Map;
 import org.code.theater.Instrument;
@@ -13,6 +15,7 @@ class InstrumentSampleLoaderTest {
   private static final int VALID_NOTE = 60;
   private static final String VALID_FILE = "file.wav";
 
+  private Map<Instrument, Map<Integer, String>> testMap;
   private InstrumentSampleLoader unitUnderTest;
 
   @BeforeEach
@@ -20,7 +23,7 @@ class InstrumentSampleLoaderTest {
     final Map<Integer, String> instrumentMap = new HashMap<>();
     instrumentMap.put(VALID_NOTE, VALID_FILE);
 
-    final Map<Instrument, Map<Integer, String>> testMap = new HashMap<>();
+    testMap = new HashMap<>();
     testMap.put(VALID_INSTRUMENT, instrumentMap);
 
     unitUnderTest = new InstrumentSampleLoader(testMap);
@@ -35,4 +38,22 @@ class InstrumentSampleLoaderTest {
   public void testGetSampleFileReturnsNullForMissingNote() {
     assertNull(unitUnderTest.getSampleFilePath(VALID_INSTRUMENT, 12));
   }
+
+  @Test
+  public void testGetNoteSamplesReturnsNullWithoutSampleBank() {
+    assertNull(unitUnderTest.getNoteSamples(VALID_INSTRUMENT, VALID_NOTE, 1.0));
+  }
+
+  @Test
+  public void testGetNoteSamplesReadsRequestedLengthFromSampleBank() {
+    final InstrumentSampleBank sampleBank = mock(InstrumentSampleBank.class);
+    when(sampleBank.getSamples(VALID_FILE, 22050))
+        .thenReturn(ShortBuffer.wrap(new short[] {16384, -16384}));
+    unitUnderTest = new InstrumentSampleLoader(testMap, sampleBank);
+
+    assertArrayEquals(
+        new double[] {0.5, -0.5}, unitUnderTest.getNoteSamples(VALID_INSTRUMENT, VALID_NOTE, 0.5));
+    assertNull(unitUnderTest.getNoteSamples(VALID_INSTRUMENT, 12, 0.5));
+    assertNull(unitUnderTest.getNoteSamples(Instrument.BASS, VALID_NOTE, 0.5));
+  }
 }
@@ -0,0 +1,176 @@
+package org.code.theater.support;
+
+import static org.code.theater.support.DrawImageAction.UNSPECIFIED;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.*;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import javax.imageio.ImageIO;
+import org.code.media.Color;
+import org.code.media.Font;
+import org.code.media.FontStyle;
+import org.code.media.Image;
+import org.code.protocol.ContentManager;
+import org.code.protocol.InternalServerRuntimeException;
+import org.code.theater.Instrument;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class SceneLogWriterTest {
+  private ByteArrayOutputStream stream;
+  private ContentManager contentManager;
+  private SceneLogWriter unitUnderTest;
+
+  @BeforeEach
+  public void setUp() {
+    stream = new ByteArrayOutputStream();
+    contentManager = mock(ContentManager.class);
+    unitUnderTest = new SceneLogWriter(stream, contentManager);
+  }
+
+  @Test
+  public void testWritesDrawingActionsInOrder() {
+    unitUnderTest.writeAction(new ClearSceneAction(Color.RED));
+    unitUnderTest.writeAction(new PlaySoundAction(new double[] {0.5}));
+    unitUnderTest.writeAction(new PlayNoteAction(Instrument.PIANO, 60, 1.0));
+    unitUnderTest.writeAction(new PauseAction(1.5));
+    unitUnderTest.writeAction(
+        new DrawTextAction("hi", 10, 20, 45.0, 30, Font.SERIF, FontStyle.BOLD, Color.BLUE));
+    unitUnderTest.writeAction(new DrawShapeAction(new int[] {1, 2, 3, 4}, true, null, null, 2.0));
+    unitUnderTest.writeAction(
+        new DrawRectangleAction(5, 6, 70, 80, Color.BLACK, new Color(1, 2, 3), 1.0));
+    unitUnderTest.close();
+
+    final JSONObject log = readLog();
+    assertEquals(SceneLogWriter.VERSION, log.getInt("version"));
+    assertEquals(Constants.THEATER_WIDTH, log.getInt("width"));
+    final JSONArray actions = log.getJSONArray("actions");
+    // Sounds are left to the audio file.
+    assertEquals(5, actions.length());
+    assertEquals("CLEAR_SCENE", actions.getJSONArray(0).getString(0));
+    assertEquals(0xFF0000, actions.getJSONArray(0).getInt(1));
+    assertEquals(1.5, actions.getJSONArray(1).getDouble(1));
+
+    final JSONArray text = actions.getJSONArray(2);
+    assertEquals("hi", text.getString(1));
+    assertEquals(0x0000FF, text.getInt(4));
+    assertEquals("SERIF", text.getString(5));
+    assertEquals("BOLD", text.getString(6));
+    assertEquals(30, text.getInt(7));
+
+    final JSONArray shape = actions.getJSONArray(3);
+    assertEquals(4, shape.getJSONArray(1).length());
+    assertTrue(shape.getBoolean(2));
+    assertTrue(shape.isNull(3));
+
+    assertEquals(0x010203, actions.getJSONArray(4).getInt(6));
+    assertEquals(0, log.getJSONArray("images").length());
+  }
+
+  @Test
+  public void testReferencesAssetImagesByUrl() {
+    when(contentManager.getAssetUrl("cat.png")).thenReturn("https://assets/cat.png");
+    final Image image = mock(Image.class);
+    when(image.getWidth()).thenReturn(100);
+    when(image.getHeight()).thenReturn(50);
+
+    unitUnderTest.writeAction(
+        new DrawImageAction(image, 1, 2, 40, UNSPECIFIED, UNSPECIFIED, 0.0, "cat.png"));
+    unitUnderTest.writeAction(
+        new DrawImageAction(image, 3, 4, UNSPECIFIED, 10, 20, 0.0, "cat.png"));
+    unitUnderTest.close();
+
+    final JSONObject log = readLog();
+    final JSONArray images = log.getJSONArray("images");
+    assertEquals(1, images.length());
+    assertEquals("https://assets/cat.png", images.getJSONObject(0).getString("url"));
+    final JSONArray first = log.getJSONArray("actions").getJSONArray(0);
+    assertEquals(0, first.getInt(1));
+    // The height is scaled to keep the image's proportions.
+    assertEquals(40, first.getInt(4));
+    assertEquals(20, first.getInt(5));
+    assertEquals(0, log.getJSONArray("actions").getJSONArray(1).getInt(1));
+    verify(image, never()).getBufferedImage();
+  }
+
+  @Test
+  public void testEmbedsAssetImagesTheClientCannotLoad() {
+    // Stubbed assets are served from the server's classpath.
+    when(contentManager.getAssetUrl("cat.png")).thenReturn("jar:file:/var/task/lib.jar!/cat.png");
+    final Image image = createImage(0xFFFF0000);
+
+    unitUnderTest.writeAction(new DrawImageAction(image, 1, 2, UNSPECIFIED, 2, 2, 0.0, "cat.png"));
+    unitUnderTest.writeAction(new DrawImageAction(image, 3, 4, UNSPECIFIED, 2, 2, 0.0, "cat.png"));
+    unitUnderTest.close();
+
+    final JSONObject log = readLog();
+    final JSONArray images = log.getJSONArray("images");
+    assertEquals(1, images.length());
+    assertFalse(images.getJSONObject(0).has("url"));
+    assertEquals(64, images.getJSONObject(0).getString("hash").length());
+    assertEquals(0, log.getJSONArray("actions").getJSONArray(1).getInt(1));
+    // The asset is only hashed once.
+    verify(image, times(1)).getBufferedImage();
+  }
+
+  @Test
+  public void testWritesEachGeneratedImageOnce() throws IOException {
+    final Image red = createImage(0xFFFF0000);
+    final Image otherRed = createImage(0xFFFF0000);
+    final Image green = createImage(0xFF00FF00);
+
+    unitUnderTest.writeAction(new DrawImageAction(red, 0, 0, UNSPECIFIED, 2, 2, 0.0));
+    unitUnderTest.writeAction(new DrawImageAction(otherRed, 5, 5, UNSPECIFIED, 2, 2, 0.0));
+    unitUnderTest.writeAction(new DrawImageAction(green, 9, 9, UNSPECIFIED, 2, 2, 0.0));
+    unitUnderTest.close();
+
+    final JSONObject log = readLog();
+    final JSONArray images = log.getJSONArray("images");
+    assertEquals(2, images.length());
+    final JSONArray actions = log.getJSONArray("actions");
+    assertEquals(0, actions.getJSONArray(0).getInt(1));
+    assertEquals(0, actions.getJSONArray(1).getInt(1));
+    assertEquals(1, actions.getJSONArray(2).getInt(1));
+
+    assertEquals(64, images.getJSONObject(0).getString("hash").length());
+    final BufferedImage decoded =
+        ImageIO.read(
+            new ByteArrayInputStream(
+                Base64.getDecoder().decode(images.getJSONObject(1).getString("data"))));
+    assertEquals(0xFF00FF00, decoded.getRGB(1, 1));
+  }
+
+  @Test
+  public void testThrowsIfWrittenAfterClose() {
+    unitUnderTest.close();
+    assertThrows(
+        InternalServerRuntimeException.class,
+        () -> unitUnderTest.writeAction(new PauseAction(1.0)));
+  }
+
+  private JSONObject readLog() {
+    return new JSONObject(new String(stream.toByteArray(), StandardCharsets.UTF_8));
+  }
+
+  private static Image createImage(int argb) {
+    final BufferedImage bufferedImage = new BufferedImage(2, 2, BufferedImage.TYPE_INT_ARGB);
+    for (int x = 0; x < 2; x++) {
+      for (int y = 0; y < 2; y++) {
+        bufferedImage.setRGB(x, y, argb);
+      }
+    }
+    final Image image = mock(Image.class);
+    when(image.getBufferedImage()).thenReturn(bufferedImage);
+    return image;
+  }
+}
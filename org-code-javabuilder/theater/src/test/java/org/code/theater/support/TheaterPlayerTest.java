@@ -5,6 +5,7 @@ import static org.mockito.Mockito.*;
 
 import java.util.ArrayList;
 import java.util.List;
+import org.code.media.Color;
 import org.code.protocol.GlobalProtocolTestFactory;
 import org.code.protocol.InternalExceptionKey;
 import org.code.protocol.InternalServerRuntimeException;
@@ -14,13 +15,14 @@ import org.junit.jupiter.api.Test;
 
 class TheaterPlayerTest {
 
+  private ConcertCreatorFactory concertCreatorFactory;
   private ConcertCreator concertCreator;
   private List<SceneAction> actions;
   private TheaterPlayer unitUnderTest;
 
   @BeforeEach
   public void setUp() {
-    final ConcertCreatorFactory concertCreatorFactory = mock(ConcertCreatorFactory.class);
+    concertCreatorFactory = mock(ConcertCreatorFactory.class);
     concertCreator = mock(ConcertCreator.class);
     when(concertCreatorFactory.create()).thenReturn(concertCreator);
 
@@ -33,15 +35,22 @@ class TheaterPlayerTest {
 
   @Test
   public void testPublishesConcertOnPlay() {
-    unitUnderTest.play(actions);
-    verify(concertCreator).publishConcert(actions);
+    final SceneAction first = new ClearSceneAction(Color.RED);
+    final SceneAction second = new PauseAction(1.0);
+    actions.add(first);
+
+    unitUnderTest.play(List.of(actions, List.of(second)));
+
+    verify(concertCreator).addAction(first);
+    verify(concertCreator).addAction(second);
+    verify(concertCreator).publish();
   }
 
   @Test
   public void testThrowsExceptionIfPlayCalledMoreThanOnce() {
-    unitUnderTest.play(actions);
+    unitUnderTest.play(List.of(actions));
     final Exception actual =
-        assertThrows(TheaterRuntimeException.class, () -> unitUnderTest.play(actions));
+        assertThrows(TheaterRuntimeException.class, () -> unitUnderTest.play(List.of(actions)));
     assertEquals(ExceptionKeys.DUPLICATE_PLAY_COMMAND.toString(), actual.getMessage());
   }
 
@@ -49,12 +58,86 @@ class TheaterPlayerTest {
   public void testCleansUpConcertCreatorIfExceptionThrown() {
     doThrow(new InternalServerRuntimeException(InternalExceptionKey.INTERNAL_EXCEPTION))
         .when(concertCreator)
-        .publishConcert(actions);
+        .publish();
     try {
-      unitUnderTest.play(actions);
+      unitUnderTest.play(List.of(actions));
     } catch (InternalServerRuntimeException e) {
       // expected
       verify(concertCreator).close();
     }
   }
+
+  @Test
+  public void testStreamsTheFirstSceneAndFinishesItOnPlay() {
+    final List<SceneAction> otherScene = new ArrayList<>();
+    final SceneAction streamed = new ClearSceneAction(Color.RED);
+    final SceneAction kept = new PauseAction(1.0);
+
+    assertTrue(unitUnderTest.stream(actions, streamed));
+    assertFalse(unitUnderTest.stream(otherScene, kept));
+    verify(concertCreator).addAction(streamed);
+    otherScene.add(kept);
+
+    unitUnderTest.play(List.of(actions, otherScene));
+
+    verify(concertCreatorFactory, times(1)).create();
+    verify(concertCreator).addAction(kept);
+    verify(concertCreator).publish();
+    verify(concertCreator).close();
+  }
+
+  @Test
+  public void testThrowsIfTheStreamedSceneIsPlayedTwice() {
+    unitUnderTest.stream(actions, new ClearSceneAction(Color.RED));
+
+    // Without streaming, the scene would be drawn twice, but its actions were not kept.
+    final Exception actual =
+        assertThrows(
+            TheaterRuntimeException.class, () -> unitUnderTest.play(List.of(actions, actions)));
+    assertEquals(ExceptionKeys.SCENE_PLAYED_OUT_OF_ORDER.toString(), actual.getMessage());
+    verify(concertCreator).close();
+    verify(concertCreator, never()).publish();
+  }
+
+  @Test
+  public void testDiscardsTheStreamedConcertIfTheSceneIsNotPlayed() {
+    final ConcertCreator playedConcertCreator = mock(ConcertCreator.class);
+    when(concertCreatorFactory.create()).thenReturn(concertCreator, playedConcertCreator);
+    unitUnderTest.stream(actions, new ClearSceneAction(Color.RED));
+
+    unitUnderTest.play(List.of(new ArrayList<>()));
+
+    verify(concertCreator).close();
+    verify(concertCreator, never()).publish();
+    verify(playedConcertCreator).publish();
+  }
+
+  @Test
+  public void testThrowsIfTheStreamedSceneIsNotPlayedFirst() {
+    unitUnderTest.stream(actions, new ClearSceneAction(Color.RED));
+
+    final Exception actual =
+        assertThrows(
+            TheaterRuntimeException.class,
+            () -> unitUnderTest.play(List.of(new ArrayList<>(), actions)));
+    assertEquals(ExceptionKeys.SCENE_PLAYED_OUT_OF_ORDER.toString(), actual.getMessage());
+    verify(concertCreator).close();
+  }
+
+  @Test
+  public void testThrowsStreamingErrorsOnlyOnce() {
+    final TheaterRuntimeException error =
+        new TheaterRuntimeException(ExceptionKeys.VIDEO_TOO_LONG);
+    final SceneAction pause = new PauseAction(200.0);
+    doThrow(error).when(concertCreator).addAction(pause);
+
+    assertThrows(TheaterRuntimeException.class, () -> unitUnderTest.stream(actions, pause));
+    verify(concertCreator).close();
+    // Later actions of the failed scene are dropped.
+    assertTrue(unitUnderTest.stream(actions, new PauseAction(1.0)));
+
+    unitUnderTest.play(List.of(actions));
+    verify(concertCreator, never()).publish();
+    verify(concertCreatorFactory, times(1)).create();
+  }
 }
@@ -41,6 +41,16 @@ public class UserTestOutputAdapter implements OutputAdapter {
     }
   }
 
+  @Override
+  public void flush() {
+    delegateOutputAdapter.flush();
+  }
+
+  @Override
+  public void close() {
+    delegateOutputAdapter.close();
+  }
+
   public void setIsValidation(boolean isValidation) {
     this.isValidation = isValidation;
   }